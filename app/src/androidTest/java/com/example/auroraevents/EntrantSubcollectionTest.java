@@ -0,0 +1,143 @@
+package com.example.auroraevents;
+
+import static com.example.auroraevents.TestsSupport.setUpEvent;
+import static com.example.auroraevents.TestsSupport.signIn;
+import static com.example.auroraevents.TestsSupport.takeDownEvent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.example.auroraevents.model.Event;
+import com.example.auroraevents.model.RegistrationList;
+import com.example.auroraevents.server.EventDb;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tests events storing their entrants as one document per entrant (EventDb.STORAGE_SUBCOLLECTION).
+ */
+public class EntrantSubcollectionTest {
+    Event event;
+    RegistrationList list;
+
+    @BeforeClass
+    public static void prepare() {
+        signIn();
+    }
+
+    @Before
+    public void before() {
+        event = new Event(
+                "test device",
+                "registration test",
+                "event for entrant subcollection test",
+                LocalDateTime.now(),
+                LocalDateTime.now(),
+                LocalDateTime.now().plusDays(1),
+                "testing environment",
+                0);
+        setUpEvent(event);
+        list = event.registrationList;
+    }
+
+    @After
+    public void after() {
+        takeDownEvent(event);
+    }
+
+    private Event fetchEvent() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<Event> fetched = new AtomicReference<>();
+        EventDb.getInstance().getEvent(event.getEventId(), e -> {
+            fetched.set(e);
+            latch.countDown();
+        }, e -> latch.countDown());
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        return fetched.get();
+    }
+
+    private void migrate() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<Boolean> status = new AtomicReference<>(false);
+        EventDb.getInstance().migrateEntrantsToSubcollection(event.getEventId(), () -> {
+            status.set(true);
+            latch.countDown();
+        }, e -> latch.countDown());
+        assertTrue(latch.await(30, TimeUnit.SECONDS));
+        assertTrue("migration failed", status.get());
+    }
+
+    /**
+     * Tests that migrating keeps every entrant on their list and takes the arrays out of the event document
+     */
+    @Test
+    public void migrateTest() throws InterruptedException {
+        assertEquals(Arrays.asList(0, 0, 0), list.addAllToWaitingList(Arrays.asList("aurora", "borealis", "australis")));
+        assertEquals(0, list.addToSelectedList("borealis"));
+
+        migrate();
+
+        Event stored = fetchEvent();
+        assertEquals(EventDb.STORAGE_SUBCOLLECTION, stored.getEntrantStorage());
+        assertEquals(2, stored.registrationList.getWaitingList().size());
+        assertTrue(stored.registrationList.getSelectedList().contains("borealis"));
+
+        // changes after the migration go to the entrant documents
+        assertEquals(0, list.addToCancelledList("aurora"));
+        stored = fetchEvent();
+        assertTrue(stored.registrationList.getCancelledList().contains("aurora"));
+        assertEquals(1, stored.registrationList.getWaitingList().size());
+
+        assertEquals(0, list.addToRemovedList("australis"));
+        assertEquals(0, list.removeFromRemovedList("australis"));
+        assertNull(fetchEvent().registrationList.getEntrantState("australis"));
+    }
+
+    /**
+     * Tests reading a list a page at a time and counting it
+     */
+    @Test
+    public void pageAndCountTest() throws InterruptedException {
+        List<String> entrants = Arrays.asList("a1", "a2", "a3", "a4", "a5");
+        list.addAllToWaitingList(entrants);
+        migrate();
+
+        List<String> read = new ArrayList<>();
+        String after = null;
+        while (true) {
+            CountDownLatch latch = new CountDownLatch(1);
+            AtomicReference<List<String>> page = new AtomicReference<>();
+            EventDb.getInstance().getEntrantPage(event.getEventId(), EventDb.LIST_WAITING, after, 2, ids -> {
+                page.set(ids);
+                latch.countDown();
+            }, e -> latch.countDown());
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+            read.addAll(page.get());
+            if (page.get().size() < 2) break;
+            after = page.get().get(page.get().size() - 1);
+        }
+        assertEquals(entrants, read);
+
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicLong count = new AtomicLong(-1);
+        EventDb.getInstance().countEntrants(event.getEventId(), EventDb.LIST_WAITING, n -> {
+            count.set(n);
+            latch.countDown();
+        }, e -> latch.countDown());
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertEquals(5, count.get());
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.auroraevents;
+
+import static com.example.auroraevents.TestsSupport.setUpEvent;
+import static com.example.auroraevents.TestsSupport.signIn;
+import static com.example.auroraevents.TestsSupport.takeDownEvent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.example.auroraevents.model.EntrantState;
+import com.example.auroraevents.model.Event;
+import com.example.auroraevents.server.EventDb;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Tests the entrant counts kept in the event document (counts.waiting etc.) of an array storage event.
+ * Subcollection events are counted by the countEntrants Cloud Function, which needs the Functions emulator.
+ */
+public class EventCountsTest {
+    Event event;
+
+    @BeforeClass
+    public static void prepare() {
+        signIn();
+    }
+
+    @Before
+    public void before() {
+        event = new Event(
+                "test device",
+                "counts test",
+                "event for counts test",
+                LocalDateTime.now(),
+                LocalDateTime.now(),
+                LocalDateTime.now().plusDays(1),
+                "testing environment",
+                0);
+        setUpEvent(event);
+    }
+
+    @After
+    public void after() {
+        takeDownEvent(event);
+    }
+
+    private Event fetchEvent() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<Event> fetched = new AtomicReference<>();
+        EventDb.getInstance().getEvent(event.getEventId(), e -> {
+            fetched.set(e);
+            latch.countDown();
+        }, e -> latch.countDown());
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        return fetched.get();
+    }
+
+    private void await(String what, Consumer<CountDownLatch> write) throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        write.accept(latch);
+        assertTrue(what + " timed out", latch.await(10, TimeUnit.SECONDS));
+    }
+
+    private static long stored(Event event, EntrantState state) {
+        Long count = event.getCounts() == null ? null : event.getCounts().get(state.getCountKey());
+        return count == null ? -1 : count;
+    }
+
+    /**
+     * Tests that the counts start at zero and follow every list change, counting a device ID already
+     * on a list only once
+     */
+    @Test
+    public void countsFollowListsTest() throws InterruptedException {
+        assertEquals(0, stored(fetchEvent(), EntrantState.WAITING));
+
+        await("adding", latch -> EventDb.getInstance().addUsersToList(event.getEventId(), EventDb.LIST_WAITING,
+                Arrays.asList("aurora", "borealis", "australis"), latch::countDown, (c, e) -> latch.countDown()));
+        await("adding again", latch -> EventDb.getInstance().addUserToList(event.getEventId(), EventDb.LIST_WAITING,
+                "aurora", latch::countDown, e -> latch.countDown()));
+        await("moving", latch -> EventDb.getInstance().moveUserBetweenLists(event.getEventId(),
+                EventDb.LIST_WAITING, EventDb.LIST_SELECTED, "borealis", latch::countDown, e -> latch.countDown()));
+
+        Event stored = fetchEvent();
+        assertEquals(2, stored(stored, EntrantState.WAITING));
+        assertEquals(1, stored(stored, EntrantState.SELECTED));
+        assertEquals(0, stored(stored, EntrantState.ATTENDING));
+        assertEquals(2, stored.getCount(EntrantState.WAITING));
+    }
+
+    /**
+     * Tests that rebuildCounts repairs counts that drifted from the lists
+     */
+    @Test
+    public void rebuildCountsTest() throws InterruptedException {
+        await("adding", latch -> EventDb.getInstance().addUsersToList(event.getEventId(), EventDb.LIST_WAITING,
+                Arrays.asList("aurora", "borealis"), latch::countDown, (c, e) -> latch.countDown()));
+        await("corrupting", latch -> FirebaseFirestore.getInstance().collection("Events")
+                .document(event.getEventId())
+                .update(EventDb.countFieldName(EntrantState.WAITING), 7)
+                .addOnCompleteListener(task -> latch.countDown()));
+        assertEquals(7, stored(fetchEvent(), EntrantState.WAITING));
+
+        await("rebuilding", latch -> EventDb.getInstance().rebuildCounts(event.getEventId(),
+                latch::countDown, e -> latch.countDown()));
+        Event stored = fetchEvent();
+        assertEquals(2, stored(stored, EntrantState.WAITING));
+        assertEquals(0, stored(stored, EntrantState.REMOVED));
+    }
+}
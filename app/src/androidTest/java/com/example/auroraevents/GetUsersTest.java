@@ -0,0 +1,123 @@
+package com.example.auroraevents;
+
+import static com.example.auroraevents.TestsSupport.setUpUser;
+import static com.example.auroraevents.TestsSupport.signIn;
+import static com.example.auroraevents.TestsSupport.takeDownUser;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.example.auroraevents.model.User;
+import com.example.auroraevents.server.UserCache;
+import com.example.auroraevents.server.UserDb;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tests fetching many users at once with UserDb.getUsers, and through the UserCache.
+ */
+public class GetUsersTest {
+    private static final int USERS = 65;     // more than two queries' worth
+
+    private final List<User> users = new ArrayList<>();
+
+    @BeforeClass
+    public static void prepare() {
+        signIn();
+    }
+
+    @Before
+    public void before() {
+        for (int i = 0; i < USERS; i++) {
+            User user = new User("GetUsersTest" + i, "user" + i, "email" + i, "phone" + i, "getUsersTest");
+            setUpUser(user);
+            users.add(user);
+        }
+    }
+
+    @After
+    public void after() {
+        for (User user : users) takeDownUser(user);
+    }
+
+    private List<User> getUsers(List<String> deviceIds) throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<List<User>> fetched = new AtomicReference<>();
+        UserDb.getInstance().getUsers(deviceIds, list -> {
+            fetched.set(list);
+            latch.countDown();
+        }, e -> latch.countDown());
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        return fetched.get();
+    }
+
+    private static List<String> idsOf(List<User> users) {
+        List<String> ids = new ArrayList<>();
+        for (User user : users) ids.add(user.getDeviceId());
+        return ids;
+    }
+
+    /**
+     * Tests that users come back in the order asked for, across queries
+     */
+    @Test
+    public void orderTest() throws InterruptedException {
+        List<String> ids = idsOf(users);
+        Collections.reverse(ids);
+        assertEquals(ids, idsOf(getUsers(ids)));
+    }
+
+    /**
+     * Tests that unknown IDs are left out and repeated IDs are repeated
+     */
+    @Test
+    public void missingAndRepeatedTest() throws InterruptedException {
+        List<String> ids = Arrays.asList("GetUsersTest3", "no such user", "GetUsersTest0", "GetUsersTest3");
+        assertEquals(Arrays.asList("GetUsersTest3", "GetUsersTest0", "GetUsersTest3"), idsOf(getUsers(ids)));
+        assertTrue(getUsers(new ArrayList<>()).isEmpty());
+    }
+
+    /**
+     * Tests that a second read of the same users is answered from memory
+     */
+    @Test
+    public void cacheTest() throws InterruptedException {
+        UserCache cache = UserCache.getInstance();
+        cache.clear();
+        cache.resetStats();
+        List<String> ids = idsOf(users);
+
+        CountDownLatch first = new CountDownLatch(1);
+        cache.getUsers(ids, list -> first.countDown(), e -> first.countDown());
+        assertTrue(first.await(10, TimeUnit.SECONDS));
+        assertEquals(USERS, cache.getMisses());
+
+        CountDownLatch second = new CountDownLatch(1);
+        AtomicReference<List<User>> fetched = new AtomicReference<>();
+        cache.getUsers(ids, list -> {
+            fetched.set(list);
+            second.countDown();
+        }, e -> second.countDown());
+        assertTrue(second.await(10, TimeUnit.SECONDS));
+        assertEquals(ids, idsOf(fetched.get()));
+        assertEquals(USERS, cache.getMemoryHits());
+        assertEquals(0.5, cache.getHitRate(), 1e-9);
+
+        // a write drops the cached copy
+        cache.invalidate(ids.get(0));
+        CountDownLatch third = new CountDownLatch(1);
+        cache.getUser(ids.get(0), user -> third.countDown(), e -> third.countDown());
+        assertTrue(third.await(10, TimeUnit.SECONDS));
+        assertEquals(USERS, cache.getMemoryHits());
+    }
+}
@@ -2,36 +2,63 @@ package com.example.auroraevents;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
+import android.content.Context;
 import android.graphics.Bitmap;
+import android.graphics.drawable.Drawable;
 
-import com.example.auroraevents.model.Event;
+import androidx.test.platform.app.InstrumentationRegistry;
 
+import com.example.auroraevents.view.QrCodeRenderer;
+import com.google.zxing.WriterException;
+
+import org.junit.Before;
 import org.junit.Test;
 
-import java.time.LocalDateTime;
-import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class QRcodeTest {
+    private static final String EVENT_ID = "sample id for QR Code testing";
+
+    private QrCodeRenderer renderer;
+
+    @Before
+    public void before() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        renderer = QrCodeRenderer.getInstance(context);
+        renderer.clear();
+    }
 
     @Test
-    public void bitmapTest(){
-        Event event = new Event(
-                "test device",
-                "QR code test",
-                "event for QR code test",
-                LocalDateTime.now(),
-                LocalDateTime.now(),
-                LocalDateTime.now().plusDays(1),
-                "testing environment",
-                0);
-        event.setEventId("sample id for QR Code testing");
-        event.generateQrCode();
-
-         Bitmap test = event.getQrCode();
-         assertNotNull(test);
-         assertEquals(400, test.getWidth());
-         assertEquals(400, test.getHeight());
+    public void bitmapTest() throws WriterException {
+        // one pixel per module: a small square, quiet zone included
+        Bitmap test = renderer.getModules(EVENT_ID);
+        assertNotNull(test);
+        assertEquals(test.getWidth(), test.getHeight());
+        assertTrue(test.getWidth() < 100);
+        assertEquals(android.graphics.Color.WHITE, test.getPixel(0, 0));
+
+        // the same bitmap is handed out again from memory
+        assertSame(test, renderer.getModules(EVENT_ID));
     }
 
+    @Test
+    public void drawableTest() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<Drawable> rendered = new AtomicReference<>();
+        renderer.render(EVENT_ID, 400, qrCode -> {
+            rendered.set(qrCode);
+            latch.countDown();
+        }, e -> latch.countDown());
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+
+        Drawable qrCode = rendered.get();
+        assertNotNull(qrCode);
+        assertEquals(400, qrCode.getIntrinsicWidth());
+        assertEquals(400, qrCode.getIntrinsicHeight());
+    }
 }
@@ -0,0 +1,109 @@
+package com.example.auroraevents;
+
+import static com.example.auroraevents.TestsSupport.setUpEvent;
+import static com.example.auroraevents.TestsSupport.signIn;
+import static com.example.auroraevents.TestsSupport.takeDownEvent;
+import static com.example.auroraevents.RegistrationListTestsSupport.checkSingle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.example.auroraevents.model.EntrantState;
+import com.example.auroraevents.model.Event;
+import com.example.auroraevents.model.RegistrationList;
+import com.example.auroraevents.model.TransitionResult;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests the non-blocking {@code addTo*ListAsync} transitions of {@link RegistrationList}.
+ */
+public class RegistrationAsyncTest {
+    Event event;
+    RegistrationList list;
+    String entrantID;
+    ExecutorService executor;
+
+    @BeforeClass
+    public static void prepare() {
+        signIn();
+    }
+
+    @Before
+    public void before() {
+        event = new Event(
+                "test device",
+                "registration test",
+                "event for async registration test",
+                LocalDateTime.now(),
+                LocalDateTime.now(),
+                LocalDateTime.now().plusDays(1),
+                "testing environment",
+                0);
+        setUpEvent(event);
+        list = event.registrationList;
+        entrantID = "aurora";
+        executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "registration-callbacks"));
+    }
+
+    @After
+    public void after() {
+        executor.shutdownNow();
+        takeDownEvent(event);
+    }
+
+    /**
+     * Tests that an async move completes on the supplied executor and then shows up locally
+     */
+    @Test
+    public void asyncWaitingToSelectedTest() throws Exception {
+        TransitionResult joined = list.addToWaitingListAsync(entrantID, executor).get(10, TimeUnit.SECONDS);
+        assertEquals(TransitionResult.SUCCESS, joined.getStatus());
+        assertEquals(EntrantState.WAITING, list.getEntrantState(entrantID));
+
+        String thread = list.addToSelectedListAsync(entrantID, executor)
+                .thenApply(result -> {
+                    assertEquals(TransitionResult.SUCCESS, result.getStatus());
+                    assertEquals(EntrantState.WAITING, result.getFrom());
+                    assertEquals(EntrantState.SELECTED, result.getTo());
+                    return Thread.currentThread().getName();
+                })
+                .get(10, TimeUnit.SECONDS);
+
+        assertEquals("registration-callbacks", thread);
+        assertTrue(list.getSelectedList().contains(entrantID));
+        checkSingle(list, entrantID);
+    }
+
+    /**
+     * Tests that a second change for the same entrant is blocked while the first is in flight
+     */
+    @Test
+    public void asyncInFlightTest() throws Exception {
+        CompletableFuture<TransitionResult> first = list.addToWaitingListAsync(entrantID, executor);
+        CompletableFuture<TransitionResult> second = list.addToRemovedListAsync(entrantID, executor);
+
+        assertEquals(TransitionResult.SUCCESS, first.get(10, TimeUnit.SECONDS).getStatus());
+        assertEquals(TransitionResult.BLOCKED, second.get(10, TimeUnit.SECONDS).getStatus());
+        assertTrue(list.getWaitingList().contains(entrantID));
+        checkSingle(list, entrantID);
+    }
+
+    /**
+     * Tests that moves which aren't allowed complete straight away without touching the lists
+     */
+    @Test
+    public void asyncBlockedTest() throws Exception {
+        assertEquals(TransitionResult.BLOCKED, list.addToAttendingListAsync(entrantID, executor).get(10, TimeUnit.SECONDS).getStatus());
+        assertEquals(0, list.getAllEntrantsList().size());
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.auroraevents;
+
+import static com.example.auroraevents.TestsSupport.setUpEvent;
+import static com.example.auroraevents.TestsSupport.signIn;
+import static com.example.auroraevents.TestsSupport.takeDownEvent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.example.auroraevents.model.Event;
+import com.example.auroraevents.model.RegistrationList;
+import com.example.auroraevents.server.EventDb;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tests the bulk {@code addAllTo*List} transitions of {@link RegistrationList}.
+ */
+public class RegistrationBulkTest {
+    Event event;
+    RegistrationList list;
+
+    @BeforeClass
+    public static void prepare() {
+        signIn();
+    }
+
+    @Before
+    public void before() {
+        event = new Event(
+                "test device",
+                "registration test",
+                "event for bulk registration test",
+                LocalDateTime.now(),
+                LocalDateTime.now(),
+                LocalDateTime.now().plusDays(1),
+                "testing environment",
+                0);
+        setUpEvent(event);
+        list = event.registrationList;
+    }
+
+    @After
+    public void after() {
+        takeDownEvent(event);
+    }
+
+    private Event fetchEvent() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<Event> fetched = new AtomicReference<>();
+        EventDb.getInstance().getEvent(event.getEventId(), e -> {
+            fetched.set(e);
+            latch.countDown();
+        }, e -> latch.countDown());
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        return fetched.get();
+    }
+
+    /**
+     * Tests that every entrant is moved (not just the first one) and the database matches
+     */
+    @Test
+    public void bulkWaitingToSelectedTest() throws InterruptedException {
+        List<String> entrants = Arrays.asList("aurora", "borealis", "australis");
+        assertEquals(Arrays.asList(0, 0, 0), list.addAllToWaitingList(entrants));
+        assertEquals(Arrays.asList(0, 0, 0), list.addAllToSelectedList(new ArrayList<>(list.getWaitingList())));
+
+        assertEquals(0, list.getWaitingList().size());
+        assertEquals(3, list.getSelectedList().size());
+        assertTrue(list.getSelectedList().containsAll(entrants));
+
+        Event stored = fetchEvent();
+        assertEquals(0, stored.registrationList.getWaitingList().size());
+        assertEquals(3, stored.registrationList.getSelectedList().size());
+        assertTrue(stored.registrationList.getSelectedList().containsAll(entrants));
+    }
+
+    /**
+     * Tests that each entrant gets its own status, in the order they were passed in
+     */
+    @Test
+    public void bulkMixedStatusTest() {
+        assertEquals(0, list.addToWaitingList("aurora"));
+        assertEquals(0, list.addToWaitingList("borealis"));
+        assertEquals(0, list.addToSelectedList("borealis"));
+
+        // aurora moves, borealis is blocked, the duplicate is already on the list, australis is on no list
+        assertEquals(Arrays.asList(0, 1, -1, 1),
+                list.addAllToCancelledList(Arrays.asList("aurora", "borealis", "aurora", "australis")));
+        assertTrue(list.getCancelledList().contains("aurora"));
+        assertTrue(list.getSelectedList().contains("borealis"));
+        assertEquals(2, list.getAllEntrantsList().size());
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.auroraevents;
+
+import static com.example.auroraevents.TestsSupport.setUpEvent;
+import static com.example.auroraevents.TestsSupport.signIn;
+import static com.example.auroraevents.TestsSupport.takeDownEvent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.example.auroraevents.model.EntrantState;
+import com.example.auroraevents.model.Event;
+import com.example.auroraevents.server.EventDb;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tests that list changes sent with the same operation ID are only applied once,
+ * for both entrant storages.
+ */
+public class RegistrationOperationTest {
+    Event event;
+
+    @BeforeClass
+    public static void prepare() {
+        signIn();
+    }
+
+    @Before
+    public void before() {
+        event = new Event(
+                "test device",
+                "registration test",
+                "event for operation ID test",
+                LocalDateTime.now(),
+                LocalDateTime.now(),
+                LocalDateTime.now().plusDays(1),
+                "testing environment",
+                0);
+        setUpEvent(event);
+    }
+
+    @After
+    public void after() {
+        takeDownEvent(event);
+    }
+
+    private Event fetchEvent() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<Event> fetched = new AtomicReference<>();
+        EventDb.getInstance().getEvent(event.getEventId(), e -> {
+            fetched.set(e);
+            latch.countDown();
+        }, e -> latch.countDown());
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        return fetched.get();
+    }
+
+    private void add(String deviceId, String operationId) throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<Boolean> status = new AtomicReference<>(false);
+        EventDb.getInstance().addUserToList(event.getEventId(), EventDb.LIST_WAITING, deviceId, operationId, () -> {
+            status.set(true);
+            latch.countDown();
+        }, e -> latch.countDown());
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertTrue("add failed", status.get());
+    }
+
+    private void remove(String deviceId) throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<Boolean> status = new AtomicReference<>(false);
+        EventDb.getInstance().removeUserFromList(event.getEventId(), EventDb.LIST_WAITING, deviceId, () -> {
+            status.set(true);
+            latch.countDown();
+        }, e -> latch.countDown());
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertTrue("remove failed", status.get());
+    }
+
+    /**
+     * Joins, leaves, then repeats the join with the same operation ID: the repeat must do nothing
+     */
+    private void repeatedOperation() throws InterruptedException {
+        String operationId = EventDb.newOperationId();
+        add("aurora", operationId);
+        assertEquals(EntrantState.WAITING, fetchEvent().registrationList.getEntrantState("aurora"));
+
+        remove("aurora");
+        add("aurora", operationId);
+        assertEquals(0, fetchEvent().registrationList.getWaitingList().size());
+
+        // a new operation is applied as usual
+        add("aurora", EventDb.newOperationId());
+        assertEquals(EntrantState.WAITING, fetchEvent().registrationList.getEntrantState("aurora"));
+    }
+
+    @Test
+    public void repeatedOperationArrayTest() throws InterruptedException {
+        repeatedOperation();
+    }
+
+    @Test
+    public void repeatedOperationSubcollectionTest() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        EventDb.getInstance().migrateEntrantsToSubcollection(event.getEventId(), latch::countDown, e -> latch.countDown());
+        assertTrue(latch.await(30, TimeUnit.SECONDS));
+        repeatedOperation();
+    }
+}
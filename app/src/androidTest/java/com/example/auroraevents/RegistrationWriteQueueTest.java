@@ -0,0 +1,119 @@
+package com.example.auroraevents;
+
+import static com.example.auroraevents.TestsSupport.setUpEvent;
+import static com.example.auroraevents.TestsSupport.signIn;
+import static com.example.auroraevents.TestsSupport.takeDownEvent;
+import static com.example.auroraevents.RegistrationListTestsSupport.setUpWaitingList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.example.auroraevents.model.EntrantState;
+import com.example.auroraevents.model.Event;
+import com.example.auroraevents.model.RegistrationList;
+import com.example.auroraevents.model.RegistrationWriteQueue;
+import com.example.auroraevents.model.TransitionResult;
+import com.example.auroraevents.server.EventDb;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tests the write-behind {@link RegistrationWriteQueue}.
+ */
+public class RegistrationWriteQueueTest {
+    Event event;
+    RegistrationList list;
+    RegistrationWriteQueue queue;
+    String entrantID;
+
+    @BeforeClass
+    public static void prepare() {
+        signIn();
+    }
+
+    @Before
+    public void before() {
+        event = new Event(
+                "test device",
+                "registration test",
+                "event for registration write queue test",
+                LocalDateTime.now(),
+                LocalDateTime.now(),
+                LocalDateTime.now().plusDays(1),
+                "testing environment",
+                0);
+        setUpEvent(event);
+        list = event.registrationList;
+        queue = list.getWriteQueue();
+        queue.setFlushDelay(200, TimeUnit.MILLISECONDS);
+        entrantID = "aurora";
+    }
+
+    @After
+    public void after() {
+        takeDownEvent(event);
+    }
+
+    private Event fetchEvent() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<Event> fetched = new AtomicReference<>();
+        EventDb.getInstance().getEvent(event.getEventId(), e -> {
+            fetched.set(e);
+            latch.countDown();
+        }, e -> latch.countDown());
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        return fetched.get();
+    }
+
+    /**
+     * Tests that queued changes show up locally straight away and are written as one move
+     */
+    @Test
+    public void coalescedMoveTest() throws InterruptedException {
+        setUpWaitingList(list, entrantID);
+
+        CountDownLatch written = new CountDownLatch(2);
+        List<TransitionResult> results = new CopyOnWriteArrayList<>();
+        RegistrationWriteQueue.OnTransitionListener listener = result -> {
+            results.add(result);
+            written.countDown();
+        };
+
+        assertEquals(0, queue.enqueue(entrantID, EntrantState.SELECTED, listener));
+        assertEquals(EntrantState.SELECTED, list.getEntrantState(entrantID));
+        assertEquals(0, queue.enqueue(entrantID, EntrantState.ATTENDING, listener));
+        assertEquals(EntrantState.ATTENDING, list.getEntrantState(entrantID));
+        assertEquals(1, queue.size());
+
+        assertTrue(written.await(10, TimeUnit.SECONDS));
+        assertEquals(2, results.size());
+        for (TransitionResult result : results) assertEquals(TransitionResult.SUCCESS, result.getStatus());
+
+        Event stored = fetchEvent();
+        assertEquals(0, stored.registrationList.getWaitingList().size());
+        assertEquals(0, stored.registrationList.getSelectedList().size());
+        assertTrue(stored.registrationList.getAttendingList().contains(entrantID));
+    }
+
+    /**
+     * Tests that moves which aren't allowed are reported straight away and never queued
+     */
+    @Test
+    public void blockedTest() {
+        AtomicReference<TransitionResult> reported = new AtomicReference<>();
+        assertEquals(1, queue.enqueue(entrantID, EntrantState.ATTENDING, reported::set));
+        assertEquals(TransitionResult.BLOCKED, reported.get().getStatus());
+        assertEquals(0, queue.size());
+        assertEquals(0, list.getAllEntrantsList().size());
+    }
+}
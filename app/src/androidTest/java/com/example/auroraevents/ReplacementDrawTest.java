@@ -0,0 +1,127 @@
+package com.example.auroraevents;
+
+import static com.example.auroraevents.TestsSupport.setUpEvent;
+import static com.example.auroraevents.TestsSupport.signIn;
+import static com.example.auroraevents.TestsSupport.takeDownEvent;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.example.auroraevents.model.Event;
+import com.example.auroraevents.model.LotteryResult;
+import com.example.auroraevents.model.ReplacementDraw;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tests that ReplacementDraw refills declined and expired invitations from the waiting list.
+ */
+public class ReplacementDrawTest {
+    private static final int CAPACITY = 3;
+    private static final int ENTRANTS = 10;
+
+    private Event event;
+    private ReplacementDraw draw;
+
+    @BeforeClass
+    public static void prepare() {
+        signIn();
+    }
+
+    @Before
+    public void before() {
+        event = new Event(
+                "test device",
+                "replacement draw test",
+                "event for replacement draw test",
+                LocalDateTime.now(),
+                LocalDateTime.now(),
+                LocalDateTime.now().plusDays(1),
+                "testing environment",
+                CAPACITY);
+        event.setEventId("test event");
+        setUpEvent(event, 10, TimeUnit.SECONDS);
+
+        List<String> entrants = new ArrayList<>();
+        for (int i = 0; i < ENTRANTS; i++) entrants.add("ReplacementDrawTest" + i);
+        event.registrationList.addAllToWaitingList(entrants);
+        event.randomSampling();
+        assertEquals(CAPACITY, event.registrationList.getSelectedList().size());
+
+        draw = new ReplacementDraw(event.getEventId());
+        draw.setDrawDelay(500, TimeUnit.MILLISECONDS);
+    }
+
+    @After
+    public void after() {
+        draw.stop();
+        takeDownEvent(event);
+    }
+
+    private LotteryResult awaitDraw(CountDownLatch latch, AtomicReference<LotteryResult> drawn)
+            throws InterruptedException {
+        assertTrue(latch.await(20, TimeUnit.SECONDS));
+        return drawn.get();
+    }
+
+    /**
+     * Tests that seats given up close together are refilled in one draw
+     */
+    @Test
+    public void declinedTest() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<LotteryResult> drawn = new AtomicReference<>();
+        draw.addListener(result -> {
+            drawn.set(result);
+            latch.countDown();
+        });
+        draw.start();
+
+        List<String> selected = new ArrayList<>(event.registrationList.getSelectedList());
+        List<String> declining = selected.subList(0, 2);
+        event.registrationList.addAllToDeclinedList(declining);
+
+        LotteryResult result = awaitDraw(latch, drawn);
+        assertEquals(2, result.getSelected().size());
+        Set<String> waiting = new HashSet<>(result.getSelected());
+        waiting.retainAll(selected);
+        assertTrue(waiting.isEmpty());
+        assertEquals(ENTRANTS - CAPACITY, result.getPoolSize());
+    }
+
+    /**
+     * Tests that unanswered invitations are declined after the deadline and their seats refilled
+     */
+    @Test
+    public void deadlineTest() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<LotteryResult> drawn = new AtomicReference<>();
+        AtomicReference<List<String>> expired = new AtomicReference<>();
+        draw.addExpiredListener(expired::set);
+        draw.addListener(result -> {
+            drawn.set(result);
+            latch.countDown();
+        });
+        // one accepts, the other two never answer
+        String accepting = event.registrationList.getSelectedList().get(0);
+        event.registrationList.addToAttendingList(accepting);
+        draw.setAcceptDeadline(2, TimeUnit.SECONDS);
+        draw.start();
+
+        LotteryResult result = awaitDraw(latch, drawn);
+        assertEquals(2, expired.get().size());
+        assertTrue(!expired.get().contains(accepting));
+        assertEquals(2, result.getSelected().size());
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.auroraevents;
+
+import static com.example.auroraevents.TestsSupport.setUpEvent;
+import static com.example.auroraevents.TestsSupport.signIn;
+import static com.example.auroraevents.TestsSupport.takeDownEvent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import com.example.auroraevents.model.Event;
+import com.example.auroraevents.model.LotteryResult;
+import com.example.auroraevents.server.EventDb;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.functions.FirebaseFunctions;
+
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tests EventDb.runLottery, the client of the runLottery Cloud Function.
+ * Runs against the Firestore and Functions emulators ({@code firebase emulators:start --only firestore,functions}),
+ * so it has to be run on its own, before anything else in the process uses Firestore:
+ *   ./gradlew connectedAndroidTest -Pandroid.testInstrumentationRunnerArguments.class=com.example.auroraevents.RunLotteryTest
+ */
+public class RunLotteryTest {
+    private static final String EMULATOR_HOST = "10.0.2.2";     // the host machine, seen from the Android emulator
+    private static final int FIRESTORE_PORT = 8080;             // firebase.json
+    private static final int FUNCTIONS_PORT = 5001;
+    private static final int CAPACITY = 3;
+    private static final int ENTRANTS = 10;
+
+    private Event event;
+
+    @BeforeClass
+    public static void prepare() {
+        try {
+            FirebaseFirestore.getInstance().useEmulator(EMULATOR_HOST, FIRESTORE_PORT);
+        } catch (IllegalStateException e) {
+            assumeTrue("Firestore was already used in this process, run this test class on its own", false);
+        }
+        FirebaseFunctions.getInstance().useEmulator(EMULATOR_HOST, FUNCTIONS_PORT);
+        signIn();
+    }
+
+    @After
+    public void after() {
+        EventDb.setDefaultEntrantStorage(EventDb.STORAGE_ARRAY);
+        if (event != null) takeDownEvent(event);
+    }
+
+    private List<String> setUp(String storage) throws InterruptedException {
+        EventDb.setDefaultEntrantStorage(storage);
+        event = new Event(
+                "test device",
+                "run lottery test",
+                "event for run lottery test",
+                LocalDateTime.now(),
+                LocalDateTime.now(),
+                LocalDateTime.now().plusDays(1),
+                "testing environment",
+                CAPACITY);
+        setUpEvent(event);
+
+        List<String> entrants = new ArrayList<>();
+        for (int i = 0; i < ENTRANTS; i++) entrants.add("RunLotteryTest" + i);
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<Boolean> status = new AtomicReference<>(false);
+        EventDb.getInstance().addUsersToList(event.getEventId(), EventDb.LIST_WAITING, entrants, () -> {
+            status.set(true);
+            latch.countDown();
+        }, (committed, e) -> latch.countDown());
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertTrue("adding entrants failed", status.get());
+        return entrants;
+    }
+
+    private LotteryResult runLottery(Integer seats, String operationId) throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<LotteryResult> drawn = new AtomicReference<>();
+        EventDb.getInstance().runLottery(event.getEventId(), seats, operationId, result -> {
+            drawn.set(result);
+            latch.countDown();
+        }, e -> latch.countDown());
+        assertTrue(latch.await(20, TimeUnit.SECONDS));
+        assertTrue("lottery failed", drawn.get() != null);
+        return drawn.get();
+    }
+
+    private Event fetchEvent() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<Event> fetched = new AtomicReference<>();
+        EventDb.getInstance().getEvent(event.getEventId(), e -> {
+            fetched.set(e);
+            latch.countDown();
+        }, e -> latch.countDown());
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        return fetched.get();
+    }
+
+    private void check(String storage) throws InterruptedException {
+        List<String> entrants = setUp(storage);
+        String operationId = EventDb.newOperationId();
+        LotteryResult result = runLottery(null, operationId);
+
+        assertEquals(CAPACITY, result.getSelected().size());
+        assertEquals(ENTRANTS, result.getPoolSize());
+        assertTrue(entrants.containsAll(result.getSelected()));
+        Event drawn = fetchEvent();
+        assertEquals(new HashSet<>(result.getSelected()), new HashSet<>(drawn.registrationList.getSelectedList()));
+        assertEquals(new HashSet<>(result.getNotSelected()), new HashSet<>(drawn.registrationList.getWaitingList()));
+
+        // a retried call draws nothing more, and a new one finds no free seats
+        assertTrue(runLottery(null, operationId).getSelected().isEmpty());
+        assertTrue(runLottery(5, EventDb.newOperationId()).getSelected().isEmpty());
+        assertEquals(CAPACITY, fetchEvent().registrationList.getSelectedList().size());
+    }
+
+    /**
+     * Tests a lottery on an event with its lists in the event document
+     */
+    @Test
+    public void arrayStorageTest() throws InterruptedException {
+        check(EventDb.STORAGE_ARRAY);
+    }
+
+    /**
+     * Tests a lottery on an event with one document per entrant
+     */
+    @Test
+    public void subcollectionStorageTest() throws InterruptedException {
+        check(EventDb.STORAGE_SUBCOLLECTION);
+    }
+}
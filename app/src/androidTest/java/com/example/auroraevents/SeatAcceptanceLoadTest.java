@@ -0,0 +1,173 @@
+package com.example.auroraevents;
+
+import static com.example.auroraevents.TestsSupport.setUpEvent;
+import static com.example.auroraevents.TestsSupport.signIn;
+import static com.example.auroraevents.TestsSupport.takeDownEvent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import android.util.Log;
+
+import com.example.auroraevents.model.Event;
+import com.example.auroraevents.model.TransitionResult;
+import com.example.auroraevents.server.EventDb;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Load test of EventDb.acceptSeat: many selected entrants accept at once and the event must never go over capacity.
+ * Runs against the Firestore emulator ({@code firebase emulators:start --only firestore}), so it has to be run
+ * on its own, before anything else in the process uses Firestore:
+ *   ./gradlew connectedAndroidTest -Pandroid.testInstrumentationRunnerArguments.class=com.example.auroraevents.SeatAcceptanceLoadTest
+ */
+public class SeatAcceptanceLoadTest {
+    private static final String EMULATOR_HOST = "10.0.2.2";     // the host machine, seen from the Android emulator
+    private static final int EMULATOR_PORT = 8080;              // firebase.json
+
+    private Event event;
+
+    @BeforeClass
+    public static void prepare() {
+        try {
+            FirebaseFirestore.getInstance().useEmulator(EMULATOR_HOST, EMULATOR_PORT);
+        } catch (IllegalStateException e) {
+            assumeTrue("Firestore was already used in this process, run this test class on its own", false);
+        }
+        signIn();
+    }
+
+    @After
+    public void after() {
+        EventDb.setDefaultEntrantStorage(EventDb.STORAGE_ARRAY);
+        if (event != null) takeDownEvent(event, 60, TimeUnit.SECONDS);
+    }
+
+    private void setUp(String storage, int capacity, List<String> selected) throws InterruptedException {
+        EventDb.setDefaultEntrantStorage(storage);
+        event = new Event(
+                "test device",
+                "seat load test",
+                "event for seat acceptance load test",
+                LocalDateTime.now(),
+                LocalDateTime.now(),
+                LocalDateTime.now().plusDays(1),
+                "testing environment",
+                capacity);
+        setUpEvent(event);
+
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<Boolean> status = new AtomicReference<>(false);
+        EventDb.getInstance().addUsersToList(event.getEventId(), EventDb.LIST_SELECTED, selected, () -> {
+            status.set(true);
+            latch.countDown();
+        }, (committed, e) -> latch.countDown());
+        assertTrue(latch.await(30, TimeUnit.SECONDS));
+        assertTrue("selecting entrants failed", status.get());
+    }
+
+    private long countAttending() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicLong count = new AtomicLong(-1);
+        EventDb.getInstance().countEntrants(event.getEventId(), EventDb.LIST_ATTENDING, n -> {
+            count.set(n);
+            latch.countDown();
+        }, e -> latch.countDown());
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        return count.get();
+    }
+
+    /**
+     * The organizer moves entrants straight to the attending list, which isn't capacity checked.
+     */
+    private void placeAttending(List<String> placed) throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<Boolean> status = new AtomicReference<>(false);
+        EventDb.getInstance().addUsersToList(event.getEventId(), EventDb.LIST_ATTENDING, placed, () -> {
+            status.set(true);
+            latch.countDown();
+        }, (committed, e) -> latch.countDown());
+        assertTrue(latch.await(30, TimeUnit.SECONDS));
+        assertTrue("placing attendees failed", status.get());
+    }
+
+    private void acceptAtOnce(String storage, int capacity, int entrants) throws InterruptedException {
+        acceptAtOnce(storage, capacity, entrants, 0);
+    }
+
+    /**
+     * The organizer first places {@code placed} attendees, then every selected entrant accepts at the same time;
+     * exactly the seats left must be taken.
+     */
+    private void acceptAtOnce(String storage, int capacity, int entrants, int placed) throws InterruptedException {
+        List<String> selected = new ArrayList<>();
+        for (int i = 0; i < entrants; i++) selected.add("seat-" + i);
+        setUp(storage, capacity, selected);
+        List<String> attending = new ArrayList<>();
+        for (int i = 0; i < placed; i++) attending.add("placed-" + i);
+        if (placed > 0) placeAttending(attending);
+
+        ConcurrentHashMap<Integer, AtomicInteger> results = new ConcurrentHashMap<>();
+        AtomicInteger failures = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(entrants);
+        long start = System.nanoTime();
+        for (String deviceId : selected) {
+            EventDb.getInstance().acceptSeat(event.getEventId(), deviceId, status -> {
+                results.computeIfAbsent(status, k -> new AtomicInteger()).incrementAndGet();
+                done.countDown();
+            }, e -> {
+                failures.incrementAndGet();
+                done.countDown();
+            });
+        }
+        assertTrue("acceptances timed out", done.await(120, TimeUnit.SECONDS));
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        int accepted = results.getOrDefault(TransitionResult.SUCCESS, new AtomicInteger()).get();
+        int full = results.getOrDefault(TransitionResult.FULL, new AtomicInteger()).get();
+        Log.d("SeatAcceptanceLoadTest", String.format("%s: %d accepted, %d full, %d failed in %d ms (%.1f acceptances/s)",
+                storage, accepted, full, failures.get(), millis, entrants * 1000.0 / Math.max(millis, 1)));
+
+        assertEquals(0, failures.get());
+        assertEquals(capacity - placed, accepted);
+        assertEquals(entrants - (capacity - placed), full);
+        assertEquals(capacity, countAttending());
+    }
+
+    @Test
+    public void shardedSeatsTest() throws InterruptedException {
+        acceptAtOnce(EventDb.STORAGE_SUBCOLLECTION, 50, 200);
+    }
+
+    @Test
+    public void eventDocumentSeatsTest() throws InterruptedException {
+        acceptAtOnce(EventDb.STORAGE_ARRAY, 20, 60);
+    }
+
+    /**
+     * With fewer seats than shards, an attendee the organizer placed must still count against the capacity
+     */
+    @Test
+    public void shardedPlacedAttendeeTest() throws InterruptedException {
+        acceptAtOnce(EventDb.STORAGE_SUBCOLLECTION, 3, 10, 1);
+    }
+
+    @Test
+    public void eventDocumentPlacedAttendeeTest() throws InterruptedException {
+        acceptAtOnce(EventDb.STORAGE_ARRAY, 3, 10, 1);
+    }
+}
@@ -19,6 +19,7 @@ import androidx.lifecycle.ViewModelProvider;
 
 import com.example.auroraevents.model.User;
 import com.example.auroraevents.model.UserViewModel;
+import com.example.auroraevents.server.UserCache;
 import com.example.auroraevents.server.UserDb;
 import com.example.auroraevents.view.EventFragment;
 import com.example.auroraevents.view.CameraFragment;
@@ -83,8 +84,12 @@ public class MainActivity extends AppCompatActivity {
                 });
 
         // Get user
-        UserDb.getInstance().getUser(deviceId,
+        UserCache.getInstance().getUser(deviceId,
                 user -> {
+                    if (user == null) {
+                        Log.d(TAG, "No user yet for device: " + deviceId);
+                        return;
+                    }
                     user.setDeviceId(deviceId);
                     if (user.getRole() == null || user.getRole().isEmpty())
                         user.setRole(User.ROLE_ENTRANT);
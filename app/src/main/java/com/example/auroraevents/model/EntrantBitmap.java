@@ -0,0 +1,428 @@
+package com.example.auroraevents.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable, compressed set of entrants for set algebra over entrant lists, within one event or across many.
+ * Entrants are held as their {@link EntrantIdDictionary} ordinals, split Roaring-style into chunks of 65536
+ * ordinals by their high 16 bits. A chunk with few entrants is a sorted {@code char[]}, a dense chunk is
+ * a 65536-bit bitmap, so union, intersection and difference are linear merges over the chunks.
+ * Entrants are iterated in ordinal order, not list order.
+ */
+public final class EntrantBitmap implements Iterable<String> {
+    private static final int ARRAY_MAX = 4096;     // above this a chunk is smaller as a bitmap
+    private static final EntrantBitmap EMPTY = new EntrantBitmap(new char[0], new Container[0], 0);
+
+    private final char[] keys;                 // high 16 bits of the ordinals, ascending
+    private final Container[] containers;      // low 16 bits of the ordinals in each chunk
+    private final int count;
+
+    private EntrantBitmap(char[] keys, Container[] containers, int count) {
+        this.keys = keys;
+        this.containers = containers;
+        this.count = count;
+    }
+
+    public static EntrantBitmap empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Returns the set of the given entrants.
+     *
+     * @param userIDs The entrants' device IDs
+     * @return The set of entrants
+     */
+    public static EntrantBitmap of(Collection<String> userIDs) {
+        EntrantIdDictionary ids = EntrantIdDictionary.shared();
+        int[] ordinals = new int[userIDs.size()];
+        int i = 0;
+        for (String userID : userIDs) ordinals[i++] = ids.intern(userID);
+        return ofOrdinals(ordinals, i);
+    }
+
+    /**
+     * Returns the set of the given ordinals. Sorts the array in place.
+     */
+    static EntrantBitmap ofOrdinals(int[] ordinals, int length) {
+        Arrays.sort(ordinals, 0, length);
+        List<Character> keys = new ArrayList<>();
+        List<Container> containers = new ArrayList<>();
+        int count = 0;
+        int start = 0;
+        while (start < length) {
+            int high = ordinals[start] >>> 16;
+            int end = start;
+            while (end < length && ordinals[end] >>> 16 == high) end++;
+
+            char[] low = new char[end - start];
+            int size = 0;
+            for (int i = start; i < end; i++) {
+                char value = (char) ordinals[i];
+                if (size == 0 || low[size - 1] != value) low[size++] = value;   // skip duplicates
+            }
+            keys.add((char) high);
+            containers.add(Container.of(low, size));
+            count += size;
+            start = end;
+        }
+        char[] keyArray = new char[keys.size()];
+        for (int i = 0; i < keyArray.length; i++) keyArray[i] = keys.get(i);
+        return new EntrantBitmap(keyArray, containers.toArray(new Container[0]), count);
+    }
+
+    /**
+     * Returns the union of several sets, merging them pairwise so the cost stays near-linear in their total size.
+     *
+     * @param bitmaps The sets to combine
+     * @return Entrants in any of the sets
+     */
+    public static EntrantBitmap union(Collection<EntrantBitmap> bitmaps) {
+        List<EntrantBitmap> round = new ArrayList<>(bitmaps);
+        if (round.isEmpty()) return EMPTY;
+        while (round.size() > 1) {
+            List<EntrantBitmap> next = new ArrayList<>((round.size() + 1) / 2);
+            for (int i = 0; i + 1 < round.size(); i += 2) next.add(round.get(i).or(round.get(i + 1)));
+            if (round.size() % 2 == 1) next.add(round.get(round.size() - 1));
+            round = next;
+        }
+        return round.get(0);
+    }
+
+    /**
+     * Returns everyone on the given lists of any of the given events, e.g. for organizer or admin bulk queries.
+     *
+     * @param events The events to look through
+     * @param states The lists to include, or none for every list
+     * @return Entrants on any of those lists of any of the events
+     */
+    public static EntrantBitmap across(Collection<Event> events, EntrantState... states) {
+        if (states.length == 0) states = EntrantState.values();
+        List<EntrantBitmap> bitmaps = new ArrayList<>();
+        for (Event event : events)
+            for (EntrantState state : states) bitmaps.add(event.registrationList.getBitmap(state));
+        return union(bitmaps);
+    }
+
+    /**
+     * Removes duplicate entrants from a set of lists, leaving each entrant only on their
+     * highest priority list (see {@link EntrantState#getPriority()}).
+     * Each list is one difference against the union of the lists above it.
+     *
+     * @param lists The lists, possibly overlapping (e.g. read straight from an event document)
+     * @return The same lists with no entrant on more than one of them
+     */
+    public static EnumMap<EntrantState, EntrantBitmap> tidy(Map<EntrantState, EntrantBitmap> lists) {
+        List<EntrantState> byPriority = new ArrayList<>(lists.keySet());
+        byPriority.sort((a, b) -> b.getPriority() - a.getPriority());
+        EnumMap<EntrantState, EntrantBitmap> tidied = new EnumMap<>(EntrantState.class);
+        EntrantBitmap higher = EMPTY;
+        for (EntrantState state : byPriority) {
+            EntrantBitmap list = lists.get(state);
+            tidied.put(state, list.andNot(higher));
+            higher = higher.or(list);
+        }
+        return tidied;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * Checks whether an entrant is in the set.
+     *
+     * @param userID The entrant's device ID
+     * @return {@code true} if the entrant is in the set
+     */
+    public boolean contains(String userID) {
+        int ordinal = EntrantIdDictionary.shared().find(userID);
+        if (ordinal < 0) return false;
+        int index = Arrays.binarySearch(keys, (char) (ordinal >>> 16));
+        return index >= 0 && containers[index].contains((char) ordinal);
+    }
+
+    /**
+     * Returns the entrants in this set or the other one.
+     */
+    public EntrantBitmap or(EntrantBitmap other) {
+        return merge(other, Op.OR);
+    }
+
+    /**
+     * Returns the entrants in both this set and the other one.
+     */
+    public EntrantBitmap and(EntrantBitmap other) {
+        return merge(other, Op.AND);
+    }
+
+    /**
+     * Returns the entrants in this set but not the other one.
+     */
+    public EntrantBitmap andNot(EntrantBitmap other) {
+        return merge(other, Op.AND_NOT);
+    }
+
+    private enum Op { OR, AND, AND_NOT }
+
+    private EntrantBitmap merge(EntrantBitmap other, Op op) {
+        char[] outKeys = new char[keys.length + other.keys.length];
+        Container[] out = new Container[outKeys.length];
+        int size = 0, total = 0;
+        int i = 0, j = 0;
+        while (i < keys.length || j < other.keys.length) {
+            Container result;
+            char key;
+            if (j == other.keys.length || (i < keys.length && keys[i] < other.keys[j])) {
+                key = keys[i];
+                result = op == Op.AND ? null : containers[i];
+                i++;
+            } else if (i == keys.length || other.keys[j] < keys[i]) {
+                key = other.keys[j];
+                result = op == Op.OR ? other.containers[j] : null;
+                j++;
+            } else {
+                key = keys[i];
+                Container a = containers[i++], b = other.containers[j++];
+                result = op == Op.OR ? a.or(b) : op == Op.AND ? a.and(b) : a.andNot(b);
+            }
+            if (result != null && result.cardinality() > 0) {
+                outKeys[size] = key;
+                out[size++] = result;
+                total += result.cardinality();
+            }
+        }
+        return new EntrantBitmap(Arrays.copyOf(outKeys, size), Arrays.copyOf(out, size), total);
+    }
+
+    /**
+     * Returns the entrants' device IDs, in ordinal order.
+     *
+     * @return A new list of the device IDs
+     */
+    public List<String> toList() {
+        List<String> output = new ArrayList<>(count);
+        for (String userID : this) output.add(userID);
+        return output;
+    }
+
+    /**
+     * Bytes held by the chunk arrays, for footprint comparisons.
+     */
+    public long sizeInBytes() {
+        long bytes = 2L * keys.length;
+        for (Container container : containers) bytes += container.sizeInBytes();
+        return bytes;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        EntrantIdDictionary ids = EntrantIdDictionary.shared();
+        return new Iterator<String>() {
+            private int chunk;
+            private int value = containers.length > 0 ? containers[0].nextValue(0) : -1;
+
+            @Override
+            public boolean hasNext() {
+                return chunk < containers.length;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                String userID = ids.idOf(keys[chunk] << 16 | value);
+                value = containers[chunk].nextValue(value + 1);
+                if (value < 0 && ++chunk < containers.length) value = containers[chunk].nextValue(0);
+                return userID;
+            }
+        };
+    }
+
+    /**
+     * The low 16 bits of the ordinals in one chunk.
+     */
+    private abstract static class Container {
+        static Container of(char[] values, int size) {
+            if (size > ARRAY_MAX) {
+                long[] words = new long[1024];
+                for (int i = 0; i < size; i++) words[values[i] >>> 6] |= 1L << values[i];
+                return new BitmapContainer(words, size);
+            }
+            return new ArrayContainer(size == values.length ? values : Arrays.copyOf(values, size));
+        }
+
+        abstract int cardinality();
+        abstract boolean contains(char value);
+        abstract long sizeInBytes();
+
+        /**
+         * Returns the smallest value in the container that is at least {@code from}, or -1.
+         */
+        abstract int nextValue(int from);
+
+        abstract Container or(Container other);
+        abstract Container and(Container other);
+        abstract Container andNot(Container other);
+    }
+
+    private static final class ArrayContainer extends Container {
+        final char[] values;
+
+        ArrayContainer(char[] values) {
+            this.values = values;
+        }
+
+        @Override int cardinality()             { return values.length; }
+        @Override boolean contains(char value)  { return Arrays.binarySearch(values, value) >= 0; }
+        @Override long sizeInBytes()            { return 2L * values.length; }
+
+        @Override
+        int nextValue(int from) {
+            if (from > 0xFFFF) return -1;
+            int index = Arrays.binarySearch(values, (char) from);
+            if (index < 0) index = -index - 1;
+            return index < values.length ? values[index] : -1;
+        }
+
+        @Override
+        Container or(Container other) {
+            if (other instanceof BitmapContainer) return other.or(this);
+            char[] b = ((ArrayContainer) other).values;
+            char[] out = new char[values.length + b.length];
+            int i = 0, j = 0, size = 0;
+            while (i < values.length && j < b.length) {
+                if (values[i] < b[j]) out[size++] = values[i++];
+                else if (b[j] < values[i]) out[size++] = b[j++];
+                else { out[size++] = values[i++]; j++; }
+            }
+            while (i < values.length) out[size++] = values[i++];
+            while (j < b.length) out[size++] = b[j++];
+            return of(out, size);
+        }
+
+        @Override
+        Container and(Container other) {
+            char[] out = new char[values.length];
+            int size = 0;
+            if (other instanceof BitmapContainer) {
+                for (char value : values) if (other.contains(value)) out[size++] = value;
+            } else {
+                char[] b = ((ArrayContainer) other).values;
+                int i = 0, j = 0;
+                while (i < values.length && j < b.length) {
+                    if (values[i] < b[j]) i++;
+                    else if (b[j] < values[i]) j++;
+                    else { out[size++] = values[i++]; j++; }
+                }
+            }
+            return of(out, size);
+        }
+
+        @Override
+        Container andNot(Container other) {
+            char[] out = new char[values.length];
+            int size = 0;
+            if (other instanceof BitmapContainer) {
+                for (char value : values) if (!other.contains(value)) out[size++] = value;
+            } else {
+                char[] b = ((ArrayContainer) other).values;
+                int i = 0, j = 0;
+                while (i < values.length) {
+                    if (j == b.length || values[i] < b[j]) out[size++] = values[i++];
+                    else if (b[j] < values[i]) j++;
+                    else { i++; j++; }
+                }
+            }
+            return of(out, size);
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        final long[] words;
+        final int cardinality;
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        /**
+         * Wraps the words as a container, switching to an array once the chunk is sparse enough.
+         */
+        static Container of(long[] words) {
+            int cardinality = 0;
+            for (long word : words) cardinality += Long.bitCount(word);
+            if (cardinality > ARRAY_MAX) return new BitmapContainer(words, cardinality);
+            char[] values = new char[cardinality];
+            int size = 0;
+            for (int w = 0; w < words.length; w++) {
+                long word = words[w];
+                while (word != 0) {
+                    values[size++] = (char) (w << 6 | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new ArrayContainer(values);
+        }
+
+        @Override int cardinality()             { return cardinality; }
+        @Override boolean contains(char value)  { return (words[value >>> 6] & 1L << value) != 0; }
+        @Override long sizeInBytes()            { return 8L * words.length; }
+
+        @Override
+        int nextValue(int from) {
+            if (from > 0xFFFF) return -1;
+            int w = from >>> 6;
+            long word = words[w] & -1L << from;
+            while (word == 0) {
+                if (++w == words.length) return -1;
+                word = words[w];
+            }
+            return w << 6 | Long.numberOfTrailingZeros(word);
+        }
+
+        @Override
+        Container or(Container other) {
+            long[] out = words.clone();
+            if (other instanceof BitmapContainer) {
+                long[] b = ((BitmapContainer) other).words;
+                for (int w = 0; w < out.length; w++) out[w] |= b[w];
+            } else {
+                for (char value : ((ArrayContainer) other).values) out[value >>> 6] |= 1L << value;
+            }
+            return of(out);
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) return other.and(this);
+            long[] out = words.clone();
+            long[] b = ((BitmapContainer) other).words;
+            for (int w = 0; w < out.length; w++) out[w] &= b[w];
+            return of(out);
+        }
+
+        @Override
+        Container andNot(Container other) {
+            long[] out = words.clone();
+            if (other instanceof BitmapContainer) {
+                long[] b = ((BitmapContainer) other).words;
+                for (int w = 0; w < out.length; w++) out[w] &= ~b[w];
+            } else {
+                for (char value : ((ArrayContainer) other).values) out[value >>> 6] &= ~(1L << value);
+            }
+            return of(out);
+        }
+    }
+}
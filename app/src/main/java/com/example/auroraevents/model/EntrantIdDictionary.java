@@ -0,0 +1,98 @@
+package com.example.auroraevents.model;
+
+import java.util.Arrays;
+
+/**
+ * Process-wide dictionary of device IDs, each mapped to a dense {@code int} ordinal.
+ * Registration lists store ordinals instead of Strings, so every device ID is held once
+ * no matter how many events (or lists) the entrant is on, and the Strings Firestore creates
+ * when deserializing an event can be collected.
+ * Ordinals are never reused; the dictionary only grows for as long as the process runs.
+ */
+final class EntrantIdDictionary {
+    private static final EntrantIdDictionary SHARED = new EntrantIdDictionary();
+
+    // open addressing, linear probing: keys[slot] is the device ID, ordinals[slot] its ordinal
+    private String[] keys = new String[1024];
+    private int[] ordinals = new int[1024];
+    // ordinal -> device ID, read without locking
+    private volatile String[] names = new String[1024];
+    private int size;
+
+    static EntrantIdDictionary shared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns the ordinal of a device ID, adding it to the dictionary if it is new.
+     *
+     * @param userID The device ID
+     * @return The device ID's ordinal
+     */
+    synchronized int intern(String userID) {
+        int slot = slot(userID);
+        if (keys[slot] != null) return ordinals[slot];
+
+        String[] table = size == names.length ? Arrays.copyOf(names, size * 2) : names;
+        table[size] = userID;
+        names = table;      // volatile write, publishes the new name to idOf
+        keys[slot] = userID;
+        ordinals[slot] = size;
+        if (++size * 2 > keys.length) rehash();
+        return size - 1;
+    }
+
+    /**
+     * Returns the ordinal of a device ID without adding it.
+     *
+     * @param userID The device ID
+     * @return The device ID's ordinal, or -1 if it has never been interned
+     */
+    synchronized int find(Object userID) {
+        if (!(userID instanceof String)) return -1;
+        int slot = slot((String) userID);
+        return keys[slot] == null ? -1 : ordinals[slot];
+    }
+
+    /**
+     * Returns the device ID of an ordinal handed out by {@link #intern}.
+     *
+     * @param ordinal The ordinal
+     * @return The device ID
+     */
+    String idOf(int ordinal) {
+        return names[ordinal];
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    private int slot(String userID) {
+        int mask = keys.length - 1;
+        int slot = mix(userID.hashCode()) & mask;
+        while (keys[slot] != null && !keys[slot].equals(userID)) slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private void rehash() {
+        String[] oldKeys = keys;
+        int[] oldOrdinals = ordinals;
+        keys = new String[oldKeys.length * 2];
+        ordinals = new int[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == null) continue;
+            int slot = slot(oldKeys[i]);
+            keys[slot] = oldKeys[i];
+            ordinals[slot] = oldOrdinals[i];
+        }
+    }
+
+    /**
+     * Spreads the bits of a hash code so sequential IDs don't cluster in the table.
+     */
+    static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
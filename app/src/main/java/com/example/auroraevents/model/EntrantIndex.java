@@ -0,0 +1,360 @@
+package com.example.auroraevents.model;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Membership index behind {@link RegistrationList}.
+ * Entrants are held as ordinals from the shared {@link EntrantIdDictionary}, one insertion-ordered
+ * {@link IntOrderedSet} per list, so membership checks and moves are O(1), nothing is boxed,
+ * and the lists keep the order they are stored in on Firestore.
+ *
+ * The index is changed from Firestore callback threads, the write queue and the UI thread.
+ * Every change and lookup holds the index's lock for O(1) work. Whole-list reads (iterating the list views,
+ * Firestore serialization, {@link #all()}) go through an immutable {@link EntrantSnapshot}
+ * that is published once per batch of changes and read without locking; a view's size, and its
+ * get while a change hasn't been snapshotted yet, read the index itself, so loops that change a list
+ * and read it in turn don't copy it every time.
+ */
+class EntrantIndex {
+    private static final EntrantState[] STATES = EntrantState.values();
+
+    private final EntrantIdDictionary ids = EntrantIdDictionary.shared();
+    private final EnumMap<EntrantState, IntOrderedSet> lists = new EnumMap<>(EntrantState.class);
+    private final EnumMap<EntrantState, ListView> views = new EnumMap<>(EntrantState.class);
+    private final EnumMap<EntrantState, EntrantBitmap> bitmaps = new EnumMap<>(EntrantState.class);    // built on demand
+
+    // guarded by this
+    private final boolean[] dirty = new boolean[STATES.length];     // lists changed since the last snapshot
+    private EntrantSnapshot last;
+    private long version;
+
+    private volatile EntrantSnapshot published;     // null while a change hasn't been snapshotted yet
+
+    EntrantIndex() {
+        EnumMap<EntrantState, String[]> empty = new EnumMap<>(EntrantState.class);
+        for (EntrantState state : STATES) {
+            lists.put(state, new IntOrderedSet());
+            views.put(state, new ListView(state));
+            empty.put(state, new String[0]);
+        }
+        last = new EntrantSnapshot(0, empty);
+        published = last;
+    }
+
+    private EntrantState stateOf(int ordinal) {
+        if (ordinal < 0) return null;
+        for (EntrantState state : STATES)
+            if (lists.get(state).contains(ordinal)) return state;
+        return null;
+    }
+
+    /**
+     * Returns the list the entrant is on.
+     *
+     * @param userID The entrant's device ID
+     * @return The entrant's list, or {@code null} if the entrant is on no list
+     */
+    synchronized EntrantState stateOf(Object userID) {
+        return stateOf(ids.find(userID));
+    }
+
+    /**
+     * Puts the entrant on the given list, taking them off whichever list they were on before.
+     *
+     * @param userID The entrant's device ID
+     * @param state  The list to put the entrant on
+     * @return The list the entrant was on before, or {@code null} if they were on no list
+     */
+    synchronized EntrantState put(String userID, EntrantState state) {
+        return put(ids.intern(userID), state);
+    }
+
+    private EntrantState put(int ordinal, EntrantState state) {
+        EntrantState previous = stateOf(ordinal);
+        if (previous == state) return previous;
+        if (previous != null) {
+            lists.get(previous).remove(ordinal);
+            changed(previous);
+        }
+        lists.get(state).add(ordinal);
+        changed(state);
+        return previous;
+    }
+
+    /**
+     * Takes the entrant off whichever list they are on.
+     *
+     * @param userID The entrant's device ID
+     * @return The list the entrant was on, or {@code null} if they were on no list
+     */
+    synchronized EntrantState remove(Object userID) {
+        int ordinal = ids.find(userID);
+        EntrantState previous = stateOf(ordinal);
+        if (previous != null) {
+            lists.get(previous).remove(ordinal);
+            changed(previous);
+        }
+        return previous;
+    }
+
+    /**
+     * Takes the entrant off the given list, if they are on it.
+     *
+     * @param userID The entrant's device ID
+     * @param state  The list to take the entrant off
+     * @return {@code true} if the entrant was on the list
+     */
+    synchronized boolean remove(Object userID, EntrantState state) {
+        int ordinal = ids.find(userID);
+        if (ordinal < 0 || !lists.get(state).remove(ordinal)) return false;
+        changed(state);
+        return true;
+    }
+
+    /**
+     * Moves the entrant only if they are still on the expected list, e.g. to roll back
+     * an optimistic change without undoing a newer one made in the meantime.
+     *
+     * @param userID   The entrant's device ID
+     * @param expected The list the entrant should be on (null for no list)
+     * @param target   The list to move them to (null to take them off every list)
+     * @return {@code true} if the entrant was on the expected list and has been moved
+     */
+    synchronized boolean compareAndSet(String userID, EntrantState expected, EntrantState target) {
+        if (stateOf(ids.find(userID)) != expected) return false;
+        if (target == null) remove(userID);
+        else put(userID, target);
+        return true;
+    }
+
+    /**
+     * Replaces the contents of a list, e.g. when Firestore deserializes an event.
+     * An entrant that is already on another list only moves if the new list has a higher priority,
+     * so the result does not depend on the order the lists are set in.
+     *
+     * @param state   The list to replace
+     * @param userIDs The entrants' device IDs, in order
+     */
+    synchronized void replace(EntrantState state, Collection<String> userIDs) {
+        clear(state);
+        if (userIDs == null) return;
+        for (String userID : userIDs) {
+            int ordinal = ids.intern(userID);
+            EntrantState current = stateOf(ordinal);
+            if (current == null || current.getPriority() < state.getPriority())
+                put(ordinal, state);
+        }
+    }
+
+    /**
+     * Takes every entrant off the given list.
+     *
+     * @param state The list to clear
+     */
+    synchronized void clear(EntrantState state) {
+        lists.get(state).clear();
+        changed(state);
+    }
+
+    synchronized int size(EntrantState state) {
+        return lists.get(state).size();
+    }
+
+    /**
+     * Returns the entrant at a position of a list.
+     *
+     * @param state The list
+     * @param index The position, from 0 to {@code size(state) - 1}
+     * @return The entrant's device ID
+     */
+    synchronized String get(EntrantState state, int index) {
+        return ids.idOf(lists.get(state).get(index));
+    }
+
+    synchronized int size() {
+        int size = 0;
+        for (IntOrderedSet list : lists.values()) size += list.size();
+        return size;
+    }
+
+    private void changed(EntrantState state) {
+        dirty[state.ordinal()] = true;
+        version++;
+        published = null;
+        bitmaps.remove(state);
+    }
+
+    /**
+     * Returns the lists as they are now. Free unless the lists changed since the last snapshot,
+     * in which case only the changed lists are copied.
+     *
+     * @return An immutable snapshot of every list
+     */
+    EntrantSnapshot snapshot() {
+        EntrantSnapshot snapshot = published;
+        if (snapshot != null) return snapshot;
+        synchronized (this) {
+            if (published != null) return published;
+            EnumMap<EntrantState, String[]> arrays = new EnumMap<>(EntrantState.class);
+            for (EntrantState state : STATES) {
+                if (!dirty[state.ordinal()]) {
+                    arrays.put(state, last.array(state));
+                    continue;
+                }
+                int[] ordinals = lists.get(state).toArray();
+                String[] array = new String[ordinals.length];
+                for (int i = 0; i < ordinals.length; i++) array[i] = ids.idOf(ordinals[i]);
+                arrays.put(state, array);
+                dirty[state.ordinal()] = false;
+            }
+            last = new EntrantSnapshot(version, arrays);
+            published = last;
+            return last;
+        }
+    }
+
+    /**
+     * Returns a live, ordered view of a list.
+     * Adding to the view moves the entrant onto that list; removing takes them off it.
+     * Iteration goes through the latest snapshot, so it never fails because of a concurrent change.
+     *
+     * @param state The list to view
+     * @return The view of the list
+     */
+    List<String> view(EntrantState state) {
+        return views.get(state);
+    }
+
+    /**
+     * Returns every entrant in list order: attending, selected, waiting, declined, cancelled, removed.
+     *
+     * @return A new list of every entrant's device ID
+     */
+    List<String> all() {
+        return snapshot().getAllEntrants();
+    }
+
+    /**
+     * Returns a list as an {@link EntrantBitmap}, built once per change to the list.
+     *
+     * @param state The list to return
+     * @return The entrants on the list
+     */
+    synchronized EntrantBitmap bitmap(EntrantState state) {
+        EntrantBitmap bitmap = bitmaps.get(state);
+        if (bitmap == null) {
+            int[] ordinals = lists.get(state).toArray();
+            bitmap = EntrantBitmap.ofOrdinals(ordinals, ordinals.length);
+            bitmaps.put(state, bitmap);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Bytes held by the list arrays (not counting the shared dictionary), for footprint comparisons.
+     */
+    synchronized long arrayBytes() {
+        long bytes = 0;
+        for (IntOrderedSet list : lists.values()) bytes += list.arrayBytes();
+        return bytes;
+    }
+
+    /**
+     * {@link List} view over one of the lists: reads come from the latest snapshot, writes go to the index.
+     */
+    private class ListView extends AbstractList<String> {
+        private final EntrantState state;
+
+        ListView(EntrantState state) {
+            this.state = state;
+        }
+
+        @Override
+        public String get(int index) {
+            // a snapshot only pays off for whole-list reads, so one isn't made for a single entrant
+            EntrantSnapshot snapshot = published;
+            return snapshot != null ? snapshot.array(state)[index] : EntrantIndex.this.get(state, index);
+        }
+
+        @Override
+        public int size() {
+            return EntrantIndex.this.size(state);
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return stateOf(o) == state;
+        }
+
+        @Override
+        public int indexOf(Object o) {
+            if (!contains(o)) return -1;
+            String[] array = snapshot().array(state);
+            for (int i = 0; i < array.length; i++) if (array[i].equals(o)) return i;
+            return -1;
+        }
+
+        @Override
+        public boolean add(String userID) {
+            return put(userID, state) != state;
+        }
+
+        @Override
+        public void add(int index, String userID) {
+            if (index != size()) throw new UnsupportedOperationException("Entrants can only be appended");
+            add(userID);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            return EntrantIndex.this.remove(o, state);
+        }
+
+        @Override
+        public String remove(int index) {
+            String userID = get(index);
+            EntrantIndex.this.remove(userID, state);
+            return userID;
+        }
+
+        @Override
+        public void clear() {
+            EntrantIndex.this.clear(state);
+        }
+
+        @Override
+        public Object[] toArray() {
+            return snapshot().array(state).clone();
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            String[] array = snapshot().array(state);
+            return new Iterator<String>() {
+                private int next;
+
+                @Override
+                public boolean hasNext() {
+                    return next < array.length;
+                }
+
+                @Override
+                public String next() {
+                    if (next >= array.length) throw new NoSuchElementException();
+                    return array[next++];
+                }
+
+                @Override
+                public void remove() {
+                    if (next == 0) throw new IllegalStateException();
+                    EntrantIndex.this.remove(array[next - 1], state);
+                }
+            };
+        }
+    }
+}
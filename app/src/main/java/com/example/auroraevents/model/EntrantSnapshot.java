@@ -0,0 +1,89 @@
+package com.example.auroraevents.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, consistent copy of every entrant list of a {@link RegistrationList} at one point in time.
+ * Snapshots are published by the list whenever it changes, so readers (the UI, Firestore serialization)
+ * never take a lock and never see a move half made, while writers carry on changing the list.
+ * Lists that didn't change share their arrays with the previous snapshot.
+ */
+public final class EntrantSnapshot {
+    // Order used by getAllEntrants, same as RegistrationList.getAllEntrantsList
+    private static final EntrantState[] ALL_ORDER = { EntrantState.ATTENDING, EntrantState.SELECTED,
+            EntrantState.WAITING, EntrantState.DECLINED, EntrantState.CANCELLED, EntrantState.REMOVED };
+
+    private final long version;
+    private final EnumMap<EntrantState, String[]> lists;
+    private Map<String, EntrantState> states;      // built on first lookup; racing builds produce equal maps
+
+    EntrantSnapshot(long version, EnumMap<EntrantState, String[]> lists) {
+        this.version = version;
+        this.lists = lists;
+    }
+
+    /**
+     * Returns the number of changes made to the lists before this snapshot; later snapshots have higher versions.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    String[] array(EntrantState state) {
+        return lists.get(state);
+    }
+
+    /**
+     * Returns one of the entrant lists.
+     *
+     * @param state The list to return
+     * @return The device IDs on the list, in order (unmodifiable)
+     */
+    public List<String> getList(EntrantState state) {
+        return Collections.unmodifiableList(Arrays.asList(lists.get(state)));
+    }
+
+    /**
+     * Returns the list an entrant was on when the snapshot was taken.
+     *
+     * @param userID The entrant's device ID
+     * @return The entrant's list, or {@code null} if the entrant was on no list
+     */
+    public EntrantState stateOf(String userID) {
+        Map<String, EntrantState> map = states;
+        if (map == null) {
+            map = new HashMap<>();
+            for (Map.Entry<EntrantState, String[]> entry : lists.entrySet())
+                for (String id : entry.getValue()) map.put(id, entry.getKey());
+            map = Collections.unmodifiableMap(map);     // final field wrapper, safe to publish without a lock
+            states = map;
+        }
+        return map.get(userID);
+    }
+
+    /**
+     * Returns the number of entrants on any list.
+     */
+    public int size() {
+        int size = 0;
+        for (String[] list : lists.values()) size += list.length;
+        return size;
+    }
+
+    /**
+     * Returns every entrant in list order: attending, selected, waiting, declined, cancelled, removed.
+     *
+     * @return A new list of every entrant's device ID
+     */
+    public List<String> getAllEntrants() {
+        List<String> output = new ArrayList<>(size());
+        for (EntrantState state : ALL_ORDER) output.addAll(Arrays.asList(lists.get(state)));
+        return output;
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.auroraevents.model;
+
+import com.example.auroraevents.server.EventDb;
+
+import java.util.Locale;
+
+/**
+ * The entrant lists an entrant can be on for a single event.
+ * An entrant is on at most one of these lists at a time.
+ */
+public enum EntrantState {
+    WAITING(EventDb.LIST_WAITING, 1),      // signed up, awaiting lottery
+    SELECTED(EventDb.LIST_SELECTED, 2),    // drawn / invited but not yet confirmed
+    ATTENDING(EventDb.LIST_ATTENDING, 3),  // confirmed attendees
+    DECLINED(EventDb.LIST_DECLINED, 4),    // invited then self declined
+    CANCELLED(EventDb.LIST_CANCELLED, 0),  // self cancelled
+    REMOVED(EventDb.LIST_REMOVED, 5);      // force removed
+
+    private final String fieldName;
+    private final int priority;
+
+    EntrantState(String fieldName, int priority) {
+        this.fieldName = fieldName;
+        this.priority = priority;
+    }
+
+    /**
+     * Returns the Firestore field path of the list, i.e. one of the {@code EventDb.LIST_*} constants.
+     *
+     * @return The field path of the list on the event document
+     */
+    public String getFieldName() {
+        return fieldName;
+    }
+
+    /**
+     * Returns the priority used when an entrant is found on more than one list.
+     * The priority of the lists is:
+     * removed > declined > attending > selected > waiting > cancelled.
+     *
+     * @return The priority of the list, higher wins
+     */
+    public int getPriority() {
+        return priority;
+    }
+
+    /**
+     * Returns the key of the list's entrant count in an event's {@code counts} map, e.g. "waiting".
+     *
+     * @return The count key of the list
+     */
+    public String getCountKey() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Finds the state for a Firestore list field path.
+     *
+     * @param fieldName One of the {@code EventDb.LIST_*} constants
+     * @return The matching state, or {@code null} if the field is not an entrant list
+     */
+    public static EntrantState fromFieldName(String fieldName) {
+        for (EntrantState state : values()) {
+            if (state.fieldName.equals(fieldName)) return state;
+        }
+        return null;
+    }
+}
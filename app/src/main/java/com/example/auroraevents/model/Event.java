@@ -3,26 +3,26 @@ package com.example.auroraevents.model;
 
 import android.os.Build;
 
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import android.util.Log;
 
 import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Random;
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
-import android.graphics.Bitmap;
 
-import com.example.auroraevents.server.UserDb;
+import com.example.auroraevents.server.UserCache;
+import com.google.firebase.Timestamp;
 import com.google.firebase.firestore.Exclude;
-import com.google.zxing.BarcodeFormat;
-import com.google.zxing.MultiFormatWriter;
-import com.google.zxing.WriterException;
-import com.google.zxing.common.BitMatrix;
-import com.journeyapps.barcodescanner.BarcodeEncoder;
 
 /**
  * Represents an event in the application.
@@ -36,13 +36,21 @@ public class Event {
     private String  organizerDeviceId;
     private String  name;
     private String  description;
-    private String dateTime;              // stored as "yyyy-MM-dd"
-    private String registrationTimeStart; // stored as "yyyy-MM-dd HH:mm:ss"
-    private String registrationTimeEnd;   // stored as "yyyy-MM-dd HH:mm:ss"
+    // Stored as Timestamps so queries can filter and sort by them; older documents hold
+    // "yyyy-MM-dd HH:mm:ss" strings in the device's time zone until EventDb.migrateEventTimes runs
+    private Timestamp dateTime;
+    private Timestamp registrationTimeStart;
+    private Timestamp registrationTimeEnd;
+    // Local date-time views of the above, made on first use
+    private LocalDateTime dateTimeView;
+    private LocalDateTime registrationTimeStartView;
+    private LocalDateTime registrationTimeEndView;
     private String  location;
     private int     capacity;         // 0 = unlimited
     private String  qrCodeData;       // String payload encoded in the QR code
-    private Bitmap qR;
+    private String  entrantStorage;   // EventDb.STORAGE_ARRAY (or null) or EventDb.STORAGE_SUBCOLLECTION
+    private Map<String, Long> counts; // entrants per list, keyed by EntrantState.getCountKey (null if never counted)
+    private Map<String, Timestamp> selectedAt;   // selected entrant -> when they were selected (invited)
 
     // Participant lists — each list holds device IDs (User.deviceId)
     public RegistrationList registrationList; // for manipulating the lists
@@ -66,9 +74,9 @@ public class Event {
         this.organizerDeviceId = organizerDeviceId;
         this.name              = name;
         this.description       = description;
-        this.dateTime = dateTime.format(FORMATTER); // "yyyy-MM-dd"
-        this.registrationTimeStart = registrationStart.format(FORMATTER);
-        this.registrationTimeEnd   = registrationEnd.format(FORMATTER);
+        setDateTime(toTimestamp(dateTime));
+        setRegistrationTimeStart(toTimestamp(registrationStart));
+        setRegistrationTimeEnd(toTimestamp(registrationEnd));
         this.location          = location;
         this.capacity          = capacity;
     }
@@ -92,14 +100,25 @@ public class Event {
     public String getDescription()                     { return description; }
     public void   setDescription(String description)   { this.description = description; }
 
-    public String getDateTime()                      { return dateTime; }
-    public void   setDateTime(String dateTime)       { this.dateTime = dateTime; }
+    // The setters take Object so Firestore can also hand them the strings of documents not migrated yet;
+    // see toTimestamp for what they accept
+    public Timestamp getDateTime()                   { return dateTime; }
+    public void   setDateTime(Object dateTime) {
+        this.dateTime = toTimestamp(dateTime);
+        dateTimeView = null;
+    }
 
-    public String getRegistrationTimeStart()                         { return registrationTimeStart; }
-    public void   setRegistrationTimeStart(String registrationTimeStart) { this.registrationTimeStart = registrationTimeStart; }
+    public Timestamp getRegistrationTimeStart()      { return registrationTimeStart; }
+    public void   setRegistrationTimeStart(Object registrationTimeStart) {
+        this.registrationTimeStart = toTimestamp(registrationTimeStart);
+        registrationTimeStartView = null;
+    }
 
-    public String getRegistrationTimeEnd()                           { return registrationTimeEnd; }
-    public void   setRegistrationTimeEnd(String registrationTimeEnd) { this.registrationTimeEnd = registrationTimeEnd; }
+    public Timestamp getRegistrationTimeEnd()        { return registrationTimeEnd; }
+    public void   setRegistrationTimeEnd(Object registrationTimeEnd) {
+        this.registrationTimeEnd = toTimestamp(registrationTimeEnd);
+        registrationTimeEndView = null;
+    }
 
     public String getLocation()                      { return location; }
     public void   setLocation(String location)       { this.location = location; }
@@ -110,54 +129,152 @@ public class Event {
     public String getQrCodeData()                    { return qrCodeData; }
     public void   setQrCodeData(String qrCodeData)   { this.qrCodeData = qrCodeData; }
 
+    /**
+     * Returns how the entrant lists of this event are stored:
+     * {@code EventDb.STORAGE_ARRAY} (arrays inside the event document, also used when null)
+     * or {@code EventDb.STORAGE_SUBCOLLECTION} (one document per entrant).
+     */
+    public String getEntrantStorage()                        { return entrantStorage; }
+    public void   setEntrantStorage(String entrantStorage)   { this.entrantStorage = entrantStorage; }
+
+    /**
+     * Returns the number of entrants on each list as stored in the event document ({@code counts.waiting} etc.),
+     * kept current by EventDb with every list change. EventDb.updateEvent leaves them out and writes
+     * the counts itself, so an event written from a stale copy can't put old counts back.
+     */
+    public Map<String, Long> getCounts()                     { return counts; }
+    public void   setCounts(Map<String, Long> counts)        { this.counts = counts; }
+
+    /**
+     * Returns when each entrant on the selected list was selected, written with the move itself
+     * (for events using STORAGE_SUBCOLLECTION, read from their entrant documents).
+     * Left out by EventDb.updateEvent like the counts. Entrants selected before the times were kept have none.
+     */
+    public Map<String, Timestamp> getSelectedAt()                { return selectedAt; }
+    public void   setSelectedAt(Map<String, Timestamp> selectedAt) { this.selectedAt = selectedAt; }
+
+    /**
+     * Returns when a selected entrant was selected
+     * @param userID
+     * The entrant's device ID
+     * @return
+     * When the entrant was moved to the selected list, or null if it isn't known
+     */
+    @Exclude
+    public Timestamp getSelectionTime(String userID) {
+        return selectedAt == null ? null : selectedAt.get(userID);
+    }
+
+    /**
+     * Records when an entrant was selected, or forgets it
+     * @param userID
+     * The entrant's device ID
+     * @param at
+     * When they were selected, or null once they're no longer selected
+     */
+    @Exclude
+    public void setSelectionTime(String userID, Timestamp at) {
+        if (at == null) {
+            if (selectedAt != null) selectedAt.remove(userID);
+            return;
+        }
+        if (selectedAt == null) selectedAt = new HashMap<>();
+        selectedAt.put(userID, at);
+    }
+
     // Converters
+    @Exclude
+    public LocalDateTime getDateTimeAsLocalDateTime() {
+        LocalDateTime view = dateTimeView;
+        if (view == null && dateTime != null) dateTimeView = view = toLocalDateTime(dateTime);
+        return view;
+    }
+
     @Exclude
     public LocalDate getDateTimeAsLocalDate() {
-        return LocalDateTime.parse(dateTime, FORMATTER).toLocalDate();
+        LocalDateTime view = getDateTimeAsLocalDateTime();
+        return view == null ? null : view.toLocalDate();
     }
 
     @Exclude
     public LocalDateTime getRegistrationTimeStartAsDateTime() {
-        return LocalDateTime.parse(registrationTimeStart, FORMATTER);
+        LocalDateTime view = registrationTimeStartView;
+        if (view == null && registrationTimeStart != null)
+            registrationTimeStartView = view = toLocalDateTime(registrationTimeStart);
+        return view;
     }
 
     @Exclude
     public LocalDateTime getRegistrationTimeEndAsDateTime() {
-        return LocalDateTime.parse(registrationTimeEnd, FORMATTER);
+        LocalDateTime view = registrationTimeEndView;
+        if (view == null && registrationTimeEnd != null)
+            registrationTimeEndView = view = toLocalDateTime(registrationTimeEnd);
+        return view;
     }
 
-    public Bitmap       getQrCode()                                    { return this.qR; }
-
-    // ──QR code generation ──────────────────────────────────────────────────────────────────────────────────────────
     /**
-     * takes a string of data and converts to a bitmap QR code
-     * The string data is defined in the constructor and using this produces a bitmap
-     * that returns the value specified inside the variable
-     * @author Sean Ross
+     * Checks if registration is open now, comparing timestamps without any parsing
+     * @return
+     * Return true if now is between the start and end of registration (inclusive)
      */
     @Exclude
-    public void generateQrCode(){
-        MultiFormatWriter writer = new MultiFormatWriter(); //bitmap writer
-        try{
-            // ideas taken from Hilal Ahmed in medium at https://ihilalahmadd.medium.com/how-to-generate-qr-code-in-android-5a2a7edf11c
-
-            int width = 400; //these values change the width and height of the qr code
-            int height = 400;
+    public boolean isRegistrationOpen() {
+        return isRegistrationOpen(Timestamp.now());
+    }
 
-            //convert data to bit matrix
-            BitMatrix matrix = writer.encode(this.eventId, BarcodeFormat.QR_CODE, width, height);
+    /**
+     * Checks if registration is open at the given time
+     * @param now
+     * The time to check
+     * @return
+     * Return true if the time is between the start and end of registration (inclusive);
+     * false if either is not set
+     */
+    @Exclude
+    public boolean isRegistrationOpen(Timestamp now) {
+        return registrationTimeStart != null && registrationTimeEnd != null
+                && registrationTimeStart.compareTo(now) <= 0 && now.compareTo(registrationTimeEnd) <= 0;
+    }
 
-            //convert matrix to bitmap, can be used in image view
-            BarcodeEncoder encoder = new BarcodeEncoder();
-            qR = encoder.createBitmap(matrix);
-        }
-        catch (WriterException e){
-            Log.e("EVENT","Error encoding QR code", e);
+    /**
+     * Converts a stored event time to a Timestamp
+     * @param value
+     * A Timestamp, a Date, epoch millis, a LocalDateTime (in the device's time zone)
+     * or a legacy "yyyy-MM-dd HH:mm:ss" string (in the device's time zone); may be null
+     * @return
+     * Return the Timestamp, or null if the value is null
+     * @throws IllegalArgumentException if the value is of another type or the string can't be parsed
+     */
+    public static Timestamp toTimestamp(Object value) {
+        if (value == null || value instanceof Timestamp) return (Timestamp) value;
+        if (value instanceof Date) return new Timestamp((Date) value);
+        if (value instanceof Long) return new Timestamp(new Date((Long) value));
+        LocalDateTime local;
+        if (value instanceof LocalDateTime) {
+            local = (LocalDateTime) value;
+        } else if (value instanceof String) {
+            try {
+                local = LocalDateTime.parse((String) value, FORMATTER);
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Not an event time: " + value, e);
+            }
+        } else {
+            throw new IllegalArgumentException("Not an event time: " + value.getClass().getName());
         }
+        Instant instant = local.atZone(ZoneId.systemDefault()).toInstant();
+        return new Timestamp(instant.getEpochSecond(), instant.getNano());
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return Instant.ofEpochSecond(timestamp.getSeconds(), timestamp.getNanoseconds())
+                .atZone(ZoneId.systemDefault())
+                .toLocalDateTime();
     }
 
     /**
      * Returns the amount of empty slots that is available in the event
+     * Computed from this copy of the lists, which may be out of date; accepting a seat goes through
+     * EventDb.acceptSeat, which checks the capacity on the database
      * @return
      * Amount of empty slots available
      */
@@ -166,40 +283,53 @@ public class Event {
         return capacity - registrationList.getAttendingList().size() - registrationList.getSelectedList().size();
     }
 
+    /**
+     * Returns the number of entrants on a list, from the stored counts when the event has them,
+     * otherwise from this copy of the list
+     * @param state
+     * The list to count
+     * @return
+     * Number of entrants on the list
+     */
+    @Exclude
+    public long getCount(EntrantState state) {
+        Long count = counts == null ? null : counts.get(state.getCountKey());
+        return count != null ? count : registrationList.getList(state).size();
+    }
+
     /**
      * Connects and fetches user objects from database using their device IDs and returns an array list of them
+     * The users come from the UserCache, and the ones it doesn't hold from UserDb.getUsers,
+     * a few concurrent queries rather than one read per user;
+     * blocks for at most 10 seconds
      * @param listOfDeviceIDs
      * The list of user's device IDs
      * @return
-     * The list of user objects that were fetched with given device IDs
+     * The list of user objects that were fetched with given device IDs, in the same order
+     * (empty if the fetch failed or timed out)
      */
     @Exclude
     public ArrayList<User> getUsersFromDB(List<String> listOfDeviceIDs) {
         ArrayList<User> listOfUsers = new ArrayList<User>();
-        // Fetch users from database
-        var ref = new Object() {
-            User returnedUser;
-        };
-        for (String userId : listOfDeviceIDs) {
-            CountDownLatch latch = new CountDownLatch(1);
-            UserDb.getInstance().getUser(userId,
-                    user -> {
-                        ref.returnedUser = user;
-                        latch.countDown();
-                    },
-                    e -> {
-                        Log.e("Main", "Error fetching user", e);
-                        latch.countDown();
-                    }
-            );
-            try {
-                assert latch.await(10, TimeUnit.SECONDS);
-            } catch (InterruptedException e) {
-                continue;
-            }
-            if (ref.returnedUser != null) {
-                listOfUsers.add(ref.returnedUser);
+        CountDownLatch latch = new CountDownLatch(1);
+        UserCache.getInstance().getUsers(new ArrayList<>(listOfDeviceIDs),
+                users -> {
+                    listOfUsers.addAll(users);      // visible to this thread once the latch opens
+                    latch.countDown();
+                },
+                e -> {
+                    Log.e("Main", "Error fetching users", e);
+                    latch.countDown();
+                }
+        );
+        try {
+            if (!latch.await(10, TimeUnit.SECONDS)) {
+                Log.w("Main", "Timed out fetching " + listOfDeviceIDs.size() + " users");
+                return new ArrayList<>();
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new ArrayList<>();
         }
         return listOfUsers;
     }
@@ -266,25 +396,38 @@ public class Event {
 
     /**
      * Randomly samples users in the waiting list and adds the selected ones to the selected list
-     * then send notification to both the users who were selected and not
+     * in one batched move, then returns who was and wasn't selected so both can be notified
+     * @return
+     * Return the draw; only entrants actually moved onto the selected list count as selected
      */
     @Exclude
-    public void randomSampling() {
-        int amount = getEmptySlotAmount();
-        List<String> waitingList = registrationList.getWaitingList();
-        // There are more empty slots than there are users in waiting list: Select everyone from waiting list
-        if (amount >= waitingList.size()) {
-            registrationList.addAllToSelectedList(waitingList);
-        }
-        else { // Random sampling
-            Random random = new Random();
-            for (int i = 0; i < amount; i++) {
-                // Generate random index using the waitingList size (waiting list will shrink so this will prevent index out of bounds)
-                int randomIndex = random.nextInt(waitingList.size());
-                String selectedUserID = waitingList.get(randomIndex);
-                registrationList.addToSelectedList(selectedUserID);
-            }
+    public LotteryResult randomSampling() {
+        return randomSampling(LotteryEngine.create());
+    }
+
+    /**
+     * Randomly samples users in the waiting list with the given engine and adds the selected ones to the selected list
+     * in one batched move
+     * @param engine
+     * The lottery engine to draw with, e.g. a seeded one to repeat a draw
+     * @return
+     * Return the draw; only entrants actually moved onto the selected list count as selected
+     */
+    @Exclude
+    public LotteryResult randomSampling(LotteryEngine engine) {
+        int amount = Math.max(0, getEmptySlotAmount());
+        // Draw from a consistent copy so the lists changing underneath can't skew the draw
+        List<String> waitingList = registrationList.getSnapshot().getList(EntrantState.WAITING);
+        // With more empty slots than users in the waiting list, everyone is drawn
+        LotteryResult draw = engine.draw(waitingList, amount);
+        if (draw.getSelected().isEmpty()) return draw;
+
+        List<Integer> statuses = registrationList.addAllToSelectedList(draw.getSelected());
+        List<String> selected = new ArrayList<>(statuses.size());
+        for (int i = 0; i < statuses.size(); i++) {
+            if (statuses.get(i) == TransitionResult.SUCCESS) selected.add(draw.getSelected().get(i));
         }
+        return new LotteryResult(waitingList, selected);
     }
 
 }
\ No newline at end of file
@@ -13,25 +13,34 @@ import androidx.annotation.Nullable;
 import com.example.auroraevents.R;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
- * Converts a list of Event objects to rows
+ * Converts a list of EventSummary objects to rows
  * Each event row displays the event details i.e.
  * name, description, status tag
  */
-public class EventArrayAdapter extends ArrayAdapter <com.example.auroraevents.model.Event> {
-    /** get the user's deviceId*/
-    private final String userId;
+public class EventArrayAdapter extends ArrayAdapter <EventSummary> {
+    /** the user's list in each event they joined, by event ID, for the status tags */
+    private Map<String, EntrantState> statuses = new HashMap<>();
 
     /**
      *
      * @param context
-     * @param events: list of event objects
-     * @param userId: device id of the user to identify status tag
+     * @param events: list of event summaries
      */
-    public EventArrayAdapter(Context context, ArrayList <com.example.auroraevents.model.Event> events, String userId){
+    public EventArrayAdapter(Context context, ArrayList <EventSummary> events){
         super(context, 0,events);
-        this.userId = userId;
+    }
+
+    /**
+     * Sets the user's status in each event and redraws the rows
+     * @param statuses: event ID -> the list the user is on, from EventDb.getEntrantStatuses
+     */
+    public void setStatuses(Map<String, EntrantState> statuses) {
+        this.statuses = statuses;
+        notifyDataSetChanged();
     }
 
     /**
@@ -50,7 +59,7 @@ public class EventArrayAdapter extends ArrayAdapter <com.example.auroraevents.mo
         } else {
             view = convertview;
         }
-        Event event = getItem(position);
+        EventSummary event = getItem(position);
         TextView eventName = view.findViewById(R.id.event_name);
         TextView eventDescription = view.findViewById(R.id.event_description);
         TextView eventTag = view.findViewById(R.id.event_tag_1);
@@ -61,11 +70,12 @@ public class EventArrayAdapter extends ArrayAdapter <com.example.auroraevents.mo
         eventDescription.setText(event.getDescription());
 
         // check user status and update status tag
-        if (event.registrationList.getAttendingList() != null && event.registrationList.getAttendingList().contains(userId)) {
+        EntrantState status = statuses.get(event.getEventId());
+        if (status == EntrantState.ATTENDING) {
             eventTag.setText("Attending");
-        } else if (event.registrationList.getSelectedList() != null && event.registrationList.getSelectedList().contains(userId)) {
+        } else if (status == EntrantState.SELECTED) {
             eventTag.setText("Invited");
-        } else if (event.registrationList.getWaitingList() != null && event.registrationList.getWaitingList().contains(userId)) {
+        } else if (status == EntrantState.WAITING) {
             eventTag.setText("Waiting");
         } else {
             eventTag.setText("");
@@ -0,0 +1,80 @@
+package com.example.auroraevents.model;
+
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.Exclude;
+
+import java.util.Map;
+
+/**
+ * The slim copy of an event that browse screens show, read from the "EventSummaries" collection.
+ * It holds what a list row needs and never the entrant lists, so a page of summaries stays small
+ * however many entrants the events have.
+ * The summaries are written by the syncEventSummary Cloud Function whenever an event changes;
+ * open the full {@link Event} with EventDb.getEvent for anything else.
+ */
+public class EventSummary {
+    private String    eventId;            // the event's document ID, also the summary's
+    private String    organizerDeviceId;
+    private String    name;
+    private String    description;        // shortened to about two lines
+    private Timestamp dateTime;
+    private Timestamp registrationTimeStart;
+    private Timestamp registrationTimeEnd;
+    private String    location;
+    private int       capacity;           // 0 = unlimited
+    private Map<String, Long> counts;     // entrants per list, keyed by EntrantState.getCountKey
+
+    /** Required no-arg constructor for Firestore deserialization */
+    public EventSummary() {}
+
+    // ── Getters & Setters ──────────────────────────────────────────────────
+
+    @Exclude
+    public String getEventId()                             { return eventId; }
+    public void   setEventId(String eventId)               { this.eventId = eventId; }
+
+    public String getOrganizerDeviceId()                   { return organizerDeviceId; }
+    public void   setOrganizerDeviceId(String organizerDeviceId) { this.organizerDeviceId = organizerDeviceId; }
+
+    public String getName()                                { return name; }
+    public void   setName(String name)                     { this.name = name; }
+
+    public String getDescription()                         { return description; }
+    public void   setDescription(String description)       { this.description = description; }
+
+    // The setters take Object as summaries of events not migrated yet hold the old strings; see Event.toTimestamp
+    public Timestamp getDateTime()                         { return dateTime; }
+    public void   setDateTime(Object dateTime)             { this.dateTime = Event.toTimestamp(dateTime); }
+
+    public Timestamp getRegistrationTimeStart()            { return registrationTimeStart; }
+    public void   setRegistrationTimeStart(Object registrationTimeStart) {
+        this.registrationTimeStart = Event.toTimestamp(registrationTimeStart);
+    }
+
+    public Timestamp getRegistrationTimeEnd()              { return registrationTimeEnd; }
+    public void   setRegistrationTimeEnd(Object registrationTimeEnd) {
+        this.registrationTimeEnd = Event.toTimestamp(registrationTimeEnd);
+    }
+
+    public String getLocation()                            { return location; }
+    public void   setLocation(String location)             { this.location = location; }
+
+    public int    getCapacity()                            { return capacity; }
+    public void   setCapacity(int capacity)                { this.capacity = capacity; }
+
+    public Map<String, Long> getCounts()                   { return counts; }
+    public void   setCounts(Map<String, Long> counts)      { this.counts = counts; }
+
+    /**
+     * Returns the number of entrants on a list
+     * @param state
+     * The list to count
+     * @return
+     * Number of entrants on the list, 0 if the event was never counted
+     */
+    @Exclude
+    public long getCount(EntrantState state) {
+        Long count = counts == null ? null : counts.get(state.getCountKey());
+        return count == null ? 0 : count;
+    }
+}
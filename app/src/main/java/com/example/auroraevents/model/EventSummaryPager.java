@@ -0,0 +1,271 @@
+package com.example.auroraevents.model;
+
+import com.example.auroraevents.server.EventDb;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.ListenerRegistration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads event summaries a page at a time into the rows of an endless list, always one page ahead:
+ * as soon as a page is shown the next one is fetched, so when the user nears the end of the list
+ * it is usually already there. The first rows only wait for the first page, however many events there are.
+ *
+ * Each page is fetched by a listener on the page itself (EventDb.addSummaryPageListener), whose first snapshot
+ * is the page and which then keeps it live, so every summary is read once, not fetched and then listened to.
+ * A page covers the range from the end of the page before to its own last summary (the last page is
+ * open ended, so new events at the end show up too), and ranges don't overlap however the events change.
+ * The page listener follows that range exactly until a summary moves across its end (the page is cut
+ * by a limit, so it would lose or borrow a summary); only then is the page handed to a listener on the range
+ * itself (EventDb.addSummaryRangeListener), at the cost of reading it once more. Either listener only sends
+ * the summaries added, changed or removed, which are applied to the rows in place.
+ *
+ * Not thread safe; call it from the main thread, where the Firestore callbacks also run.
+ *
+ * Usage:
+ *   pager = new EventSummaryPager(PAGE_SIZE, rows, adapter::notifyDataSetChanged, e -> { ... });
+ *   pager.start();
+ *   ... pager.nearEnd();   // from the list's scroll listener
+ *   ... pager.stop();      // when the list goes away
+ */
+public class EventSummaryPager {
+
+    public interface OnUpdatedListener { void onUpdated(); }
+    public interface OnFailureListener { void onFailure(Exception e); }
+
+    /**
+     * Listens to one page of summaries, e.g. EventDb.addSummaryPageListener.
+     */
+    public interface PageSource {
+        ListenerRegistration listen(DocumentSnapshot after, int pageSize,
+                                    EventDb.OnSummaryPageChangesCallback onChanges, EventDb.OnFailureCallback onFailure);
+    }
+
+    /**
+     * Listens to a range of summaries, e.g. EventDb.addSummaryRangeListener.
+     */
+    public interface RangeSource {
+        ListenerRegistration listen(DocumentSnapshot after, DocumentSnapshot endAt,
+                                    EventDb.OnSummaryChangesCallback onChanges, EventDb.OnFailureCallback onFailure);
+    }
+
+    /**
+     * The rows of one page, kept live by one listener.
+     */
+    private static class Segment {
+        final DocumentSnapshot after;       // end of the page before, null for the first page
+        final List<EventSummary> ahead = new ArrayList<>();   // the rows until the page is shown
+        DocumentSnapshot end;               // the page's last summary when fetched (null if it was empty)
+        String endId;
+        boolean last;                       // the last page, open ended
+        boolean shown;
+        int size;                           // rows of the page
+        boolean onRange;                    // followed by a range listener rather than the page listener
+        boolean replacing;                  // the range listener's first snapshot will replace the rows
+        ListenerRegistration listener;
+
+        Segment(DocumentSnapshot after) {
+            this.after = after;
+        }
+    }
+
+    private final int pageSize;
+    private final PageSource pages;
+    private final RangeSource ranges;
+    private final List<EventSummary> rows;
+    private final OnUpdatedListener onUpdated;
+    private final OnFailureListener onFailure;
+    private final List<Segment> segments = new ArrayList<>();
+
+    private DocumentSnapshot cursor;        // end of the last page fetched
+    private Segment fetching;               // the page whose first snapshot is on its way
+    private Segment ahead;                  // fetched but not shown yet
+    private boolean wanted;                 // the user reached the end while the next page was on its way
+    private boolean exhausted;              // the last page has been fetched
+    private boolean stopped;
+
+    /**
+     * @param pageSize  Summaries per page.
+     * @param rows      The list's rows, changed in place; the pager owns them from now on.
+     * @param onUpdated Called after the rows have changed.
+     * @param onFailure Called with the exception if a listener fails.
+     */
+    public EventSummaryPager(int pageSize, List<EventSummary> rows,
+                             OnUpdatedListener onUpdated, OnFailureListener onFailure) {
+        this(pageSize, EventDb.getInstance()::addSummaryPageListener, EventDb.getInstance()::addSummaryRangeListener,
+                rows, onUpdated, onFailure);
+    }
+
+    public EventSummaryPager(int pageSize, PageSource pages, RangeSource ranges, List<EventSummary> rows,
+                             OnUpdatedListener onUpdated, OnFailureListener onFailure) {
+        this.pageSize = pageSize;
+        this.pages = pages;
+        this.ranges = ranges;
+        this.rows = rows;
+        this.onUpdated = onUpdated;
+        this.onFailure = onFailure;
+    }
+
+    /**
+     * Fetches and shows the first page, then fetches the second one.
+     */
+    public void start() {
+        wanted = true;
+        fetch();
+    }
+
+    /**
+     * Shows the next page; call it when the user nears the end of the list.
+     * Shows it straight away if it was fetched ahead, otherwise as soon as it arrives.
+     */
+    public void nearEnd() {
+        if (stopped) return;
+        if (ahead != null) {
+            show(ahead);
+        } else if (!exhausted) {
+            wanted = true;
+            fetch();
+        }
+    }
+
+    /**
+     * Checks if every page has been shown.
+     */
+    public boolean isDone() {
+        return exhausted && ahead == null;
+    }
+
+    /**
+     * Removes the listeners and drops the pages still on their way, e.g. when the list's view is destroyed.
+     */
+    public void stop() {
+        stopped = true;
+        for (Segment segment : segments) remove(segment);
+        if (ahead != null) remove(ahead);
+        if (fetching != null) remove(fetching);
+    }
+
+    private static void remove(Segment segment) {
+        if (segment.listener != null) segment.listener.remove();
+    }
+
+    private void fetch() {
+        if (fetching != null || exhausted || stopped) return;
+        Segment segment = new Segment(cursor);
+        fetching = segment;
+        segment.listener = pages.listen(cursor, pageSize,
+                (changes, end) -> {
+                    if (segment == fetching) fetched(segment, changes, end);
+                    else apply(segment, changes);
+                },
+                e -> {
+                    if (segment == fetching) fetching = null;   // nearEnd tries again
+                    if (!stopped) onFailure.onFailure(e);
+                });
+    }
+
+    /**
+     * Takes a page's first snapshot, the page itself.
+     */
+    private void fetched(Segment segment, List<EventDb.SummaryChange> changes, DocumentSnapshot end) {
+        if (stopped) {
+            fetching = null;
+            return;
+        }
+        apply(segment, changes);    // before it stops being the one fetching, so the page isn't checked yet
+        fetching = null;
+        segment.last = segment.size < pageSize;
+        if (segment.size > 0) {
+            segment.end = end;
+            segment.endId = segment.ahead.get(segment.size - 1).getEventId();
+            cursor = end;
+        }
+        exhausted = segment.last;
+        if (wanted) {
+            show(segment);
+        } else {
+            ahead = segment;
+        }
+    }
+
+    private void show(Segment segment) {
+        ahead = null;
+        wanted = false;
+        segment.shown = true;
+        segments.add(segment);
+        rows.addAll(segment.ahead);
+        segment.ahead.clear();
+        onUpdated.onUpdated();
+        fetch();    // one page ahead
+    }
+
+    /**
+     * Applies a listener's changes to its page's rows. The first snapshot of a range listener has the whole
+     * range, which replaces the rows the page had. A page listener whose page no longer matches its range
+     * hands the page over to a range listener.
+     */
+    private void apply(Segment segment, List<EventDb.SummaryChange> changes) {
+        if (stopped) return;
+        List<EventSummary> target = segment.shown ? rows : segment.ahead;
+        int offset = 0;
+        if (segment.shown) {
+            for (Segment before : segments) {
+                if (before == segment) break;
+                offset += before.size;
+            }
+        }
+        if (segment.replacing) {
+            target.subList(offset, offset + segment.size).clear();
+            segment.size = 0;
+            segment.replacing = false;
+        }
+        for (EventDb.SummaryChange change : changes) {
+            switch (change.getType()) {
+                case ADDED:
+                    target.add(offset + change.getNewIndex(), change.getSummary());
+                    segment.size++;
+                    break;
+                case REMOVED:
+                    target.remove(offset + change.getOldIndex());
+                    segment.size--;
+                    break;
+                case MODIFIED:
+                    if (change.getOldIndex() == change.getNewIndex()) {
+                        target.set(offset + change.getNewIndex(), change.getSummary());
+                    } else {
+                        target.remove(offset + change.getOldIndex());
+                        target.add(offset + change.getNewIndex(), change.getSummary());
+                    }
+                    break;
+            }
+        }
+        if (segment != fetching && !segment.onRange && leftRange(segment, target, offset)) followRange(segment);
+        if (segment.shown) onUpdated.onUpdated();
+    }
+
+    /**
+     * Checks if a page listener's rows stopped being exactly the page's range: a summary was added to
+     * a full last page, or the page no longer ends with the summary it ended with when fetched.
+     * An empty page that was fetched full can only be empty because its whole range is.
+     */
+    private boolean leftRange(Segment segment, List<EventSummary> target, int offset) {
+        if (segment.last) return segment.size >= pageSize;
+        if (segment.size == 0) return false;
+        return !segment.endId.equals(target.get(offset + segment.size - 1).getEventId());
+    }
+
+    /**
+     * Moves a page from its page listener to a listener on its range, whose first snapshot replaces the rows.
+     */
+    private void followRange(Segment segment) {
+        segment.listener.remove();
+        segment.onRange = true;
+        segment.replacing = true;
+        segment.listener = ranges.listen(segment.after, segment.last ? null : segment.end,
+                changes -> apply(segment, changes),
+                e -> {
+                    if (!stopped) onFailure.onFailure(e);
+                });
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.auroraevents.model;
+
+import java.util.Arrays;
+
+/**
+ * Insertion-ordered set of non-negative {@code int}s, without boxing.
+ * Members are kept in a dense array in the order they were added; a removal leaves a hole
+ * that is squeezed out the next time the set is read by position past it.
+ * An open-addressing table maps each member to its position, so add, remove and contains are O(1).
+ */
+final class IntOrderedSet {
+    private static final int HOLE = -1;
+    private static final int EMPTY = -1;
+
+    private int[] members = new int[8];     // in insertion order, HOLE where a member was removed
+    private int end;                        // members[0 .. end) are in use
+    private int size;
+    private int firstHole = Integer.MAX_VALUE;  // members before this position have no holes
+
+    // open addressing, linear probing: table[slot] is a member (or EMPTY), positions[slot] its index in members
+    private int[] table = newTable(16);
+    private int[] positions = new int[16];
+
+    private static int[] newTable(int capacity) {
+        int[] table = new int[capacity];
+        Arrays.fill(table, EMPTY);
+        return table;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean contains(int value) {
+        return table[slot(value)] != EMPTY;
+    }
+
+    /**
+     * Appends a value if it isn't already in the set.
+     *
+     * @param value The value to add
+     * @return {@code true} if the value was added
+     */
+    boolean add(int value) {
+        int slot = slot(value);
+        if (table[slot] != EMPTY) return false;
+        if (end == members.length) {
+            if (size < end / 2) compact();
+            else members = Arrays.copyOf(members, end * 2);
+        }
+        members[end] = value;
+        table[slot] = value;
+        positions[slot] = end++;
+        if (++size * 2 > table.length) rehash(table.length * 2);
+        return true;
+    }
+
+    /**
+     * Removes a value from the set.
+     *
+     * @param value The value to remove
+     * @return {@code true} if the value was in the set
+     */
+    boolean remove(int value) {
+        int slot = slot(value);
+        if (table[slot] == EMPTY) return false;
+        members[positions[slot]] = HOLE;
+        firstHole = Math.min(firstHole, positions[slot]);
+        size--;
+        deleteSlot(slot);
+        return true;
+    }
+
+    /**
+     * Returns the value at a position, counting only members still in the set.
+     *
+     * @param index The position, from 0 to {@code size() - 1}
+     * @return The value at that position
+     */
+    int get(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        if (index >= firstHole) compact();
+        return members[index];
+    }
+
+    void clear() {
+        members = new int[8];
+        end = 0;
+        size = 0;
+        firstHole = Integer.MAX_VALUE;
+        table = newTable(16);
+        positions = new int[16];
+    }
+
+    /**
+     * Returns the members in insertion order.
+     *
+     * @return A new array of the members
+     */
+    int[] toArray() {
+        if (end != size) compact();
+        return Arrays.copyOf(members, size);
+    }
+
+    /**
+     * Bytes held by the arrays of this set, for footprint comparisons.
+     */
+    long arrayBytes() {
+        return 4L * (members.length + table.length + positions.length);
+    }
+
+    private int slot(int value) {
+        int mask = table.length - 1;
+        int slot = EntrantIdDictionary.mix(value) & mask;
+        while (table[slot] != EMPTY && table[slot] != value) slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    /**
+     * Empties a slot, shifting later entries of the probe run back so lookups never need tombstones.
+     */
+    private void deleteSlot(int slot) {
+        int mask = table.length - 1;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            if (table[next] == EMPTY) break;
+            int home = EntrantIdDictionary.mix(table[next]) & mask;
+            // move the entry back if its home slot is not between the hole and its current slot
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                table[slot] = table[next];
+                positions[slot] = positions[next];
+                slot = next;
+            }
+        }
+        table[slot] = EMPTY;
+    }
+
+    /**
+     * Squeezes the holes out of members and updates the stored positions.
+     */
+    private void compact() {
+        int write = 0;
+        for (int read = 0; read < end; read++) {
+            int value = members[read];
+            if (value == HOLE) continue;
+            members[write] = value;
+            positions[slot(value)] = write++;
+        }
+        end = write;
+        firstHole = Integer.MAX_VALUE;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldTable = table;
+        int[] oldPositions = positions;
+        table = newTable(capacity);
+        positions = new int[capacity];
+        for (int i = 0; i < oldTable.length; i++) {
+            if (oldTable[i] == EMPTY) continue;
+            int slot = slot(oldTable[i]);
+            table[slot] = oldTable[i];
+            positions[slot] = oldPositions[i];
+        }
+    }
+}
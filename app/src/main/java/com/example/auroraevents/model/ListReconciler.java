@@ -0,0 +1,99 @@
+package com.example.auroraevents.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds entrants that ended up on more than one list of an event (e.g. after a write that bypassed
+ * {@link RegistrationList} raced with another client or the Cloud Function) and works out the smallest
+ * writes that leave each of them only on their highest priority list:
+ * removed > declined > attending > selected > waiting > cancelled.
+ * This replaces the old {@code tidyLists}, which did the same with repeated {@code removeAll}s.
+ */
+public final class ListReconciler {
+
+    private ListReconciler() {}
+
+    /**
+     * The fix for one list field.
+     * Normally just the device IDs to arrayRemove; if the list also repeats a device ID
+     * (which arrayRemove can't fix without dropping it entirely) the whole corrected list instead.
+     */
+    public static class Correction {
+        private final EntrantState state;
+        private final List<String> removals;
+        private final List<String> replacement;
+
+        Correction(EntrantState state, List<String> removals, List<String> replacement) {
+            this.state = state;
+            this.removals = removals;
+            this.replacement = replacement;
+        }
+
+        public EntrantState getState()        { return state; }
+        public String getFieldName()          { return state.getFieldName(); }
+        public List<String> getRemovals()     { return removals; }
+
+        /**
+         * Returns the corrected list to write in place of the field, or null if arrayRemove of
+         * {@link #getRemovals()} is enough.
+         */
+        public List<String> getReplacement()  { return replacement; }
+    }
+
+    /**
+     * Returns the highest priority list of each entrant, i.e. the list they stay on once reconciled.
+     *
+     * @param lists The lists as stored, by state (missing or null lists are treated as empty)
+     * @return Each entrant's highest priority list
+     */
+    public static Map<String, EntrantState> highestPriorityLists(Map<EntrantState, List<String>> lists) {
+        Map<String, EntrantState> best = new HashMap<>();
+        for (Map.Entry<EntrantState, List<String>> entry : lists.entrySet()) {
+            if (entry.getValue() == null) continue;
+            EntrantState state = entry.getKey();
+            for (String userID : entry.getValue()) {
+                EntrantState current = best.get(userID);
+                if (current == null || current.getPriority() < state.getPriority()) best.put(userID, state);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Works out the corrections for an event's lists in one pass over every entry.
+     *
+     * @param lists The lists as stored, by state (missing or null lists are treated as empty)
+     * @return One correction per list that needs changing, empty if the lists are consistent
+     */
+    public static List<Correction> reconcile(Map<EntrantState, List<String>> lists) {
+        Map<String, EntrantState> best = highestPriorityLists(lists);
+
+        List<Correction> corrections = new ArrayList<>();
+        for (Map.Entry<EntrantState, List<String>> entry : lists.entrySet()) {
+            if (entry.getValue() == null) continue;
+            EntrantState state = entry.getKey();
+            List<String> kept = new ArrayList<>();
+            List<String> removals = new ArrayList<>();
+            Set<String> seen = new HashSet<>();
+            boolean repeated = false;
+            for (String userID : entry.getValue()) {
+                if (best.get(userID) != state) {
+                    if (seen.add(userID)) removals.add(userID);
+                } else if (seen.add(userID)) {
+                    kept.add(userID);
+                } else {
+                    repeated = true;
+                }
+            }
+            if (repeated) corrections.add(new Correction(state, removals, Collections.unmodifiableList(kept)));
+            else if (!removals.isEmpty()) corrections.add(new Correction(state, removals, null));
+        }
+        return corrections;
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.auroraevents.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Draws the winners of an event's lottery from its waiting list.
+ * The default engine is a partial Fisher–Yates shuffle over the pool's indexes: only the k swapped positions
+ * are remembered, so drawing k winners takes O(k) time and memory whatever the size of the pool
+ * (the pool itself is never copied, only read by index). Winners come out in draw order, uniformly at random.
+ * Engines are seedable so a draw can be repeated; another engine can be passed to {@link Event#randomSampling(LotteryEngine)}.
+ */
+public interface LotteryEngine {
+
+    /**
+     * Draws winners from a pool.
+     *
+     * @param pool    The entrants' device IDs; read by index, so should be a random access list
+     * @param winners How many to draw; everyone is drawn if the pool is smaller
+     * @return The winners in draw order, and the rest of the pool
+     */
+    LotteryResult draw(List<String> pool, int winners);
+
+    /**
+     * Returns the default engine, seeded from the clock.
+     */
+    static LotteryEngine create() {
+        return new PartialShuffle(new SplittableRandom());
+    }
+
+    /**
+     * Returns the default engine with a fixed seed; the same seed and pool always give the same draw.
+     *
+     * @param seed The seed
+     */
+    static LotteryEngine seeded(long seed) {
+        return new PartialShuffle(new SplittableRandom(seed));
+    }
+
+    /**
+     * Partial Fisher–Yates shuffle keeping only the displaced indexes in a map.
+     */
+    final class PartialShuffle implements LotteryEngine {
+        private final SplittableRandom random;
+
+        PartialShuffle(SplittableRandom random) {
+            this.random = random;
+        }
+
+        @Override
+        public synchronized LotteryResult draw(List<String> pool, int winners) {
+            int n = pool.size();
+            int k = Math.max(0, Math.min(winners, n));
+            // index -> index of the entrant now at that position, for positions a swap has touched
+            Map<Integer, Integer> swapped = new HashMap<>(k * 2);
+            List<String> selected = new ArrayList<>(k);
+            for (int i = 0; i < k; i++) {
+                int j = i + random.nextInt(n - i);
+                Integer atJ = swapped.get(j);
+                Integer atI = swapped.get(i);
+                int drawn = atJ == null ? j : atJ;
+                swapped.put(j, atI == null ? i : atI);
+                selected.add(pool.get(drawn));
+            }
+            return new LotteryResult(pool, selected);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.auroraevents.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The outcome of a lottery draw: who was selected, in draw order, and who wasn't,
+ * ready for notifying both groups.
+ */
+public class LotteryResult {
+    private final List<String> pool;
+    private final List<String> selected;
+    private List<String> notSelected;   // worked out on first use, O(pool)
+
+    /**
+     * @param pool     Every entrant in the draw
+     * @param selected The winners, in draw order
+     */
+    public LotteryResult(List<String> pool, List<String> selected) {
+        this.pool = pool;
+        this.selected = Collections.unmodifiableList(selected);
+    }
+
+    /**
+     * Returns the winners' device IDs in the order they were drawn.
+     */
+    public List<String> getSelected() {
+        return selected;
+    }
+
+    /**
+     * Returns the device IDs of everyone in the draw who wasn't selected, in pool order.
+     */
+    public synchronized List<String> getNotSelected() {
+        if (notSelected == null) {
+            Set<String> winners = new HashSet<>(selected);
+            List<String> rest = new ArrayList<>(Math.max(0, pool.size() - selected.size()));
+            for (String userID : pool) if (!winners.contains(userID)) rest.add(userID);
+            notSelected = Collections.unmodifiableList(rest);
+        }
+        return notSelected;
+    }
+
+    /**
+     * Returns the number of entrants in the draw.
+     */
+    public int getPoolSize() {
+        return pool.size();
+    }
+}
@@ -9,6 +9,7 @@ import android.util.Log;
 import com.example.auroraevents.server.EventDb;
 
 import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
 
 public class Organizer extends User {
     private ArrayList<Event> myEvents;
@@ -70,14 +71,40 @@ public class Organizer extends User {
      * Randomly samples users in the waiting list of the specified event
      * @param event
      * Event that the organizer wants to sample in
+     * @return
+     * Return who was and wasn't selected
      */
-    public void sampleWaitList(Event event) {
+    public LotteryResult sampleWaitList(Event event) {
         if (!(myEvents.contains(event))) { // Check if the organizer created the specified event
             throw new IllegalArgumentException("Event not found");
         }
         else {
-            event.randomSampling();
+            return event.randomSampling();
+        }
+    }
+
+    /**
+     * Starts refilling the seats of the specified event that selected entrants give up
+     * @param event
+     * Event that the organizer wants to refill
+     * @param acceptDeadline
+     * How long selected entrants have to accept before their invitation is declined, 0 for no deadline
+     * @param unit
+     * The unit of the deadline
+     * @return
+     * Return the running pipeline, to listen to its draws and to stop it
+     */
+    public ReplacementDraw startReplacementDraws(Event event, long acceptDeadline, TimeUnit unit) {
+        if (!(myEvents.contains(event))) { // Check if the organizer created the specified event
+            throw new IllegalArgumentException("Event not found");
         }
+        ReplacementDraw draw = new ReplacementDraw(event.getEventId());
+        draw.setAcceptDeadline(acceptDeadline, unit);
+        // stored too, so invitations still expire once the organizer leaves the event
+        EventDb.getInstance().setAcceptDeadline(event.getEventId(), unit.toMillis(acceptDeadline), () -> { },
+                e -> Log.w("Organizer", "Failed to store accept deadline for event: " + event.getEventId(), e));
+        draw.start();
+        return draw;
     }
 
     /**
@@ -1,41 +1,38 @@
 package com.example.auroraevents.model;
 
-import static com.example.auroraevents.server.EventDb.LIST_ATTENDING;
-import static com.example.auroraevents.server.EventDb.LIST_CANCELLED;
-import static com.example.auroraevents.server.EventDb.LIST_DECLINED;
-import static com.example.auroraevents.server.EventDb.LIST_REMOVED;
-import static com.example.auroraevents.server.EventDb.LIST_SELECTED;
-import static com.example.auroraevents.server.EventDb.LIST_WAITING;
-
 import android.util.Log;
 
 import com.example.auroraevents.server.EventDb;
 import com.google.firebase.firestore.Exclude;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.CountDownLatch;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class RegistrationList {
     private String eventId;
-    private final List<String> waitingList;     // signed up, awaiting lottery
-    private final List<String> selectedList;    // drawn / invited but not yet confirmed
-    private final List<String> attendingList;   // confirmed attendees
-    private final List<String> declinedList;    // invited then self declined
-    private final List<String> cancelledList;   // self cancelled
-    private final List<String> removedList;     // force removed
+    private final EntrantIndex entrants;    // device ID -> list, plus the ordered lists themselves
+    private final Set<String> pending;      // entrants with a database change in flight
+    private RegistrationWriteQueue writeQueue;
+    private volatile long lastSeq;          // last transition log entry reflected in the lists
     private Integer databaseTimeout = 10;
     private TimeUnit timeoutUnit = TimeUnit.SECONDS;
 
+    // Runs callbacks on whichever thread completes the database write
+    private static final Executor DIRECT = Runnable::run;
+
     public RegistrationList() {
-        waitingList = new ArrayList<>();
-        selectedList = new ArrayList<>();
-        attendingList = new ArrayList<>();
-        declinedList = new ArrayList<>();
-        cancelledList = new ArrayList<>();
-        removedList = new ArrayList<>();
+        entrants = new EntrantIndex();
+        pending = ConcurrentHashMap.newKeySet();
     }
 
     public RegistrationList(int databaseTimeout, TimeUnit timeoutUnit) {
@@ -65,57 +62,205 @@ public class RegistrationList {
     }
 
     /**
-     * Changes the list that the user is on in the database.
+     * Returns the sequence number of the last transition log entry reflected in these lists.
+     * Stored with the lists, so a freshly read event knows where to resume the log from.
      *
-     * @param fromFieldName The list that the user is currently on, and will be removed from. (null to only add)
-     * @param toFieldName   The list that the user will be put on to (null to only remove)
-     * @param userID        The device ID of the user
-     * @return {@code true} on success
-     * @author Jared Strandlund
+     * @return The last applied sequence number, {@code 0} if none
+     */
+    public long getLastSeq() {
+        return lastSeq;
+    }
+
+    public void setLastSeq(long lastSeq) {
+        this.lastSeq = lastSeq;
+    }
+
+    /**
+     * Applies transition log entries to the lists, in sequence order.
+     * Entries at or before {@link #getLastSeq()} are skipped.
+     *
+     * @param entries The new log entries, ordered by sequence number
+     * @return {@code false} if entries are missing before the given ones, in which case the lists must be read again
+     */
+    public synchronized boolean replay(List<TransitionEntry> entries) {
+        for (TransitionEntry entry : entries) {
+            if (entry.getSeq() <= lastSeq) continue;
+            if (entry.getSeq() != lastSeq + 1) return false;
+            if (entry.getTo() == null) entrants.remove(entry.getUserID());
+            else entrants.put(entry.getUserID(), entry.getTo());
+            lastSeq = entry.getSeq();
+        }
+        return true;
+    }
+
+    /**
+     * Returns a live view of one of the entrant lists.
+     *
+     * @param state The list to return
+     * @return The list of entrant device IDs
+     */
+    @Exclude
+    public List<String> getList(EntrantState state) {
+        return entrants.view(state);
+    }
+
+    /**
+     * Returns an immutable copy of every entrant list, consistent across the lists.
+     * Cheap to call repeatedly: a new copy is only made after the lists change.
+     * Use this instead of several separate list reads when the lists may be changing on another thread.
+     *
+     * @return The current snapshot of the lists
+     */
+    @Exclude
+    public EntrantSnapshot getSnapshot() {
+        return entrants.snapshot();
+    }
+
+    /**
+     * Returns one of the entrant lists as a compressed set, for set algebra within or across events.
+     *
+     * @param state The list to return
+     * @return The entrants on the list, in no particular order
+     */
+    @Exclude
+    public EntrantBitmap getBitmap(EntrantState state) {
+        return entrants.bitmap(state);
+    }
+
+    /**
+     * Replaces the contents of one of the entrant lists, e.g. after reading it from the database.
+     *
+     * @param state   The list to replace
+     * @param userIDs The entrants' device IDs, in order
+     */
+    public void replaceList(EntrantState state, Collection<String> userIDs) {
+        entrants.replace(state, userIDs);
+    }
+
+    /**
+     * Returns the list that the specified entrant is on.
+     *
+     * @param userID The entrant's device ID
+     * @return The entrant's list, or {@code null} if the entrant is not on any entrant list
+     */
+    @Exclude
+    public EntrantState getEntrantState(String userID) {
+        return entrants.stateOf(userID);
+    }
+
+    /**
+     * Returns this event's write-behind queue, creating it on first use.
+     * Changes made through the queue show up in the lists straight away and are written in batches.
+     *
+     * @return The event's write queue
+     */
+    @Exclude
+    public synchronized RegistrationWriteQueue getWriteQueue() {
+        if (writeQueue == null)
+            writeQueue = new RegistrationWriteQueue(() -> eventId, entrants, pending);
+        return writeQueue;
+    }
+
+    /**
+     * Moves one entrant onto a list through the {@link TransitionEngine}.
+     *
+     * @param userID   The entrant's device ID
+     * @param target   The list to move the entrant onto (null to take them off the removed list)
+     * @param executor Runs the completion of the returned future
+     * @return A future completed with the result of the move
      */
-    private boolean changeDb(String fromFieldName, String toFieldName, String userID) {
-        if ((toFieldName == null) && (fromFieldName == null)) return false;
-
-        CountDownLatch latch = new CountDownLatch(1);
-        AtomicReference<Boolean> status = new AtomicReference<>(true);
-
-        if (fromFieldName == null) {
-            EventDb.getInstance().addUserToList(eventId, toFieldName, userID,
-                    latch::countDown,
-                    e -> {
-                        status.set(false);
-                        latch.countDown();
-                    }
-            );
-        } else if (toFieldName == null) {
-            EventDb.getInstance().removeUserFromList(eventId, fromFieldName, userID,
-                    latch::countDown,
-                    e -> {
-                        status.set(false);
-                        latch.countDown();
-                    }
-            );
-        } else {
-            EventDb.getInstance().moveUserBetweenLists(eventId, fromFieldName, toFieldName, userID,
-                    latch::countDown,
-                    e -> {
-                        status.set(false);
-                        latch.countDown();
-                    }
-            );
+    private CompletableFuture<TransitionResult> transitionAsync(String userID, EntrantState target, Executor executor) {
+        return transitionAsync(Collections.singletonList(new TransitionEngine.Request(userID, target)), executor)
+                .thenApply(results -> results.get(0));
+    }
+
+    /**
+     * Applies a batch of moves, possibly onto different lists, with a single database write.
+     * Every request is validated in one pass by the {@link TransitionEngine}; only the net move of each entrant
+     * is written, and the local lists only change once the write succeeds.
+     * Only one change per entrant can be in flight at a time; requests for an entrant with a change in flight are blocked.
+     *
+     * @param requests The requested moves, in order
+     * @param executor Runs the completion of the returned future
+     * @return A future completed with one result per request, in the same order
+     */
+    public CompletableFuture<List<TransitionResult>> transitionAsync(List<TransitionEngine.Request> requests,
+                                                                     Executor executor) {
+        TransitionEngine.Plan plan = TransitionEngine.plan(requests, entrants::stateOf, pending);
+        CompletableFuture<List<TransitionResult>> result = new CompletableFuture<>();
+        List<EventDb.ListChange> changes = plan.getChanges();
+        AtomicBoolean completed = new AtomicBoolean();
+        if (changes.isEmpty()) {
+            complete(plan, 0, executor, result, completed);
+            return result;
         }
 
         try {
-            if (!latch.await(databaseTimeout, timeoutUnit)) {
-                Log.w("RegistrationList", "changeDb timed out");
-                return false;
-            }
+            EventDb.getInstance().applyListChanges(eventId, changes,
+                    () -> complete(plan, changes.size(), executor, result, completed),
+                    (committed, e) -> complete(plan, committed, executor, result, completed));
+        } catch (RuntimeException e) {
+            // nothing was written; the plan's entrants would otherwise stay pending and blocked for good
+            Log.e("RegistrationList", "changeDb failed", e);
+            complete(plan, 0, executor, result, completed);
+        }
+        return result;
+    }
+
+    /**
+     * Applies what was committed, releases the plan's entrants and reports the results, once per plan.
+     */
+    private void complete(TransitionEngine.Plan plan, int committed, Executor executor,
+                          CompletableFuture<List<TransitionResult>> result, AtomicBoolean completed) {
+        if (!completed.compareAndSet(false, true)) return;
+        plan.apply(entrants, committed);
+        pending.removeAll(plan.getUserIDs());
+        List<TransitionResult> results = plan.results(committed);
+        executor.execute(() -> result.complete(results));
+    }
+
+    /**
+     * Blocks until a transition finishes, for at most {@code databaseTimeout}.
+     *
+     * @param transition The pending transition
+     * @return The transition's status code, or {@code 2} if it timed out or was interrupted
+     */
+    private int await(CompletableFuture<TransitionResult> transition) {
+        try {
+            return transition.get(databaseTimeout, timeoutUnit).getStatus();
+        } catch (TimeoutException e) {
+            Log.w("RegistrationList", "changeDb timed out");
         } catch (InterruptedException e) {
             Log.w("RegistrationList", "changeDb interrupted");
-            return false;
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Log.w("RegistrationList", "changeDb failed", e.getCause());
         }
+        return TransitionResult.DATABASE_FAILURE;
+    }
 
-        return status.get();
+    /**
+     * Blocks until a bulk transition finishes, for at most {@code databaseTimeout}.
+     *
+     * @param transition The pending bulk transition
+     * @param size       The number of device IDs in the request
+     * @return The status codes in request order, all {@code 2} if it timed out or was interrupted
+     */
+    private List<Integer> awaitAll(CompletableFuture<List<TransitionResult>> transition, int size) {
+        try {
+            List<TransitionResult> results = transition.get(databaseTimeout, timeoutUnit);
+            List<Integer> output = new ArrayList<>(results.size());
+            for (TransitionResult result : results) output.add(result.getStatus());
+            return output;
+        } catch (TimeoutException e) {
+            Log.w("RegistrationList", "changeDb timed out");
+        } catch (InterruptedException e) {
+            Log.w("RegistrationList", "changeDb interrupted");
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Log.w("RegistrationList", "changeDb failed", e.getCause());
+        }
+        return new ArrayList<>(Collections.nCopies(size, TransitionResult.DATABASE_FAILURE));
     }
 
     /**
@@ -124,7 +269,16 @@ public class RegistrationList {
      * @return The waiting list of entrant device IDs
      */
     public List<String> getWaitingList() {
-        return waitingList;
+        return entrants.view(EntrantState.WAITING);
+    }
+
+    /**
+     * Replaces the waiting list (used by Firestore when deserializing the event).
+     *
+     * @param userIDs The entrants' device IDs
+     */
+    public void setWaitingList(List<String> userIDs) {
+        entrants.replace(EntrantState.WAITING, userIDs);
     }
 
     /**
@@ -140,28 +294,29 @@ public class RegistrationList {
      * @author Jared Strandlund
      */
     public int addToWaitingList(String userID) {
-        if (selectedList.contains(userID) || attendingList.contains(userID) || removedList.contains(userID) || declinedList.contains(userID))
-            return 1;
-        else if (waitingList.contains(userID))
-            return -1;
-        else {
-            int status = 0;
-            if (cancelledList.remove(userID)) {
-                if (!changeDb(LIST_CANCELLED, LIST_WAITING, userID))
-                    status = 1;
-            } else {
-                if (!changeDb(null, LIST_WAITING, userID))
-                    status = 2;
-            }
-
-            if (status == 0) {
-                waitingList.add(userID);
-                return 0;
-            } else {
-                if (status == 1) cancelledList.add(userID);
-                return 2;
-            }
-        }
+        return await(addToWaitingListAsync(userID));
+    }
+
+    /**
+     * Asynchronous version of {@link #addToWaitingList(String)}, completed on the thread that delivers the Firestore callback.
+     *
+     * @param userID The entrant's device ID
+     * @return A future completed with the result of the move
+     */
+    public CompletableFuture<TransitionResult> addToWaitingListAsync(String userID) {
+        return addToWaitingListAsync(userID, DIRECT);
+    }
+
+    /**
+     * Asynchronous version of {@link #addToWaitingList(String)}.
+     * The local lists only change once the database write completes.
+     *
+     * @param userID   The entrant's device ID
+     * @param executor Runs the completion of the returned future (and any non-async callbacks chained onto it)
+     * @return A future completed with the result of the move
+     */
+    public CompletableFuture<TransitionResult> addToWaitingListAsync(String userID, Executor executor) {
+        return transitionAsync(userID, EntrantState.WAITING, executor);
     }
 
     /**
@@ -177,12 +332,7 @@ public class RegistrationList {
      * @author Jared Strandlund
      */
     public List<Integer> addAllToWaitingList(List<String> userIDs) {
-        List<Integer> output = new ArrayList<>();
-        int size = userIDs.size();
-        for (int i = 0; i < size; i++) {
-            output.add(i, addToWaitingList(userIDs.get(i)));
-        }
-        return output;
+        return awaitAll(transitionAsync(TransitionEngine.requests(userIDs, EntrantState.WAITING), DIRECT), userIDs.size());
     }
 
     /**
@@ -191,7 +341,16 @@ public class RegistrationList {
      * @return The selected list of entrant device IDs
      */
     public List<String> getSelectedList() {
-        return selectedList;
+        return entrants.view(EntrantState.SELECTED);
+    }
+
+    /**
+     * Replaces the selected list (used by Firestore when deserializing the event).
+     *
+     * @param userIDs The entrants' device IDs
+     */
+    public void setSelectedList(List<String> userIDs) {
+        entrants.replace(EntrantState.SELECTED, userIDs);
     }
 
     /**
@@ -208,21 +367,29 @@ public class RegistrationList {
      */
 
     public int addToSelectedList(String userID) {
-        if (waitingList.remove(userID)) {
-            boolean status = changeDb(LIST_WAITING, LIST_SELECTED, userID);
-            if (status) {
-                selectedList.add(userID);
-                return 0;
-            } else {
-                waitingList.add(userID);
-                return 2;
-            }
-        } else {
-            if (selectedList.contains(userID))
-                return -1;
-            else
-                return 1;
-        }
+        return await(addToSelectedListAsync(userID));
+    }
+
+    /**
+     * Asynchronous version of {@link #addToSelectedList(String)}, completed on the thread that delivers the Firestore callback.
+     *
+     * @param userID The entrant's device ID
+     * @return A future completed with the result of the move
+     */
+    public CompletableFuture<TransitionResult> addToSelectedListAsync(String userID) {
+        return addToSelectedListAsync(userID, DIRECT);
+    }
+
+    /**
+     * Asynchronous version of {@link #addToSelectedList(String)}.
+     * The local lists only change once the database write completes.
+     *
+     * @param userID   The entrant's device ID
+     * @param executor Runs the completion of the returned future (and any non-async callbacks chained onto it)
+     * @return A future completed with the result of the move
+     */
+    public CompletableFuture<TransitionResult> addToSelectedListAsync(String userID, Executor executor) {
+        return transitionAsync(userID, EntrantState.SELECTED, executor);
     }
 
     /**
@@ -238,12 +405,7 @@ public class RegistrationList {
      * @author Jared Strandlund
      */
     public List<Integer> addAllToSelectedList(List<String> userIDs) {
-        List<Integer> output = new ArrayList<>();
-        int size = userIDs.size();
-        for (int i = 0; i < size; i++) {
-            output.add(i, addToSelectedList(userIDs.get(0)));
-        }
-        return output;
+        return awaitAll(transitionAsync(TransitionEngine.requests(userIDs, EntrantState.SELECTED), DIRECT), userIDs.size());
     }
 
     /**
@@ -252,7 +414,16 @@ public class RegistrationList {
      * @return The attending list of entrant device IDs
      */
     public List<String> getAttendingList() {
-        return attendingList;
+        return entrants.view(EntrantState.ATTENDING);
+    }
+
+    /**
+     * Replaces the attending list (used by Firestore when deserializing the event).
+     *
+     * @param userIDs The entrants' device IDs
+     */
+    public void setAttendingList(List<String> userIDs) {
+        entrants.replace(EntrantState.ATTENDING, userIDs);
     }
 
     /**
@@ -268,21 +439,29 @@ public class RegistrationList {
      * @author Jared Strandlund
      */
     public int addToAttendingList(String userID) {
-        if (selectedList.remove(userID)) {
-            boolean status = changeDb(LIST_SELECTED, LIST_ATTENDING, userID);
-            if (status) {
-                attendingList.add(userID);
-                return 0;
-            } else {
-                selectedList.add(userID);
-                return 2;
-            }
-        } else {
-            if (attendingList.contains(userID))
-                return -1;
-            else
-                return 1;
-        }
+        return await(addToAttendingListAsync(userID));
+    }
+
+    /**
+     * Asynchronous version of {@link #addToAttendingList(String)}, completed on the thread that delivers the Firestore callback.
+     *
+     * @param userID The entrant's device ID
+     * @return A future completed with the result of the move
+     */
+    public CompletableFuture<TransitionResult> addToAttendingListAsync(String userID) {
+        return addToAttendingListAsync(userID, DIRECT);
+    }
+
+    /**
+     * Asynchronous version of {@link #addToAttendingList(String)}.
+     * The local lists only change once the database write completes.
+     *
+     * @param userID   The entrant's device ID
+     * @param executor Runs the completion of the returned future (and any non-async callbacks chained onto it)
+     * @return A future completed with the result of the move
+     */
+    public CompletableFuture<TransitionResult> addToAttendingListAsync(String userID, Executor executor) {
+        return transitionAsync(userID, EntrantState.ATTENDING, executor);
     }
 
     /**
@@ -298,12 +477,7 @@ public class RegistrationList {
      * @author Jared Strandlund
      */
     public List<Integer> addAllToAttendingList(List<String> userIDs) {
-        List<Integer> output = new ArrayList<>();
-        int size = userIDs.size();
-        for (int i = 0; i < size; i++) {
-            output.add(i, addToAttendingList(userIDs.get(i)));
-        }
-        return output;
+        return awaitAll(transitionAsync(TransitionEngine.requests(userIDs, EntrantState.ATTENDING), DIRECT), userIDs.size());
     }
 
     /**
@@ -312,7 +486,16 @@ public class RegistrationList {
      * @return The declined list of entrant device IDs
      */
     public List<String> getDeclinedList() {
-        return declinedList;
+        return entrants.view(EntrantState.DECLINED);
+    }
+
+    /**
+     * Replaces the declined list (used by Firestore when deserializing the event).
+     *
+     * @param userIDs The entrants' device IDs
+     */
+    public void setDeclinedList(List<String> userIDs) {
+        entrants.replace(EntrantState.DECLINED, userIDs);
     }
 
     /**
@@ -328,21 +511,29 @@ public class RegistrationList {
      * @author Jared Strandlund
      */
     public int addToDeclinedList(String userID) {
-        if (selectedList.remove(userID)) {
-            boolean status = changeDb(LIST_SELECTED, LIST_DECLINED, userID);
-            if (status) {
-                declinedList.add(userID);
-                return 0;
-            } else {
-                selectedList.add(userID);
-                return 2;
-            }
-        } else {
-            if (declinedList.contains(userID))
-                return -1;
-            else
-                return 1;
-        }
+        return await(addToDeclinedListAsync(userID));
+    }
+
+    /**
+     * Asynchronous version of {@link #addToDeclinedList(String)}, completed on the thread that delivers the Firestore callback.
+     *
+     * @param userID The entrant's device ID
+     * @return A future completed with the result of the move
+     */
+    public CompletableFuture<TransitionResult> addToDeclinedListAsync(String userID) {
+        return addToDeclinedListAsync(userID, DIRECT);
+    }
+
+    /**
+     * Asynchronous version of {@link #addToDeclinedList(String)}.
+     * The local lists only change once the database write completes.
+     *
+     * @param userID   The entrant's device ID
+     * @param executor Runs the completion of the returned future (and any non-async callbacks chained onto it)
+     * @return A future completed with the result of the move
+     */
+    public CompletableFuture<TransitionResult> addToDeclinedListAsync(String userID, Executor executor) {
+        return transitionAsync(userID, EntrantState.DECLINED, executor);
     }
 
     /**
@@ -358,12 +549,7 @@ public class RegistrationList {
      * @author Jared Strandlund
      */
     public List<Integer> addAllToDeclinedList(List<String> userIDs) {
-        List<Integer> output = new ArrayList<>();
-        int size = userIDs.size();
-        for (int i = 0; i < size; i++) {
-            output.add(i, addToDeclinedList(userIDs.get(i)));
-        }
-        return output;
+        return awaitAll(transitionAsync(TransitionEngine.requests(userIDs, EntrantState.DECLINED), DIRECT), userIDs.size());
     }
 
     /**
@@ -372,7 +558,16 @@ public class RegistrationList {
      * @return The cancelled list of entrant device IDs
      */
     public List<String> getCancelledList() {
-        return cancelledList;
+        return entrants.view(EntrantState.CANCELLED);
+    }
+
+    /**
+     * Replaces the cancelled list (used by Firestore when deserializing the event).
+     *
+     * @param userIDs The entrants' device IDs
+     */
+    public void setCancelledList(List<String> userIDs) {
+        entrants.replace(EntrantState.CANCELLED, userIDs);
     }
 
     /**
@@ -388,21 +583,29 @@ public class RegistrationList {
      * @author Jared Strandlund
      */
     public int addToCancelledList(String userID) {
-        if (waitingList.remove(userID)) {
-            boolean status = changeDb(LIST_WAITING, LIST_CANCELLED, userID);
-            if (status) {
-                cancelledList.add(userID);
-                return 0;
-            } else {
-                waitingList.add(userID);
-                return 2;
-            }
-        } else {
-            if (cancelledList.contains(userID))
-                return -1;
-            else
-                return 1;
-        }
+        return await(addToCancelledListAsync(userID));
+    }
+
+    /**
+     * Asynchronous version of {@link #addToCancelledList(String)}, completed on the thread that delivers the Firestore callback.
+     *
+     * @param userID The entrant's device ID
+     * @return A future completed with the result of the move
+     */
+    public CompletableFuture<TransitionResult> addToCancelledListAsync(String userID) {
+        return addToCancelledListAsync(userID, DIRECT);
+    }
+
+    /**
+     * Asynchronous version of {@link #addToCancelledList(String)}.
+     * The local lists only change once the database write completes.
+     *
+     * @param userID   The entrant's device ID
+     * @param executor Runs the completion of the returned future (and any non-async callbacks chained onto it)
+     * @return A future completed with the result of the move
+     */
+    public CompletableFuture<TransitionResult> addToCancelledListAsync(String userID, Executor executor) {
+        return transitionAsync(userID, EntrantState.CANCELLED, executor);
     }
 
     /**
@@ -418,12 +621,7 @@ public class RegistrationList {
      * @author Jared Strandlund
      */
     public List<Integer> addAllToCancelledList(List<String> userIDs) {
-        List<Integer> output = new ArrayList<>();
-        int size = userIDs.size();
-        for (int i = 0; i < size; i++) {
-            output.add(i, addToCancelledList(userIDs.get(i)));
-        }
-        return output;
+        return awaitAll(transitionAsync(TransitionEngine.requests(userIDs, EntrantState.CANCELLED), DIRECT), userIDs.size());
     }
 
     /**
@@ -432,7 +630,16 @@ public class RegistrationList {
      * @return The removed list of entrant device IDs
      */
     public List<String> getRemovedList() {
-        return removedList;
+        return entrants.view(EntrantState.REMOVED);
+    }
+
+    /**
+     * Replaces the removed list (used by Firestore when deserializing the event).
+     *
+     * @param userIDs The entrants' device IDs
+     */
+    public void setRemovedList(List<String> userIDs) {
+        entrants.replace(EntrantState.REMOVED, userIDs);
     }
 
     /**
@@ -447,38 +654,29 @@ public class RegistrationList {
      * @author Jared Strandlund
      */
     public int addToRemovedList(String userID) {
-        if (waitingList.remove(userID))
-            if (!changeDb(LIST_WAITING, null, userID)) {
-                waitingList.add(userID);
-                return 2;
-            }
-        if (selectedList.remove(userID))
-            if (!changeDb(LIST_SELECTED, null, userID)) {
-                selectedList.add(userID);
-                return 2;
-            }
-        if (attendingList.remove(userID))
-            if (!changeDb(LIST_ATTENDING, null, userID)) {
-                attendingList.add(userID);
-                return 2;
-            }
-        if (declinedList.remove(userID))
-            if (!changeDb(LIST_DECLINED, null, userID)) {
-                declinedList.add(userID);
-                return 2;
-            }
-        if (cancelledList.remove(userID))
-            if (!changeDb(LIST_CANCELLED, null, userID)) {
-                cancelledList.add(userID);
-                return 2;
-            }
-
-        if (removedList.contains(userID)) {
-            return -1;
-        } else {
-            removedList.add(userID);
-            return 0;
-        }
+        return await(addToRemovedListAsync(userID));
+    }
+
+    /**
+     * Asynchronous version of {@link #addToRemovedList(String)}, completed on the thread that delivers the Firestore callback.
+     *
+     * @param userID The entrant's device ID
+     * @return A future completed with the result of the move
+     */
+    public CompletableFuture<TransitionResult> addToRemovedListAsync(String userID) {
+        return addToRemovedListAsync(userID, DIRECT);
+    }
+
+    /**
+     * Asynchronous version of {@link #addToRemovedList(String)}.
+     * The local lists only change once the database write completes.
+     *
+     * @param userID   The entrant's device ID
+     * @param executor Runs the completion of the returned future (and any non-async callbacks chained onto it)
+     * @return A future completed with the result of the move
+     */
+    public CompletableFuture<TransitionResult> addToRemovedListAsync(String userID, Executor executor) {
+        return transitionAsync(userID, EntrantState.REMOVED, executor);
     }
 
     /**
@@ -493,12 +691,7 @@ public class RegistrationList {
      * @author Jared Strandlund
      */
     public List<Integer> addAllToRemovedList(List<String> userIDs) {
-        List<Integer> output = new ArrayList<>();
-        int size = userIDs.size();
-        for (int i = 0; i < size; i++) {
-            output.add(i, addToRemovedList(userIDs.get(i)));
-        }
-        return output;
+        return awaitAll(transitionAsync(TransitionEngine.requests(userIDs, EntrantState.REMOVED), DIRECT), userIDs.size());
     }
 
     /**
@@ -513,12 +706,29 @@ public class RegistrationList {
      * @author Jared Strandlund
      */
     public int removeFromRemovedList(String userID) {
-        if (removedList.remove(userID)) {
-            if (!changeDb(LIST_REMOVED, null, userID)) {
-                removedList.add(userID);
-                return 2;
-            } else return 0;
-        } else return -1;
+        return await(removeFromRemovedListAsync(userID));
+    }
+
+    /**
+     * Asynchronous version of {@link #removeFromRemovedList(String)}, completed on the thread that delivers the Firestore callback.
+     *
+     * @param userID The entrant's device ID
+     * @return A future completed with the result of the move
+     */
+    public CompletableFuture<TransitionResult> removeFromRemovedListAsync(String userID) {
+        return removeFromRemovedListAsync(userID, DIRECT);
+    }
+
+    /**
+     * Asynchronous version of {@link #removeFromRemovedList(String)}.
+     * The local lists only change once the database write completes.
+     *
+     * @param userID   The entrant's device ID
+     * @param executor Runs the completion of the returned future (and any non-async callbacks chained onto it)
+     * @return A future completed with the result of the move
+     */
+    public CompletableFuture<TransitionResult> removeFromRemovedListAsync(String userID, Executor executor) {
+        return transitionAsync(userID, null, executor);
     }
 
     /**
@@ -528,48 +738,18 @@ public class RegistrationList {
      */
     @Exclude
     public List<String> getAllEntrantsList() {
-        List<String> output = new ArrayList<>();
-        output.addAll(this.getAttendingList());
-        output.addAll(this.getSelectedList());
-        output.addAll(this.getWaitingList());
-        output.addAll(this.getDeclinedList());
-        output.addAll(this.getCancelledList());
-        output.addAll(this.getRemovedList());
-
-        return output;
-    }
-
-//    /**
-//     * Removes duplicate entrants from the entrant lists.
-//     * The priority of the lists is:
-//     * removed > declined > attending > selected > waiting > cancelled.
-//     * In other words, the removed list will remain unchanged.
-//     * Entrants will be removed from the declined list if they're on the removed list.
-//     * Entrants will be removed from the attending list if they're on the removed list or the declined list.
-//     * And so on.
-//     * This is automatically enforced by the adders.
-//     *
-//     * @author Jared Strandlund
-//     */
-//    public void tidyLists() {
-//        declinedList.removeAll(removedList);
-//
-//        attendingList.removeAll(removedList);
-//        attendingList.removeAll(declinedList);
-//
-//        selectedList.removeAll(removedList);
-//        selectedList.removeAll(declinedList);
-//        selectedList.removeAll(attendingList);
-//
-//        waitingList.removeAll(removedList);
-//        waitingList.removeAll(declinedList);
-//        waitingList.removeAll(attendingList);
-//        waitingList.removeAll(selectedList);
-//
-//        cancelledList.removeAll(removedList);
-//        cancelledList.removeAll(declinedList);
-//        cancelledList.removeAll(attendingList);
-//        cancelledList.removeAll(selectedList);
-//        cancelledList.removeAll(waitingList);
-//    }
+        return entrants.all();
+    }
+
+    /**
+     * Returns the entrants on any entrant list as a compressed set.
+     *
+     * @return The set of all entrants
+     */
+    @Exclude
+    public EntrantBitmap getAllEntrantsBitmap() {
+        List<EntrantBitmap> lists = new ArrayList<>();
+        for (EntrantState state : EntrantState.values()) lists.add(entrants.bitmap(state));
+        return EntrantBitmap.union(lists);
+    }
 }
@@ -0,0 +1,286 @@
+package com.example.auroraevents.model;
+
+import android.util.Log;
+
+import com.example.auroraevents.server.EventDb;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Write-behind queue for one event's entrant lists.
+ * Changes are applied to the local lists straight away and written to Firestore later in a single batch,
+ * so an organizer working quickly through a list doesn't send one update to the event document per click.
+ * Pending changes for the same entrant are coalesced into one move from the list they were on
+ * before the first queued change to the list they end up on (e.g. waiting -> selected -> attending
+ * is written as waiting -> attending). The queue is flushed after a short delay, or straight away once
+ * {@code maxBatchSize} entrants are pending.
+ * If a flush fails, the local lists are rolled back for the entrants in it.
+ */
+public class RegistrationWriteQueue {
+    private static final String TAG = "RegistrationWriteQueue";
+
+    // One daemon thread shared by every queue, only used to trigger flushes
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "registration-write-queue");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public interface OnTransitionListener { void onResult(TransitionResult result); }
+
+    /**
+     * The coalesced change for one entrant waiting to be written.
+     */
+    private static class PendingMove {
+        EntrantState original;      // the list the entrant was on before the first queued change
+        EntrantState current;       // the list the entrant is on now, locally
+        final List<TransitionResult> operations = new ArrayList<>();
+        final List<OnTransitionListener> listeners = new ArrayList<>();
+
+        PendingMove(EntrantState original) {
+            this.original = original;
+            this.current = original;
+        }
+    }
+
+    private final Supplier<String> eventId;
+    private final EntrantIndex entrants;
+    private final Set<String> pending;      // shared with RegistrationList, entrants with a change in flight
+    private final List<OnTransitionListener> listeners = new CopyOnWriteArrayList<>();
+
+    private LinkedHashMap<String, PendingMove> queued = new LinkedHashMap<>();
+    private Map<String, PendingMove> flushing;              // the batch currently being written, if any
+    private ScheduledFuture<?> scheduledFlush;
+
+    private long flushDelay = 500;
+    private TimeUnit flushDelayUnit = TimeUnit.MILLISECONDS;
+    private int maxBatchSize = 100;
+
+    RegistrationWriteQueue(Supplier<String> eventId, EntrantIndex entrants, Set<String> pending) {
+        this.eventId = eventId;
+        this.entrants = entrants;
+        this.pending = pending;
+    }
+
+    /**
+     * Sets how long changes wait before they're flushed.
+     *
+     * @param delay The delay after the first queued change
+     * @param unit  The unit of the delay
+     */
+    public synchronized void setFlushDelay(long delay, TimeUnit unit) {
+        flushDelay = delay;
+        flushDelayUnit = unit;
+    }
+
+    /**
+     * Sets how many entrants can be pending before the queue flushes without waiting for the delay.
+     *
+     * @param maxBatchSize The number of entrants
+     */
+    public synchronized void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Adds a listener that is told the result of every queued change.
+     *
+     * @param listener The listener to add
+     */
+    public void addListener(OnTransitionListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(OnTransitionListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Returns the number of entrants with changes that haven't been flushed yet.
+     *
+     * @return The number of queued entrants
+     */
+    public synchronized int size() {
+        return queued.size();
+    }
+
+    /**
+     * Queues a move onto a list, following the same rules as the addTo*List methods.
+     * The local lists change straight away; the result is only reported once the change is written.
+     *
+     * @param userID   The entrant's device ID
+     * @param target   The list to move the entrant onto
+     * @param listener Told the result of this change (may be null)
+     * @return {@code 0} if the change was queued, otherwise {@code -1} or {@code 1} as for the addTo*List methods
+     */
+    public int enqueue(String userID, EntrantState target, OnTransitionListener listener) {
+        return submit(userID, target, listener);
+    }
+
+    /**
+     * Queues taking an entrant off the removed list, like {@link RegistrationList#removeFromRemovedList(String)}.
+     *
+     * @param userID   The entrant's device ID
+     * @param listener Told the result of this change (may be null)
+     * @return {@code 0} if the change was queued, {@code -1} if the entrant is not on the removed list
+     */
+    public int enqueueRemoveFromRemovedList(String userID, OnTransitionListener listener) {
+        return submit(userID, null, listener);
+    }
+
+    private int submit(String userID, EntrantState target, OnTransitionListener listener) {
+        TransitionResult rejected;
+        synchronized (this) {
+            EntrantState current = entrants.stateOf(userID);
+            int status = TransitionEngine.check(current, target);
+
+            PendingMove move = queued.get(userID);
+            if (status == TransitionResult.SUCCESS && move == null) {
+                boolean inFlight = flushing != null && flushing.containsKey(userID);
+                // entrants in the batch being flushed are ours, anyone else in pending has a direct change in flight
+                if (!inFlight && !pending.add(userID)) {
+                    status = TransitionResult.BLOCKED;
+                } else {
+                    move = new PendingMove(current);
+                    queued.put(userID, move);
+                }
+            }
+
+            if (status == TransitionResult.SUCCESS) {
+                if (target == null) entrants.remove(userID);
+                else entrants.put(userID, target);
+                move.current = target;
+                move.operations.add(new TransitionResult(userID, current, target, TransitionResult.SUCCESS));
+                move.listeners.add(listener);
+
+                if (queued.size() >= maxBatchSize) {
+                    flushLater(0, TimeUnit.MILLISECONDS);
+                } else if (scheduledFlush == null) {
+                    flushLater(flushDelay, flushDelayUnit);
+                }
+                return status;
+            }
+            rejected = new TransitionResult(userID, current, target, status);
+        }
+        report(rejected, listener);
+        return rejected.getStatus();
+    }
+
+    /**
+     * Writes every queued change now instead of waiting for the delay.
+     * Does nothing if a flush is already in flight; the queued changes go out as soon as it finishes.
+     */
+    public void flush() {
+        flushLater(0, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void flushLater(long delay, TimeUnit unit) {
+        if (scheduledFlush != null) {
+            if (delay > 0 || !scheduledFlush.cancel(false)) return;
+        }
+        scheduledFlush = SCHEDULER.schedule(this::doFlush, delay, unit);
+    }
+
+    private void doFlush() {
+        Map<String, PendingMove> batch;
+        synchronized (this) {
+            scheduledFlush = null;
+            if (flushing != null || queued.isEmpty()) return;
+            batch = queued;
+            flushing = batch;
+            queued = new LinkedHashMap<>();
+        }
+
+        // the batch's moves aren't touched again until it finishes, so they're read without the lock
+        List<EventDb.ListChange> changes = new ArrayList<>();
+        try {
+            for (Map.Entry<String, PendingMove> entry : batch.entrySet()) {
+                PendingMove move = entry.getValue();
+                EventDb.ListChange change = TransitionEngine.toChange(entry.getKey(), move.original, move.current);
+                if (change != null) changes.add(change);    // null for a net no-op, nothing to write
+            }
+
+            if (changes.isEmpty()) {
+                finish(batch, changes, changes.size());
+                return;
+            }
+            EventDb.getInstance().applyListChanges(eventId.get(), changes,
+                    () -> finish(batch, changes, changes.size()),
+                    (committed, e) -> finish(batch, changes, committed));
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                if (flushing != batch) throw e;     // thrown after the batch finished, e.g. by a listener
+            }
+            // nothing was written; without finishing, the queue would stay flushing for good
+            Log.e(TAG, "Flush failed for event " + eventId.get(), e);
+            finish(batch, new HashSet<>(batch.keySet()));
+        }
+    }
+
+    private void finish(Map<String, PendingMove> batch, List<EventDb.ListChange> changes, int committed) {
+        Set<String> failed = new HashSet<>();
+        for (int i = committed; i < changes.size(); i++) failed.add(changes.get(i).getDeviceId());
+        finish(batch, failed);
+    }
+
+    /**
+     * Ends a flush: rolls back the failed entrants, reports every queued change and starts the next flush.
+     *
+     * @param failed The entrants whose changes weren't written
+     */
+    private void finish(Map<String, PendingMove> batch, Set<String> failed) {
+        List<TransitionResult> results = new ArrayList<>();
+        List<OnTransitionListener> resultListeners = new ArrayList<>();
+        synchronized (this) {
+            for (String userID : failed) {
+                PendingMove move = batch.get(userID);
+                PendingMove next = queued.get(userID);
+                if (next != null) {
+                    // changed again since the flush started, so the next flush has to make the whole move
+                    next.original = move.original;
+                } else {
+                    // only undo our own change, not one made since (e.g. by a snapshot listener)
+                    entrants.compareAndSet(userID, move.current, move.original);
+                }
+            }
+            if (!failed.isEmpty())
+                Log.w(TAG, "Rolled back " + failed.size() + " queued changes for event " + eventId.get());
+
+            for (Map.Entry<String, PendingMove> entry : batch.entrySet()) {
+                String userID = entry.getKey();
+                PendingMove move = entry.getValue();
+                int status = failed.contains(userID) ? TransitionResult.DATABASE_FAILURE : TransitionResult.SUCCESS;
+                for (int i = 0; i < move.operations.size(); i++) {
+                    TransitionResult op = move.operations.get(i);
+                    results.add(new TransitionResult(userID, op.getFrom(), op.getTo(), status));
+                    resultListeners.add(move.listeners.get(i));
+                }
+                if (!queued.containsKey(userID)) pending.remove(userID);
+            }
+
+            flushing = null;
+            if (!queued.isEmpty()) {
+                if (queued.size() >= maxBatchSize) flushLater(0, TimeUnit.MILLISECONDS);
+                else if (scheduledFlush == null) flushLater(flushDelay, flushDelayUnit);
+            }
+        }
+
+        for (int i = 0; i < results.size(); i++) report(results.get(i), resultListeners.get(i));
+    }
+
+    private void report(TransitionResult result, OnTransitionListener listener) {
+        if (listener != null) listener.onResult(result);
+        for (OnTransitionListener l : listeners) l.onResult(result);
+    }
+}
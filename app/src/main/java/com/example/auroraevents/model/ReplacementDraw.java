@@ -0,0 +1,314 @@
+package com.example.auroraevents.model;
+
+import android.util.Log;
+
+import com.example.auroraevents.server.EventDb;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.ListenerRegistration;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Refills an event's freed seats from its waiting list without the organizer sampling again.
+ * Once started, it follows the event's lists and, whenever seats are free (a selected entrant declined,
+ * cancelled or was removed), draws replacements from the waiting list with the same one-batch draw as
+ * {@link Event#randomSampling(LotteryEngine)}, which fills exactly the free capacity.
+ * Draws are batched: seats freed close together are filled in one draw, either after {@code drawDelay}
+ * or straight away once {@code maxFreedSeats} seats are free.
+ * With an accept deadline set, invitations left unanswered that long are moved to the declined list
+ * (in one batch) and their seats redrawn in the same pass.
+ * Nothing is drawn until the event has had its first draw, i.e. someone has been selected.
+ *
+ * Invitations are timed from when the entrant was selected, as stored with the event
+ * ({@link Event#getSelectionTime(String)}), so ones already out when it starts keep the time they had left.
+ * Ones selected before the times were stored are timed from when the pipeline first sees them.
+ * The pipeline only runs while the app is: stop it when leaving the event. Events with an accept deadline
+ * stored ({@link EventDb#setAcceptDeadline}) are also expired by Cloud Functions while nobody has them open.
+ *
+ * Usage:
+ *   ReplacementDraw draw = new ReplacementDraw(eventId);
+ *   draw.setAcceptDeadline(2, TimeUnit.DAYS);
+ *   draw.addListener(result -> notify(result.getSelected()));
+ *   draw.start();
+ */
+public class ReplacementDraw {
+    private static final String TAG = "ReplacementDraw";
+
+    // One daemon thread shared by every pipeline; the draws block on the database so they can't run on the UI thread
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "replacement-draw");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public interface OnDrawListener    { void onDraw(LotteryResult result); }
+    public interface OnExpiredListener { void onExpired(List<String> userIDs); }
+
+    private final String eventId;
+    private final LotteryEngine engine;
+    private final List<OnDrawListener> drawListeners = new CopyOnWriteArrayList<>();
+    private final List<OnExpiredListener> expiredListeners = new CopyOnWriteArrayList<>();
+
+    private final Map<String, Long> invitedAt = new HashMap<>();   // selected entrant -> when selected
+    private Event event;                    // the latest snapshot of the event
+    private ListenerRegistration registration;
+    private ScheduledFuture<?> scheduledDraw;
+    private ScheduledFuture<?> scheduledExpiry;
+    private boolean running;                // a pass is in progress; it reschedules itself when done
+    private long expiryRetryAt;             // after failing to decline, no expiry pass before this time
+
+    private long drawDelay = 5_000;
+    private int maxFreedSeats = 10;
+    private long acceptDeadline = 0;        // 0 = invitations never expire
+
+    /**
+     * @param eventId The event to refill
+     */
+    public ReplacementDraw(String eventId) {
+        this(eventId, LotteryEngine.create());
+    }
+
+    /**
+     * @param eventId The event to refill
+     * @param engine  The lottery engine to draw replacements with
+     */
+    public ReplacementDraw(String eventId, LotteryEngine engine) {
+        this.eventId = eventId;
+        this.engine = engine;
+    }
+
+    /**
+     * Sets how long freed seats wait for others before they're drawn.
+     *
+     * @param delay The delay after a seat is first seen free
+     * @param unit  The unit of the delay
+     */
+    public synchronized void setDrawDelay(long delay, TimeUnit unit) {
+        drawDelay = unit.toMillis(delay);
+    }
+
+    /**
+     * Sets how many seats can be free before they're drawn without waiting for the delay.
+     *
+     * @param maxFreedSeats The number of seats
+     */
+    public synchronized void setMaxFreedSeats(int maxFreedSeats) {
+        this.maxFreedSeats = maxFreedSeats;
+    }
+
+    /**
+     * Sets how long a selected entrant has to accept before the invitation is declined for them.
+     *
+     * @param deadline The time allowed, or 0 for no deadline
+     * @param unit     The unit of the deadline
+     */
+    public synchronized void setAcceptDeadline(long deadline, TimeUnit unit) {
+        acceptDeadline = unit.toMillis(deadline);
+        if (registration != null) scheduleExpiry();
+    }
+
+    /**
+     * Adds a listener that is told every replacement draw, e.g. to notify the selected entrants.
+     *
+     * @param listener The listener to add
+     */
+    public void addListener(OnDrawListener listener) {
+        drawListeners.add(listener);
+    }
+
+    public void removeListener(OnDrawListener listener) {
+        drawListeners.remove(listener);
+    }
+
+    /**
+     * Adds a listener that is told the entrants whose invitations expired.
+     *
+     * @param listener The listener to add
+     */
+    public void addExpiredListener(OnExpiredListener listener) {
+        expiredListeners.add(listener);
+    }
+
+    public void removeExpiredListener(OnExpiredListener listener) {
+        expiredListeners.remove(listener);
+    }
+
+    /**
+     * Starts following the event. Does nothing if already started.
+     */
+    public synchronized void start() {
+        if (registration != null) return;
+        registration = EventDb.getInstance().addRegistrationListenerForEvent(eventId, this::onEvent,
+                e -> Log.w(TAG, "Failed to follow event: " + eventId, e));
+    }
+
+    /**
+     * Stops following the event. A pass already running finishes, nothing more is drawn.
+     */
+    public synchronized void stop() {
+        if (registration != null) registration.remove();
+        registration = null;
+        cancel(scheduledDraw);
+        cancel(scheduledExpiry);
+        scheduledDraw = null;
+        scheduledExpiry = null;
+        invitedAt.clear();
+        expiryRetryAt = 0;
+    }
+
+    public synchronized boolean isStarted() {
+        return registration != null;
+    }
+
+    private static void cancel(ScheduledFuture<?> future) {
+        if (future != null) future.cancel(false);
+    }
+
+    private synchronized void onEvent(Event snapshot) {
+        if (registration == null) return;
+        if (snapshot == null) {
+            Log.d(TAG, "Event gone, stopping: " + eventId);
+            stop();
+            return;
+        }
+        event = snapshot;
+
+        long now = System.currentTimeMillis();
+        List<String> selected = snapshot.registrationList.getSnapshot().getList(EntrantState.SELECTED);
+        invitedAt.keySet().retainAll(new HashSet<>(selected));
+        for (String userID : selected) {
+            Timestamp at = snapshot.getSelectionTime(userID);
+            if (at != null) invitedAt.put(userID, at.toDate().getTime());
+            else if (!invitedAt.containsKey(userID)) invitedAt.put(userID, now);
+        }
+        scheduleExpiry();
+        scheduleDraw(true);
+    }
+
+    // ── SCHEDULING ─────────────────────────────────────────────────────────
+
+    /**
+     * Schedules a draw for the free seats: now if enough are free, otherwise after the delay
+     * (unless one is already scheduled, so later seats join the same draw).
+     *
+     * @param immediate Whether the draw may run straight away; not after a pass, so a failing draw isn't retried in a loop
+     */
+    private void scheduleDraw(boolean immediate) {
+        if (running) return;
+        int freed = freedSeats(event);
+        if (freed == 0) {
+            cancel(scheduledDraw);
+            scheduledDraw = null;
+        } else if (immediate && freed >= maxFreedSeats) {
+            cancel(scheduledDraw);
+            scheduledDraw = SCHEDULER.schedule(this::pass, 0, TimeUnit.MILLISECONDS);
+        } else if (scheduledDraw == null) {
+            scheduledDraw = SCHEDULER.schedule(this::pass, drawDelay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Schedules a pass for when the oldest invitation expires.
+     */
+    private void scheduleExpiry() {
+        cancel(scheduledExpiry);
+        scheduledExpiry = null;
+        if (running || acceptDeadline <= 0 || invitedAt.isEmpty()) return;
+        long oldest = Long.MAX_VALUE;
+        for (long at : invitedAt.values()) oldest = Math.min(oldest, at);
+        long delay = Math.max(oldest + acceptDeadline, expiryRetryAt) - System.currentTimeMillis();
+        delay = Math.max(0, delay);
+        scheduledExpiry = SCHEDULER.schedule(this::pass, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the number of seats a draw would fill now: the empty slots, capped by the waiting list.
+     */
+    private static int freedSeats(Event event) {
+        if (event == null) return 0;
+        EntrantSnapshot lists = event.registrationList.getSnapshot();
+        if (lists.getList(EntrantState.SELECTED).isEmpty() && lists.getList(EntrantState.ATTENDING).isEmpty()
+                && lists.getList(EntrantState.DECLINED).isEmpty()) {
+            return 0;   // no draw yet, that's the organizer's call
+        }
+        int empty = event.getCapacity() - lists.getList(EntrantState.ATTENDING).size()
+                - lists.getList(EntrantState.SELECTED).size();
+        return Math.max(0, Math.min(empty, lists.getList(EntrantState.WAITING).size()));
+    }
+
+    // ── DRAWING ────────────────────────────────────────────────────────────
+
+    /**
+     * Declines the expired invitations, then draws the free seats, each in one batch.
+     */
+    private void pass() {
+        Event current;
+        List<String> expired = new ArrayList<>();
+        synchronized (this) {
+            scheduledDraw = null;
+            scheduledExpiry = null;
+            if (registration == null || event == null) return;
+            running = true;
+            current = event;
+            if (acceptDeadline > 0) {
+                long cutoff = System.currentTimeMillis() - acceptDeadline;
+                for (Map.Entry<String, Long> invitation : invitedAt.entrySet()) {
+                    if (invitation.getValue() <= cutoff) expired.add(invitation.getKey());
+                }
+            }
+        }
+
+        try {
+            if (!expired.isEmpty()) expire(current, expired);
+            if (freedSeats(current) > 0) {
+                LotteryResult result = current.randomSampling(engine);
+                Log.d(TAG, "Drew " + result.getSelected().size() + " replacements for event: " + eventId);
+                if (!result.getSelected().isEmpty()) {
+                    for (OnDrawListener listener : drawListeners) listener.onDraw(result);
+                }
+            }
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Replacement draw failed for event: " + eventId, e);
+        } finally {
+            synchronized (this) {
+                running = false;
+                if (registration != null) {
+                    scheduleExpiry();
+                    scheduleDraw(false);
+                }
+            }
+        }
+    }
+
+    private void expire(Event current, List<String> expired) {
+        // only the ones still waiting on an answer; the rest accepted or left in the meantime
+        Set<String> stillSelected = new HashSet<>(current.registrationList.getSnapshot().getList(EntrantState.SELECTED));
+        expired.retainAll(stillSelected);
+        if (expired.isEmpty()) return;
+
+        List<Integer> statuses = current.registrationList.addAllToDeclinedList(expired);
+        List<String> declined = new ArrayList<>(statuses.size());
+        for (int i = 0; i < statuses.size(); i++) {
+            if (statuses.get(i) == TransitionResult.SUCCESS) declined.add(expired.get(i));
+        }
+        synchronized (this) {
+            invitedAt.keySet().removeAll(declined);
+            // failed ones are tried again after the draw delay rather than straight away
+            if (declined.size() < expired.size()) expiryRetryAt = System.currentTimeMillis() + drawDelay;
+        }
+        Log.d(TAG, "Expired " + declined.size() + " invitations for event: " + eventId);
+        if (!declined.isEmpty()) {
+            for (OnExpiredListener listener : expiredListeners) listener.onExpired(declined);
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.example.auroraevents.model;
+
+import com.example.auroraevents.server.EventDb;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Table-driven rules for moving entrants between the entrant lists of an event.
+ * A batch of requested moves is validated in one pass and turned into a {@link Plan}:
+ * one net move per entrant, and the list changes needed to make those moves in the database.
+ *
+ * The legal moves are:
+ * <pre>
+ *     no list   -> waiting, removed
+ *     waiting   -> selected, cancelled, removed
+ *     selected  -> attending, declined, removed
+ *     attending -> removed
+ *     declined  -> removed
+ *     cancelled -> waiting, removed
+ *     removed   -> no list
+ * </pre>
+ */
+public final class TransitionEngine {
+    private static final int NONE = EntrantState.values().length;    // row / column for "on no list"
+    private static final boolean[][] ALLOWED = new boolean[NONE + 1][NONE + 1];
+
+    static {
+        allow(null,                   EntrantState.WAITING, EntrantState.REMOVED);
+        allow(EntrantState.WAITING,   EntrantState.SELECTED, EntrantState.CANCELLED, EntrantState.REMOVED);
+        allow(EntrantState.SELECTED,  EntrantState.ATTENDING, EntrantState.DECLINED, EntrantState.REMOVED);
+        allow(EntrantState.ATTENDING, EntrantState.REMOVED);
+        allow(EntrantState.DECLINED,  EntrantState.REMOVED);
+        allow(EntrantState.CANCELLED, EntrantState.WAITING, EntrantState.REMOVED);
+        allow(EntrantState.REMOVED,   (EntrantState) null);
+    }
+
+    private static void allow(EntrantState from, EntrantState... targets) {
+        for (EntrantState to : targets) ALLOWED[index(from)][index(to)] = true;
+    }
+
+    private static int index(EntrantState state) {
+        return state == null ? NONE : state.ordinal();
+    }
+
+    private TransitionEngine() {}
+
+    /**
+     * Checks a single move against the transition table.
+     *
+     * @param from The list the entrant is on (null if none)
+     * @param to   The list to move the entrant onto (null to take them off every list)
+     * @return {@code SUCCESS} if the move is allowed,
+     *         {@code ALREADY_ON_LIST} if the entrant is already there,
+     *         otherwise {@code BLOCKED}
+     */
+    public static int check(EntrantState from, EntrantState to) {
+        if (from == to || (to == null && from != EntrantState.REMOVED))
+            return TransitionResult.ALREADY_ON_LIST;
+        return ALLOWED[index(from)][index(to)] ? TransitionResult.SUCCESS : TransitionResult.BLOCKED;
+    }
+
+    /**
+     * Returns the database change for moving an entrant between two lists.
+     *
+     * @param userID The entrant's device ID
+     * @param from   The list the entrant is on (null if none)
+     * @param to     The list the entrant ends up on (null if none)
+     * @return The change, or {@code null} if the entrant doesn't move
+     */
+    static EventDb.ListChange toChange(String userID, EntrantState from, EntrantState to) {
+        if (from == to) return null;
+        return new EventDb.ListChange(userID,
+                from == null ? null : from.getFieldName(),
+                to == null ? null : to.getFieldName());
+    }
+
+    /**
+     * A requested move of one entrant onto a list.
+     */
+    public static class Request {
+        private final String userID;
+        private final EntrantState target;
+
+        /**
+         * @param userID The entrant's device ID
+         * @param target The list to move the entrant onto (null to take them off the removed list)
+         */
+        public Request(String userID, EntrantState target) {
+            this.userID = userID;
+            this.target = target;
+        }
+
+        public String getUserID()       { return userID; }
+        public EntrantState getTarget() { return target; }
+    }
+
+    /**
+     * Builds one request per device ID, all onto the same list.
+     *
+     * @param userIDs The entrants' device IDs
+     * @param target  The list to move the entrants onto
+     * @return The requests, in the same order
+     */
+    public static List<Request> requests(List<String> userIDs, EntrantState target) {
+        List<Request> requests = new ArrayList<>(userIDs.size());
+        for (String userID : userIDs) requests.add(new Request(userID, target));
+        return requests;
+    }
+
+    /**
+     * Validates a batch of requests in one pass.
+     * Each request is checked against the entrant's state after the earlier requests in the batch,
+     * so several requests for the same entrant collapse into one move from where they started to where they end up.
+     * The first legal request for an entrant claims them in {@code pending}; an entrant already there is blocked.
+     *
+     * @param requests The requested moves, in order
+     * @param stateOf  Looks up the list each entrant is on now
+     * @param pending  Entrants with a change in flight; claimed entrants are added to it
+     * @return The plan for the batch
+     */
+    public static Plan plan(List<Request> requests, Function<String, EntrantState> stateOf, Set<String> pending) {
+        Plan plan = new Plan(requests.size());
+        Map<String, EntrantState[]> moves = new LinkedHashMap<>();    // device ID -> { original, final }
+
+        for (int i = 0; i < requests.size(); i++) {
+            Request request = requests.get(i);
+            String userID = request.getUserID();
+            EntrantState[] move = moves.get(userID);
+            EntrantState current = move != null ? move[1] : stateOf.apply(userID);
+
+            int status = check(current, request.getTarget());
+            if (status == TransitionResult.SUCCESS && move == null) {
+                if (pending.add(userID)) {
+                    move = new EntrantState[] { current, current };
+                    moves.put(userID, move);
+                } else {
+                    status = TransitionResult.BLOCKED;
+                }
+            }
+            if (status == TransitionResult.SUCCESS) move[1] = request.getTarget();
+            plan.results[i] = new TransitionResult(userID, current, request.getTarget(), status);
+        }
+
+        for (Map.Entry<String, EntrantState[]> entry : moves.entrySet()) {
+            EntrantState[] move = entry.getValue();
+            plan.finalStates.put(entry.getKey(), move[1]);
+            EventDb.ListChange change = toChange(entry.getKey(), move[0], move[1]);
+            if (change != null) {
+                plan.changeIndex.put(entry.getKey(), plan.changes.size());
+                plan.changes.add(change);
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * The outcome of validating a batch: one provisional result per request,
+     * and the net database changes for the entrants that move.
+     */
+    public static final class Plan {
+        private final TransitionResult[] results;
+        private final Map<String, EntrantState> finalStates = new LinkedHashMap<>();
+        private final List<EventDb.ListChange> changes = new ArrayList<>();
+        private final Map<String, Integer> changeIndex = new HashMap<>();
+
+        private Plan(int size) {
+            results = new TransitionResult[size];
+        }
+
+        /**
+         * Returns the net database changes, at most one per entrant.
+         * Entrants whose requests cancel out don't appear.
+         *
+         * @return The changes to write
+         */
+        public List<EventDb.ListChange> getChanges() {
+            return Collections.unmodifiableList(changes);
+        }
+
+        /**
+         * Returns the entrants claimed by this plan.
+         *
+         * @return The claimed device IDs
+         */
+        public Set<String> getUserIDs() {
+            return finalStates.keySet();
+        }
+
+        private boolean committed(String userID, int committed) {
+            Integer index = changeIndex.get(userID);
+            return index == null || index < committed;
+        }
+
+        /**
+         * Applies the committed part of the plan to the local lists.
+         *
+         * @param entrants  The lists to update
+         * @param committed The number of changes the database accepted, in order
+         */
+        void apply(EntrantIndex entrants, int committed) {
+            for (Map.Entry<String, EntrantState> entry : finalStates.entrySet()) {
+                if (!committed(entry.getKey(), committed)) continue;
+                if (entry.getValue() == null) entrants.remove(entry.getKey());
+                else entrants.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        /**
+         * Returns the final result of every request, in request order.
+         *
+         * @param committed The number of changes the database accepted, in order
+         * @return The results
+         */
+        public List<TransitionResult> results(int committed) {
+            List<TransitionResult> output = new ArrayList<>(results.length);
+            for (TransitionResult result : results) {
+                if (result.isSuccessful() && !committed(result.getUserID(), committed))
+                    result = new TransitionResult(result.getUserID(), result.getFrom(), result.getTo(),
+                            TransitionResult.DATABASE_FAILURE);
+                output.add(result);
+            }
+            return output;
+        }
+    }
+}
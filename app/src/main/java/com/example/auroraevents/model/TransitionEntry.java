@@ -0,0 +1,41 @@
+package com.example.auroraevents.model;
+
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.ServerTimestamp;
+
+/**
+ * One entry of an event's append-only transition log ({@code Events/{eventId}/transitions}).
+ * Each entry records a single entrant moving between lists, numbered by a per-event sequence number.
+ * Entries hold the list the entrant ended up on rather than a relative change,
+ * so replaying them in order over an older snapshot always gives the current lists.
+ */
+public class TransitionEntry {
+    private long seq;
+    private String userID;
+    private EntrantState from;      // null if the entrant was on no list
+    private EntrantState to;        // null if the entrant was taken off every list
+    @ServerTimestamp
+    private Timestamp at;
+
+    public TransitionEntry() {
+        // required for Firestore
+    }
+
+    public TransitionEntry(long seq, String userID, EntrantState from, EntrantState to) {
+        this.seq = seq;
+        this.userID = userID;
+        this.from = from;
+        this.to = to;
+    }
+
+    public long getSeq()                 { return seq; }
+    public void setSeq(long seq)         { this.seq = seq; }
+    public String getUserID()            { return userID; }
+    public void setUserID(String userID) { this.userID = userID; }
+    public EntrantState getFrom()        { return from; }
+    public void setFrom(EntrantState from) { this.from = from; }
+    public EntrantState getTo()          { return to; }
+    public void setTo(EntrantState to)   { this.to = to; }
+    public Timestamp getAt()             { return at; }
+    public void setAt(Timestamp at)      { this.at = at; }
+}
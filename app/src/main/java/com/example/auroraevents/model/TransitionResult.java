@@ -0,0 +1,45 @@
+package com.example.auroraevents.model;
+
+/**
+ * The outcome of moving an entrant between entrant lists.
+ * The status codes are the same ones returned by the blocking {@code RegistrationList.addTo*List} methods.
+ */
+public class TransitionResult {
+    public static final int SUCCESS          = 0;   // moved onto the list
+    public static final int ALREADY_ON_LIST  = -1;  // already on the list (or not on it, for removals)
+    public static final int BLOCKED          = 1;   // on a list that doesn't allow the move
+    public static final int DATABASE_FAILURE = 2;   // the database change failed
+    public static final int FULL             = 3;   // no seat left on the event (EventDb.acceptSeat only)
+
+    private final String userID;
+    private final EntrantState from;
+    private final EntrantState to;
+    private final int status;
+
+    /**
+     * @param userID The entrant's device ID
+     * @param from   The list the entrant was on (null if none)
+     * @param to     The list the entrant was moved to (null if taken off every list)
+     * @param status One of the status codes above
+     */
+    public TransitionResult(String userID, EntrantState from, EntrantState to, int status) {
+        this.userID = userID;
+        this.from = from;
+        this.to = to;
+        this.status = status;
+    }
+
+    public String getUserID()       { return userID; }
+    public EntrantState getFrom()   { return from; }
+    public EntrantState getTo()     { return to; }
+    public int getStatus()          { return status; }
+
+    public boolean isSuccessful() {
+        return status == SUCCESS;
+    }
+
+    @Override
+    public String toString() {
+        return "TransitionResult{" + userID + ": " + from + " -> " + to + ", status=" + status + '}';
+    }
+}
@@ -0,0 +1,329 @@
+package com.example.auroraevents.server;
+
+import com.example.auroraevents.model.EntrantState;
+import com.example.auroraevents.model.Event;
+import com.example.auroraevents.model.RegistrationList;
+import com.example.auroraevents.model.TransitionEntry;
+import com.example.auroraevents.model.TransitionResult;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.Transaction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The original storage: every list is an array of device IDs inside the event document
+ * ({@code registrationList.waitingList} etc.).
+ * Every change is also appended to the event's transition log in the same transaction,
+ * so listeners can follow the lists without downloading them again, and the event's counts
+ * are changed by exactly what the array transforms change.
+ */
+class ArrayEntrantStore implements EntrantStore {
+    private static final int MAX_IDS_PER_WRITE = 500;   // device IDs per arrayUnion / arrayRemove
+
+    private final FirebaseFirestore db;
+
+    ArrayEntrantStore(FirebaseFirestore db) {
+        this.db = db;
+    }
+
+    /**
+     * Thrown from a transaction that finds the event has moved to STORAGE_SUBCOLLECTION since its storage
+     * was looked up (EventDb.migrateEntrantsToSubcollection), so array edits would be written where nothing
+     * reads them anymore. ABORTED, so the change is retried, on the subcollection once EventDb has seen this.
+     */
+    static class StorageChangedException extends FirebaseFirestoreException {
+        StorageChangedException(DocumentReference eventRef) {
+            super("Entrants of event " + eventRef.getId() + " moved to the subcollection", Code.ABORTED);
+        }
+    }
+
+    /**
+     * Returns whether a failure, or any of its causes, is a StorageChangedException.
+     */
+    static boolean isStorageChanged(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof StorageChangedException) return true;
+            if (t.getCause() == t) break;
+        }
+        return false;
+    }
+
+    /**
+     * Reads the event in a transaction, making sure its lists are still stored as arrays.
+     */
+    private static DocumentSnapshot readEvent(Transaction transaction, DocumentReference eventRef)
+            throws FirebaseFirestoreException {
+        DocumentSnapshot snapshot = transaction.get(eventRef);
+        if (!snapshot.exists())
+            throw new FirebaseFirestoreException("No event found for id: " + eventRef.getId(),
+                    FirebaseFirestoreException.Code.NOT_FOUND);
+        if (EventDb.STORAGE_SUBCOLLECTION.equals(snapshot.getString("entrantStorage")))
+            throw new StorageChangedException(eventRef);
+        return snapshot;
+    }
+
+    /**
+     * Reads the lists as stored, before the model keeps each entrant on one list only:
+     * what the array transforms change, duplicates and all.
+     *
+     * @param snapshot The event document
+     * @return The device IDs in each list's array, for the lists that have one
+     */
+    static Map<EntrantState, List<String>> storedLists(DocumentSnapshot snapshot) {
+        Map<EntrantState, List<String>> lists = new LinkedHashMap<>();
+        for (EntrantState state : EntrantState.values()) {
+            Object stored = snapshot.get(state.getFieldName());
+            if (!(stored instanceof List)) continue;
+            List<String> ids = new ArrayList<>();
+            for (Object id : (List<?>) stored) if (id instanceof String) ids.add((String) id);
+            lists.put(state, ids);
+        }
+        return lists;
+    }
+
+    @Override
+    public Task<Void> commit(DocumentReference eventRef, List<EventDb.ListChange> changes, String operationId) {
+        DocumentReference counterRef = counterRef(eventRef);
+        DocumentReference opRef = EventDb.operationRef(eventRef, operationId);
+        return db.runTransaction(transaction -> {
+            // every read comes before the writes; a marker means an earlier attempt already committed
+            if (transaction.get(opRef).exists()) return null;
+            DocumentSnapshot snapshot = readEvent(transaction, eventRef);
+            Long last = transaction.get(counterRef).getLong("seq");
+            write(transaction, eventRef, snapshot, changes, last == null ? 0 : last);
+            transaction.set(opRef, EventDb.operationData());
+            return null;
+        });
+    }
+
+    @Override
+    public Task<Integer> acceptSeat(DocumentReference eventRef, String deviceId, String operationId) {
+        DocumentReference counterRef = counterRef(eventRef);
+        DocumentReference opRef = EventDb.operationRef(eventRef, operationId);
+        // every acceptance writes the event document anyway, so the document itself serializes them
+        return db.runTransaction(transaction -> {
+            if (transaction.get(opRef).exists()) return TransitionResult.SUCCESS;
+            DocumentSnapshot snapshot = readEvent(transaction, eventRef);
+            Event event = snapshot.toObject(Event.class);
+            Long last = transaction.get(counterRef).getLong("seq");
+
+            RegistrationList lists = event.registrationList;
+            EntrantState current = lists.getEntrantState(deviceId);
+            if (current == EntrantState.ATTENDING) return TransitionResult.ALREADY_ON_LIST;
+            if (current != EntrantState.SELECTED) return TransitionResult.BLOCKED;
+            if (event.getCapacity() > 0 && lists.getAttendingList().size() >= event.getCapacity())
+                return TransitionResult.FULL;
+
+            write(transaction, eventRef, snapshot, Collections.singletonList(
+                    new EventDb.ListChange(deviceId, EventDb.LIST_SELECTED, EventDb.LIST_ATTENDING)),
+                    last == null ? 0 : last);
+            transaction.set(opRef, EventDb.operationData());
+            return TransitionResult.SUCCESS;
+        });
+    }
+
+    static DocumentReference counterRef(DocumentReference eventRef) {
+        return eventRef.collection(EventDb.COUNTERS_COLLECTION).document(EventDb.TRANSITIONS_COLLECTION);
+    }
+
+    /**
+     * Writes list changes in a transaction: the array transforms, the count changes, one transition log
+     * entry per change, and the new sequence number. Every read of the transaction must already have been made.
+     *
+     * @param snapshot The event as read in the same transaction
+     * @param seq      The last sequence number used, read in the same transaction
+     */
+    private static void write(Transaction transaction, DocumentReference eventRef, DocumentSnapshot snapshot,
+                              List<EventDb.ListChange> changes, long seq) {
+        // the stored arrays, which the transforms change, not the model's lists, which drop duplicates
+        Map<EntrantState, List<String>> lists = storedLists(snapshot);
+        // Group the device IDs by field so each field gets as few transforms as possible
+        Map<String, List<String>> removals  = new LinkedHashMap<>();
+        Map<String, List<String>> additions = new LinkedHashMap<>();
+        for (EventDb.ListChange change : changes) {
+            if (change.getFromFieldName() != null)
+                removals.computeIfAbsent(change.getFromFieldName(), k -> new ArrayList<>()).add(change.getDeviceId());
+            if (change.getToFieldName() != null)
+                additions.computeIfAbsent(change.getToFieldName(), k -> new ArrayList<>()).add(change.getDeviceId());
+        }
+
+        for (Map.Entry<String, List<String>> entry : removals.entrySet()) {
+            List<String> ids = entry.getValue();
+            for (int i = 0; i < ids.size(); i += MAX_IDS_PER_WRITE) {
+                Object[] slice = ids.subList(i, Math.min(i + MAX_IDS_PER_WRITE, ids.size())).toArray();
+                transaction.update(eventRef, entry.getKey(), FieldValue.arrayRemove(slice));
+            }
+        }
+        for (Map.Entry<String, List<String>> entry : additions.entrySet()) {
+            List<String> ids = entry.getValue();
+            for (int i = 0; i < ids.size(); i += MAX_IDS_PER_WRITE) {
+                Object[] slice = ids.subList(i, Math.min(i + MAX_IDS_PER_WRITE, ids.size())).toArray();
+                transaction.update(eventRef, entry.getKey(), FieldValue.arrayUnion(slice));
+            }
+        }
+
+        seq = logTransitions(transaction, eventRef, changes, seq);
+        long[] countChanges = countChanges(lists, removals, additions);
+        Map<String, Object> update;
+        if (snapshot.get(EventDb.FIELD_COUNTS) == null) {
+            // written before counts were kept: set every count, as increments would leave the others missing
+            update = new HashMap<>();
+            for (EntrantState state : EntrantState.values())
+                update.put(EventDb.countFieldName(state), storedSize(lists, state) + countChanges[state.ordinal()]);
+        } else {
+            update = EventDb.countIncrements(countChanges);
+        }
+        update.put(EventDb.LIST_SEQ, seq);
+        transaction.update(eventRef, update);
+        writeSelectionTimes(transaction, eventRef, changes);
+    }
+
+    /**
+     * Appends list changes to the event's transition log and moves its counter on, so listeners replay them.
+     * Also used by repairs that rewrite the arrays themselves (EventDb.reconcileLists), which must then
+     * set {@code registrationList.lastSeq} to the returned number in the same transaction.
+     *
+     * @param seq The last sequence number used, read in the same transaction
+     * @return The last sequence number used now
+     */
+    static long logTransitions(Transaction transaction, DocumentReference eventRef,
+                               List<EventDb.ListChange> changes, long seq) {
+        for (EventDb.ListChange change : changes) {
+            seq++;
+            transaction.set(eventRef.collection(EventDb.TRANSITIONS_COLLECTION).document(transitionId(seq)),
+                    new TransitionEntry(seq, change.getDeviceId(),
+                            EntrantState.fromFieldName(change.getFromFieldName()),
+                            EntrantState.fromFieldName(change.getToFieldName())));
+        }
+        transaction.set(counterRef(eventRef), Collections.singletonMap("seq", seq));
+        return seq;
+    }
+
+    /**
+     * Stamps each entrant moved to the selected list with the time of the move, and forgets the time
+     * of each one moved off it, so invitations can be timed from when they were actually sent.
+     */
+    private static void writeSelectionTimes(Transaction transaction, DocumentReference eventRef,
+                                            List<EventDb.ListChange> changes) {
+        List<String> selected = new ArrayList<>();
+        List<String> unselected = new ArrayList<>();
+        for (EventDb.ListChange change : changes) {
+            if (EventDb.LIST_SELECTED.equals(change.getToFieldName())) selected.add(change.getDeviceId());
+            else if (EventDb.LIST_SELECTED.equals(change.getFromFieldName())) unselected.add(change.getDeviceId());
+        }
+        updateSelectionTimes(transaction, eventRef, selected, FieldValue.serverTimestamp());
+        updateSelectionTimes(transaction, eventRef, unselected, FieldValue.delete());
+    }
+
+    /**
+     * Sets the selection time of entrants to one value (a timestamp, or FieldValue.delete() to forget it).
+     * Device IDs are used as map keys through FieldPath, as they aren't safe in a dotted field name.
+     */
+    static void updateSelectionTimes(Transaction transaction, DocumentReference eventRef,
+                                     List<String> deviceIds, Object value) {
+        if (deviceIds.isEmpty()) return;
+        Object[] more = new Object[2 * (deviceIds.size() - 1)];
+        for (int i = 1; i < deviceIds.size(); i++) {
+            more[2 * i - 2] = FieldPath.of(EventDb.FIELD_SELECTED_AT, deviceIds.get(i));
+            more[2 * i - 1] = value;
+        }
+        transaction.update(eventRef, FieldPath.of(EventDb.FIELD_SELECTED_AT, deviceIds.get(0)), value, more);
+    }
+
+    /**
+     * Works out how much the transforms change each array's length: arrayRemove takes out every copy
+     * of a device ID, none if it isn't there, and arrayUnion adds one only if it isn't there yet.
+     * Removals apply before additions, as written.
+     *
+     * @param lists The stored arrays (storedLists)
+     * @return The change of every list's count, indexed by EntrantState ordinal
+     */
+    private static long[] countChanges(Map<EntrantState, List<String>> lists, Map<String, List<String>> removals,
+                                       Map<String, List<String>> additions) {
+        long[] changes = new long[EntrantState.values().length];
+        Map<String, Map<String, Integer>> members = new HashMap<>();   // copies of each device ID per array
+        for (Map.Entry<String, List<String>> entry : removals.entrySet()) {
+            EntrantState state = EntrantState.fromFieldName(entry.getKey());
+            if (state == null) continue;
+            Map<String, Integer> list = members.computeIfAbsent(entry.getKey(), k -> copies(lists.get(state)));
+            for (String deviceId : entry.getValue()) {
+                Integer removed = list.remove(deviceId);
+                if (removed != null) changes[state.ordinal()] -= removed;
+            }
+        }
+        for (Map.Entry<String, List<String>> entry : additions.entrySet()) {
+            EntrantState state = EntrantState.fromFieldName(entry.getKey());
+            if (state == null) continue;
+            Map<String, Integer> list = members.computeIfAbsent(entry.getKey(), k -> copies(lists.get(state)));
+            for (String deviceId : entry.getValue()) if (list.putIfAbsent(deviceId, 1) == null) changes[state.ordinal()]++;
+        }
+        return changes;
+    }
+
+    /**
+     * Counts the copies of each device ID in an array (null if the list has none).
+     */
+    private static Map<String, Integer> copies(List<String> ids) {
+        Map<String, Integer> copies = new HashMap<>();
+        if (ids != null) for (String id : ids) copies.merge(id, 1, Integer::sum);
+        return copies;
+    }
+
+    private static long storedSize(Map<EntrantState, List<String>> lists, EntrantState state) {
+        List<String> ids = lists.get(state);
+        return ids == null ? 0 : ids.size();
+    }
+
+    /**
+     * Zero-padded document ID for a transition log entry, so the console lists entries in order.
+     */
+    private static String transitionId(long seq) {
+        return String.format(Locale.ROOT, "%012d", seq);
+    }
+
+    @Override
+    public Task<Void> load(DocumentReference eventRef, Event event) {
+        // the lists came with the event document
+        return Tasks.forResult(null);
+    }
+
+    @Override
+    public Task<List<String>> page(DocumentReference eventRef, EntrantState status, String afterDeviceId, int pageSize) {
+        return eventRef.get().continueWith(task -> {
+            Event event = task.getResult().toObject(Event.class);
+            if (event == null) return new ArrayList<>();
+            List<String> list = event.registrationList.getList(status);
+            int start = 0;
+            if (afterDeviceId != null) {
+                int after = list.indexOf(afterDeviceId);
+                // starting over would repeat the entrants already paged through
+                if (after < 0)
+                    throw new FirebaseFirestoreException("Entrant " + afterDeviceId + " is no longer on the list",
+                            FirebaseFirestoreException.Code.FAILED_PRECONDITION);
+                start = after + 1;
+            }
+            return new ArrayList<>(list.subList(start, Math.min(start + pageSize, list.size())));
+        });
+    }
+
+    @Override
+    public Task<Long> count(DocumentReference eventRef, EntrantState status) {
+        return eventRef.get().continueWith(task -> {
+            Event event = task.getResult().toObject(Event.class);
+            return event == null ? 0L : (long) event.registrationList.getList(status).size();
+        });
+    }
+}
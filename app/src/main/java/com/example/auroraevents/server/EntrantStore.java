@@ -0,0 +1,70 @@
+package com.example.auroraevents.server;
+
+import com.example.auroraevents.model.EntrantState;
+import com.example.auroraevents.model.Event;
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.firestore.DocumentReference;
+
+import java.util.List;
+
+/**
+ * Where an event's entrant lists are stored.
+ * {@link EventDb} picks the implementation for each event from {@link Event#getEntrantStorage()},
+ * so its public methods work the same way over either backend.
+ */
+interface EntrantStore {
+
+    /**
+     * Writes one chunk of list changes atomically, at most once per operation ID.
+     * The commit also writes {@code Events/{eventId}/ops/{operationId}}; if that marker already exists
+     * the chunk was committed by an earlier attempt and nothing is written, so a retry is always safe.
+     *
+     * @param eventRef    The event document.
+     * @param changes     At most EventDb.MAX_CHANGES_PER_BATCH changes.
+     * @param operationId Identifies this chunk; the same ID must be used when the chunk is retried.
+     * @return A task that completes when the chunk is committed (or found already committed).
+     */
+    Task<Void> commit(DocumentReference eventRef, List<EventDb.ListChange> changes, String operationId);
+
+    /**
+     * Moves a selected entrant onto the attending list if the event still has a free seat,
+     * checking the capacity in the same transaction as the move. At most once per operation ID.
+     *
+     * @param eventRef    The event document.
+     * @param deviceId    The entrant's device ID.
+     * @param operationId Identifies this acceptance; the same ID must be used when it is retried.
+     * @return A task with a TransitionResult status: SUCCESS, ALREADY_ON_LIST (already attending),
+     *         BLOCKED (not on the selected list) or FULL (no seat left).
+     */
+    Task<Integer> acceptSeat(DocumentReference eventRef, String deviceId, String operationId);
+
+    /**
+     * Fills in the entrant lists of an event that was just read.
+     *
+     * @param eventRef The event document.
+     * @param event    The event read from it.
+     * @return A task that completes once {@code event.registrationList} is filled in.
+     */
+    Task<Void> load(DocumentReference eventRef, Event event);
+
+    /**
+     * Reads one page of the device IDs with a given status.
+     *
+     * @param eventRef      The event document.
+     * @param status        The list to read.
+     * @param afterDeviceId The last device ID of the previous page (null for the first page).
+     * @param pageSize      The maximum number of device IDs to return.
+     * @return A task with the device IDs of the page; it fails with FAILED_PRECONDITION if the store
+     *         can't tell where {@code afterDeviceId} was because it has left the list.
+     */
+    Task<List<String>> page(DocumentReference eventRef, EntrantState status, String afterDeviceId, int pageSize);
+
+    /**
+     * Counts the entrants with a given status.
+     *
+     * @param eventRef The event document.
+     * @param status   The list to count.
+     * @return A task with the number of entrants on the list.
+     */
+    Task<Long> count(DocumentReference eventRef, EntrantState status);
+}
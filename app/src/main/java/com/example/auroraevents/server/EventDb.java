@@ -5,17 +5,48 @@ import android.util.Log;
 
 import androidx.annotation.Nullable;
 
+import com.example.auroraevents.model.EntrantState;
 import com.example.auroraevents.model.Event;
+import com.example.auroraevents.model.EventSummary;
+import com.example.auroraevents.model.ListReconciler;
+import com.example.auroraevents.model.LotteryResult;
+import com.example.auroraevents.model.RegistrationList;
+import com.example.auroraevents.model.TransitionEntry;
+import com.google.firebase.Timestamp;
+import com.google.android.gms.tasks.OnSuccessListener;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentChange;
 import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.EventListener;
 import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FieldPath;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.FirebaseFirestoreException;
 import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
 import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.WriteBatch;
+import com.google.firebase.functions.FirebaseFunctions;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * Singleton class for all Firestore operations on the "Events" collection.
@@ -36,11 +67,74 @@ public class EventDb {
     public static final String LIST_CANCELLED  = LIST_REGISTRATION + '.' + "cancelledList";
     public static final String LIST_DECLINED   = LIST_REGISTRATION + '.' + "declinedList";
     public static final String LIST_REMOVED    = LIST_REGISTRATION + '.' + "removedList";
+    public static final String LIST_SEQ        = LIST_REGISTRATION + '.' + "lastSeq";
 
+    // Append-only transition log, one document per move: Events/{eventId}/transitions/{seq}
+    public static final String TRANSITIONS_COLLECTION = "transitions";
+    // Small per-event document holding the last used sequence number: Events/{eventId}/counters/transitions
+    static final String COUNTERS_COLLECTION = "counters";
+    // One document per entrant for events using STORAGE_SUBCOLLECTION: Events/{eventId}/entrants/{deviceId}
+    public static final String ENTRANTS_COLLECTION = "entrants";
+    // One marker per committed chunk of list changes, so retries are applied once: Events/{eventId}/ops/{operationId}
+    static final String OPS_COLLECTION = "ops";
+    // Markers are deleted by a Firestore TTL policy on expireAt once no client could still be retrying
+    private static final long OPERATION_TTL_MILLIS = TimeUnit.DAYS.toMillis(7);
+    // Callable Cloud Function drawing an event's lottery on the server (functions/index.js)
+    static final String LOTTERY_FUNCTION = "runLottery";
+    // Slim copies of the events for browse screens, kept by the syncEventSummary Cloud Function: EventSummaries/{eventId}
+    public static final String SUMMARIES_COLLECTION = "EventSummaries";
+    // Callable Cloud Function writing every summary again (functions/index.js)
+    static final String REBUILD_SUMMARIES_FUNCTION = "rebuildEventSummaries";
+
+    // Event times, stored as Timestamps (see migrateEventTimes for older documents)
+    public static final String FIELD_DATE_TIME          = "dateTime";
+    public static final String FIELD_REGISTRATION_START = "registrationTimeStart";
+    public static final String FIELD_REGISTRATION_END   = "registrationTimeEnd";
+    private static final String[] TIME_FIELDS = { FIELD_DATE_TIME, FIELD_REGISTRATION_START, FIELD_REGISTRATION_END };
+    public static final String FIELD_ORGANIZER          = "organizerDeviceId";
+    // Every field an Event is written with except counts and selection times, which updateEvent must not
+    // overwrite from a stale copy
+    private static final String[] UPDATED_FIELDS = { "eventId", FIELD_ORGANIZER, "name", "description",
+            FIELD_DATE_TIME, FIELD_REGISTRATION_START, FIELD_REGISTRATION_END, "location", "capacity",
+            "qrCodeData", "entrantStorage", LIST_REGISTRATION };
+
+    // Entrants per list (counts.waiting etc.), so a count costs a few bytes instead of the list.
+    // Array storage events have them changed in the same transaction as the lists. Subcollection events count
+    // entrant documents written after countsSince in sharded counters (see SubcollectionEntrantStore),
+    // rolled up into counts by Cloud Functions; without countsSince the event hasn't been counted yet
+    public static final String FIELD_COUNTS       = "counts";
+    static final String FIELD_COUNTS_SINCE        = "countsSince";
+
+    // When each entrant on the selected list of an array storage event was selected (selectedAt.{deviceId}),
+    // written with the move; subcollection events keep it as the updatedAt of the entrant document.
+    // Invitations not answered within acceptDeadlineMillis are declined by Cloud Functions (expireInvitations)
+    public static final String FIELD_SELECTED_AT     = "selectedAt";
+    public static final String FIELD_ACCEPT_DEADLINE = "acceptDeadlineMillis";
+
+    // Values of Event.entrantStorage
+    public static final String STORAGE_ARRAY         = "array";          // lists inside the event document
+    public static final String STORAGE_SUBCOLLECTION = "subcollection";  // one document per entrant
+
+    // List changes are split so every commit stays under Firestore's 500 writes / 10 MiB request limits
+    static final int MAX_CHANGES_PER_BATCH = 450;  // users per commit, each needs a log entry or entrant document
 
     private static EventDb instance;
     private static final FirebaseFirestore db = FirebaseFirestore.getInstance();
 
+    private static String defaultEntrantStorage = STORAGE_ARRAY;
+    private final EntrantStore arrayStore = new ArrayEntrantStore(db);
+    private final EntrantStore subcollectionStore = new SubcollectionEntrantStore(db);
+    // event ID -> Event.entrantStorage, remembered from every event read or written
+    private final Map<String, String> entrantStorage = new ConcurrentHashMap<>();
+
+    private RetryPolicy retryPolicy = RetryPolicy.DEFAULT;
+    // One daemon thread shared by every retry, only used to wait out the backoff
+    private static final ScheduledExecutorService RETRY_SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "event-db-retry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     // ── Callbacks ──────────────────────────────────────────────────────────
 
     public interface OnSuccessCallback       { void onSuccess(); }
@@ -48,6 +142,85 @@ public class EventDb {
     public interface OnEventCreatedCallback  { void onCreated(String eventId); }
     public interface OnEventFetchedCallback  { void onFetched(Event event); }
     public interface OnEventListFetchedCallback { void onFetched(List<Event> events); }
+    public interface OnBulkFailureCallback   { void onFailure(int committed, Exception e); }
+    public interface OnEntrantPageCallback   { void onFetched(List<String> deviceIds); }
+    public interface OnCountCallback         { void onCounted(long count); }
+    public interface OnReconciledCallback    { void onReconciled(int corrected); }
+    public interface OnSeatCallback          { void onResult(int status); }
+    public interface OnLotteryCallback       { void onDrawn(LotteryResult result); }
+    public interface OnEventSummariesFetchedCallback { void onFetched(List<EventSummary> summaries); }
+    public interface OnEntrantStatusesCallback       { void onFetched(Map<String, EntrantState> statuses); }
+    public interface OnSummaryPageCallback           { void onFetched(SummaryPage page); }
+    public interface OnSummaryChangesCallback        { void onChanges(List<SummaryChange> changes); }
+    public interface OnSummaryPageChangesCallback    { void onChanges(List<SummaryChange> changes,
+                                                                  @Nullable DocumentSnapshot last); }
+
+    /**
+     * One page of event summaries, and where the next one starts.
+     */
+    public static class SummaryPage {
+        private final List<EventSummary> summaries;
+        private final DocumentSnapshot cursor;
+        private final boolean lastPage;
+
+        public SummaryPage(List<EventSummary> summaries, DocumentSnapshot cursor, boolean lastPage) {
+            this.summaries = summaries;
+            this.cursor = cursor;
+            this.lastPage = lastPage;
+        }
+
+        public List<EventSummary> getSummaries() { return summaries; }
+        /** The last summary document of the page, to pass for the next page (null if the page is empty). */
+        public DocumentSnapshot getCursor()      { return cursor; }
+        /** True if there are no summaries after this page. */
+        public boolean isLastPage()              { return lastPage; }
+    }
+
+    /**
+     * One summary added to, changed in or removed from the results of a summary listener,
+     * with its position before and after, as in Firestore's DocumentChange.
+     * Applied in order, each index already accounts for the changes before it.
+     */
+    public static class SummaryChange {
+        private final DocumentChange.Type type;
+        private final EventSummary summary;
+        private final int oldIndex;
+        private final int newIndex;
+
+        public SummaryChange(DocumentChange.Type type, EventSummary summary, int oldIndex, int newIndex) {
+            this.type = type;
+            this.summary = summary;
+            this.oldIndex = oldIndex;
+            this.newIndex = newIndex;
+        }
+
+        public DocumentChange.Type getType() { return type; }
+        public EventSummary getSummary()     { return summary; }
+        /** The position before the change, -1 if it was added. */
+        public int getOldIndex()             { return oldIndex; }
+        /** The position after the change, -1 if it was removed. */
+        public int getNewIndex()             { return newIndex; }
+    }
+
+    /**
+     * One user's move between participant lists, used by the bulk list methods.
+     * Either field name may be null to only add or only remove.
+     */
+    public static class ListChange {
+        private final String deviceId;
+        private final String fromFieldName;
+        private final String toFieldName;
+
+        public ListChange(String deviceId, String fromFieldName, String toFieldName) {
+            this.deviceId      = deviceId;
+            this.fromFieldName = fromFieldName;
+            this.toFieldName   = toFieldName;
+        }
+
+        public String getDeviceId()      { return deviceId; }
+        public String getFromFieldName() { return fromFieldName; }
+        public String getToFieldName()   { return toFieldName; }
+    }
 
     // ── Singleton ──────────────────────────────────────────────────────────
 
@@ -62,6 +235,169 @@ public class EventDb {
         return instance;
     }
 
+    /**
+     * Sets how the entrant lists of events created from now on are stored.
+     * Existing events keep their storage until they are migrated.
+     *
+     * @param storage STORAGE_ARRAY or STORAGE_SUBCOLLECTION.
+     */
+    public static void setDefaultEntrantStorage(String storage) {
+        defaultEntrantStorage = storage;
+    }
+
+    /**
+     * Sets how list changes that fail with a transient error are retried.
+     *
+     * @param retryPolicy The policy to use (RetryPolicy.DEFAULT unless changed).
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * Returns a new ID for a list change.
+     * Pass the same ID when the same change may be requested more than once (e.g. a button tapped twice),
+     * and it is only applied once.
+     *
+     * @return A random operation ID.
+     */
+    public static String newOperationId() {
+        return UUID.randomUUID().toString();
+    }
+
+    static DocumentReference operationRef(DocumentReference eventRef, String operationId) {
+        return eventRef.collection(OPS_COLLECTION).document(operationId);
+    }
+
+    /**
+     * Returns the fields of an operation marker: when it was committed and when it may be deleted.
+     */
+    static Map<String, Object> operationData() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("at", FieldValue.serverTimestamp());
+        data.put("expireAt", new Timestamp(new Date(System.currentTimeMillis() + OPERATION_TTL_MILLIS)));
+        return data;
+    }
+
+    /**
+     * Returns the field path of a list's entrant count, e.g. {@code counts.waiting}.
+     *
+     * @param state The list.
+     * @return The field path of its count on the event document.
+     */
+    public static String countFieldName(EntrantState state) {
+        return FIELD_COUNTS + '.' + state.getCountKey();
+    }
+
+    /**
+     * Counts the entries of every list, as the counts of an array storage event are kept.
+     *
+     * @param lists The lists to count.
+     * @return The counts, keyed by EntrantState.getCountKey.
+     */
+    public static Map<String, Long> countsOf(RegistrationList lists) {
+        Map<String, Long> counts = new HashMap<>();
+        for (EntrantState state : EntrantState.values())
+            counts.put(state.getCountKey(), (long) lists.getList(state).size());
+        return counts;
+    }
+
+    /**
+     * Returns a count of 0 for every list.
+     */
+    static Map<String, Long> zeroCounts() {
+        Map<String, Long> counts = new HashMap<>();
+        for (EntrantState state : EntrantState.values()) counts.put(state.getCountKey(), 0L);
+        return counts;
+    }
+
+    /**
+     * Returns the field updates that change the counts by the given amounts, leaving out the ones unchanged.
+     *
+     * @param changes The change of every list's count, indexed by EntrantState ordinal.
+     * @return Count field path to increment.
+     */
+    static Map<String, Object> countIncrements(long[] changes) {
+        Map<String, Object> increments = new HashMap<>();
+        for (EntrantState state : EntrantState.values()) {
+            long change = changes[state.ordinal()];
+            if (change != 0) increments.put(countFieldName(state), FieldValue.increment(change));
+        }
+        return increments;
+    }
+
+    // ── ENTRANT STORAGE ────────────────────────────────────────────────────
+
+    private static boolean usesSubcollection(String storage) {
+        return STORAGE_SUBCOLLECTION.equals(storage);
+    }
+
+    private EntrantStore storeFor(String storage) {
+        return usesSubcollection(storage) ? subcollectionStore : arrayStore;
+    }
+
+    private interface OnStoreCallback { void onStore(EntrantStore store); }
+
+    /**
+     * Finds the storage of an event, reading the event if it hasn't been seen yet.
+     */
+    private void withStore(String eventId, OnStoreCallback onStore, OnFailureCallback onFailure) {
+        String storage = entrantStorage.get(eventId);
+        if (storage != null) {
+            onStore.onStore(storeFor(storage));
+            return;
+        }
+        db.collection(COLLECTION_NAME)
+                .document(eventId)
+                .get()
+                .addOnSuccessListener(snapshot -> {
+                    String read = snapshot.getString("entrantStorage");
+                    entrantStorage.put(eventId, read == null ? STORAGE_ARRAY : read);
+                    onStore.onStore(storeFor(read));
+                })
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Failed to read entrant storage for event: " + eventId, e);
+                    onFailure.onFailure(e);
+                });
+    }
+
+    /**
+     * Returns the store of an event whose storage has been looked up (see withStore).
+     * Looked up again for every attempt of a write, so a retry after a StorageChangedException
+     * goes to the new storage.
+     */
+    private EntrantStore cachedStore(DocumentReference eventRef) {
+        return storeFor(entrantStorage.get(eventRef.getId()));
+    }
+
+    /**
+     * Remembers an event's storage and fills in its entrant lists if they aren't stored in the document.
+     */
+    private Task<Void> loadEntrants(String eventId, Event event) {
+        String storage = event.getEntrantStorage();
+        entrantStorage.put(eventId, storage == null ? STORAGE_ARRAY : storage);
+        return storeFor(storage).load(db.collection(COLLECTION_NAME).document(eventId), event);
+    }
+
+    /**
+     * Reads the events of a query without their entrant documents, remembering each one's storage.
+     * Events using STORAGE_SUBCOLLECTION come with empty lists (their counts are there, see Event.getCount),
+     * so a list of events costs its own reads rather than one more query per event;
+     * getEvent loads the lists of the event being opened.
+     */
+    private List<Event> eventsOf(Iterable<DocumentSnapshot> snapshots) {
+        List<Event> events = new ArrayList<>();
+        for (DocumentSnapshot snapshot : snapshots) {
+            if (!snapshot.exists()) continue;
+            Event event = snapshot.toObject(Event.class);
+            event.setEventId(snapshot.getId());
+            String storage = event.getEntrantStorage();
+            entrantStorage.put(snapshot.getId(), storage == null ? STORAGE_ARRAY : storage);
+            events.add(event);
+        }
+        return events;
+    }
+
     // ── CREATE ─────────────────────────────────────────────────────────────
 
     /**
@@ -77,8 +413,17 @@ public class EventDb {
 
         // Write back the ID so the caller's object is up-to-date
         event.setEventId(docRef.getId());
+        if (event.getEntrantStorage() == null) event.setEntrantStorage(defaultEntrantStorage);
+        getInstance().entrantStorage.put(docRef.getId(), event.getEntrantStorage());
+
+        event.setCounts(countsOf(event.registrationList));
 
-        docRef.set(event)
+        WriteBatch batch = db.batch();
+        batch.set(docRef, event);
+        // a new event has no entrant documents, so counting them can start straight away
+        if (usesSubcollection(event.getEntrantStorage()))
+            batch.update(docRef, FIELD_COUNTS_SINCE, FieldValue.serverTimestamp());
+        batch.commit()
                 .addOnSuccessListener(unused -> {
                     Log.d(TAG, "Event created: " + docRef.getId());
                     onCreated.onCreated(docRef.getId());
@@ -105,7 +450,12 @@ public class EventDb {
                 .addOnSuccessListener((DocumentSnapshot snapshot) -> {
                     if (snapshot.exists()) {
                         Event event = snapshot.toObject(Event.class);
-                        onFetched.onFetched(event);
+                        loadEntrants(eventId, event)
+                                .addOnSuccessListener(unused -> onFetched.onFetched(event))
+                                .addOnFailureListener(e -> {
+                                    Log.e(TAG, "Failed to load entrants for event: " + eventId, e);
+                                    onFailure.onFailure(e);
+                                });
                     } else {
                         Log.d(TAG, "No event found for id: " + eventId);
                         onFetched.onFetched(null);
@@ -119,25 +469,136 @@ public class EventDb {
 
     /**
      * Fetches all events in the collection.
+     * The entrant lists of events using STORAGE_SUBCOLLECTION aren't loaded; open an event with getEvent for them.
      *
      * @param onFetched Called with the full list of Event objects.
      * @param onFailure Called with the exception if the read fails.
      */
     public void getAllEvents(OnEventListFetchedCallback onFetched, OnFailureCallback onFailure) {
         db.collection(COLLECTION_NAME)
+                .get()
+                .addOnSuccessListener(querySnapshot -> onFetched.onFetched(eventsOf(querySnapshot.getDocuments())))
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Failed to fetch all events", e);
+                    onFailure.onFailure(e);
+                });
+    }
+
+    /**
+     * Fetches the summaries of all events: what a browse screen shows, without any entrant list.
+     * Open an event with getEvent for the rest.
+     *
+     * @param onFetched Called with the summaries.
+     * @param onFailure Called with the exception if the read fails.
+     */
+    public void getEventSummaries(OnEventSummariesFetchedCallback onFetched, OnFailureCallback onFailure) {
+        db.collection(SUMMARIES_COLLECTION)
                 .get()
                 .addOnSuccessListener(querySnapshot -> {
-                    List<Event> events = querySnapshot.toObjects(Event.class);
-                    onFetched.onFetched(events);
+                    List<EventSummary> summaries = new ArrayList<>();
+                    for (DocumentSnapshot snapshot : querySnapshot.getDocuments()) {
+                        EventSummary summary = snapshot.toObject(EventSummary.class);
+                        summary.setEventId(snapshot.getId());
+                        summaries.add(summary);
+                    }
+                    onFetched.onFetched(summaries);
                 })
                 .addOnFailureListener(e -> {
-                    Log.e(TAG, "Failed to fetch all events", e);
+                    Log.e(TAG, "Failed to fetch event summaries", e);
+                    onFailure.onFailure(e);
+                });
+    }
+
+    /**
+     * Fetches one page of event summaries, soonest event first.
+     * Pages are cut with a cursor rather than an offset, so every page costs the same however far in it is.
+     * Summaries of events still holding the old string dates come after the rest, as Firestore orders
+     * Timestamps before strings; events without a date aren't listed.
+     *
+     * @param after     The cursor of the previous page (SummaryPage.getCursor), or null for the first page.
+     * @param pageSize  The maximum number of summaries to return.
+     * @param onFetched Called with the page.
+     * @param onFailure Called with the exception if the read fails.
+     */
+    public void getEventSummaryPage(@Nullable DocumentSnapshot after, int pageSize,
+                                    OnSummaryPageCallback onFetched, OnFailureCallback onFailure) {
+        // the document ID breaks ties, so events at the same time are never skipped or repeated across pages
+        Query query = db.collection(SUMMARIES_COLLECTION)
+                .orderBy(FIELD_DATE_TIME)
+                .orderBy(FieldPath.documentId());
+        fetchSummaryPage(query, after, pageSize, onFetched, onFailure);
+    }
+
+    /**
+     * Fetches one page of the summaries of events that haven't started yet, soonest first.
+     * The range filter and the order are on the same field, so the dateTime single-field index serves it.
+     *
+     * @param now       Events at or after this time are returned, e.g. Timestamp.now().
+     * @param after     The cursor of the previous page (SummaryPage.getCursor), or null for the first page.
+     * @param pageSize  The maximum number of summaries to return.
+     * @param onFetched Called with the page.
+     * @param onFailure Called with the exception if the read fails.
+     */
+    public void getUpcomingEventSummaries(Timestamp now, @Nullable DocumentSnapshot after, int pageSize,
+                                          OnSummaryPageCallback onFetched, OnFailureCallback onFailure) {
+        Query query = db.collection(SUMMARIES_COLLECTION)
+                .whereGreaterThanOrEqualTo(FIELD_DATE_TIME, now)
+                .orderBy(FIELD_DATE_TIME)
+                .orderBy(FieldPath.documentId());
+        fetchSummaryPage(query, after, pageSize, onFetched, onFailure);
+    }
+
+    /**
+     * Fetches one page of the summaries of events whose registration window contains a time
+     * (ends included, as Event.isRegistrationOpen), closing soonest first.
+     * Ranges on both window ends need the (registrationTimeEnd, registrationTimeStart) composite index
+     * in firestore.indexes.json; the end comes first as it rules out the most events, every past one.
+     *
+     * @param now       The time the windows must contain, e.g. Timestamp.now().
+     * @param after     The cursor of the previous page (SummaryPage.getCursor), or null for the first page.
+     * @param pageSize  The maximum number of summaries to return.
+     * @param onFetched Called with the page.
+     * @param onFailure Called with the exception if the read fails.
+     */
+    public void getOpenEventSummaries(Timestamp now, @Nullable DocumentSnapshot after, int pageSize,
+                                      OnSummaryPageCallback onFetched, OnFailureCallback onFailure) {
+        Query query = db.collection(SUMMARIES_COLLECTION)
+                .whereGreaterThanOrEqualTo(FIELD_REGISTRATION_END, now)
+                .whereLessThanOrEqualTo(FIELD_REGISTRATION_START, now)
+                .orderBy(FIELD_REGISTRATION_END)
+                .orderBy(FIELD_REGISTRATION_START)
+                .orderBy(FieldPath.documentId());
+        fetchSummaryPage(query, after, pageSize, onFetched, onFailure);
+    }
+
+    /**
+     * Fetches one page of a summary query ordered down to the document ID, so the cursor is exact.
+     */
+    private void fetchSummaryPage(Query query, @Nullable DocumentSnapshot after, int pageSize,
+                                  OnSummaryPageCallback onFetched, OnFailureCallback onFailure) {
+        if (after != null) query = query.startAfter(after);
+        query.limit(pageSize)
+                .get()
+                .addOnSuccessListener(querySnapshot -> {
+                    List<DocumentSnapshot> documents = querySnapshot.getDocuments();
+                    List<EventSummary> summaries = new ArrayList<>();
+                    for (DocumentSnapshot snapshot : documents) {
+                        EventSummary summary = snapshot.toObject(EventSummary.class);
+                        summary.setEventId(snapshot.getId());
+                        summaries.add(summary);
+                    }
+                    DocumentSnapshot cursor = documents.isEmpty() ? after : documents.get(documents.size() - 1);
+                    onFetched.onFetched(new SummaryPage(summaries, cursor, documents.size() < pageSize));
+                })
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Failed to fetch event summary page", e);
                     onFailure.onFailure(e);
                 });
     }
 
     /**
      * Fetches all events created by a specific organizer.
+     * The entrant lists of events using STORAGE_SUBCOLLECTION aren't loaded; open an event with getEvent for them.
      *
      * @param organizerDeviceId The organizer's device ID to filter by.
      * @param onFetched         Called with the matching Event list.
@@ -147,21 +608,42 @@ public class EventDb {
                                      OnEventListFetchedCallback onFetched,
                                      OnFailureCallback onFailure) {
         db.collection(COLLECTION_NAME)
-                .whereEqualTo("organizerDeviceId", organizerDeviceId)
+                .whereEqualTo(FIELD_ORGANIZER, organizerDeviceId)
                 .get()
-                .addOnSuccessListener(querySnapshot -> {
-                    List<Event> events = querySnapshot.toObjects(Event.class);
-                    onFetched.onFetched(events);
-                })
+                .addOnSuccessListener(querySnapshot -> onFetched.onFetched(eventsOf(querySnapshot.getDocuments())))
                 .addOnFailureListener(e -> {
                     Log.e(TAG, "Failed to fetch events for organizer: " + organizerDeviceId, e);
                     onFailure.onFailure(e);
                 });
     }
 
+    /**
+     * Fetches all events created by a specific organizer, soonest first.
+     * Uses the (organizerDeviceId, dateTime) composite index in firestore.indexes.json;
+     * events without a date aren't listed. Entrant lists are left out as in getEventsByOrganizer.
+     *
+     * @param organizerDeviceId The organizer's device ID to filter by.
+     * @param onFetched         Called with the matching Event list, in date order.
+     * @param onFailure         Called with the exception if the read fails.
+     */
+    public void getEventsByOrganizerByDate(String organizerDeviceId,
+                                           OnEventListFetchedCallback onFetched,
+                                           OnFailureCallback onFailure) {
+        db.collection(COLLECTION_NAME)
+                .whereEqualTo(FIELD_ORGANIZER, organizerDeviceId)
+                .orderBy(FIELD_DATE_TIME)
+                .get()
+                .addOnSuccessListener(querySnapshot -> onFetched.onFetched(eventsOf(querySnapshot.getDocuments())))
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Failed to fetch events by date for organizer: " + organizerDeviceId, e);
+                    onFailure.onFailure(e);
+                });
+    }
+
     /**
      * Fetches all events where the given user appears in a specific participant list.
      * Use the LIST_* constants for the fieldName.
+     * Entrant lists are left out as in getAllEvents.
      *
      * Example — get all events a user is waiting on:
      *   EventDb.getInstance().getEventsForUser(deviceId, EventDb.LIST_WAITING, ...);
@@ -174,12 +656,31 @@ public class EventDb {
     public void getEventsForUser(String deviceId, String fieldName,
                                  OnEventListFetchedCallback onFetched,
                                  OnFailureCallback onFailure) {
-        db.collection(COLLECTION_NAME)
+        EntrantState status = EntrantState.fromFieldName(fieldName);
+
+        // events storing lists as arrays, and events with an entrant document for the user
+        Task<QuerySnapshot> arrayEvents = db.collection(COLLECTION_NAME)
                 .whereArrayContains(fieldName, deviceId)
+                .get();
+        Task<List<DocumentSnapshot>> subcollectionEvents = db.collectionGroup(ENTRANTS_COLLECTION)
+                .whereEqualTo(SubcollectionEntrantStore.FIELD_DEVICE_ID, deviceId)
+                .whereEqualTo(SubcollectionEntrantStore.FIELD_STATUS, status == null ? fieldName : status.name())
                 .get()
-                .addOnSuccessListener(querySnapshot -> {
-                    List<Event> events = querySnapshot.toObjects(Event.class);
-                    onFetched.onFetched(events);
+                .continueWithTask(task -> {
+                    List<Task<DocumentSnapshot>> parents = new ArrayList<>();
+                    for (DocumentSnapshot entrant : task.getResult().getDocuments())
+                        parents.add(entrant.getReference().getParent().getParent().get());
+                    return Tasks.whenAllSuccess(parents);
+                });
+
+        Tasks.whenAllSuccess(arrayEvents, subcollectionEvents)
+                .addOnSuccessListener(unused -> {
+                    Map<String, DocumentSnapshot> events = new LinkedHashMap<>();
+                    for (DocumentSnapshot snapshot : arrayEvents.getResult().getDocuments())
+                        events.put(snapshot.getId(), snapshot);
+                    for (DocumentSnapshot snapshot : subcollectionEvents.getResult())
+                        events.put(snapshot.getId(), snapshot);
+                    onFetched.onFetched(eventsOf(events.values()));
                 })
                 .addOnFailureListener(e -> {
                     Log.e(TAG, "Failed to fetch events for user: " + deviceId, e);
@@ -187,11 +688,103 @@ public class EventDb {
                 });
     }
 
+    /**
+     * Finds the list a user is on in every event they have joined, e.g. for the status tags of a browse screen.
+     * Only the events the user is in are read: their entrant document for events using STORAGE_SUBCOLLECTION,
+     * the event itself otherwise.
+     *
+     * @param deviceId  The user's device ID.
+     * @param onFetched Called with event ID -> the user's list (their highest priority one if on several).
+     * @param onFailure Called with the exception if a read fails.
+     */
+    public void getEntrantStatuses(String deviceId, OnEntrantStatusesCallback onFetched, OnFailureCallback onFailure) {
+        List<Task<QuerySnapshot>> arrayEvents = new ArrayList<>();
+        for (EntrantState state : EntrantState.values())
+            arrayEvents.add(db.collection(COLLECTION_NAME).whereArrayContains(state.getFieldName(), deviceId).get());
+        Task<QuerySnapshot> entrants = db.collectionGroup(ENTRANTS_COLLECTION)
+                .whereEqualTo(SubcollectionEntrantStore.FIELD_DEVICE_ID, deviceId)
+                .get();
+
+        List<Task<QuerySnapshot>> reads = new ArrayList<>(arrayEvents);
+        reads.add(entrants);
+        Tasks.whenAllSuccess(reads)
+                .addOnSuccessListener(unused -> {
+                    Map<String, EntrantState> statuses = new HashMap<>();
+                    EntrantState[] states = EntrantState.values();
+                    for (int i = 0; i < states.length; i++) {
+                        for (DocumentSnapshot snapshot : arrayEvents.get(i).getResult().getDocuments())
+                            statuses.merge(snapshot.getId(), states[i],
+                                    (a, b) -> a.getPriority() >= b.getPriority() ? a : b);
+                    }
+                    for (DocumentSnapshot entrant : entrants.getResult().getDocuments()) {
+                        EntrantState state = SubcollectionEntrantStore.statusOf(entrant);
+                        if (state != null) statuses.put(entrant.getReference().getParent().getParent().getId(), state);
+                    }
+                    onFetched.onFetched(statuses);
+                })
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Failed to fetch entrant statuses for user: " + deviceId, e);
+                    onFailure.onFailure(e);
+                });
+    }
+
+    /**
+     * Fetches one page of the device IDs on one of an event's participant lists.
+     * Pages are ordered by device ID for events using STORAGE_SUBCOLLECTION, and by list order otherwise;
+     * for the latter the page fails with FAILED_PRECONDITION if {@code afterDeviceId} has left the list since,
+     * as its place in the list is lost, so start again from the first page.
+     *
+     * @param eventId       The event document ID.
+     * @param fieldName     One of LIST_ATTENDING, LIST_SELECTED, LIST_WAITING, LIST_CANCELLED, LIST_DECLINED, LIST_REMOVED.
+     * @param afterDeviceId The last device ID of the previous page, or null for the first page.
+     * @param pageSize      The maximum number of device IDs to return.
+     * @param onFetched     Called with the page (shorter than pageSize on the last page).
+     * @param onFailure     Called with the exception if the read fails.
+     */
+    public void getEntrantPage(String eventId, String fieldName, String afterDeviceId, int pageSize,
+                               OnEntrantPageCallback onFetched, OnFailureCallback onFailure) {
+        EntrantState status = EntrantState.fromFieldName(fieldName);
+        if (status == null) {
+            onFailure.onFailure(new IllegalArgumentException("Not a participant list: " + fieldName));
+            return;
+        }
+        withStore(eventId, store -> store.page(db.collection(COLLECTION_NAME).document(eventId), status, afterDeviceId, pageSize)
+                .addOnSuccessListener(onFetched::onFetched)
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Failed to fetch entrants. Event: " + eventId + " Field: " + fieldName, e);
+                    onFailure.onFailure(e);
+                }), onFailure);
+    }
+
+    /**
+     * Counts the users on one of an event's participant lists.
+     * Uses a count() aggregate for events using STORAGE_SUBCOLLECTION, so the entrants aren't downloaded.
+     *
+     * @param eventId   The event document ID.
+     * @param fieldName One of LIST_ATTENDING, LIST_SELECTED, LIST_WAITING, LIST_CANCELLED, LIST_DECLINED, LIST_REMOVED.
+     * @param onCounted Called with the number of users on the list.
+     * @param onFailure Called with the exception if the read fails.
+     */
+    public void countEntrants(String eventId, String fieldName, OnCountCallback onCounted, OnFailureCallback onFailure) {
+        EntrantState status = EntrantState.fromFieldName(fieldName);
+        if (status == null) {
+            onFailure.onFailure(new IllegalArgumentException("Not a participant list: " + fieldName));
+            return;
+        }
+        withStore(eventId, store -> store.count(db.collection(COLLECTION_NAME).document(eventId), status)
+                .addOnSuccessListener(onCounted::onCounted)
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Failed to count entrants. Event: " + eventId + " Field: " + fieldName, e);
+                    onFailure.onFailure(e);
+                }), onFailure);
+    }
+
     // ── UPDATE ─────────────────────────────────────────────────────────────
 
     /**
      * Updates an existing event document.
-     * Uses SetOptions.merge() so only provided fields are overwritten.
+     * Uses SetOptions.mergeFields() so only the event's own fields are overwritten; the counts are
+     * recounted from the lists for array storage events and left to the countEntrants function otherwise.
      *
      * @param event     The Event object with updated values. eventId must be set.
      * @param onSuccess Called when the update succeeds.
@@ -203,9 +796,17 @@ public class EventDb {
             return;
         }
 
-        db.collection(COLLECTION_NAME)
-                .document(event.getEventId())
-                .set(event, SetOptions.merge())
+        DocumentReference eventRef = db.collection(COLLECTION_NAME).document(event.getEventId());
+        WriteBatch batch = db.batch();
+        batch.set(eventRef, event, SetOptions.mergeFields(UPDATED_FIELDS));
+        if (usesSubcollection(event.getEntrantStorage())) {
+            // the entrant documents own the lists, keep them out of the event document
+            batch.update(eventRef, clearedLists());
+        } else {
+            // the arrays were just overwritten, so their counts are too
+            batch.update(eventRef, FIELD_COUNTS, countsOf(event.registrationList));
+        }
+        batch.commit()
                 .addOnSuccessListener(unused -> {
                     Log.d(TAG, "Event updated: " + event.getEventId());
                     onSuccess.onSuccess();
@@ -216,6 +817,12 @@ public class EventDb {
                 });
     }
 
+    private static Map<String, Object> clearedLists() {
+        Map<String, Object> cleared = new HashMap<>();
+        for (EntrantState state : EntrantState.values()) cleared.put(state.getFieldName(), FieldValue.delete());
+        return cleared;
+    }
+
     /**
      * Adds a user (by deviceId) to one of the event's participant lists.
      * Use the LIST_* constants defined in this class for the fieldName.
@@ -231,14 +838,22 @@ public class EventDb {
      */
     public void addUserToList(String eventId, String fieldName, String deviceId,
                               OnSuccessCallback onSuccess, OnFailureCallback onFailure) {
-        db.collection(COLLECTION_NAME)
-                .document(eventId)
-                .update(fieldName, FieldValue.arrayUnion(deviceId))
-                .addOnSuccessListener(unused -> onSuccess.onSuccess())
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Failed to add user to event list. Event: " + eventId + " Field: " + fieldName, e);
-                    onFailure.onFailure(e);
-                });
+        addUserToList(eventId, fieldName, deviceId, newOperationId(), onSuccess, onFailure);
+    }
+
+    /**
+     * Adds a user to one of the event's participant lists, at most once per operation ID.
+     *
+     * @param operationId From {@link #newOperationId()}; repeating a call with the same ID does nothing.
+     * @see #addUserToList(String, String, String, OnSuccessCallback, OnFailureCallback)
+     */
+    public void addUserToList(String eventId, String fieldName, String deviceId, String operationId,
+                              OnSuccessCallback onSuccess, OnFailureCallback onFailure) {
+        applyListChanges(eventId,
+                Collections.singletonList(new ListChange(deviceId, null, fieldName)),
+                operationId,
+                onSuccess,
+                (committed, e) -> onFailure.onFailure(e));
     }
 
     /**
@@ -252,76 +867,750 @@ public class EventDb {
      */
     public void removeUserFromList(String eventId, String fieldName, String deviceId,
                                    OnSuccessCallback onSuccess, OnFailureCallback onFailure) {
-        db.collection(COLLECTION_NAME)
-                .document(eventId)
-                .update(fieldName, FieldValue.arrayRemove(deviceId))
-                .addOnSuccessListener(unused -> onSuccess.onSuccess())
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Failed to remove user from event list. Event: " + eventId + " Field: " + fieldName, e);
-                    onFailure.onFailure(e);
-                });
+        removeUserFromList(eventId, fieldName, deviceId, newOperationId(), onSuccess, onFailure);
+    }
+
+    /**
+     * Removes a user from one of the event's participant lists, at most once per operation ID.
+     *
+     * @param operationId From {@link #newOperationId()}; repeating a call with the same ID does nothing.
+     * @see #removeUserFromList(String, String, String, OnSuccessCallback, OnFailureCallback)
+     */
+    public void removeUserFromList(String eventId, String fieldName, String deviceId, String operationId,
+                                   OnSuccessCallback onSuccess, OnFailureCallback onFailure) {
+        applyListChanges(eventId,
+                Collections.singletonList(new ListChange(deviceId, fieldName, null)),
+                operationId,
+                onSuccess,
+                (committed, e) -> onFailure.onFailure(e));
     }
 
     /**
-     * Moves a user from one participant list to another atomically using a Firestore batch write.
+     * Moves a user from one participant list to another atomically.
      *
      * @param eventId       The event document ID.
      * @param fromFieldName The list to remove the user from.
      * @param toFieldName   The list to add the user to.
      * @param deviceId      The user's device ID to move.
-     * @param onSuccess     Called when the batch succeeds.
-     * @param onFailure     Called with the exception if the batch fails.
+     * @param onSuccess     Called when the move succeeds.
+     * @param onFailure     Called with the exception if the move fails.
      */
     public void moveUserBetweenLists(String eventId, String fromFieldName, String toFieldName,
                                      String deviceId,
                                      OnSuccessCallback onSuccess, OnFailureCallback onFailure) {
-        DocumentReference eventRef = db.collection(COLLECTION_NAME).document(eventId);
-
-        db.runBatch(batch -> {
-                    batch.update(eventRef, fromFieldName, FieldValue.arrayRemove(deviceId));
-                    batch.update(eventRef, toFieldName,   FieldValue.arrayUnion(deviceId));
-                })
-                .addOnSuccessListener(unused -> onSuccess.onSuccess())
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Failed to move user between lists. Event: " + eventId, e);
-                    onFailure.onFailure(e);
-                });
+        moveUserBetweenLists(eventId, fromFieldName, toFieldName, deviceId, newOperationId(), onSuccess, onFailure);
     }
 
     /**
-     * Stores the QR code data string on the event document.
+     * Moves a user from one participant list to another, at most once per operation ID.
      *
-     * @param eventId    The event document ID.
-     * @param qrCodeData The QR code payload string.
-     * @param onSuccess  Called when the update succeeds.
-     * @param onFailure  Called with the exception if the update fails.
+     * @param operationId From {@link #newOperationId()}; repeating a call with the same ID does nothing.
+     * @see #moveUserBetweenLists(String, String, String, String, OnSuccessCallback, OnFailureCallback)
      */
-    public void setQrCode(String eventId, String qrCodeData,
-                          OnSuccessCallback onSuccess, OnFailureCallback onFailure) {
-        db.collection(COLLECTION_NAME)
-                .document(eventId)
-                .update("qrCodeData", qrCodeData)
-                .addOnSuccessListener(unused -> onSuccess.onSuccess())
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Failed to set QR code for event: " + eventId, e);
-                    onFailure.onFailure(e);
-                });
+    public void moveUserBetweenLists(String eventId, String fromFieldName, String toFieldName,
+                                     String deviceId, String operationId,
+                                     OnSuccessCallback onSuccess, OnFailureCallback onFailure) {
+        applyListChanges(eventId,
+                Collections.singletonList(new ListChange(deviceId, fromFieldName, toFieldName)),
+                operationId,
+                onSuccess,
+                (committed, e) -> onFailure.onFailure(e));
     }
 
-    // ── DELETE ─────────────────────────────────────────────────────────────
-
     /**
-     * Deletes an event document from Firestore.
+     * Accepts an invitation: moves a user from the selected list to the attending list,
+     * but only if the event still has a free seat (capacity 0 means unlimited).
+     * The capacity is checked in the same transaction as the move, so entrants accepting at the same time
+     * can never take more seats than the event has. Events using STORAGE_SUBCOLLECTION count seats in
+     * sharded counters so simultaneous acceptances rarely contend; array events serialize on the event document.
+     * Transient failures are retried like list changes.
      *
-     * @param eventId   The document ID of the event to delete.
-     * @param onSuccess Called when the deletion succeeds.
-     * @param onFailure Called with the exception if the deletion fails.
+     * Example:
+     *   EventDb.getInstance().acceptSeat(eventId, deviceId, status -> {
+     *       if (status == TransitionResult.FULL) { ... }
+     *   }, e -> { ... });
+     *
+     * @param eventId   The event document ID.
+     * @param deviceId  The user's device ID.
+     * @param onResult  Called with a TransitionResult status: SUCCESS, ALREADY_ON_LIST (already attending),
+     *                  BLOCKED (not on the selected list) or FULL (no seat left).
+     * @param onFailure Called with the exception if the transaction fails.
      */
-    public void deleteEvent(String eventId, OnSuccessCallback onSuccess, OnFailureCallback onFailure) {
+    public void acceptSeat(String eventId, String deviceId, OnSeatCallback onResult, OnFailureCallback onFailure) {
+        acceptSeat(eventId, deviceId, newOperationId(), onResult, onFailure);
+    }
+
+    /**
+     * Accepts an invitation if the event still has a free seat, at most once per operation ID.
+     *
+     * @param operationId From {@link #newOperationId()}; repeating a call with the same ID reports SUCCESS
+     *                    without taking another seat.
+     * @see #acceptSeat(String, String, OnSeatCallback, OnFailureCallback)
+     */
+    public void acceptSeat(String eventId, String deviceId, String operationId,
+                           OnSeatCallback onResult, OnFailureCallback onFailure) {
+        DocumentReference eventRef = db.collection(COLLECTION_NAME).document(eventId);
+        withStore(eventId,
+                unused -> withRetry("seat acceptance", eventRef,
+                        () -> cachedStore(eventRef).acceptSeat(eventRef, deviceId, operationId), 1,
+                        onResult::onResult,
+                        e -> {
+                            Log.e(TAG, "Failed to accept seat. Event: " + eventId + " user: " + deviceId, e);
+                            onFailure.onFailure(e);
+                        }),
+                onFailure);
+    }
+
+    /**
+     * Runs an event's lottery on the server (the runLottery Cloud Function): the winners are drawn
+     * from the waiting list and moved to the selected list in one transaction next to the data,
+     * so the draw is never left half done and the lists aren't downloaded to the phone.
+     *
+     * Usage:
+     *   EventDb.getInstance().runLottery(eventId, null, result -> { ... }, e -> { ... });
+     *
+     * @param eventId   The event document ID.
+     * @param seats     How many to draw, or null for every free seat; never more than the free seats.
+     * @param onDrawn   Called with who was and wasn't selected.
+     * @param onFailure Called with the exception (a FirebaseFunctionsException) if the call fails.
+     */
+    public void runLottery(String eventId, Integer seats, OnLotteryCallback onDrawn, OnFailureCallback onFailure) {
+        runLottery(eventId, seats, newOperationId(), onDrawn, onFailure);
+    }
+
+    /**
+     * Runs an event's lottery on the server, at most once per operation ID.
+     *
+     * @param operationId From {@link #newOperationId()}; repeating a call with the same ID draws nothing
+     *                    and reports an empty selection.
+     * @see #runLottery(String, Integer, OnLotteryCallback, OnFailureCallback)
+     */
+    @SuppressWarnings("unchecked")
+    public void runLottery(String eventId, Integer seats, String operationId,
+                           OnLotteryCallback onDrawn, OnFailureCallback onFailure) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("eventId", eventId);
+        if (seats != null) data.put("seats", seats);
+        data.put("operationId", operationId);
+        FirebaseFunctions.getInstance()
+                .getHttpsCallable(LOTTERY_FUNCTION)
+                .call(data)
+                .addOnSuccessListener(result -> {
+                    Map<String, Object> summary = (Map<String, Object>) result.getData();
+                    List<String> selected = new ArrayList<>((List<String>) summary.get("selected"));
+                    List<String> pool = new ArrayList<>(selected);
+                    pool.addAll((List<String>) summary.get("notSelected"));
+                    onDrawn.onDrawn(new LotteryResult(pool, selected));
+                })
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Lottery failed for event: " + eventId, e);
+                    onFailure.onFailure(e);
+                });
+    }
+
+    /**
+     * Adds many users to one of the event's participant lists using chunked batch writes.
+     *
+     * @param eventId   The event document ID.
+     * @param fieldName One of LIST_ATTENDING, LIST_SELECTED, LIST_WAITING, LIST_CANCELLED, LIST_DECLINED, LIST_REMOVED.
+     * @param deviceIds The users' device IDs to add.
+     * @param onSuccess Called when every batch succeeds.
+     * @param onFailure Called with the number of users committed before the failing batch, and the exception.
+     */
+    public void addUsersToList(String eventId, String fieldName, List<String> deviceIds,
+                               OnSuccessCallback onSuccess, OnBulkFailureCallback onFailure) {
+        moveUsersBetweenLists(eventId, null, fieldName, deviceIds, onSuccess, onFailure);
+    }
+
+    /**
+     * Removes many users from one of the event's participant lists using chunked batch writes.
+     *
+     * @param eventId   The event document ID.
+     * @param fieldName One of LIST_ATTENDING, LIST_SELECTED, LIST_WAITING, LIST_CANCELLED, LIST_DECLINED, LIST_REMOVED.
+     * @param deviceIds The users' device IDs to remove.
+     * @param onSuccess Called when every batch succeeds.
+     * @param onFailure Called with the number of users committed before the failing batch, and the exception.
+     */
+    public void removeUsersFromList(String eventId, String fieldName, List<String> deviceIds,
+                                    OnSuccessCallback onSuccess, OnBulkFailureCallback onFailure) {
+        moveUsersBetweenLists(eventId, fieldName, null, deviceIds, onSuccess, onFailure);
+    }
+
+    /**
+     * Moves many users from one participant list to another using chunked batch writes.
+     * Each user's removal and addition always land in the same batch.
+     *
+     * @param eventId       The event document ID.
+     * @param fromFieldName The list to remove the users from (null to only add).
+     * @param toFieldName   The list to add the users to (null to only remove).
+     * @param deviceIds     The users' device IDs to move.
+     * @param onSuccess     Called when every batch succeeds.
+     * @param onFailure     Called with the number of users committed before the failing batch, and the exception.
+     */
+    public void moveUsersBetweenLists(String eventId, String fromFieldName, String toFieldName,
+                                      List<String> deviceIds,
+                                      OnSuccessCallback onSuccess, OnBulkFailureCallback onFailure) {
+        List<ListChange> changes = new ArrayList<>(deviceIds.size());
+        for (String deviceId : deviceIds) {
+            changes.add(new ListChange(deviceId, fromFieldName, toFieldName));
+        }
+        applyListChanges(eventId, changes, onSuccess, onFailure);
+    }
+
+    /**
+     * Applies many list moves to one event, possibly between different lists.
+     * Changes are committed in order, at most MAX_CHANGES_PER_BATCH users at a time.
+     * For events storing their lists as arrays, each commit is a transaction using arrayRemove / arrayUnion
+     * that also appends every move to the event's transition log and sets {@code registrationList.lastSeq}.
+     * For events using STORAGE_SUBCOLLECTION, each commit is a batch setting the entrants' status documents.
+     * Each commit is atomic; if one fails, the ones before it stay committed and no later one is sent.
+     * A commit failing with a transient error (offline, timed out, contention) is retried with jittered
+     * exponential backoff as set by {@link #setRetryPolicy(RetryPolicy)}. Every commit writes an operation marker
+     * in the same transaction, so a retry of a commit that did go through (but whose reply was lost) does nothing.
+     *
+     * @param eventId   The event document ID.
+     * @param changes   The moves to apply, in order.
+     * @param onSuccess Called when every commit succeeds.
+     * @param onFailure Called with the number of changes committed before the failing commit, and the exception.
+     */
+    public void applyListChanges(String eventId, List<ListChange> changes,
+                                 OnSuccessCallback onSuccess, OnBulkFailureCallback onFailure) {
+        applyListChanges(eventId, changes, newOperationId(), onSuccess, onFailure);
+    }
+
+    /**
+     * Applies many list moves to one event, at most once per operation ID.
+     * Calling this again with the same ID and the same changes (e.g. after the app lost the reply)
+     * only writes the commits that didn't go through the first time.
+     *
+     * @param operationId From {@link #newOperationId()}.
+     * @see #applyListChanges(String, List, OnSuccessCallback, OnBulkFailureCallback)
+     */
+    public void applyListChanges(String eventId, List<ListChange> changes, String operationId,
+                                 OnSuccessCallback onSuccess, OnBulkFailureCallback onFailure) {
+        withStore(eventId,
+                unused -> commitListChanges(db.collection(COLLECTION_NAME).document(eventId), changes,
+                        operationId, 0, onSuccess, onFailure),
+                e -> onFailure.onFailure(0, e));
+    }
+
+    private void commitListChanges(DocumentReference eventRef, List<ListChange> changes,
+                                   String operationId, int start,
+                                   OnSuccessCallback onSuccess, OnBulkFailureCallback onFailure) {
+        if (start >= changes.size()) {
+            onSuccess.onSuccess();
+            return;
+        }
+        int end = Math.min(start + MAX_CHANGES_PER_BATCH, changes.size());
+        List<ListChange> chunk = new ArrayList<>();
+        for (ListChange change : changes.subList(start, end)) {
+            if (change.getFromFieldName() != null || change.getToFieldName() != null) chunk.add(change);
+        }
+        if (chunk.isEmpty()) {
+            commitListChanges(eventRef, changes, operationId, end, onSuccess, onFailure);
+            return;
+        }
+
+        // one marker per chunk, the same on every attempt
+        String chunkId = operationId + "-" + (start / MAX_CHANGES_PER_BATCH);
+        withRetry("list changes", eventRef, () -> cachedStore(eventRef).commit(eventRef, chunk, chunkId), 1,
+                unused -> commitListChanges(eventRef, changes, operationId, end, onSuccess, onFailure),
+                e -> {
+                    Log.e(TAG, "Failed to apply list changes. Event: " + eventRef.getId() + " committed: " + start, e);
+                    onFailure.onFailure(start, e);
+                });
+    }
+
+    /**
+     * Runs an idempotent write, retrying it with backoff while it fails with a transient error.
+     *
+     * @param what     What is written, for the log.
+     * @param eventRef The event written to, for the log.
+     * @param write    Starts one attempt of the write.
+     * @param attempt  The number of this attempt, starting at 1.
+     */
+    private <T> void withRetry(String what, DocumentReference eventRef, Supplier<Task<T>> write, int attempt,
+                               OnSuccessListener<T> onSuccess, OnFailureCallback onFailure) {
+        RetryPolicy policy = retryPolicy;
+        write.get()
+                .addOnSuccessListener(onSuccess)
+                .addOnFailureListener(e -> {
+                    // the event was migrated since its storage was looked up; the retry writes the entrant documents
+                    if (ArrayEntrantStore.isStorageChanged(e)) entrantStorage.put(eventRef.getId(), STORAGE_SUBCOLLECTION);
+                    if (!policy.shouldRetry(attempt, e)) {
+                        onFailure.onFailure(e);
+                        return;
+                    }
+                    long delay = policy.delayMillis(attempt);
+                    Log.w(TAG, "Retrying " + what + " in " + delay + " ms. Event: " + eventRef.getId()
+                            + " attempt: " + attempt, e);
+                    RETRY_SCHEDULER.schedule(
+                            () -> withRetry(what, eventRef, write, attempt + 1, onSuccess, onFailure),
+                            delay, TimeUnit.MILLISECONDS);
+                });
+    }
+
+    /**
+     * Stores the QR code data string on the event document.
+     *
+     * @param eventId    The event document ID.
+     * @param qrCodeData The QR code payload string.
+     * @param onSuccess  Called when the update succeeds.
+     * @param onFailure  Called with the exception if the update fails.
+     */
+    public void setQrCode(String eventId, String qrCodeData,
+                          OnSuccessCallback onSuccess, OnFailureCallback onFailure) {
         db.collection(COLLECTION_NAME)
                 .document(eventId)
-                .delete()
+                .update("qrCodeData", qrCodeData)
+                .addOnSuccessListener(unused -> onSuccess.onSuccess())
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Failed to set QR code for event: " + eventId, e);
+                    onFailure.onFailure(e);
+                });
+    }
+
+    /**
+     * Stores how long selected entrants have to accept, so Cloud Functions (expireInvitations) decline
+     * the invitations left unanswered that long even while no organizer has the event open.
+     *
+     * @param eventId        The event document ID.
+     * @param deadlineMillis The time allowed in milliseconds, or 0 for no deadline.
+     * @param onSuccess      Called when the update succeeds.
+     * @param onFailure      Called with the exception if the update fails.
+     */
+    public void setAcceptDeadline(String eventId, long deadlineMillis,
+                                  OnSuccessCallback onSuccess, OnFailureCallback onFailure) {
+        db.collection(COLLECTION_NAME)
+                .document(eventId)
+                .update(FIELD_ACCEPT_DEADLINE, deadlineMillis > 0 ? deadlineMillis : FieldValue.delete())
+                .addOnSuccessListener(unused -> onSuccess.onSuccess())
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Failed to set accept deadline for event: " + eventId, e);
+                    onFailure.onFailure(e);
+                });
+    }
+
+    /**
+     * Moves an event's entrant lists from arrays in the event document to one document per entrant,
+     * and switches the event to STORAGE_SUBCOLLECTION.
+     * The entrant documents are written first; the final transaction only switches the event over
+     * (and clears the arrays) if the lists haven't changed since they were copied, otherwise the copy is redone.
+     * Does nothing for events already using STORAGE_SUBCOLLECTION.
+     *
+     * @param eventId   The event document ID.
+     * @param onSuccess Called when the event has been migrated.
+     * @param onFailure Called with the exception if a read or write fails.
+     */
+    public void migrateEntrantsToSubcollection(String eventId, OnSuccessCallback onSuccess, OnFailureCallback onFailure) {
+        DocumentReference eventRef = db.collection(COLLECTION_NAME).document(eventId);
+        eventRef.get()
+                .addOnSuccessListener(snapshot -> {
+                    Event event = snapshot.toObject(Event.class);
+                    if (event == null) {
+                        onFailure.onFailure(new IllegalArgumentException("No event found for id: " + eventId));
+                        return;
+                    }
+                    if (usesSubcollection(event.getEntrantStorage())) {
+                        onSuccess.onSuccess();
+                        return;
+                    }
+                    // each entrant once, on their highest priority list
+                    List<String> deviceIds = event.registrationList.getAllEntrantsList();
+                    copyEntrants(eventRef, event, deviceIds, 0, onSuccess, onFailure);
+                })
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Failed to read event for migration: " + eventId, e);
+                    onFailure.onFailure(e);
+                });
+    }
+
+    private void copyEntrants(DocumentReference eventRef, Event event, List<String> deviceIds, int start,
+                              OnSuccessCallback onSuccess, OnFailureCallback onFailure) {
+        if (start >= deviceIds.size()) {
+            // counted as copied, each entrant once on their highest priority list
+            Map<String, Long> counts = zeroCounts();
+            for (String deviceId : deviceIds)
+                counts.merge(event.registrationList.getEntrantState(deviceId).getCountKey(), 1L, Long::sum);
+            switchToSubcollection(eventRef, event.registrationList.getLastSeq(),
+                    event.registrationList.getAttendingList().size(), counts, onSuccess, onFailure);
+            return;
+        }
+        int end = Math.min(start + MAX_CHANGES_PER_BATCH, deviceIds.size());
+        WriteBatch batch = db.batch();
+        for (int i = start; i < end; i++) {
+            String deviceId = deviceIds.get(i);
+            EntrantState state = event.registrationList.getEntrantState(deviceId);
+            // attending entrants come first, so dealing their seats out in turn matches seatsInShard
+            Integer seat = state == EntrantState.ATTENDING ? i % SubcollectionEntrantStore.SEAT_SHARDS : null;
+            batch.set(eventRef.collection(ENTRANTS_COLLECTION).document(deviceId),
+                    SubcollectionEntrantStore.entrantData(deviceId, state, seat));
+        }
+        batch.commit()
+                .addOnSuccessListener(unused -> copyEntrants(eventRef, event, deviceIds, end, onSuccess, onFailure))
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Failed to copy entrants for event: " + eventRef.getId(), e);
+                    onFailure.onFailure(e);
+                });
+    }
+
+    private void switchToSubcollection(DocumentReference eventRef, long copiedSeq, int attending, Map<String, Long> counts,
+                                       OnSuccessCallback onSuccess, OnFailureCallback onFailure) {
+        db.runTransaction(transaction -> {
+                    Long seq = transaction.get(eventRef).getLong(LIST_SEQ);
+                    if ((seq == null ? 0 : seq) != copiedSeq) return false;   // lists changed while copying
+                    Map<String, Object> update = clearedLists();
+                    update.put("entrantStorage", STORAGE_SUBCOLLECTION);
+                    // from here on the countEntrants function counts entrant writes, but not the copies made above
+                    update.put(FIELD_COUNTS, counts);
+                    update.put(FIELD_COUNTS_SINCE, FieldValue.serverTimestamp());
+                    transaction.update(eventRef, update);
+                    for (int shard = 0; shard < SubcollectionEntrantStore.COUNT_SHARDS; shard++) {
+                        transaction.set(SubcollectionEntrantStore.countShardRef(eventRef, shard),
+                                SubcollectionEntrantStore.countShardData(shard == 0 ? counts : zeroCounts()));
+                    }
+                    for (int shard = 0; shard < SubcollectionEntrantStore.SEAT_SHARDS; shard++) {
+                        transaction.set(SubcollectionEntrantStore.seatRef(eventRef, shard),
+                                SubcollectionEntrantStore.seatData(SubcollectionEntrantStore.seatsInShard(attending, shard)));
+                    }
+                    return true;
+                })
+                .addOnSuccessListener(switched -> {
+                    if (!switched) {
+                        Log.d(TAG, "Lists changed during migration, copying again: " + eventRef.getId());
+                        migrateEntrantsToSubcollection(eventRef.getId(), onSuccess, onFailure);
+                        return;
+                    }
+                    entrantStorage.put(eventRef.getId(), STORAGE_SUBCOLLECTION);
+                    Log.d(TAG, "Migrated entrants to subcollection for event: " + eventRef.getId());
+                    onSuccess.onSuccess();
+                })
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Failed to switch entrant storage for event: " + eventRef.getId(), e);
+                    onFailure.onFailure(e);
+                });
+    }
+
+    /**
+     * One-shot migration of the event times stored by older versions of the app as
+     * "yyyy-MM-dd HH:mm:ss" strings to Timestamps, so queries can filter and sort by them.
+     * The strings are read in this device's time zone, as they were written.
+     * Events already holding Timestamps are skipped, so running it again is harmless.
+     *
+     * @param onMigrated Called with the number of events changed.
+     * @param onFailure  Called with the exception if the read or a batch fails.
+     */
+    public void migrateEventTimes(OnCountCallback onMigrated, OnFailureCallback onFailure) {
+        db.collection(COLLECTION_NAME)
+                .get()
+                .addOnSuccessListener(querySnapshot -> {
+                    List<Task<Void>> batches = new ArrayList<>();
+                    WriteBatch batch = db.batch();
+                    int inBatch = 0;
+                    long migrated = 0;
+                    for (DocumentSnapshot snapshot : querySnapshot.getDocuments()) {
+                        Map<String, Object> update = new HashMap<>();
+                        for (String field : TIME_FIELDS) {
+                            Object value = snapshot.get(field);
+                            if (!(value instanceof String)) continue;
+                            try {
+                                update.put(field, Event.toTimestamp(value));
+                            } catch (IllegalArgumentException e) {
+                                Log.w(TAG, "Unreadable " + field + " in event: " + snapshot.getId(), e);
+                            }
+                        }
+                        if (update.isEmpty()) continue;
+                        batch.update(snapshot.getReference(), update);
+                        migrated++;
+                        if (++inBatch == MAX_CHANGES_PER_BATCH) {
+                            batches.add(batch.commit());
+                            batch = db.batch();
+                            inBatch = 0;
+                        }
+                    }
+                    if (inBatch > 0) batches.add(batch.commit());
+
+                    long count = migrated;
+                    Tasks.whenAll(batches)
+                            .addOnSuccessListener(unused -> {
+                                Log.d(TAG, "Migrated the times of " + count + " events");
+                                onMigrated.onCounted(count);
+                            })
+                            .addOnFailureListener(e -> {
+                                Log.e(TAG, "Failed to migrate event times", e);
+                                onFailure.onFailure(e);
+                            });
+                })
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Failed to read events for time migration", e);
+                    onFailure.onFailure(e);
+                });
+    }
+
+    // ── RECONCILIATION ─────────────────────────────────────────────────────
+
+    /**
+     * Takes any entrant that is on more than one list of an event off all but their highest priority list
+     * (removed > declined > attending > selected > waiting > cancelled), in one transaction.
+     * Only the lists that need fixing are written, along with any counts that don't match the fixed lists.
+     * Each entry taken off is logged as a move to the list the entrant stays on, with the sequence number
+     * moved on, so registration listeners replay the repair like any other change.
+     * Events using STORAGE_SUBCOLLECTION can't hold duplicates and are left alone (see rebuildCounts).
+     * The scheduled reconcileEntrantLists Cloud Function does the same for every event once a day.
+     *
+     * @param eventId      The event document ID.
+     * @param onReconciled Called with the number of list entries taken off (0 if the lists were consistent).
+     * @param onFailure    Called with the exception if the transaction fails.
+     */
+    public void reconcileLists(String eventId, OnReconciledCallback onReconciled, OnFailureCallback onFailure) {
+        reconcile(db.collection(COLLECTION_NAME).document(eventId))
+                .addOnSuccessListener(corrected -> {
+                    if (corrected > 0) Log.d(TAG, "Reconciled " + corrected + " list entries for event: " + eventId);
+                    onReconciled.onReconciled(corrected);
+                })
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Failed to reconcile lists for event: " + eventId, e);
+                    onFailure.onFailure(e);
+                });
+    }
+
+    /**
+     * Runs {@link #reconcileLists} over every event, one transaction per event.
+     *
+     * @param onReconciled Called with the total number of list entries taken off.
+     * @param onFailure    Called with the exception if the read or any transaction fails.
+     */
+    public void reconcileAllEvents(OnReconciledCallback onReconciled, OnFailureCallback onFailure) {
+        db.collection(COLLECTION_NAME)
+                .get()
+                .continueWithTask(task -> {
+                    List<Task<Integer>> reconciled = new ArrayList<>();
+                    for (DocumentSnapshot snapshot : task.getResult().getDocuments())
+                        reconciled.add(reconcile(snapshot.getReference()));
+                    return Tasks.<Integer>whenAllSuccess(reconciled);
+                })
+                .addOnSuccessListener(counts -> {
+                    int total = 0;
+                    for (Integer count : counts) total += count;
+                    Log.d(TAG, "Reconciled " + total + " list entries across " + counts.size() + " events");
+                    onReconciled.onReconciled(total);
+                })
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Failed to reconcile events", e);
+                    onFailure.onFailure(e);
+                });
+    }
+
+    private Task<Integer> reconcile(DocumentReference eventRef) {
+        return db.runTransaction(transaction -> {
+            DocumentSnapshot snapshot = transaction.get(eventRef);
+            if (!snapshot.exists() || usesSubcollection(snapshot.getString("entrantStorage"))) return 0;
+
+            Map<EntrantState, List<String>> lists = ArrayEntrantStore.storedLists(snapshot);
+
+            List<ListReconciler.Correction> corrections = ListReconciler.reconcile(lists);
+            // still reading: the log's counter, only when there's something to log
+            Long last = corrections.isEmpty() ? null
+                    : transaction.get(ArrayEntrantStore.counterRef(eventRef)).getLong("seq");
+            Map<String, EntrantState> staysOn = ListReconciler.highestPriorityLists(lists);
+            List<ListChange> repairs = new ArrayList<>();
+            List<String> unselected = new ArrayList<>();
+            Map<EntrantState, Integer> sizes = new EnumMap<>(EntrantState.class);
+            for (Map.Entry<EntrantState, List<String>> entry : lists.entrySet())
+                sizes.put(entry.getKey(), entry.getValue().size());
+
+            int corrected = 0;
+            Map<String, Object> update = new HashMap<>();
+            for (ListReconciler.Correction correction : corrections) {
+                int size = lists.get(correction.getState()).size();
+                for (String deviceId : correction.getRemovals()) {
+                    repairs.add(new ListChange(deviceId, correction.getFieldName(), staysOn.get(deviceId).getFieldName()));
+                    if (correction.getState() == EntrantState.SELECTED) unselected.add(deviceId);
+                }
+                if (correction.getReplacement() != null) {
+                    update.put(correction.getFieldName(), correction.getReplacement());
+                    sizes.put(correction.getState(), correction.getReplacement().size());
+                } else {
+                    update.put(correction.getFieldName(), FieldValue.arrayRemove(correction.getRemovals().toArray()));
+                    // arrayRemove takes every copy of a device ID off
+                    List<String> kept = new ArrayList<>(lists.get(correction.getState()));
+                    kept.removeAll(correction.getRemovals());
+                    sizes.put(correction.getState(), kept.size());
+                }
+                corrected += size - sizes.get(correction.getState());
+            }
+
+            // counts that drifted from the lists are repaired at the same time
+            for (EntrantState state : EntrantState.values()) {
+                Long stored = snapshot.getLong(countFieldName(state));
+                long size = sizes.containsKey(state) ? sizes.get(state) : 0;
+                if (stored == null || stored != size) update.put(countFieldName(state), size);
+            }
+            if (!repairs.isEmpty()) {
+                long seq = ArrayEntrantStore.logTransitions(transaction, eventRef, repairs, last == null ? 0 : last);
+                update.put(LIST_SEQ, seq);
+            }
+            if (!update.isEmpty()) transaction.update(eventRef, update);
+            ArrayEntrantStore.updateSelectionTimes(transaction, eventRef, unselected, FieldValue.delete());
+            return corrected;
+        });
+    }
+
+    /**
+     * Recounts every list of an event and overwrites its stored counts, repairing any drift.
+     * Events using STORAGE_SUBCOLLECTION are counted with count() aggregates, so no entrant is downloaded;
+     * their count shards are reset to the new counts and counting restarts from now (countsSince), which
+     * also starts counting subcollection events that were never counted.
+     * A list change committed while counting can leave a count off by that change, so run it while
+     * the event is quiet (or run it again).
+     *
+     * @param eventId   The event document ID.
+     * @param onSuccess Called when the counts have been written.
+     * @param onFailure Called with the exception if a count or the write fails.
+     */
+    public void rebuildCounts(String eventId, OnSuccessCallback onSuccess, OnFailureCallback onFailure) {
+        DocumentReference eventRef = db.collection(COLLECTION_NAME).document(eventId);
+        withStore(eventId, store -> {
+            EntrantState[] states = EntrantState.values();
+            List<Task<Long>> counted = new ArrayList<>();
+            for (EntrantState state : states) counted.add(store.count(eventRef, state));
+            Tasks.<Long>whenAllSuccess(counted)
+                    .continueWithTask(task -> {
+                        Map<String, Long> counts = new HashMap<>();
+                        for (int i = 0; i < states.length; i++)
+                            counts.put(states[i].getCountKey(), task.getResult().get(i));
+                        WriteBatch batch = db.batch();
+                        if (store == subcollectionStore) {
+                            batch.update(eventRef, FIELD_COUNTS, counts, FIELD_COUNTS_SINCE, FieldValue.serverTimestamp());
+                            for (int shard = 0; shard < SubcollectionEntrantStore.COUNT_SHARDS; shard++) {
+                                batch.set(SubcollectionEntrantStore.countShardRef(eventRef, shard),
+                                        SubcollectionEntrantStore.countShardData(shard == 0 ? counts : zeroCounts()));
+                            }
+                        } else {
+                            batch.update(eventRef, FIELD_COUNTS, counts);
+                        }
+                        return batch.commit();
+                    })
+                    .addOnSuccessListener(unused -> {
+                        Log.d(TAG, "Rebuilt counts for event: " + eventId);
+                        onSuccess.onSuccess();
+                    })
+                    .addOnFailureListener(e -> {
+                        Log.e(TAG, "Failed to rebuild counts for event: " + eventId, e);
+                        onFailure.onFailure(e);
+                    });
+        }, onFailure);
+    }
+
+    /**
+     * Asks the rebuildEventSummaries Cloud Function to write the summary of every event again,
+     * e.g. for events written before summaries were kept. Summaries of deleted events are deleted.
+     *
+     * @param onRebuilt Called with the number of summaries written.
+     * @param onFailure Called with the exception if the call fails.
+     */
+    public void rebuildEventSummaries(OnCountCallback onRebuilt, OnFailureCallback onFailure) {
+        FirebaseFunctions.getInstance()
+                .getHttpsCallable(REBUILD_SUMMARIES_FUNCTION)
+                .call()
+                .addOnSuccessListener(result -> {
+                    Map<?, ?> summary = (Map<?, ?>) result.getData();
+                    long written = ((Number) summary.get("written")).longValue();
+                    Log.d(TAG, "Rebuilt " + written + " event summaries");
+                    onRebuilt.onCounted(written);
+                })
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Failed to rebuild event summaries", e);
+                    onFailure.onFailure(e);
+                });
+    }
+
+    // ── DELETE ─────────────────────────────────────────────────────────────
+
+    /**
+     * Compacts an event's transition log by deleting all but the newest {@code keep} entries.
+     * The entrant lists on the event document are always current, so this only affects clients that
+     * have fallen further behind than the kept entries; they read the whole event again instead.
+     * The newest entry is always kept so a stale client can tell that it missed entries.
+     *
+     * @param eventId   The event document ID.
+     * @param keep      The number of newest entries to keep (at least 1).
+     * @param onSuccess Called when the old entries are deleted.
+     * @param onFailure Called with the exception if a read or delete fails.
+     */
+    public void compactTransitions(String eventId, int keep, OnSuccessCallback onSuccess, OnFailureCallback onFailure) {
+        DocumentReference eventRef = db.collection(COLLECTION_NAME).document(eventId);
+        eventRef.collection(COUNTERS_COLLECTION)
+                .document(TRANSITIONS_COLLECTION)
+                .get()
+                .addOnSuccessListener(counter -> {
+                    Long head = counter.getLong("seq");
+                    long cutoff = (head == null ? 0 : head) - Math.max(keep, 1);
+                    if (cutoff <= 0) {
+                        onSuccess.onSuccess();
+                        return;
+                    }
+                    deleteTransitionsUpTo(eventRef, cutoff, onSuccess, onFailure);
+                })
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Failed to read transition counter for event: " + eventId, e);
+                    onFailure.onFailure(e);
+                });
+    }
+
+    private void deleteTransitionsUpTo(DocumentReference eventRef, long cutoff,
+                                       OnSuccessCallback onSuccess, OnFailureCallback onFailure) {
+        eventRef.collection(TRANSITIONS_COLLECTION)
+                .whereLessThanOrEqualTo("seq", cutoff)
+                .limit(MAX_CHANGES_PER_BATCH)
+                .get()
+                .addOnSuccessListener(page -> {
+                    if (page.isEmpty()) {
+                        Log.d(TAG, "Compacted transitions up to " + cutoff + " for event: " + eventRef.getId());
+                        onSuccess.onSuccess();
+                        return;
+                    }
+                    WriteBatch batch = db.batch();
+                    for (DocumentSnapshot doc : page.getDocuments()) batch.delete(doc.getReference());
+                    batch.commit()
+                            .addOnSuccessListener(unused -> deleteTransitionsUpTo(eventRef, cutoff, onSuccess, onFailure))
+                            .addOnFailureListener(e -> {
+                                Log.e(TAG, "Failed to compact transitions for event: " + eventRef.getId(), e);
+                                onFailure.onFailure(e);
+                            });
+                })
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Failed to read transitions for event: " + eventRef.getId(), e);
+                    onFailure.onFailure(e);
+                });
+    }
+
+    /**
+     * Deletes an event document from Firestore.
+     *
+     * @param eventId   The document ID of the event to delete.
+     * @param onSuccess Called when the deletion succeeds.
+     * @param onFailure Called with the exception if the deletion fails.
+     */
+    public void deleteEvent(String eventId, OnSuccessCallback onSuccess, OnFailureCallback onFailure) {
+        // entrant, seat and count documents aren't deleted with the event, so remove them first
+        DocumentReference eventRef = db.collection(COLLECTION_NAME).document(eventId);
+        deleteEntrants(eventRef)
+                .continueWithTask(task -> {
+                    if (!task.isSuccessful()) throw task.getException();
+                    WriteBatch batch = db.batch();
+                    for (int shard = 0; shard < SubcollectionEntrantStore.SEAT_SHARDS; shard++)
+                        batch.delete(SubcollectionEntrantStore.seatRef(eventRef, shard));
+                    for (int shard = 0; shard < SubcollectionEntrantStore.COUNT_SHARDS; shard++)
+                        batch.delete(SubcollectionEntrantStore.countShardRef(eventRef, shard));
+                    return batch.commit();
+                })
+                .continueWithTask(task -> {
+                    if (!task.isSuccessful()) throw task.getException();
+                    return eventRef.delete();
+                })
                 .addOnSuccessListener(unused -> {
+                    entrantStorage.remove(eventId);
                     Log.d(TAG, "Event deleted: " + eventId);
                     onSuccess.onSuccess();
                 })
@@ -330,6 +1619,26 @@ public class EventDb {
                     onFailure.onFailure(e);
                 });
     }
+
+    /**
+     * Deletes an event's entrant documents, MAX_CHANGES_PER_BATCH at a time.
+     */
+    private Task<Void> deleteEntrants(DocumentReference eventRef) {
+        return eventRef.collection(ENTRANTS_COLLECTION)
+                .limit(MAX_CHANGES_PER_BATCH)
+                .get()
+                .continueWithTask(task -> {
+                    List<DocumentSnapshot> entrants = task.getResult().getDocuments();
+                    if (entrants.isEmpty()) return Tasks.forResult(null);
+                    WriteBatch batch = db.batch();
+                    for (DocumentSnapshot entrant : entrants) batch.delete(entrant.getReference());
+                    return batch.commit().continueWithTask(commit -> {
+                        if (!commit.isSuccessful()) throw commit.getException();
+                        return deleteEntrants(eventRef);
+                    });
+                });
+    }
+
     // ── SNAPSHOT LISTENER ─────────────────────────────────────────────────────────────
 
 
@@ -349,6 +1658,7 @@ public class EventDb {
      */
 
     public interface OnEventSnapshotCallback       { void onEventSnapshot(Event event); }
+    public interface OnTransitionsCallback         { void onTransitions(List<TransitionEntry> entries); }
     public ListenerRegistration addSnapshotListenerForEvent(String eventId, OnEventSnapshotCallback onEventSnapshot, OnFailureCallback onFailure) {
         DocumentReference docRef = db.collection(COLLECTION_NAME).document(eventId);
         return docRef.addSnapshotListener(new EventListener<DocumentSnapshot>() {
@@ -363,7 +1673,9 @@ public class EventDb {
                 if (snapshot != null && snapshot.exists()) {
                     Event event = snapshot.toObject(Event.class);
                     event.setEventId(snapshot.getId());
-                    onEventSnapshot.onEventSnapshot(event);
+                    loadEntrants(snapshot.getId(), event)
+                            .addOnSuccessListener(unused -> onEventSnapshot.onEventSnapshot(event))
+                            .addOnFailureListener(onFailure::onFailure);
                 } else {
                     Log.d(TAG, "Current data: null");
                     onEventSnapshot.onEventSnapshot(null);
@@ -372,4 +1684,319 @@ public class EventDb {
         });
 
     }
+
+    /**
+     * Listens for an event's transition log entries with a sequence number after {@code afterSeq}.
+     * Each callback gets the newly added entries in sequence order.
+     *
+     * @param eventId       The event document ID.
+     * @param afterSeq      Only entries after this sequence number are delivered.
+     * @param onTransitions Called with each set of new entries.
+     * @param onFailure     Called with the exception if the listener fails.
+     * @return The registration, to remove the listener.
+     */
+    public ListenerRegistration addTransitionListener(String eventId, long afterSeq,
+                                                      OnTransitionsCallback onTransitions, OnFailureCallback onFailure) {
+        return db.collection(COLLECTION_NAME)
+                .document(eventId)
+                .collection(TRANSITIONS_COLLECTION)
+                .whereGreaterThan("seq", afterSeq)
+                .orderBy("seq")
+                .addSnapshotListener((snapshot, e) -> {
+                    if (e != null) {
+                        Log.w(TAG, "Transition listen failed.", e);
+                        onFailure.onFailure(e);
+                        return;
+                    }
+                    if (snapshot == null) return;
+                    List<TransitionEntry> entries = new ArrayList<>();
+                    for (DocumentChange change : snapshot.getDocumentChanges()) {
+                        if (change.getType() == DocumentChange.Type.ADDED)
+                            entries.add(change.getDocument().toObject(TransitionEntry.class));
+                    }
+                    if (entries.isEmpty()) return;
+                    entries.sort((a, b) -> Long.compare(a.getSeq(), b.getSeq()));
+                    onTransitions.onTransitions(entries);
+                });
+    }
+
+    /**
+     * Listens to the event summaries in a range of the getEventSummaryPage order, e.g. one page of a browse list.
+     * The first callback has every summary in the range as added; after that each callback only has
+     * the summaries added, changed or removed since, so following the range costs what changed, not the range.
+     * Summaries that move in or out of the range (e.g. their event's date changed) arrive as added or removed.
+     *
+     * @param after     Only summaries after this one (a page cursor), or null from the start.
+     * @param endAt     Only summaries up to and including this one, or null to the end of the collection.
+     * @param onChanges Called with the changes of each snapshot, in order.
+     * @param onFailure Called with the exception if the listener fails.
+     * @return The registration, to remove the listener.
+     */
+    public ListenerRegistration addSummaryRangeListener(@Nullable DocumentSnapshot after, @Nullable DocumentSnapshot endAt,
+                                                        OnSummaryChangesCallback onChanges, OnFailureCallback onFailure) {
+        Query query = db.collection(SUMMARIES_COLLECTION)
+                .orderBy(FIELD_DATE_TIME)
+                .orderBy(FieldPath.documentId());
+        if (after != null) query = query.startAfter(after);
+        if (endAt != null) query = query.endAt(endAt);
+        return listenToSummaries(query, false, (changes, last) -> onChanges.onChanges(changes), onFailure);
+    }
+
+    /**
+     * Listens to one page of event summaries in the getEventSummaryPage order: the first {@code pageSize}
+     * summaries after a cursor. The first callback is the page itself, every summary as added, so the page
+     * is read once rather than fetched and then listened to; later ones only have what changed.
+     * As with any limit, the page keeps its size: a summary added inside it pushes the last one out,
+     * a summary removed from it pulls the next one in.
+     *
+     * @param after     The cursor of the previous page, or null for the first page.
+     * @param pageSize  The maximum number of summaries in the page.
+     * @param onChanges Called with the changes of each snapshot, and the page's last summary document then
+     *                  (null if the page is empty).
+     * @param onFailure Called with the exception if the listener fails.
+     * @return The registration, to remove the listener.
+     */
+    public ListenerRegistration addSummaryPageListener(@Nullable DocumentSnapshot after, int pageSize,
+                                                       OnSummaryPageChangesCallback onChanges,
+                                                       OnFailureCallback onFailure) {
+        Query query = db.collection(SUMMARIES_COLLECTION)
+                .orderBy(FIELD_DATE_TIME)
+                .orderBy(FieldPath.documentId());
+        if (after != null) query = query.startAfter(after);
+        return listenToSummaries(query.limit(pageSize), true, onChanges, onFailure);
+    }
+
+    /**
+     * @param page Whether the query is a page: its first callback waits for the server, as a page cut from
+     *             the local cache could be missing summaries, and is made even if the page is empty.
+     */
+    private ListenerRegistration listenToSummaries(Query query, boolean page, OnSummaryPageChangesCallback onChanges,
+                                                   OnFailureCallback onFailure) {
+        boolean[] first = { true };
+        return query.addSnapshotListener((snapshot, e) -> {
+            if (e != null) {
+                Log.w(TAG, "Summary listen failed.", e);
+                onFailure.onFailure(e);
+                return;
+            }
+            if (snapshot == null) return;
+            if (page && first[0] && snapshot.getMetadata().isFromCache()) return;
+            List<DocumentSnapshot> documents = snapshot.getDocuments();
+            List<SummaryChange> changes = new ArrayList<>();
+            if (page && first[0]) {
+                // the whole page, whatever cached snapshots came before
+                for (int i = 0; i < documents.size(); i++)
+                    changes.add(new SummaryChange(DocumentChange.Type.ADDED, summaryOf(documents.get(i)), -1, i));
+            } else {
+                for (DocumentChange change : snapshot.getDocumentChanges()) {
+                    changes.add(new SummaryChange(change.getType(), summaryOf(change.getDocument()),
+                            change.getOldIndex(), change.getNewIndex()));
+                }
+            }
+            DocumentSnapshot last = documents.isEmpty() ? null : documents.get(documents.size() - 1);
+            if (!changes.isEmpty() || page && first[0]) onChanges.onChanges(changes, last);
+            first[0] = false;
+        });
+    }
+
+    private static EventSummary summaryOf(DocumentSnapshot document) {
+        EventSummary summary = document.toObject(EventSummary.class);
+        summary.setEventId(document.getId());
+        return summary;
+    }
+
+    /**
+     * Keeps the lists a user is on across every event they have joined (see getEntrantStatuses) up to date.
+     * Each callback has the full map, rebuilt from the changed events only.
+     * Changes to array storage events the user is in send those events again, so this is meant for
+     * a user's own handful of events.
+     *
+     * @param deviceId  The user's device ID.
+     * @param onFetched Called with event ID -> the user's list, first when every query has answered, then on every change.
+     * @param onFailure Called with the exception if a listener fails.
+     * @return The registration, to remove every listener.
+     */
+    public ListenerRegistration addEntrantStatusListener(String deviceId, OnEntrantStatusesCallback onFetched,
+                                                         OnFailureCallback onFailure) {
+        EntrantState[] states = EntrantState.values();
+        // event IDs per list for array storage events, and the status of each subcollection event
+        List<Set<String>> arrayEvents = new ArrayList<>();
+        Map<String, EntrantState> entrantEvents = new HashMap<>();
+        Set<Object> answered = new HashSet<>();
+        List<ListenerRegistration> registrations = new ArrayList<>();
+
+        Runnable deliver = () -> {
+            if (answered.size() < states.length + 1) return;
+            Map<String, EntrantState> statuses = new HashMap<>(entrantEvents);
+            for (int i = 0; i < states.length; i++) {
+                for (String eventId : arrayEvents.get(i))
+                    statuses.merge(eventId, states[i], (a, b) -> a.getPriority() >= b.getPriority() ? a : b);
+            }
+            onFetched.onFetched(statuses);
+        };
+
+        for (int i = 0; i < states.length; i++) {
+            Set<String> eventIds = new HashSet<>();
+            arrayEvents.add(eventIds);
+            EntrantState state = states[i];
+            registrations.add(db.collection(COLLECTION_NAME)
+                    .whereArrayContains(state.getFieldName(), deviceId)
+                    .addSnapshotListener((snapshot, e) -> {
+                        if (e != null) {
+                            Log.w(TAG, "Status listen failed.", e);
+                            onFailure.onFailure(e);
+                            return;
+                        }
+                        if (snapshot == null) return;
+                        for (DocumentChange change : snapshot.getDocumentChanges()) {
+                            if (change.getType() == DocumentChange.Type.REMOVED) eventIds.remove(change.getDocument().getId());
+                            else eventIds.add(change.getDocument().getId());
+                        }
+                        answered.add(state);
+                        deliver.run();
+                    }));
+        }
+        registrations.add(db.collectionGroup(ENTRANTS_COLLECTION)
+                .whereEqualTo(SubcollectionEntrantStore.FIELD_DEVICE_ID, deviceId)
+                .addSnapshotListener((snapshot, e) -> {
+                    if (e != null) {
+                        Log.w(TAG, "Status listen failed.", e);
+                        onFailure.onFailure(e);
+                        return;
+                    }
+                    if (snapshot == null) return;
+                    for (DocumentChange change : snapshot.getDocumentChanges()) {
+                        String eventId = change.getDocument().getReference().getParent().getParent().getId();
+                        EntrantState state = SubcollectionEntrantStore.statusOf(change.getDocument());
+                        if (change.getType() == DocumentChange.Type.REMOVED || state == null) entrantEvents.remove(eventId);
+                        else entrantEvents.put(eventId, state);
+                    }
+                    answered.add(ENTRANTS_COLLECTION);
+                    deliver.run();
+                }));
+
+        return () -> {
+            for (ListenerRegistration registration : registrations) registration.remove();
+        };
+    }
+
+    /**
+     * Keeps an event up to date without downloading every entrant list again on each change.
+     * The event is read once; after that only the transition log entries newer than its
+     * {@code registrationList.lastSeq} are fetched, and replayed onto the same Event object
+     * before it is passed to {@code onEventSnapshot} again.
+     * If entries are missing (e.g. they were compacted away) the event is read again.
+     * Changes to the other event fields are picked up on the next reload only; the counts
+     * ({@link Event#getCount}) are recounted from the followed lists with every change.
+     *
+     * @param eventId         The event document ID.
+     * @param onEventSnapshot Called with the event after the first read and after every change (null if not found).
+     * @param onFailure       Called with the exception if a read or the listener fails.
+     * @return The registration, to stop listening.
+     */
+    public ListenerRegistration addRegistrationListenerForEvent(String eventId, OnEventSnapshotCallback onEventSnapshot,
+                                                                OnFailureCallback onFailure) {
+        RegistrationSync sync = new RegistrationSync(eventId, onEventSnapshot, onFailure);
+        sync.load();
+        return sync;
+    }
+
+    /**
+     * One event snapshot plus a listener on the transition log after it.
+     */
+    private class RegistrationSync implements ListenerRegistration {
+        private final String eventId;
+        private final OnEventSnapshotCallback onEventSnapshot;
+        private final OnFailureCallback onFailure;
+        private ListenerRegistration transitions;
+        private boolean removed;
+
+        RegistrationSync(String eventId, OnEventSnapshotCallback onEventSnapshot, OnFailureCallback onFailure) {
+            this.eventId = eventId;
+            this.onEventSnapshot = onEventSnapshot;
+            this.onFailure = onFailure;
+        }
+
+        void load() {
+            db.collection(COLLECTION_NAME)
+                    .document(eventId)
+                    .get()
+                    .addOnSuccessListener(snapshot -> {
+                        if (removed) return;
+                        if (!snapshot.exists()) {
+                            onEventSnapshot.onEventSnapshot(null);
+                            return;
+                        }
+                        Event event = snapshot.toObject(Event.class);
+                        event.setEventId(eventId);
+                        entrantStorage.put(eventId, usesSubcollection(event.getEntrantStorage())
+                                ? STORAGE_SUBCOLLECTION : STORAGE_ARRAY);
+                        if (usesSubcollection(event.getEntrantStorage())) followEntrants(event);
+                        else followTransitions(event);
+                    })
+                    .addOnFailureListener(onFailure::onFailure);
+        }
+
+        /**
+         * Array storage: the lists came with the document, then replay the transition log after them.
+         */
+        private void followTransitions(Event event) {
+            onEventSnapshot.onEventSnapshot(event);
+            transitions = addTransitionListener(eventId, event.registrationList.getLastSeq(), entries -> {
+                if (removed) return;
+                if (event.registrationList.replay(entries)) {
+                    for (TransitionEntry entry : entries) {
+                        event.setSelectionTime(entry.getUserID(),
+                                entry.getTo() == EntrantState.SELECTED ? entry.getAt() : null);
+                    }
+                    event.setCounts(countsOf(event.registrationList));
+                    onEventSnapshot.onEventSnapshot(event);
+                } else {
+                    Log.d(TAG, "Missing transitions, reloading event: " + eventId);
+                    transitions.remove();
+                    load();
+                }
+            }, onFailure);
+        }
+
+        /**
+         * Subcollection storage: the first snapshot of the entrant documents fills the lists,
+         * later ones only carry the entrants that changed.
+         */
+        private void followEntrants(Event event) {
+            transitions = db.collection(COLLECTION_NAME)
+                    .document(eventId)
+                    .collection(ENTRANTS_COLLECTION)
+                    .addSnapshotListener((snapshot, e) -> {
+                        if (removed) return;
+                        if (e != null) {
+                            Log.w(TAG, "Entrant listen failed.", e);
+                            onFailure.onFailure(e);
+                            return;
+                        }
+                        if (snapshot == null) return;
+                        for (DocumentChange change : snapshot.getDocumentChanges()) {
+                            String deviceId = change.getDocument().getId();
+                            EntrantState state = SubcollectionEntrantStore.statusOf(change.getDocument());
+                            if (change.getType() == DocumentChange.Type.REMOVED || state == null) {
+                                EntrantState current = event.registrationList.getEntrantState(deviceId);
+                                if (current != null) event.registrationList.getList(current).remove(deviceId);
+                            } else {
+                                event.registrationList.getList(state).add(deviceId);
+                            }
+                            event.setSelectionTime(deviceId, change.getType() == DocumentChange.Type.REMOVED
+                                    ? null : SubcollectionEntrantStore.selectionTimeOf(change.getDocument()));
+                        }
+                        // every entrant is followed here, so the lists count them best
+                        event.setCounts(countsOf(event.registrationList));
+                        onEventSnapshot.onEventSnapshot(event);
+                    });
+        }
+
+        @Override
+        public void remove() {
+            removed = true;
+            if (transitions != null) transitions.remove();
+        }
+    }
 }
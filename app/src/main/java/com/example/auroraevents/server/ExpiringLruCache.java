@@ -0,0 +1,111 @@
+package com.example.auroraevents.server;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded in-memory cache: once it holds {@code maxEntries} entries, adding one drops the least recently used.
+ * Every entry expires {@code ttlMillis} after it was put. Expired entries are still returned,
+ * so callers can serve them while they fetch a fresh value ({@link #isExpired(Entry)} tells them apart).
+ *
+ * @param <K> The key type
+ * @param <V> The value type
+ */
+public class ExpiringLruCache<K, V> {
+
+    /**
+     * A cached value and when it expires.
+     */
+    public static final class Entry<V> {
+        private final V value;
+        private final long expiresAt;
+
+        Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        public V getValue() {
+            return value;
+        }
+    }
+
+    private final long ttlMillis;
+    private final LongSupplier clock;
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    /**
+     * @param maxEntries The most entries kept
+     * @param ttlMillis  How long an entry stays fresh
+     * @param clock      The current time in milliseconds (e.g. {@code System::currentTimeMillis})
+     */
+    public ExpiringLruCache(int maxEntries, long ttlMillis, LongSupplier clock) {
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+        // access order, so iteration starts at the least recently used entry
+        this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the entry for a key, fresh or expired, and marks it as recently used.
+     *
+     * @param key The key
+     * @return The entry, or {@code null} if the key isn't cached
+     */
+    public synchronized Entry<V> get(K key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Returns whether an entry is past its time to live.
+     *
+     * @param entry An entry returned by {@link #get(Object)}
+     * @return {@code true} if the entry should be fetched again
+     */
+    public boolean isExpired(Entry<V> entry) {
+        return clock.getAsLong() >= entry.expiresAt;
+    }
+
+    /**
+     * Caches a value, fresh for the time to live.
+     *
+     * @param key   The key
+     * @param value The value
+     */
+    public synchronized void put(K key, V value) {
+        entries.put(key, new Entry<>(value, clock.getAsLong() + ttlMillis));
+    }
+
+    /**
+     * Caches a value that is already expired, e.g. one read from a slower tier that may be out of date.
+     *
+     * @param key   The key
+     * @param value The value
+     */
+    public synchronized void putExpired(K key, V value) {
+        entries.put(key, new Entry<>(value, clock.getAsLong()));
+    }
+
+    /**
+     * Drops the entry for a key.
+     *
+     * @param key The key
+     */
+    public synchronized void remove(K key) {
+        entries.remove(key);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+}
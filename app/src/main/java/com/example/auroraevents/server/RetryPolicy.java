@@ -0,0 +1,94 @@
+package com.example.auroraevents.server;
+
+import com.google.firebase.firestore.FirebaseFirestoreException;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * How many times, and how long apart, a failed write is retried.
+ * Delays grow exponentially from {@code baseDelayMillis} up to {@code maxDelayMillis}, with full jitter
+ * (a random delay between 0 and the exponential bound) so clients that failed together don't retry together.
+ * Only errors that may go away on their own are retried; anything else fails straight away.
+ */
+public final class RetryPolicy {
+
+    /** Used for every list change: 5 attempts, at most about 4 s of waiting in total. */
+    public static final RetryPolicy DEFAULT = new RetryPolicy(5, 250, 2_000);
+
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+
+    /**
+     * @param maxAttempts     Attempts in total, including the first
+     * @param baseDelayMillis Upper bound of the delay before the first retry
+     * @param maxDelayMillis  Upper bound of any one delay
+     */
+    public RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis) {
+        if (maxAttempts < 1) throw new IllegalArgumentException("maxAttempts must be at least 1");
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Returns whether a failed attempt should be tried again.
+     *
+     * @param attempt The attempt that failed, starting at 1
+     * @param e       The reason it failed
+     * @return {@code true} if attempts remain and the error is transient
+     */
+    public boolean shouldRetry(int attempt, Exception e) {
+        return attempt < maxAttempts && isTransient(e);
+    }
+
+    /**
+     * Returns how long to wait before the next attempt.
+     *
+     * @param attempt The attempt that failed, starting at 1
+     * @return A random delay between 0 and {@code min(maxDelayMillis, baseDelayMillis * 2^(attempt - 1))}
+     */
+    public long delayMillis(int attempt) {
+        return ThreadLocalRandom.current().nextLong(maxDelayMillis(attempt) + 1);
+    }
+
+    /**
+     * Returns the upper bound of the delay after the given attempt.
+     *
+     * @param attempt The attempt that failed, starting at 1
+     * @return The bound in milliseconds
+     */
+    public long maxDelayMillis(int attempt) {
+        int shift = Math.min(Math.max(attempt - 1, 0), 30);
+        return Math.min(maxDelayMillis, baseDelayMillis << shift);
+    }
+
+    /**
+     * Returns whether an error may go away on its own: the client was offline, the backend was busy,
+     * or a transaction lost a race. Errors anywhere in the cause chain count.
+     *
+     * @param e The error
+     * @return {@code true} if retrying the same request may succeed
+     */
+    public static boolean isTransient(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof FirebaseFirestoreException) {
+                switch (((FirebaseFirestoreException) t).getCode()) {
+                    case UNAVAILABLE:
+                    case DEADLINE_EXCEEDED:
+                    case ABORTED:
+                    case RESOURCE_EXHAUSTED:
+                        return true;
+                    default:
+                        return false;
+                }
+            }
+            if (t.getCause() == t) break;
+        }
+        return false;
+    }
+}
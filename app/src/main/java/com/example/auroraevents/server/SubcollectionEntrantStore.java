@@ -0,0 +1,356 @@
+package com.example.auroraevents.server;
+
+import com.example.auroraevents.model.EntrantState;
+import com.example.auroraevents.model.Event;
+import com.example.auroraevents.model.TransitionResult;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.AggregateSource;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.Transaction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Opt-in storage where every entrant is its own document, {@code Events/{eventId}/entrants/{deviceId}},
+ * holding a {@code status} field (the {@link EntrantState} name).
+ * Events aren't limited to what fits in one document, lists can be read a page at a time,
+ * and joins from different entrants don't all write to the event document.
+ * The subcollection itself is the change feed, so no transition log is kept for these events.
+ *
+ * Seats on the attending list are counted in {@code SEAT_SHARDS} shard documents,
+ * {@code Events/{eventId}/seats/{shard}}, each allowed an equal share of the event's capacity.
+ * Accepting a seat only reads and writes one shard, so entrants accepting at the same time rarely
+ * touch the same document, and a shard never goes over its share, so the event never goes over capacity.
+ * An attending entrant's document records the shard holding their seat, which is freed when they leave the list.
+ * Entrants the organizer moves to the attending list aren't capacity checked, but take a seat in the shard
+ * with the most left, so accepting counts them like the event document's list does.
+ *
+ * The entrants per list are counted the same way, in {@code COUNT_SHARDS} documents
+ * {@code Events/{eventId}/counters/counts-{shard}} that the countEntrants Cloud Function increments,
+ * and which the rollUpEntrantCounts function sums into the event's counts about once a minute.
+ */
+class SubcollectionEntrantStore implements EntrantStore {
+    static final String FIELD_STATUS    = "status";
+    static final String FIELD_DEVICE_ID = "deviceId";    // lets collection group queries find a user's entrant docs
+    static final String FIELD_SEAT      = "seat";        // the seat shard of an attending entrant
+    static final String FIELD_UPDATED_AT = "updatedAt";  // when the document was last written, i.e. the last move
+
+    static final String SEATS_COLLECTION = "seats";
+    static final int SEAT_SHARDS = 10;
+    private static final String FIELD_TAKEN = "taken";
+    static final int COUNT_SHARDS = 10;
+    private static final int SHARD_FULL = Integer.MIN_VALUE;   // internal result, try the next shard
+
+    private final FirebaseFirestore db;
+
+    SubcollectionEntrantStore(FirebaseFirestore db) {
+        this.db = db;
+    }
+
+    /**
+     * Returns the data stored for an entrant on a list.
+     *
+     * @param deviceId The entrant's device ID
+     * @param status   The list the entrant is on
+     * @return The entrant document's fields
+     */
+    static Map<String, Object> entrantData(String deviceId, EntrantState status) {
+        return entrantData(deviceId, status, null);
+    }
+
+    /**
+     * Returns the data stored for an entrant on a list.
+     *
+     * @param deviceId The entrant's device ID
+     * @param status   The list the entrant is on
+     * @param seat     The seat shard of an attending entrant (null if none)
+     * @return The entrant document's fields
+     */
+    static Map<String, Object> entrantData(String deviceId, EntrantState status, Integer seat) {
+        Map<String, Object> data = new HashMap<>();
+        data.put(FIELD_DEVICE_ID, deviceId);
+        data.put(FIELD_STATUS, status.name());
+        if (seat != null) data.put(FIELD_SEAT, seat);
+        data.put(FIELD_UPDATED_AT, FieldValue.serverTimestamp());
+        return data;
+    }
+
+    static DocumentReference seatRef(DocumentReference eventRef, int shard) {
+        return eventRef.collection(SEATS_COLLECTION).document(String.valueOf(shard));
+    }
+
+    /**
+     * Returns how many of {@code seats} seats fall to a shard when they are dealt out in turn,
+     * i.e. the shard's share of the capacity, or how many of that many attending entrants it holds.
+     *
+     * @param seats The number of seats
+     * @param shard The shard
+     * @return The shard's share
+     */
+    static long seatsInShard(long seats, int shard) {
+        return seats / SEAT_SHARDS + (shard < seats % SEAT_SHARDS ? 1 : 0);
+    }
+
+    /**
+     * Returns the data of a shard document holding {@code taken} seats.
+     */
+    static Map<String, Object> seatData(long taken) {
+        return Collections.singletonMap(FIELD_TAKEN, taken);
+    }
+
+    static DocumentReference countShardRef(DocumentReference eventRef, int shard) {
+        return eventRef.collection(EventDb.COUNTERS_COLLECTION).document("counts-" + shard);
+    }
+
+    /**
+     * Returns the data of a count shard document holding the given counts.
+     *
+     * @param counts The entrants per list, keyed by EntrantState.getCountKey
+     * @return The shard document's fields
+     */
+    static Map<String, Object> countShardData(Map<String, Long> counts) {
+        Map<String, Object> data = new HashMap<>();
+        data.put(EventDb.FIELD_COUNTS, counts);
+        data.put(FIELD_UPDATED_AT, FieldValue.serverTimestamp());
+        return data;
+    }
+
+    @Override
+    public Task<Void> commit(DocumentReference eventRef, List<EventDb.ListChange> changes, String operationId) {
+        // a transaction rather than a batch, so the operation marker can be checked before writing
+        DocumentReference opRef = EventDb.operationRef(eventRef, operationId);
+        return db.runTransaction(transaction -> {
+            if (transaction.get(opRef).exists()) return null;
+            // entrants moving on or off the attending list are read first, to find the seat they hold
+            Map<String, DocumentSnapshot> before = new HashMap<>();
+            boolean seating = false;
+            for (EventDb.ListChange change : changes) {
+                if (EventDb.LIST_ATTENDING.equals(change.getFromFieldName())
+                        || EventDb.LIST_ATTENDING.equals(change.getToFieldName()))
+                    before.put(change.getDeviceId(), transaction.get(entrantRef(eventRef, change.getDeviceId())));
+                if (EventDb.LIST_ATTENDING.equals(change.getToFieldName())) seating = true;
+            }
+            // and so are the shards acceptSeat reads, to seat them in the one with the most seats left
+            long[] free = seating ? freeSeats(transaction, eventRef) : null;
+
+            long[] seatChanges = new long[SEAT_SHARDS];
+            // the list an entrant ends up on replaces their status, whichever list they were on
+            for (EventDb.ListChange change : changes) {
+                DocumentReference entrantRef = entrantRef(eventRef, change.getDeviceId());
+                EntrantState to = EntrantState.fromFieldName(change.getToFieldName());
+                Integer held = heldSeat(before.get(change.getDeviceId()));
+                Integer seat = null;
+                if (to == EntrantState.ATTENDING) {
+                    // the organizer's own moves aren't capacity checked, but still take a seat
+                    seat = held != null ? held : mostFree(free);
+                    if (held == null) {
+                        seatChanges[seat]++;
+                        free[seat]--;
+                    }
+                } else if (held != null) {
+                    seatChanges[held]--;
+                    if (free != null && held < free.length) free[held]++;
+                }
+                if (to == null) transaction.delete(entrantRef);
+                else transaction.set(entrantRef, entrantData(change.getDeviceId(), to, seat));
+            }
+            for (int shard = 0; shard < SEAT_SHARDS; shard++) {
+                if (seatChanges[shard] != 0)
+                    transaction.set(seatRef(eventRef, shard),
+                            Collections.singletonMap(FIELD_TAKEN, FieldValue.increment(seatChanges[shard])),
+                            SetOptions.merge());
+            }
+            transaction.set(opRef, EventDb.operationData());
+            return null;
+        });
+    }
+
+    private static DocumentReference entrantRef(DocumentReference eventRef, String deviceId) {
+        return eventRef.collection(EventDb.ENTRANTS_COLLECTION).document(deviceId);
+    }
+
+    /**
+     * Returns the seat shard held by an entrant, read from their document.
+     *
+     * @param entrant The entrant document (may be null or missing)
+     * @return The shard, or {@code null} if the entrant isn't attending or holds no seat
+     */
+    private static Integer heldSeat(DocumentSnapshot entrant) {
+        if (entrant == null || !entrant.exists() || statusOf(entrant) != EntrantState.ATTENDING) return null;
+        Long seat = entrant.getLong(FIELD_SEAT);
+        return seat == null || seat < 0 || seat >= SEAT_SHARDS ? null : seat.intValue();
+    }
+
+    /**
+     * Returns the number of shards holding seats: every shard gets a share of the capacity,
+     * unless it's below SEAT_SHARDS, and then only the first {@code capacity} shards get one.
+     *
+     * @param capacity The event's capacity (null or 0 if unlimited)
+     * @return The number of shards acceptSeat reads
+     */
+    static int seatShards(Long capacity) {
+        return capacity == null || capacity <= 0 ? SEAT_SHARDS : (int) Math.min(capacity, SEAT_SHARDS);
+    }
+
+    /**
+     * Reads how many seats are left in each shard holding seats, in a transaction.
+     * Shards of an event without a capacity have none to leave, so the fewest taken is the most left.
+     *
+     * @return The seats left per shard, as many as seatShards gives
+     */
+    private static long[] freeSeats(Transaction transaction, DocumentReference eventRef)
+            throws FirebaseFirestoreException {
+        Long capacity = transaction.get(eventRef).getLong("capacity");
+        long[] free = new long[seatShards(capacity)];
+        for (int shard = 0; shard < free.length; shard++) {
+            Long taken = transaction.get(seatRef(eventRef, shard)).getLong(FIELD_TAKEN);
+            long share = capacity == null || capacity <= 0 ? 0 : seatsInShard(capacity, shard);
+            free[shard] = share - (taken == null ? 0 : taken);
+        }
+        return free;
+    }
+
+    /**
+     * Returns the shard with the most seats left, the first of them on a tie.
+     */
+    private static int mostFree(long[] free) {
+        int most = 0;
+        for (int shard = 1; shard < free.length; shard++) {
+            if (free[shard] > free[most]) most = shard;
+        }
+        return most;
+    }
+
+    @Override
+    public Task<Integer> acceptSeat(DocumentReference eventRef, String deviceId, String operationId) {
+        // the capacity is only used to skip shards without seats; it is checked again in the transaction
+        return eventRef.get().continueWithTask(task -> {
+            int shards = seatShards(task.getResult().getLong("capacity"));
+            int first = ThreadLocalRandom.current().nextInt(shards);
+            return acceptSeat(eventRef, deviceId, operationId, first, 0, shards);
+        });
+    }
+
+    /**
+     * Tries to take a seat from one shard, moving on to the next shard while the ones tried are full.
+     */
+    private Task<Integer> acceptSeat(DocumentReference eventRef, String deviceId, String operationId,
+                                     int first, int tried, int shards) {
+        int shard = (first + tried) % shards;
+        DocumentReference entrantRef = entrantRef(eventRef, deviceId);
+        DocumentReference seatRef = seatRef(eventRef, shard);
+        DocumentReference opRef = EventDb.operationRef(eventRef, operationId);
+        return db.runTransaction(transaction -> {
+                    if (transaction.get(opRef).exists()) return TransitionResult.SUCCESS;
+                    DocumentSnapshot entrant = transaction.get(entrantRef);
+                    Long capacity = transaction.get(eventRef).getLong("capacity");
+                    Long taken = transaction.get(seatRef).getLong(FIELD_TAKEN);
+
+                    EntrantState current = entrant.exists() ? statusOf(entrant) : null;
+                    if (current == EntrantState.ATTENDING) return TransitionResult.ALREADY_ON_LIST;
+                    if (current != EntrantState.SELECTED) return TransitionResult.BLOCKED;
+                    long count = taken == null ? 0 : taken;
+                    if (capacity != null && capacity > 0 && count >= seatsInShard(capacity, shard)) return SHARD_FULL;
+
+                    transaction.set(seatRef, seatData(count + 1), SetOptions.merge());
+                    transaction.set(entrantRef, entrantData(deviceId, EntrantState.ATTENDING, shard));
+                    transaction.set(opRef, EventDb.operationData());
+                    return TransitionResult.SUCCESS;
+                })
+                .continueWithTask(task -> {
+                    if (!task.isSuccessful() || task.getResult() != SHARD_FULL) return task;
+                    if (tried + 1 >= shards) return Tasks.forResult(TransitionResult.FULL);
+                    return acceptSeat(eventRef, deviceId, operationId, first, tried + 1, shards);
+                });
+    }
+
+    @Override
+    public Task<Void> load(DocumentReference eventRef, Event event) {
+        return eventRef.collection(EventDb.ENTRANTS_COLLECTION)
+                .get()
+                .continueWith(task -> {
+                    Map<EntrantState, List<String>> lists = new EnumMap<>(EntrantState.class);
+                    for (EntrantState state : EntrantState.values()) lists.put(state, new ArrayList<>());
+                    Map<String, Timestamp> selectedAt = new HashMap<>();
+                    for (DocumentSnapshot doc : task.getResult().getDocuments()) {
+                        EntrantState state = statusOf(doc);
+                        if (state != null) lists.get(state).add(doc.getId());
+                        Timestamp at = selectionTimeOf(doc);
+                        if (at != null) selectedAt.put(doc.getId(), at);
+                    }
+                    event.setSelectedAt(selectedAt);
+                    for (Map.Entry<EntrantState, List<String>> entry : lists.entrySet())
+                        event.registrationList.replaceList(entry.getKey(), entry.getValue());
+                    // every entrant was just read, which is more current than the rolled up counts
+                    event.setCounts(EventDb.countsOf(event.registrationList));
+                    return null;
+                });
+    }
+
+    /**
+     * Returns when a selected entrant was selected: their document is written once per move,
+     * so it's last written when they were moved to the selected list.
+     *
+     * @param doc The entrant's document
+     * @return When they were selected, or null if they aren't selected (or the write is still pending)
+     */
+    static Timestamp selectionTimeOf(DocumentSnapshot doc) {
+        return statusOf(doc) == EntrantState.SELECTED ? doc.getTimestamp(FIELD_UPDATED_AT) : null;
+    }
+
+    private Query byStatus(DocumentReference eventRef, EntrantState status) {
+        return eventRef.collection(EventDb.ENTRANTS_COLLECTION).whereEqualTo(FIELD_STATUS, status.name());
+    }
+
+    @Override
+    public Task<List<String>> page(DocumentReference eventRef, EntrantState status, String afterDeviceId, int pageSize) {
+        Query query = byStatus(eventRef, status).orderBy(FieldPath.documentId());
+        if (afterDeviceId != null) query = query.startAfter(afterDeviceId);
+        return query.limit(pageSize)
+                .get()
+                .continueWith(task -> {
+                    List<String> ids = new ArrayList<>();
+                    for (DocumentSnapshot doc : task.getResult().getDocuments()) ids.add(doc.getId());
+                    return ids;
+                });
+    }
+
+    @Override
+    public Task<Long> count(DocumentReference eventRef, EntrantState status) {
+        return byStatus(eventRef, status)
+                .count()
+                .get(AggregateSource.SERVER)
+                .continueWith(task -> task.getResult().getCount());
+    }
+
+    /**
+     * Reads the status of an entrant document.
+     *
+     * @param doc The entrant document
+     * @return The entrant's list, or {@code null} if the status is missing or unknown
+     */
+    static EntrantState statusOf(DocumentSnapshot doc) {
+        String status = doc.getString(FIELD_STATUS);
+        if (status == null) return null;
+        try {
+            return EntrantState.valueOf(status);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
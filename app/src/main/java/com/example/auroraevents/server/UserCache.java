@@ -0,0 +1,301 @@
+package com.example.auroraevents.server;
+
+import android.util.Log;
+
+import com.example.auroraevents.model.User;
+import com.google.firebase.firestore.Source;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-through cache in front of {@link UserDb}, shared by every screen.
+ * Reads look in two tiers before going to the server:
+ *   1. memory: an {@link ExpiringLruCache} of up to MAX_ENTRIES users, fresh for TTL_MILLIS;
+ *   2. disk: Firestore's persistent local cache ({@code Source.CACHE}), which survives restarts.
+ * An expired memory entry or a disk hit is returned straight away and fetched again from the server
+ * in the background (stale-while-revalidate), so the next read is fresh. Concurrent fetches of the same user
+ * share one server read; if it fails, they're served the stale copy when there is one, otherwise told the failure.
+ * UserDb's writes update or drop the cached copy, and a server read that started before a write isn't cached.
+ *
+ * Usage:
+ *   UserCache.getInstance().getUser(deviceId, user -> { ... }, e -> { ... });
+ */
+public class UserCache {
+
+    private static final String TAG = "UserCache";
+
+    static final int MAX_ENTRIES = 1_000;
+    static final long TTL_MILLIS = 5 * 60 * 1000;
+
+    private static UserCache instance;
+
+    private final ExpiringLruCache<String, User> memory =
+            new ExpiringLruCache<>(MAX_ENTRIES, TTL_MILLIS, System::currentTimeMillis);
+    // device ID -> callbacks waiting for the server read in flight
+    private final Map<String, List<Waiter>> inFlight = new HashMap<>();
+    // moved on by every write through the cache, so reads started before it don't cache what they read
+    private final AtomicLong generation = new AtomicLong();
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong staleHits  = new AtomicLong();
+    private final AtomicLong diskHits   = new AtomicLong();
+    private final AtomicLong misses     = new AtomicLong();
+
+    /**
+     * A caller waiting for a server read of a user.
+     */
+    private static class Waiter {
+        final UserDb.OnUserFetchedCallback onFetched;
+        final UserDb.OnFailureCallback onFailure;
+
+        Waiter(UserDb.OnUserFetchedCallback onFetched, UserDb.OnFailureCallback onFailure) {
+            this.onFetched = onFetched;
+            this.onFailure = onFailure;
+        }
+    }
+
+    // ── Singleton ──────────────────────────────────────────────────────────
+
+    private UserCache() {
+
+    }
+
+    public static synchronized UserCache getInstance() {
+        if (instance == null) {
+            instance = new UserCache();
+        }
+        return instance;
+    }
+
+    // ── READ ───────────────────────────────────────────────────────────────
+
+    /**
+     * Fetches a user, from the cache if possible.
+     *
+     * @param deviceId  The user's device ID.
+     * @param onFetched Called once with the User object, or null if there is no such user.
+     * @param onFailure Called with the exception if the user isn't cached and the server read fails.
+     */
+    public void getUser(String deviceId, UserDb.OnUserFetchedCallback onFetched, UserDb.OnFailureCallback onFailure) {
+        ExpiringLruCache.Entry<User> cached = memory.get(deviceId);
+        if (cached != null) {
+            if (memory.isExpired(cached)) {
+                staleHits.incrementAndGet();
+                revalidate(deviceId);
+            } else {
+                memoryHits.incrementAndGet();
+            }
+            onFetched.onFetched(cached.getValue());
+            return;
+        }
+
+        UserDb.getInstance().getUser(deviceId, Source.CACHE,
+                user -> {
+                    if (user == null) {
+                        fetch(deviceId, onFetched, onFailure);
+                        return;
+                    }
+                    diskHits.incrementAndGet();
+                    memory.putExpired(deviceId, user);
+                    revalidate(deviceId);
+                    onFetched.onFetched(user);
+                },
+                // not in the local cache either
+                e -> fetch(deviceId, onFetched, onFailure));
+    }
+
+    /**
+     * Fetches many users: the ones in memory (fresh or not) are used as they are, the rest are fetched
+     * from the server with {@link UserDb#getUsers} and cached. Expired users are fetched again in the background.
+     *
+     * @param deviceIds The users' device IDs.
+     * @param onFetched Called with the users in the order of {@code deviceIds}; IDs with no user are left out.
+     * @param onFailure Called with the exception if the server read fails.
+     */
+    public void getUsers(List<String> deviceIds, UserDb.OnUserListFetchedCallback onFetched,
+                         UserDb.OnFailureCallback onFailure) {
+        Map<String, User> found = new HashMap<>();
+        Set<String> missing = new LinkedHashSet<>();
+        List<String> expired = new ArrayList<>();
+        for (String deviceId : new LinkedHashSet<>(deviceIds)) {
+            ExpiringLruCache.Entry<User> cached = memory.get(deviceId);
+            if (cached == null) {
+                misses.incrementAndGet();
+                missing.add(deviceId);
+                continue;
+            }
+            if (memory.isExpired(cached)) {
+                staleHits.incrementAndGet();
+                expired.add(deviceId);
+            } else {
+                memoryHits.incrementAndGet();
+            }
+            found.put(deviceId, cached.getValue());
+        }
+        if (!expired.isEmpty()) {
+            long started = generation.get();
+            UserDb.getInstance().getUsers(expired, users -> putAll(users, started),
+                    e -> Log.w(TAG, "Failed to revalidate " + expired.size() + " users", e));
+        }
+
+        if (missing.isEmpty()) {
+            onFetched.onFetched(inOrder(deviceIds, found));
+            return;
+        }
+        long started = generation.get();
+        UserDb.getInstance().getUsers(new ArrayList<>(missing),
+                users -> {
+                    putAll(users, started);
+                    for (User user : users) found.put(user.getDeviceId(), user);
+                    onFetched.onFetched(inOrder(deviceIds, found));
+                },
+                onFailure);
+    }
+
+    private static List<User> inOrder(List<String> deviceIds, Map<String, User> found) {
+        List<User> users = new ArrayList<>(deviceIds.size());
+        for (String deviceId : deviceIds) {
+            User user = found.get(deviceId);
+            if (user != null) users.add(user);
+        }
+        return users;
+    }
+
+    /**
+     * Reads a user from the server, sharing the read with any other caller waiting for the same user.
+     */
+    private void fetch(String deviceId, UserDb.OnUserFetchedCallback onFetched, UserDb.OnFailureCallback onFailure) {
+        misses.incrementAndGet();
+        synchronized (inFlight) {
+            List<Waiter> waiting = inFlight.get(deviceId);
+            if (waiting != null) {
+                waiting.add(new Waiter(onFetched, onFailure));
+                return;
+            }
+            waiting = new ArrayList<>();
+            waiting.add(new Waiter(onFetched, onFailure));
+            inFlight.put(deviceId, waiting);
+        }
+        read(deviceId);
+    }
+
+    /**
+     * Fetches a user from the server in the background and caches the result, unless a read is already in flight.
+     */
+    private void revalidate(String deviceId) {
+        synchronized (inFlight) {
+            if (inFlight.containsKey(deviceId)) return;
+            inFlight.put(deviceId, new ArrayList<>());
+        }
+        read(deviceId);
+    }
+
+    /**
+     * Reads a user from the server for the callers waiting in inFlight, caching what it finds
+     * unless the user was written through the cache in the meantime.
+     * If the read fails, the callers get the stale copy if one is cached, otherwise the failure.
+     */
+    private void read(String deviceId) {
+        long started = generation.get();
+        UserDb.getInstance().getUser(deviceId, Source.SERVER,
+                user -> {
+                    if (generation.get() == started) {
+                        if (user == null) memory.remove(deviceId);
+                        else memory.put(deviceId, user);
+                    }
+                    for (Waiter waiter : finish(deviceId)) waiter.onFetched.onFetched(user);
+                },
+                e -> {
+                    Log.w(TAG, "Failed to read user: " + deviceId, e);
+                    ExpiringLruCache.Entry<User> stale = memory.get(deviceId);
+                    for (Waiter waiter : finish(deviceId)) {
+                        if (stale != null) waiter.onFetched.onFetched(stale.getValue());
+                        else waiter.onFailure.onFailure(e);
+                    }
+                });
+    }
+
+    private List<Waiter> finish(String deviceId) {
+        synchronized (inFlight) {
+            return inFlight.remove(deviceId);
+        }
+    }
+
+    // ── UPDATE ─────────────────────────────────────────────────────────────
+
+    /**
+     * Caches a user just written to or read from the server.
+     *
+     * @param user The user; ignored if it has no device ID.
+     */
+    public void put(User user) {
+        generation.incrementAndGet();
+        if (user != null && user.getDeviceId() != null) memory.put(user.getDeviceId(), user);
+    }
+
+    /**
+     * Caches users read from the server, unless a write went through the cache since the read started.
+     */
+    private void putAll(List<User> users, long started) {
+        if (generation.get() != started) return;
+        for (User user : users) {
+            if (user.getDeviceId() != null) memory.put(user.getDeviceId(), user);
+        }
+    }
+
+    /**
+     * Drops a user from the memory tier, so the next read goes to the disk tier or the server.
+     *
+     * @param deviceId The user's device ID.
+     */
+    public void invalidate(String deviceId) {
+        generation.incrementAndGet();
+        memory.remove(deviceId);
+    }
+
+    public void clear() {
+        generation.incrementAndGet();
+        memory.clear();
+    }
+
+    // ── STATS ──────────────────────────────────────────────────────────────
+
+    /** Reads answered from memory while fresh. */
+    public long getMemoryHits()  { return memoryHits.get(); }
+    /** Reads answered from memory after the entry expired (and fetched again in the background). */
+    public long getStaleHits()   { return staleHits.get(); }
+    /** Reads answered from Firestore's local cache (and fetched again in the background). */
+    public long getDiskHits()    { return diskHits.get(); }
+    /** Reads that had to wait for the server. */
+    public long getMisses()      { return misses.get(); }
+
+    /**
+     * Returns the share of reads answered without waiting for the server.
+     *
+     * @return A fraction between 0 and 1 (0 before any read)
+     */
+    public double getHitRate() {
+        long hits = memoryHits.get() + staleHits.get() + diskHits.get();
+        long total = hits + misses.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    public void resetStats() {
+        memoryHits.set(0);
+        staleHits.set(0);
+        diskHits.set(0);
+        misses.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("UserCache{memory=%d, stale=%d, disk=%d, misses=%d, hitRate=%.2f}",
+                getMemoryHits(), getStaleHits(), getDiskHits(), getMisses(), getHitRate());
+    }
+}
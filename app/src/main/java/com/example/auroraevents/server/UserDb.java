@@ -3,11 +3,20 @@ package com.example.auroraevents.server;
 import android.util.Log;
 
 import com.example.auroraevents.model.User;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
 import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
 import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.QuerySnapshot;
 import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.Source;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Singleton class for all Firestore operations on the "Users" collection.
@@ -20,6 +29,9 @@ public class UserDb {
     private static final String TAG             = "UserDb";
     private static final String COLLECTION_NAME = "Users";
 
+    // Most values Firestore allows in one "in" filter
+    static final int MAX_IDS_PER_QUERY = 30;
+
     private static UserDb instance;
     private final  FirebaseFirestore db;
 
@@ -64,6 +76,7 @@ public class UserDb {
                 .document(user.getDeviceId())
                 .set(user)
                 .addOnSuccessListener(unused -> {
+                    UserCache.getInstance().put(user);
                     Log.d(TAG, "User added: " + user.getDeviceId());
                     onSuccess.onSuccess();
                 })
@@ -77,15 +90,29 @@ public class UserDb {
 
     /**
      * Fetches a single user by their deviceId.
+     * Screens should usually go through {@link UserCache#getUser} instead, which avoids reading
+     * the same user from the server again.
      *
      * @param deviceId  The document ID to fetch.
      * @param onFetched Called with the User object, or null if not found.
      * @param onFailure Called with the exception if the read fails.
      */
     public void getUser(String deviceId, OnUserFetchedCallback onFetched, OnFailureCallback onFailure) {
+        getUser(deviceId, Source.DEFAULT, onFetched, onFailure);
+    }
+
+    /**
+     * Fetches a single user by their deviceId from the given source.
+     *
+     * @param deviceId  The document ID to fetch.
+     * @param source    Source.SERVER, Source.CACHE (the device's local copy only) or Source.DEFAULT.
+     * @param onFetched Called with the User object, or null if not found.
+     * @param onFailure Called with the exception if the read fails (for Source.CACHE, also when the user isn't cached).
+     */
+    public void getUser(String deviceId, Source source, OnUserFetchedCallback onFetched, OnFailureCallback onFailure) {
         db.collection(COLLECTION_NAME)
                 .document(deviceId)
-                .get()
+                .get(source)
                 .addOnSuccessListener((DocumentSnapshot snapshot) -> {
                     if (snapshot.exists()) {
                         User user = snapshot.toObject(User.class);
@@ -101,6 +128,44 @@ public class UserDb {
                 });
     }
 
+    /**
+     * Fetches many users by their deviceIds.
+     * The IDs are split into queries of at most MAX_IDS_PER_QUERY documents, which all run at once,
+     * so the whole list takes about one round trip instead of one per user.
+     *
+     * @param deviceIds The document IDs to fetch.
+     * @param onFetched Called with the users in the order of {@code deviceIds}; IDs with no user are left out.
+     * @param onFailure Called with the exception if any of the queries fails.
+     */
+    public void getUsers(List<String> deviceIds, OnUserListFetchedCallback onFetched, OnFailureCallback onFailure) {
+        List<String> unique = new ArrayList<>(new LinkedHashSet<>(deviceIds));
+        List<Task<QuerySnapshot>> chunks = new ArrayList<>();
+        for (int i = 0; i < unique.size(); i += MAX_IDS_PER_QUERY) {
+            chunks.add(db.collection(COLLECTION_NAME)
+                    .whereIn(FieldPath.documentId(), unique.subList(i, Math.min(i + MAX_IDS_PER_QUERY, unique.size())))
+                    .get());
+        }
+
+        Tasks.<QuerySnapshot>whenAllSuccess(chunks)
+                .addOnSuccessListener(results -> {
+                    Map<String, User> found = new HashMap<>();
+                    for (QuerySnapshot result : results) {
+                        for (DocumentSnapshot snapshot : result.getDocuments())
+                            found.put(snapshot.getId(), snapshot.toObject(User.class));
+                    }
+                    List<User> users = new ArrayList<>(deviceIds.size());
+                    for (String deviceId : deviceIds) {
+                        User user = found.get(deviceId);
+                        if (user != null) users.add(user);
+                    }
+                    onFetched.onFetched(users);
+                })
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Failed to fetch " + deviceIds.size() + " users", e);
+                    onFailure.onFailure(e);
+                });
+    }
+
     /**
      * Fetches all users in the collection.
      *
@@ -161,6 +226,8 @@ public class UserDb {
                 .document(user.getDeviceId())
                 .set(user, SetOptions.merge())
                 .addOnSuccessListener(unused -> {
+                    // merged, so the stored user may have fields this copy doesn't; read it again next time
+                    UserCache.getInstance().invalidate(user.getDeviceId());
                     Log.d(TAG, "User updated: " + user.getDeviceId());
                     onSuccess.onSuccess();
                 })
@@ -184,7 +251,10 @@ public class UserDb {
                 .document(deviceId)
                 .update("notificationHistory",
                         com.google.firebase.firestore.FieldValue.arrayUnion(notification))
-                .addOnSuccessListener(unused -> onSuccess.onSuccess())
+                .addOnSuccessListener(unused -> {
+                    UserCache.getInstance().invalidate(deviceId);
+                    onSuccess.onSuccess();
+                })
                 .addOnFailureListener(e -> {
                     Log.e(TAG, "Failed to add notification for user: " + deviceId, e);
                     onFailure.onFailure(e);
@@ -205,6 +275,7 @@ public class UserDb {
                 .document(deviceId)
                 .delete()
                 .addOnSuccessListener(unused -> {
+                    UserCache.getInstance().invalidate(deviceId);
                     Log.d(TAG, "User deleted: " + deviceId);
                     onSuccess.onSuccess();
                 })
@@ -6,6 +6,7 @@ import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.AbsListView;
 import android.widget.ListView;
 
 import androidx.annotation.NonNull;
@@ -13,9 +14,11 @@ import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
 
 import com.example.auroraevents.R;
-import com.example.auroraevents.model.Event;
 import com.example.auroraevents.model.EventArrayAdapter;
+import com.example.auroraevents.model.EventSummary;
+import com.example.auroraevents.model.EventSummaryPager;
 import com.example.auroraevents.server.EventDb;
+import com.google.firebase.firestore.ListenerRegistration;
 
 import java.util.ArrayList;
 
@@ -28,6 +31,11 @@ import java.util.ArrayList;
 public class EventFragment extends Fragment {
 
     private static final String TAG = "EventFragment";
+    private static final int PAGE_SIZE = 20;            // about two screens of rows
+    private static final int PREFETCH_ROWS = 5;         // rows left below the screen when the next page is shown
+
+    private EventSummaryPager pager;
+    private ListenerRegistration statusListener;
 
     // resource used: https://stackoverflow.com/questions/51769944/android-studio-recylerview-in-fragment-using-data-from-firestore
 
@@ -53,29 +61,39 @@ public class EventFragment extends Fragment {
         View header = inflater.inflate(R.layout.header_event_fragment, listView, false);
         listView.addHeaderView(header, null, false);
 
-        ArrayList<com.example.auroraevents.model.Event>eventList = new ArrayList<>();
+        ArrayList<EventSummary> eventList = new ArrayList<>();
         ListView eventsListView = root.findViewById(R.id.events_list);
 
         // get user's device ID to determine user's status for the event
         String userId = Settings.Secure.getString(requireContext().getContentResolver(), Settings.Secure.ANDROID_ID);
         // create adapter with eventList
-        com.example.auroraevents.model.EventArrayAdapter eventsAdapter = new EventArrayAdapter(requireContext(), eventList, userId);
+        EventArrayAdapter eventsAdapter = new EventArrayAdapter(requireContext(), eventList);
         eventsListView.setAdapter(eventsAdapter);
 
         // resource used: https://stackoverflow.com/questions/7309259/get-list-of-attributes-of-an-object-in-an-list
-        // get all events from firestore
-        EventDb.getInstance().getAllEvents(events -> {
-            for (com.example.auroraevents.model.Event event : events) {
-                Log.d(TAG, "Event" +  event.getName() + " in " + event.getLocation());
-                eventList.add(event);
+        // get the event summaries from firestore a page at a time, soonest first, one page ahead of the list;
+        // the pages shown stay live, with only the events that changed applied to eventList
+        pager = new EventSummaryPager(PAGE_SIZE, eventList, eventsAdapter::notifyDataSetChanged,
+                e -> Log.d(TAG, "Error fetching events" + e.getMessage()));
+        pager.start();
+        eventsListView.setOnScrollListener(new AbsListView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(AbsListView view, int scrollState) { }
+
+            @Override
+            public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+                // the header alone means the first page isn't in yet
+                if (totalItemCount > 1 && firstVisibleItem + visibleItemCount >= totalItemCount - PREFETCH_ROWS)
+                    pager.nearEnd();
             }
-            eventsAdapter.notifyDataSetChanged();
-        }, e -> Log.d(TAG, "Error fetching events" + e.getMessage())
-        );
+        });
+        // the user's status tags come from the events they joined only, and follow their changes
+        statusListener = EventDb.getInstance().addEntrantStatusListener(userId, eventsAdapter::setStatuses,
+                e -> Log.d(TAG, "Error fetching statuses" + e.getMessage()));
 
         // handle event taps by user to get the event's position
         eventsListView.setOnItemClickListener((parent, v, position, id) -> {
-            Event selectedEvent = eventList.get(position - 1);
+            EventSummary selectedEvent = eventList.get(position - 1);
 
             // resource used: https://www.geeksforgeeks.org/android/bundle-in-android-with-example/
             // pass eventID to InfoUFragment using bundle
@@ -95,4 +113,11 @@ public class EventFragment extends Fragment {
         });
         return root;
     }
+
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        if (pager != null) pager.stop();
+        if (statusListener != null) statusListener.remove();
+    }
 }
\ No newline at end of file
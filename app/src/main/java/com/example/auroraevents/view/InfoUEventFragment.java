@@ -14,23 +14,30 @@ import android.view.ViewGroup;
 import android.widget.Button;
 import android.widget.ImageView;
 import android.widget.TextView;
+import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
 
 import com.example.auroraevents.R;
+import com.example.auroraevents.model.EntrantSnapshot;
+import com.example.auroraevents.model.EntrantState;
+import com.example.auroraevents.model.TransitionResult;
 import com.example.auroraevents.model.User;
 import com.example.auroraevents.server.EventDb;
-import com.example.auroraevents.server.UserDb;
+import com.example.auroraevents.server.UserCache;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.firestore.ListenerRegistration;
 
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
 /**
  * Displays event details for the event tapped by the entrant or admin.
  * Gets the event details using the event ID.
  * Checks user role to determine which buttons to display.
- * Uses a snapshot listener to update waiting list count.
+ * Follows the event's transition log to update waiting list count.
  * Implements US 01.01.01 - View event details.
  * Implements US 01.01.03 - Navigate from event list to event details.
  * Implements US 01.06.01 - View waiting list count.
@@ -40,6 +47,7 @@ import com.google.firebase.firestore.ListenerRegistration;
 public class InfoUEventFragment extends Fragment {
 
     private static final String TAG = "InfoUEventFragment";
+    private static final DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
     private String eventId;
     private String userId;
@@ -50,6 +58,42 @@ public class InfoUEventFragment extends Fragment {
     private ImageView poster;
     private Button backButton, joinButton, acceptButton, declineButton, deleteButton;
 
+    // Operation ID for the buttons shown for the user's current list, kept until the list changes,
+    // so a repeated tap (or a tap after the listener redraws) is only written once
+    private EntrantState operationStatus;
+    private String operationId;
+
+    /**
+     * Returns the operation ID for a button action, new each time the user's list changes.
+     *
+     * @param status The list the user is on
+     * @param action The action of the button
+     * @return The operation ID to pass to EventDb
+     */
+    private String operationIdFor(EntrantState status, String action) {
+        if (operationId == null || status != operationStatus) {
+            operationStatus = status;
+            operationId = EventDb.newOperationId();
+        }
+        return operationId + "-" + action;
+    }
+
+    /**
+     * Checks if the fragment still has its view, for callbacks that may come after the user left the screen
+     */
+    private boolean hasView() {
+        return isAdded() && getView() != null;
+    }
+
+    /**
+     * Enables or disables the join, accept and decline buttons, so only one change is sent at a time.
+     */
+    private void setButtonsEnabled(boolean enabled) {
+        joinButton.setEnabled(enabled);
+        acceptButton.setEnabled(enabled);
+        declineButton.setEnabled(enabled);
+    }
+
     /**
      *
      * @param inflater The LayoutInflater object that can be used to inflate
@@ -111,21 +155,23 @@ public class InfoUEventFragment extends Fragment {
     }
 
     private void loadEventData() {
-        UserDb.getInstance().getUser(
+        // the role rarely changes, so a cached copy is fine
+        UserCache.getInstance().getUser(
                 userId,
                 user -> {
                     // check if user role is admin
                     final boolean userIsAdmin = user != null && User.ROLE_ADMIN.equals(user.getRole());
 
-                    // attach snapshot listener to get event details
-                    eventSnapshotListener = EventDb.getInstance().addSnapshotListenerForEvent(
+                    // read the event once, then follow its transition log to keep the lists current
+                    eventSnapshotListener = EventDb.getInstance().addRegistrationListenerForEvent(
                                     eventId,
                                     event -> { if (event != null) {
                                             // display event details for all user roles
                                             eventName.setText(event.getName());
                                             eventDescription.setText(event.getDescription());
                                             eventLocation.setText(event.getLocation());
-                                            eventDateTime.setText(event.getDateTime());
+                                            LocalDateTime when = event.getDateTimeAsLocalDateTime();
+                                            eventDateTime.setText(when == null ? "" : when.format(DATE_TIME_FORMAT));
                                             eventOrganizer.setText("Organizer: " + event.getOrganizerDeviceId());
                                             poster.setVisibility(View.GONE);
 
@@ -152,51 +198,73 @@ public class InfoUEventFragment extends Fragment {
                                                 });
                                             } else {
                                                 // show waiting list and attendees count for entrant
+                                                // one consistent copy of the lists, they may be changing on a listener thread
+                                                EntrantSnapshot lists = event.registrationList.getSnapshot();
+                                                EntrantState status = lists.stateOf(userId);
                                                 waitingListCount.setVisibility(View.VISIBLE);
                                                 attendeesCount.setVisibility(View.VISIBLE);
-                                                waitingListCount.setText(event.registrationList.getWaitingList().size() + " people are waiting ");
-                                                attendeesCount.setText(event.registrationList.getAttendingList().size() + " people are participating ");
+                                                waitingListCount.setText(event.getCount(EntrantState.WAITING) + " people are waiting ");
+                                                attendeesCount.setText(event.getCount(EntrantState.ATTENDING) + " people are participating ");
                                                 deleteButton.setVisibility(View.GONE);
+                                                setButtonsEnabled(true);
 
                                                 // check which list user is in and display corresponding buttons
-                                                if (event.registrationList.getAttendingList().contains(userId)) {
+                                                if (status == EntrantState.ATTENDING) {
                                                     joinButton.setVisibility(View.GONE);
                                                     acceptButton.setVisibility(View.GONE);
                                                     declineButton.setVisibility(View.GONE);
                                                     attendingLabel.setVisibility(View.VISIBLE);
                                                     attendingLabel.setText("You are attending");
                                                 }
-                                                else if (event.registrationList.getSelectedList().contains(userId)) {
+                                                else if (status == EntrantState.SELECTED) {
                                                     // user has been selected and needs to accept or decline
                                                     joinButton.setVisibility(View.GONE);
                                                     acceptButton.setVisibility(View.VISIBLE);
                                                     declineButton.setVisibility(View.VISIBLE);
                                                     attendingLabel.setVisibility(View.GONE);
 
-                                                    // move user from selectedList to attendingList on acceptance
+                                                    // move user from selectedList to attendingList on acceptance, if a seat is left
                                                     acceptButton.setOnClickListener(v -> {
-                                                        EventDb.getInstance().moveUserBetweenLists(
+                                                        setButtonsEnabled(false);
+                                                        EventDb.getInstance().acceptSeat(
                                                                 event.getEventId(),
-                                                                EventDb.LIST_SELECTED,
-                                                                EventDb.LIST_ATTENDING,
                                                                 userId,
-                                                                () -> Log.d(TAG, "User accepted invitation"),
-                                                                e -> Log.d(TAG, "Error accepting invitation: " + e)
+                                                                operationIdFor(status, "accept"),
+                                                                result -> {
+                                                                    // the seat may take a few attempts, the user may have left by now
+                                                                    if (!hasView()) return;
+                                                                    if (result == TransitionResult.FULL) {
+                                                                        Log.d(TAG, "No seats left to accept");
+                                                                        Toast.makeText(requireContext(), "Sorry, this event is full", Toast.LENGTH_SHORT).show();
+                                                                        setButtonsEnabled(true);   // can still decline
+                                                                    } else {
+                                                                        Log.d(TAG, "User accepted invitation");
+                                                                    }
+                                                                },
+                                                                e -> {
+                                                                    Log.d(TAG, "Error accepting invitation: " + e);
+                                                                    if (hasView()) setButtonsEnabled(true);
+                                                                }
                                                         );
                                                     });
                                                     // move user from selectedList to declinedList on decline
                                                     declineButton.setOnClickListener(v -> {
+                                                        setButtonsEnabled(false);
                                                         EventDb.getInstance().moveUserBetweenLists(
                                                                 event.getEventId(),
                                                                 EventDb.LIST_SELECTED,
                                                                 EventDb.LIST_DECLINED,
                                                                 userId,
+                                                                operationIdFor(status, "decline"),
                                                                 () -> Log.d(TAG, "User declined invitation"),
-                                                                e -> Log.d(TAG, "Error declining invitation: " + e)
+                                                                e -> {
+                                                                    Log.d(TAG, "Error declining invitation: " + e);
+                                                                    setButtonsEnabled(true);
+                                                                }
                                                         );
                                                     });
                                                 }
-                                                else if (event.registrationList.getWaitingList().contains(userId)) {
+                                                else if (status == EntrantState.WAITING) {
                                                     // user is on waiting list
                                                     joinButton.setVisibility(View.VISIBLE);
                                                     joinButton.setText("Leave Pool");
@@ -205,12 +273,17 @@ public class InfoUEventFragment extends Fragment {
                                                     attendingLabel.setVisibility(View.GONE);
                                                     // remove user from waitingList when Leave Pool is clicked
                                                     joinButton.setOnClickListener(v -> {
+                                                        setButtonsEnabled(false);
                                                         EventDb.getInstance().removeUserFromList(
                                                                 event.getEventId(),
                                                                 EventDb.LIST_WAITING,
                                                                 userId,
+                                                                operationIdFor(status, "leave"),
                                                                 () -> Log.d(TAG, "User left waiting list"),
-                                                                e -> Log.d(TAG, "Error leaving waiting list: " + e)
+                                                                e -> {
+                                                                    Log.d(TAG, "Error leaving waiting list: " + e);
+                                                                    setButtonsEnabled(true);
+                                                                }
                                                         );
                                                     });
                                                 }
@@ -223,12 +296,17 @@ public class InfoUEventFragment extends Fragment {
                                                     attendingLabel.setVisibility(View.GONE);
                                                     // add user to waitingList when Join Pool is clicked
                                                     joinButton.setOnClickListener(v -> {
+                                                        setButtonsEnabled(false);
                                                         EventDb.getInstance().addUserToList(
                                                                 event.getEventId(),
                                                                 EventDb.LIST_WAITING,
                                                                 userId,
+                                                                operationIdFor(status, "join"),
                                                                 () -> Log.d(TAG, "User joined waiting list"),
-                                                                e -> Log.d(TAG, "Error joining waiting list: " + e)
+                                                                e -> {
+                                                                    Log.d(TAG, "Error joining waiting list: " + e);
+                                                                    setButtonsEnabled(true);
+                                                                }
                                                         );
                                                     });
                                                 }
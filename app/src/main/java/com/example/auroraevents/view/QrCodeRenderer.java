@@ -0,0 +1,231 @@
+package com.example.auroraevents.view;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Color;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.MultiFormatWriter;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Renders the QR codes of events off the main thread, for the event ID the code scans to.
+ * A code is rendered at module resolution, one pixel per module (about 1 KB for an event ID),
+ * and handed out as a drawable that scales it up without filtering, so a large code on screen
+ * never needs a large bitmap.
+ * Rendered codes are cached in two tiers, by event ID (the bitmap is the same at every size):
+ *   1. memory: an LRU of up to MEMORY_CACHE_BYTES of bitmaps;
+ *   2. disk: PNGs in the app's cache directory, up to DISK_CACHE_FILES of them, which survive restarts.
+ *
+ * Usage:
+ *   QrCodeRenderer.getInstance(context).render(eventId, sizePx, imageView::setImageDrawable, e -> { ... });
+ */
+public class QrCodeRenderer {
+
+    private static final String TAG = "QrCodeRenderer";
+
+    static final int MEMORY_CACHE_BYTES = 256 * 1024;
+    static final int DISK_CACHE_FILES = 200;
+    static final int QUIET_ZONE = 4;            // blank modules around the code, as the QR spec asks
+    private static final String DISK_CACHE_DIR = "qr";
+
+    private static QrCodeRenderer instance;
+
+    private final Resources resources;
+    private final File diskCache;
+    // One background thread: rendering is quick, it just has to stay off the main thread
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "qr-renderer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Handler mainThread = new Handler(Looper.getMainLooper());
+    private final LruCache<String, Bitmap> memory = new LruCache<String, Bitmap>(MEMORY_CACHE_BYTES) {
+        @Override
+        protected int sizeOf(String eventId, Bitmap bitmap) {
+            return bitmap.getByteCount();
+        }
+    };
+
+    public interface OnRenderedCallback { void onRendered(Drawable qrCode); }
+    public interface OnFailureCallback  { void onFailure(Exception e); }
+
+    // ── Singleton ──────────────────────────────────────────────────────────
+
+    private QrCodeRenderer(Context context) {
+        resources = context.getResources();
+        diskCache = new File(context.getCacheDir(), DISK_CACHE_DIR);
+    }
+
+    public static synchronized QrCodeRenderer getInstance(Context context) {
+        if (instance == null) {
+            instance = new QrCodeRenderer(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    // ── RENDER ─────────────────────────────────────────────────────────────
+
+    /**
+     * Renders an event's QR code in the background.
+     *
+     * @param eventId    The event ID the code scans to.
+     * @param sizePx     The size the drawable reports as its intrinsic width and height, in pixels.
+     * @param onRendered Called on the main thread with the code.
+     * @param onFailure  Called on the main thread with the exception if the code can't be rendered.
+     */
+    public void render(String eventId, int sizePx, OnRenderedCallback onRendered, OnFailureCallback onFailure) {
+        Bitmap cached = memory.get(eventId);
+        if (cached != null) {
+            onRendered.onRendered(drawable(cached, sizePx));
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                Bitmap modules = getModules(eventId);
+                mainThread.post(() -> onRendered.onRendered(drawable(modules, sizePx)));
+            } catch (WriterException | RuntimeException e) {
+                Log.e(TAG, "Error encoding QR code for event: " + eventId, e);
+                mainThread.post(() -> onFailure.onFailure(e));
+            }
+        });
+    }
+
+    /**
+     * Returns an event's QR code at module resolution, from the cache if possible. Blocks while rendering,
+     * so call it off the main thread.
+     *
+     * @param eventId The event ID the code scans to.
+     * @return The code, one pixel per module, quiet zone included.
+     * @throws WriterException If the event ID can't be encoded.
+     */
+    public Bitmap getModules(String eventId) throws WriterException {
+        Bitmap bitmap = memory.get(eventId);
+        if (bitmap != null) return bitmap;
+
+        File file = diskFile(eventId);
+        if (file.exists()) {
+            bitmap = BitmapFactory.decodeFile(file.getPath());
+            if (bitmap != null) {
+                file.setLastModified(System.currentTimeMillis());
+            } else {
+                Log.w(TAG, "Unreadable cached QR code, rendering again: " + file);
+            }
+        }
+        if (bitmap == null) {
+            bitmap = encode(eventId);
+            writeToDisk(file, bitmap);
+        }
+        memory.put(eventId, bitmap);
+        return bitmap;
+    }
+
+    /**
+     * Encodes text as a QR code bitmap with one pixel per module.
+     */
+    static Bitmap encode(String text) throws WriterException {
+        Map<EncodeHintType, Object> hints = new EnumMap<>(EncodeHintType.class);
+        hints.put(EncodeHintType.MARGIN, QUIET_ZONE);
+        // a size of 0 gives the matrix at its natural size, one cell per module
+        BitMatrix matrix = new MultiFormatWriter().encode(text, BarcodeFormat.QR_CODE, 0, 0, hints);
+        int width = matrix.getWidth();
+        int height = matrix.getHeight();
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                pixels[y * width + x] = matrix.get(x, y) ? Color.BLACK : Color.WHITE;
+            }
+        }
+        return Bitmap.createBitmap(pixels, width, height, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * Wraps a code in a drawable of the given size that scales it with hard edges.
+     */
+    private Drawable drawable(Bitmap modules, int sizePx) {
+        BitmapDrawable drawable = new BitmapDrawable(resources, modules) {
+            @Override
+            public int getIntrinsicWidth()  { return sizePx; }
+            @Override
+            public int getIntrinsicHeight() { return sizePx; }
+        };
+        drawable.setFilterBitmap(false);     // blurred module edges scan badly
+        drawable.setAntiAlias(false);
+        return drawable;
+    }
+
+    // ── DISK CACHE ─────────────────────────────────────────────────────────
+
+    private File diskFile(String eventId) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(eventId.getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder();
+            for (byte b : hash) name.append(String.format("%02x", b));
+            return new File(diskCache, name + ".png");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);     // every Android device has SHA-256
+        }
+    }
+
+    private void writeToDisk(File file, Bitmap bitmap) {
+        if (!diskCache.isDirectory() && !diskCache.mkdirs()) {
+            Log.w(TAG, "Can't create QR code cache: " + diskCache);
+            return;
+        }
+        // written to the side and renamed, so a reader never sees half a file
+        File temp = new File(diskCache, file.getName() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to cache QR code: " + file, e);
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(file)) temp.delete();
+        trimDisk();
+    }
+
+    /**
+     * Deletes the least recently used files over DISK_CACHE_FILES.
+     */
+    private void trimDisk() {
+        File[] files = diskCache.listFiles((dir, name) -> name.endsWith(".png"));
+        if (files == null || files.length <= DISK_CACHE_FILES) return;
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (int i = 0; i < files.length - DISK_CACHE_FILES; i++) files[i].delete();
+    }
+
+    /**
+     * Drops every cached code, in memory and on disk.
+     */
+    public void clear() {
+        memory.evictAll();
+        executor.execute(() -> {
+            File[] files = diskCache.listFiles();
+            if (files != null) for (File file : files) file.delete();
+        });
+    }
+}
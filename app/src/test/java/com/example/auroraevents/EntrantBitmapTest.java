@@ -0,0 +1,142 @@
+package com.example.auroraevents;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.example.auroraevents.model.EntrantBitmap;
+import com.example.auroraevents.model.EntrantState;
+import com.example.auroraevents.model.Event;
+
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Tests the set algebra of {@link EntrantBitmap} against {@link HashSet}, over sparse and dense chunks.
+ * No database calls are made.
+ */
+public class EntrantBitmapTest {
+
+    private static List<String> randomIds(Random random, String prefix, int count, int range) {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) ids.add(prefix + random.nextInt(range));
+        return ids;
+    }
+
+    private static void assertSameSet(Set<String> expected, EntrantBitmap actual) {
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected, new HashSet<>(actual.toList()));
+        for (String id : expected) assertTrue(actual.contains(id));
+    }
+
+    /**
+     * Tests or, and and andNot for sizes that stay sparse and sizes that need dense chunks
+     */
+    @Test
+    public void algebraMatchesHashSetTest() {
+        Random random = new Random(301);
+        for (int size : new int[] { 10, 3_000, 60_000 }) {
+            List<String> a = randomIds(random, "algebra-", size, size * 2);
+            List<String> b = randomIds(random, "algebra-", size, size * 2);
+            EntrantBitmap bitmapA = EntrantBitmap.of(a);
+            EntrantBitmap bitmapB = EntrantBitmap.of(b);
+
+            Set<String> union = new HashSet<>(a);
+            union.addAll(b);
+            Set<String> intersection = new HashSet<>(a);
+            intersection.retainAll(new HashSet<>(b));
+            Set<String> difference = new HashSet<>(a);
+            difference.removeAll(new HashSet<>(b));
+
+            assertSameSet(new HashSet<>(a), bitmapA);
+            assertSameSet(union, bitmapA.or(bitmapB));
+            assertSameSet(intersection, bitmapA.and(bitmapB));
+            assertSameSet(difference, bitmapA.andNot(bitmapB));
+            assertTrue(bitmapA.andNot(bitmapA).isEmpty());
+            assertFalse(bitmapA.contains("algebra-never"));
+        }
+    }
+
+    /**
+     * Tests that tidy keeps each entrant only on their highest priority list
+     */
+    @Test
+    public void tidyTest() {
+        Map<EntrantState, EntrantBitmap> lists = new EnumMap<>(EntrantState.class);
+        lists.put(EntrantState.WAITING, EntrantBitmap.of(Arrays.asList("tidy-a", "tidy-b", "tidy-c")));
+        lists.put(EntrantState.SELECTED, EntrantBitmap.of(Arrays.asList("tidy-b", "tidy-c")));
+        lists.put(EntrantState.REMOVED, EntrantBitmap.of(Arrays.asList("tidy-c")));
+
+        Map<EntrantState, EntrantBitmap> tidied = EntrantBitmap.tidy(lists);
+        assertEquals(Arrays.asList("tidy-a"), tidied.get(EntrantState.WAITING).toList());
+        assertEquals(Arrays.asList("tidy-b"), tidied.get(EntrantState.SELECTED).toList());
+        assertEquals(Arrays.asList("tidy-c"), tidied.get(EntrantState.REMOVED).toList());
+    }
+
+    /**
+     * Tests queries across events, and that a list's bitmap follows changes to the list
+     */
+    @Test
+    public void acrossEventsTest() {
+        Event first = new Event("organizer", "first", "", LocalDateTime.now(), LocalDateTime.now(),
+                LocalDateTime.now().plusDays(1), "", 0);
+        Event second = new Event("organizer", "second", "", LocalDateTime.now(), LocalDateTime.now(),
+                LocalDateTime.now().plusDays(1), "", 0);
+        first.registrationList.setWaitingList(Arrays.asList("across-a", "across-b"));
+        first.registrationList.setAttendingList(Arrays.asList("across-c"));
+        second.registrationList.setWaitingList(Arrays.asList("across-b", "across-d"));
+
+        assertEquals(4, EntrantBitmap.across(Arrays.asList(first, second)).size());
+        EntrantBitmap waiting = EntrantBitmap.across(Arrays.asList(first, second), EntrantState.WAITING);
+        assertSameSet(new HashSet<>(Arrays.asList("across-a", "across-b", "across-d")), waiting);
+
+        // on the waiting list of both events
+        EntrantBitmap both = first.registrationList.getBitmap(EntrantState.WAITING)
+                .and(second.registrationList.getBitmap(EntrantState.WAITING));
+        assertEquals(Arrays.asList("across-b"), both.toList());
+
+        first.registrationList.getWaitingList().remove("across-b");
+        assertFalse(first.registrationList.getBitmap(EntrantState.WAITING).contains("across-b"));
+        assertEquals(2, first.registrationList.getAllEntrantsBitmap().size());
+    }
+
+    /**
+     * Before/after timing of a difference between two 100k entrant lists
+     */
+    @Test
+    public void differenceBenchmark() {
+        Random random = new Random(7);
+        List<String> a = randomIds(random, "bench-", 100_000, 200_000);
+        List<String> b = randomIds(random, "bench-", 100_000, 200_000);
+
+        long start = System.nanoTime();
+        List<String> before = new ArrayList<>(a);
+        before.removeAll(b.subList(0, 1_000));      // the full lists take minutes as ArrayLists
+        long beforeNanos = (System.nanoTime() - start) * 100;
+
+        EntrantBitmap bitmapA = EntrantBitmap.of(a);
+        EntrantBitmap bitmapB = EntrantBitmap.of(b);
+        long afterNanos = Long.MAX_VALUE;
+        EntrantBitmap after = null;
+        for (int run = 0; run < 5; run++) {
+            start = System.nanoTime();
+            after = bitmapA.andNot(bitmapB);
+            afterNanos = Math.min(afterNanos, System.nanoTime() - start);
+        }
+
+        Set<String> expected = new HashSet<>(a);
+        expected.removeAll(new HashSet<>(b));
+        assertEquals(expected.size(), after.size());
+        System.out.printf("100,000 \\ 100,000 entrants: ArrayList.removeAll ~%.0f ms (extrapolated) -> EntrantBitmap.andNot %.2f ms%n",
+                beforeNanos / 1e6, afterNanos / 1e6);
+    }
+}
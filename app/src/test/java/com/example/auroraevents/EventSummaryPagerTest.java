@@ -0,0 +1,177 @@
+package com.example.auroraevents;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.example.auroraevents.model.EventSummary;
+import com.example.auroraevents.model.EventSummaryPager;
+import com.example.auroraevents.server.EventDb;
+import com.google.firebase.firestore.DocumentChange;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests that EventSummaryPager shows pages in order, stays one page ahead, and applies
+ * the changes of each page's listener in place, with fake sources whose listeners are fed by hand.
+ * No database calls are made.
+ */
+public class EventSummaryPagerTest {
+    private static final int PAGE_SIZE = 3;
+    private static final int EVENTS = 7;    // pages of 3, 3 and 1
+
+    private final List<Runnable> inFlight = new ArrayList<>();
+    private final List<EventDb.OnSummaryPageChangesCallback> pages = new ArrayList<>();
+    private final List<EventDb.OnSummaryChangesCallback> ranges = new ArrayList<>();
+    private final List<EventSummary> rows = new ArrayList<>();
+    private final List<String> shown = new ArrayList<>();
+    private int fetched;
+    private int removed;
+    private EventSummaryPager pager;
+
+    private static EventSummary summary(String eventId) {
+        EventSummary summary = new EventSummary();
+        summary.setEventId(eventId);
+        return summary;
+    }
+
+    @Before
+    public void before() {
+        EventSummaryPager.PageSource source = (after, pageSize, onChanges, onFailure) -> {
+            int start = fetched;
+            fetched = Math.min(start + pageSize, EVENTS);
+            List<EventDb.SummaryChange> page = new ArrayList<>();
+            for (int i = start; i < fetched; i++) page.add(added("event" + i, i - start));
+            pages.add(onChanges);
+            inFlight.add(() -> onChanges.onChanges(page, null));
+            return () -> removed++;
+        };
+        EventSummaryPager.RangeSource range = (after, endAt, onChanges, onFailure) -> {
+            ranges.add(onChanges);
+            return () -> removed++;
+        };
+        pager = new EventSummaryPager(PAGE_SIZE, source, range, rows, () -> {
+            shown.clear();
+            for (EventSummary summary : rows) shown.add(summary.getEventId());
+        }, e -> { throw new AssertionError(e); });
+    }
+
+    private static EventDb.SummaryChange added(String eventId, int newIndex) {
+        return new EventDb.SummaryChange(DocumentChange.Type.ADDED, summary(eventId), -1, newIndex);
+    }
+
+    private static EventDb.SummaryChange removed(String eventId, int oldIndex) {
+        return new EventDb.SummaryChange(DocumentChange.Type.REMOVED, summary(eventId), oldIndex, -1);
+    }
+
+    /** Sends the first snapshot of the oldest page listener still waiting for one */
+    private void answer() {
+        inFlight.remove(0).run();
+    }
+
+    @Test
+    public void prefetchTest() {
+        pager.start();
+        answer();
+        assertEquals(PAGE_SIZE, shown.size());
+        // the second page is asked for before the user gets near the end
+        assertEquals(1, inFlight.size());
+        answer();
+        assertEquals(PAGE_SIZE, shown.size());
+
+        // and shown straight away when they do, with the third one asked for
+        pager.nearEnd();
+        assertEquals(2 * PAGE_SIZE, shown.size());
+        assertEquals(1, inFlight.size());
+        assertFalse(pager.isDone());
+    }
+
+    /**
+     * Tests that reaching the end while the next page is on its way shows it as soon as it arrives, once
+     */
+    @Test
+    public void waitingForPageTest() {
+        pager.start();
+        answer();
+        pager.nearEnd();
+        pager.nearEnd();
+        assertEquals(1, inFlight.size());
+        answer();
+        assertEquals(2 * PAGE_SIZE, shown.size());
+
+        answer();   // the short last page, fetched ahead
+        pager.nearEnd();
+        assertEquals(EVENTS, shown.size());
+        assertTrue(pager.isDone());
+        assertTrue(inFlight.isEmpty());
+
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < EVENTS; i++) expected.add("event" + i);
+        assertEquals(expected, shown);
+    }
+
+    /**
+     * Tests that the listener that fetched a page then moves its changed rows in place, without reading it again
+     */
+    @Test
+    public void liveChangesTest() {
+        pager.start();
+        answer();
+        pager.nearEnd();
+        answer();
+        assertEquals(Arrays.asList("event0", "event1", "event2", "event3", "event4", "event5"), shown);
+
+        // event1 is renamed, event0 moves to the middle of its page, event4 is removed
+        pages.get(0).onChanges(Arrays.asList(
+                new EventDb.SummaryChange(DocumentChange.Type.MODIFIED, summary("event1*"), 1, 1),
+                new EventDb.SummaryChange(DocumentChange.Type.MODIFIED, summary("event0"), 0, 1)), null);
+        pages.get(1).onChanges(Collections.singletonList(removed("event4", 1)), null);
+        assertEquals(Arrays.asList("event1*", "event0", "event2", "event3", "event5"), shown);
+        assertTrue(ranges.isEmpty());
+
+        pager.stop();
+        assertEquals(3, removed);   // both pages and the third one still on its way
+    }
+
+    /**
+     * Tests that a page whose limit cut its range somewhere else is handed to a listener on its range,
+     * whose first snapshot replaces the page's rows
+     */
+    @Test
+    public void rangeTest() {
+        pager.start();
+        answer();
+        pager.nearEnd();
+        answer();
+
+        // page 1 loses its last event, so the limit pulls in the first one of page 2
+        pages.get(0).onChanges(Arrays.asList(removed("event2", 2), added("event3", 2)), null);
+        assertEquals(1, ranges.size());
+        assertEquals(1, removed);
+        ranges.get(0).onChanges(Arrays.asList(added("event0", 0), added("event1", 1)));
+        assertEquals(Arrays.asList("event0", "event1", "event3", "event4", "event5"), shown);
+
+        // later snapshots of the range move its rows in place
+        ranges.get(0).onChanges(Collections.singletonList(added("event2", 2)));
+        assertEquals(Arrays.asList("event0", "event1", "event2", "event3", "event4", "event5"), shown);
+    }
+
+    /**
+     * Tests that pages arriving after stop aren't shown
+     */
+    @Test
+    public void stopTest() {
+        pager.start();
+        pager.stop();
+        answer();
+        assertTrue(shown.isEmpty());
+        assertTrue(inFlight.isEmpty());
+        assertEquals(1, removed);
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.auroraevents;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import com.example.auroraevents.model.Event;
+import com.google.firebase.Timestamp;
+
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Tests the Timestamp event times and their local date-time views, including times read from
+ * documents still holding the old strings. No database calls are made.
+ */
+public class EventTimeTest {
+
+    private static Event event() {
+        return new Event("organizer-xyz", "Sports Event", "Explore your favourite sport",
+                LocalDateTime.of(2026, 6, 4, 18, 0),
+                LocalDateTime.of(2026, 5, 20, 9, 0),
+                LocalDateTime.of(2026, 6, 1, 23, 59),
+                "Rec Centre", 20);
+    }
+
+    private static Timestamp at(LocalDateTime time) {
+        return new Timestamp(time.atZone(ZoneId.systemDefault()).toEpochSecond(), 0);
+    }
+
+    /**
+     * Tests that the constructor stores Timestamps that convert back to the same local times
+     */
+    @Test
+    public void roundTripTest() {
+        Event event = event();
+        assertEquals(at(LocalDateTime.of(2026, 5, 20, 9, 0)), event.getRegistrationTimeStart());
+        assertEquals(LocalDate.of(2026, 6, 4), event.getDateTimeAsLocalDate());
+        assertEquals(LocalDateTime.of(2026, 5, 20, 9, 0), event.getRegistrationTimeStartAsDateTime());
+        assertEquals(LocalDateTime.of(2026, 6, 1, 23, 59), event.getRegistrationTimeEndAsDateTime());
+    }
+
+    /**
+     * Tests that the local views are made once, and again after the time changes
+     */
+    @Test
+    public void viewCacheTest() {
+        Event event = event();
+        LocalDateTime start = event.getRegistrationTimeStartAsDateTime();
+        assertSame(start, event.getRegistrationTimeStartAsDateTime());
+
+        event.setRegistrationTimeStart(at(LocalDateTime.of(2026, 5, 21, 9, 0)));
+        assertEquals(LocalDateTime.of(2026, 5, 21, 9, 0), event.getRegistrationTimeStartAsDateTime());
+    }
+
+    /**
+     * Tests that the strings of documents not migrated yet are still read
+     */
+    @Test
+    public void legacyStringTest() {
+        Event event = new Event();
+        event.setDateTime("2026-06-04 18:00:00");
+        event.setRegistrationTimeStart("2026-05-20 09:00:00");
+        event.setRegistrationTimeEnd(null);
+
+        assertEquals(at(LocalDateTime.of(2026, 6, 4, 18, 0)), event.getDateTime());
+        assertEquals(LocalDateTime.of(2026, 5, 20, 9, 0), event.getRegistrationTimeStartAsDateTime());
+        assertNull(event.getRegistrationTimeEnd());
+        assertNull(event.getRegistrationTimeEndAsDateTime());
+    }
+
+    @Test
+    public void badStringTest() {
+        assertThrows(IllegalArgumentException.class, () -> new Event().setDateTime("June 4th"));
+    }
+
+    /**
+     * Tests the registration window, ends included
+     */
+    @Test
+    public void registrationOpenTest() {
+        Event event = event();
+        assertFalse(event.isRegistrationOpen(at(LocalDateTime.of(2026, 5, 20, 8, 59))));
+        assertTrue(event.isRegistrationOpen(at(LocalDateTime.of(2026, 5, 20, 9, 0))));
+        assertTrue(event.isRegistrationOpen(at(LocalDateTime.of(2026, 5, 25, 12, 0))));
+        assertTrue(event.isRegistrationOpen(at(LocalDateTime.of(2026, 6, 1, 23, 59))));
+        assertFalse(event.isRegistrationOpen(at(LocalDateTime.of(2026, 6, 2, 0, 0))));
+        assertFalse(new Event().isRegistrationOpen(at(LocalDateTime.of(2026, 5, 25, 12, 0))));
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.auroraevents;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.example.auroraevents.server.ExpiringLruCache;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tests eviction and expiry of {@link ExpiringLruCache}, the memory tier of the user cache.
+ * Time is faked, no database calls are made.
+ */
+public class ExpiringLruCacheTest {
+    private final AtomicLong now = new AtomicLong(1_000);
+
+    /**
+     * Tests that the least recently used entry is the one dropped, counting reads as uses
+     */
+    @Test
+    public void evictionTest() {
+        ExpiringLruCache<String, String> cache = new ExpiringLruCache<>(2, 100, now::get);
+        cache.put("aurora", "a");
+        cache.put("borealis", "b");
+        cache.get("aurora");
+        cache.put("australis", "c");
+
+        assertEquals(2, cache.size());
+        assertNull(cache.get("borealis"));
+        assertEquals("a", cache.get("aurora").getValue());
+        assertEquals("c", cache.get("australis").getValue());
+    }
+
+    /**
+     * Tests that expired entries are still returned but reported as expired, until put again
+     */
+    @Test
+    public void expiryTest() {
+        ExpiringLruCache<String, String> cache = new ExpiringLruCache<>(10, 100, now::get);
+        cache.put("aurora", "a");
+        assertFalse(cache.isExpired(cache.get("aurora")));
+
+        now.addAndGet(100);
+        ExpiringLruCache.Entry<String> entry = cache.get("aurora");
+        assertEquals("a", entry.getValue());
+        assertTrue(cache.isExpired(entry));
+
+        cache.put("aurora", "a2");
+        assertFalse(cache.isExpired(cache.get("aurora")));
+        assertEquals("a2", cache.get("aurora").getValue());
+    }
+
+    @Test
+    public void putExpiredAndRemoveTest() {
+        ExpiringLruCache<String, String> cache = new ExpiringLruCache<>(10, 100, now::get);
+        cache.putExpired("aurora", "a");
+        assertTrue(cache.isExpired(cache.get("aurora")));
+
+        cache.remove("aurora");
+        assertNull(cache.get("aurora"));
+        cache.put("borealis", "b");
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.auroraevents;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.example.auroraevents.model.EntrantState;
+import com.example.auroraevents.model.ListReconciler;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests working out list corrections with {@link ListReconciler}.
+ * No database calls are made.
+ */
+public class ListReconcilerTest {
+
+    private static ListReconciler.Correction find(List<ListReconciler.Correction> corrections, EntrantState state) {
+        for (ListReconciler.Correction correction : corrections)
+            if (correction.getState() == state) return correction;
+        return null;
+    }
+
+    @Test
+    public void consistentListsTest() {
+        Map<EntrantState, List<String>> lists = new EnumMap<>(EntrantState.class);
+        lists.put(EntrantState.WAITING, Arrays.asList("aurora", "borealis"));
+        lists.put(EntrantState.SELECTED, Collections.singletonList("australis"));
+        lists.put(EntrantState.REMOVED, null);
+
+        assertTrue(ListReconciler.reconcile(lists).isEmpty());
+    }
+
+    /**
+     * Tests that duplicates are only removed from the lower priority lists
+     */
+    @Test
+    public void priorityTest() {
+        Map<EntrantState, List<String>> lists = new EnumMap<>(EntrantState.class);
+        lists.put(EntrantState.CANCELLED, Arrays.asList("aurora", "borealis"));
+        lists.put(EntrantState.WAITING, Arrays.asList("aurora", "borealis", "australis"));
+        lists.put(EntrantState.SELECTED, Collections.singletonList("borealis"));
+        lists.put(EntrantState.ATTENDING, Collections.singletonList("australis"));
+        lists.put(EntrantState.REMOVED, Collections.singletonList("australis"));
+
+        List<ListReconciler.Correction> corrections = ListReconciler.reconcile(lists);
+        assertEquals(3, corrections.size());
+        assertEquals(Arrays.asList("aurora", "borealis"), find(corrections, EntrantState.CANCELLED).getRemovals());
+        assertEquals(Arrays.asList("borealis", "australis"), find(corrections, EntrantState.WAITING).getRemovals());
+        assertEquals(Collections.singletonList("australis"), find(corrections, EntrantState.ATTENDING).getRemovals());
+        assertNull(find(corrections, EntrantState.SELECTED));
+        assertNull(find(corrections, EntrantState.REMOVED));
+        assertNull(find(corrections, EntrantState.WAITING).getReplacement());
+
+        // the lists the removed entries are logged as moving to
+        Map<String, EntrantState> staysOn = ListReconciler.highestPriorityLists(lists);
+        assertEquals(EntrantState.WAITING, staysOn.get("aurora"));
+        assertEquals(EntrantState.SELECTED, staysOn.get("borealis"));
+        assertEquals(EntrantState.REMOVED, staysOn.get("australis"));
+    }
+
+    /**
+     * Tests that a list repeating a device ID is rewritten, keeping the first occurrence in place
+     */
+    @Test
+    public void repeatedEntryTest() {
+        Map<EntrantState, List<String>> lists = new EnumMap<>(EntrantState.class);
+        lists.put(EntrantState.WAITING, Arrays.asList("aurora", "borealis", "aurora", "australis"));
+        lists.put(EntrantState.SELECTED, Collections.singletonList("australis"));
+
+        List<ListReconciler.Correction> corrections = ListReconciler.reconcile(lists);
+        assertEquals(1, corrections.size());
+        assertEquals(Arrays.asList("aurora", "borealis"), corrections.get(0).getReplacement());
+        assertEquals(Collections.singletonList("australis"), corrections.get(0).getRemovals());
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.auroraevents;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.example.auroraevents.model.LotteryEngine;
+import com.example.auroraevents.model.LotteryResult;
+
+import org.junit.Test;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tests the draws made by {@link LotteryEngine}, the lottery behind Event.randomSampling.
+ * No database calls are made.
+ */
+public class LotteryEngineTest {
+
+    private static List<String> pool(int size) {
+        List<String> pool = new ArrayList<>();
+        for (int i = 0; i < size; i++) pool.add("entrant" + i);
+        return pool;
+    }
+
+    /**
+     * Tests that the winners are distinct entrants from the pool and the rest are everyone else
+     */
+    @Test
+    public void drawTest() {
+        List<String> pool = pool(100);
+        LotteryResult result = LotteryEngine.create().draw(pool, 30);
+
+        assertEquals(30, result.getSelected().size());
+        Set<String> selected = new HashSet<>(result.getSelected());
+        assertEquals(30, selected.size());
+        assertTrue(pool.containsAll(selected));
+
+        assertEquals(70, result.getNotSelected().size());
+        for (String userID : result.getNotSelected()) assertTrue(!selected.contains(userID));
+        assertEquals(100, result.getPoolSize());
+    }
+
+    /**
+     * Tests that everyone is drawn when there are more winners than entrants, and no one when there are none
+     */
+    @Test
+    public void edgeTest() {
+        List<String> pool = pool(5);
+        LotteryResult all = LotteryEngine.create().draw(pool, 8);
+        assertEquals(new HashSet<>(pool), new HashSet<>(all.getSelected()));
+        assertTrue(all.getNotSelected().isEmpty());
+
+        assertTrue(LotteryEngine.create().draw(pool, 0).getSelected().isEmpty());
+        assertTrue(LotteryEngine.create().draw(pool, -1).getSelected().isEmpty());
+        assertTrue(LotteryEngine.create().draw(new ArrayList<>(), 3).getSelected().isEmpty());
+    }
+
+    /**
+     * Tests that the same seed gives the same draw
+     */
+    @Test
+    public void seedTest() {
+        List<String> pool = pool(1000);
+        assertEquals(LotteryEngine.seeded(301).draw(pool, 50).getSelected(),
+                LotteryEngine.seeded(301).draw(pool, 50).getSelected());
+    }
+
+    /**
+     * Tests that every entrant is about equally likely to win
+     */
+    @Test
+    public void uniformityTest() {
+        int entrants = 10, winners = 3, draws = 20_000;
+        int[] wins = new int[entrants];
+        LotteryEngine engine = LotteryEngine.seeded(26);
+        List<String> pool = pool(entrants);
+        for (int d = 0; d < draws; d++) {
+            for (String userID : engine.draw(pool, winners).getSelected()) {
+                wins[Integer.parseInt(userID.substring("entrant".length()))]++;
+            }
+        }
+        double expected = (double) draws * winners / entrants;    // 6000
+        for (int count : wins) assertEquals(Arrays.toString(wins), expected, count, expected * 0.05);
+    }
+
+    /**
+     * Tests that a small draw from a huge pool only reads the entrants it draws
+     */
+    @Test
+    public void largePoolTest() {
+        int[] reads = {0};
+        List<String> pool = new AbstractList<String>() {
+            @Override
+            public String get(int index) {
+                reads[0]++;
+                return "entrant" + index;
+            }
+
+            @Override
+            public int size() {
+                return 50_000_000;
+            }
+        };
+        LotteryResult result = LotteryEngine.create().draw(pool, 100);
+        assertEquals(100, new HashSet<>(result.getSelected()).size());
+        assertEquals(100, reads[0]);
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.auroraevents;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.example.auroraevents.model.EntrantState;
+import com.example.auroraevents.model.RegistrationList;
+import com.example.auroraevents.model.TransitionEngine;
+import com.example.auroraevents.model.TransitionEntry;
+import com.example.auroraevents.server.EventDb;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Before/after benchmark of the entrant list bookkeeping in {@link RegistrationList}.
+ * "Before" replays the old six-{@code ArrayList} membership checks, "after" is what addToWaitingList runs
+ * around its database write: the {@link TransitionEngine} plan against the hash index, then the committed change
+ * applied to the lists, as it is when the transition log brings it back.
+ * Only local bookkeeping is timed, no database calls are made.
+ */
+public class RegistrationListBenchmarkTest {
+    private static final int[] SIZES = { 1_000, 10_000, 100_000 };
+    private static final int JOINS = 1_000;
+    // coarse, so a slow machine doesn't fail it: at the largest size the index must beat the scans by this much
+    private static final int MIN_SPEEDUP = 10;
+
+    /**
+     * The entrant lists as they were stored before the hash index.
+     */
+    private static class ArrayListRegistration {
+        final List<String> waitingList = new ArrayList<>();
+        final List<String> selectedList = new ArrayList<>();
+        final List<String> attendingList = new ArrayList<>();
+        final List<String> declinedList = new ArrayList<>();
+        final List<String> cancelledList = new ArrayList<>();
+        final List<String> removedList = new ArrayList<>();
+
+        int join(String userID) {
+            if (selectedList.contains(userID) || attendingList.contains(userID) || removedList.contains(userID) || declinedList.contains(userID))
+                return 1;
+            else if (waitingList.contains(userID))
+                return -1;
+            cancelledList.remove(userID);
+            waitingList.add(userID);
+            return 0;
+        }
+
+        List<String> all() {
+            List<String> output = new ArrayList<>();
+            output.addAll(attendingList);
+            output.addAll(selectedList);
+            output.addAll(waitingList);
+            output.addAll(declinedList);
+            output.addAll(cancelledList);
+            output.addAll(removedList);
+            return output;
+        }
+    }
+
+    /**
+     * Joins as addToWaitingList does, with the write taken as committed.
+     */
+    private static int join(RegistrationList list, Set<String> pending, String userID) {
+        TransitionEngine.Plan plan = TransitionEngine.plan(
+                TransitionEngine.requests(Collections.singletonList(userID), EntrantState.WAITING),
+                list::getEntrantState, pending);
+        List<TransitionEntry> committed = new ArrayList<>();
+        for (EventDb.ListChange change : plan.getChanges()) {
+            committed.add(new TransitionEntry(list.getLastSeq() + committed.size() + 1, change.getDeviceId(),
+                    EntrantState.fromFieldName(change.getFromFieldName()),
+                    EntrantState.fromFieldName(change.getToFieldName())));
+        }
+        list.replay(committed);
+        pending.removeAll(plan.getUserIDs());
+        return plan.results(committed.size()).get(0).getStatus();
+    }
+
+    private static String id(int i) {
+        return "device-" + i;
+    }
+
+    /**
+     * Spreads {@code size} entrants over the lists, most of them on the waiting list.
+     */
+    private static List<List<String>> distribute(int size) {
+        List<List<String>> lists = new ArrayList<>();
+        for (int i = 0; i < 6; i++) lists.add(new ArrayList<>());
+        for (int i = 0; i < size; i++) {
+            int bucket = i % 10;
+            lists.get(bucket < 5 ? 0 : bucket - 4).add(id(i));
+        }
+        return lists;
+    }
+
+    @Test
+    public void joinBenchmark() {
+        for (int size : SIZES) {
+            List<List<String>> lists = distribute(size);
+
+            ArrayListRegistration before = new ArrayListRegistration();
+            before.waitingList.addAll(lists.get(0));
+            before.selectedList.addAll(lists.get(1));
+            before.attendingList.addAll(lists.get(2));
+            before.declinedList.addAll(lists.get(3));
+            before.cancelledList.addAll(lists.get(4));
+            before.removedList.addAll(lists.get(5));
+
+            RegistrationList after = new RegistrationList();
+            Set<String> pending = new HashSet<>();
+            after.setWaitingList(lists.get(0));
+            after.setSelectedList(lists.get(1));
+            after.setAttendingList(lists.get(2));
+            after.setDeclinedList(lists.get(3));
+            after.setCancelledList(lists.get(4));
+            after.setRemovedList(lists.get(5));
+
+            // joins alternate between new entrants and entrants already on a list
+            long start = System.nanoTime();
+            int beforeJoined = 0;
+            for (int i = 0; i < JOINS; i++)
+                if (before.join(i % 2 == 0 ? id(size + i) : id(i * 7 % size)) == 0) beforeJoined++;
+            long beforeJoinNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int afterJoined = 0;
+            for (int i = 0; i < JOINS; i++)
+                if (join(after, pending, i % 2 == 0 ? id(size + i) : id(i * 7 % size)) == 0) afterJoined++;
+            long afterJoinNanos = System.nanoTime() - start;
+
+            // best of a few runs, after the lists have changed so the cached list snapshots are rebuilt
+            int beforeAll = 0, afterAll = 0;
+            long beforeAllNanos = Long.MAX_VALUE, afterAllNanos = Long.MAX_VALUE;
+            for (int run = 0; run < 5; run++) {
+                before.join(id(2 * size + run));
+                join(after, pending, id(2 * size + run));
+
+                start = System.nanoTime();
+                beforeAll = before.all().size();
+                beforeAllNanos = Math.min(beforeAllNanos, System.nanoTime() - start);
+
+                start = System.nanoTime();
+                afterAll = after.getAllEntrantsList().size();
+                afterAllNanos = Math.min(afterAllNanos, System.nanoTime() - start);
+            }
+
+            assertEquals(beforeJoined, afterJoined);
+            assertEquals(before.waitingList.size(), after.getWaitingList().size());
+            assertEquals(beforeAll, afterAll);
+
+            System.out.printf("%,d entrants: %,d joins %.2f ms -> %.2f ms, getAllEntrantsList %.2f ms -> %.2f ms%n",
+                    size, JOINS,
+                    beforeJoinNanos / 1e6, afterJoinNanos / 1e6,
+                    beforeAllNanos / 1e6, afterAllNanos / 1e6);
+            if (size == SIZES[SIZES.length - 1])
+                assertTrue("joins on the index aren't faster than the list scans",
+                        afterJoinNanos * MIN_SPEEDUP < beforeJoinNanos);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.auroraevents;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.example.auroraevents.model.RegistrationList;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Heap footprint of the entrant lists for an event with 100k entrants, and for several such events
+ * held at once (as on the organizer screens).
+ * Each event gets its own copies of the device ID Strings, as it would when deserialized from Firestore.
+ * "Before" keeps them in {@code ArrayList}s, "hash index" in a {@code HashMap} plus {@code LinkedHashSet}
+ * (the previous {@code EntrantIndex}), "after" is {@link RegistrationList} with interned int sets.
+ * Numbers come from the used heap after a full GC, so they are approximate.
+ */
+public class RegistrationListFootprintTest {
+    private static final int ENTRANTS = 100_000;
+    private static final int EVENTS = 5;
+
+    private static List<String> deviceIds(String prefix) {
+        List<String> ids = new ArrayList<>(ENTRANTS);
+        for (int i = 0; i < ENTRANTS; i++) ids.add(new String(prefix + "-device-" + i));
+        return ids;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Measures the heap retained by what the supplier builds.
+     */
+    private static long retained(Supplier<Object> build) {
+        long start = usedHeap();
+        Object kept = build.get();
+        long used = usedHeap() - start;
+        assertTrue(kept != null);
+        return used;
+    }
+
+    private static Object arrayLists(String prefix, int events) {
+        List<List<String>> lists = new ArrayList<>();
+        for (int e = 0; e < events; e++) lists.add(new ArrayList<>(deviceIds(prefix)));
+        return lists;
+    }
+
+    private static Object hashIndex(String prefix, int events) {
+        List<Object> indexes = new ArrayList<>();
+        for (int e = 0; e < events; e++) {
+            Map<String, Integer> states = new HashMap<>();
+            LinkedHashSet<String> waiting = new LinkedHashSet<>();
+            for (String id : deviceIds(prefix)) {
+                states.put(id, 0);
+                waiting.add(id);
+            }
+            indexes.add(states);
+            indexes.add(waiting);
+        }
+        return indexes;
+    }
+
+    private static Object intSets(String prefix, int events) {
+        List<RegistrationList> lists = new ArrayList<>();
+        for (int e = 0; e < events; e++) {
+            RegistrationList list = new RegistrationList();
+            list.setWaitingList(deviceIds(prefix));
+            assertEquals(ENTRANTS, list.getWaitingList().size());
+            lists.add(list);
+        }
+        return lists;
+    }
+
+    @Test
+    public void footprintTest() {
+        for (int events : new int[] { 1, EVENTS }) {
+            // distinct prefixes so the dictionary starts without these device IDs
+            long before = retained(() -> arrayLists("before" + events, events));
+            long hash   = retained(() -> hashIndex("hash" + events, events));
+            long after  = retained(() -> intSets("after" + events, events));
+
+            System.out.printf("%d event(s) x %,d entrants: ArrayList %,d KB (%d B/entrant/event), "
+                            + "hash index %,d KB (%d B), int sets %,d KB (%d B)%n",
+                    events, ENTRANTS,
+                    before / 1024, before / ENTRANTS / events,
+                    hash / 1024, hash / ENTRANTS / events,
+                    after / 1024, after / ENTRANTS / events);
+
+            assertTrue("int sets should be smaller than the hash index", after < hash);
+            if (events > 1) assertTrue("int sets should be smaller than ArrayLists", after < before);
+        }
+    }
+
+    /**
+     * Tests that the int sets keep the same members, in the same order, as a LinkedHashSet
+     * through many joins and removals
+     */
+    @Test
+    public void churnMatchesLinkedHashSetTest() {
+        Random random = new Random(301);
+        RegistrationList list = new RegistrationList();
+        LinkedHashSet<String> expected = new LinkedHashSet<>();
+        for (int i = 0; i < 200_000; i++) {
+            String id = "churn-" + random.nextInt(5_000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(id), list.getWaitingList().remove(id));
+            } else {
+                assertEquals(expected.add(id), list.getWaitingList().add(id));
+            }
+            if (i % 20_000 == 0) assertEquals(new ArrayList<>(expected), new ArrayList<>(list.getWaitingList()));
+        }
+        assertEquals(new ArrayList<>(expected), new ArrayList<>(list.getWaitingList()));
+        assertEquals(expected.size(), list.getAllEntrantsList().size());
+    }
+}
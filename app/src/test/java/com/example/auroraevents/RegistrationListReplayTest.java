@@ -0,0 +1,73 @@
+package com.example.auroraevents;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.example.auroraevents.model.EntrantState;
+import com.example.auroraevents.model.RegistrationList;
+import com.example.auroraevents.model.TransitionEntry;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Tests replaying transition log entries onto a {@link RegistrationList}.
+ * No database calls are made.
+ */
+public class RegistrationListReplayTest {
+
+    @Test
+    public void replayInOrderTest() {
+        RegistrationList list = new RegistrationList();
+        list.setWaitingList(Collections.singletonList("aurora"));
+        list.setLastSeq(3);
+
+        assertTrue(list.replay(Arrays.asList(
+                new TransitionEntry(4, "aurora", EntrantState.WAITING, EntrantState.SELECTED),
+                new TransitionEntry(5, "borealis", null, EntrantState.WAITING),
+                new TransitionEntry(6, "aurora", EntrantState.SELECTED, EntrantState.ATTENDING))));
+
+        assertEquals(6, list.getLastSeq());
+        assertEquals(EntrantState.ATTENDING, list.getEntrantState("aurora"));
+        assertEquals(EntrantState.WAITING, list.getEntrantState("borealis"));
+        assertEquals(2, list.getAllEntrantsList().size());
+    }
+
+    /**
+     * Tests that entries already reflected in the lists are skipped
+     */
+    @Test
+    public void replaySkipsOldEntriesTest() {
+        RegistrationList list = new RegistrationList();
+        list.setAttendingList(Collections.singletonList("aurora"));
+        list.setLastSeq(2);
+
+        assertTrue(list.replay(Arrays.asList(
+                new TransitionEntry(1, "aurora", null, EntrantState.WAITING),
+                new TransitionEntry(2, "aurora", EntrantState.WAITING, EntrantState.ATTENDING),
+                new TransitionEntry(3, "aurora", EntrantState.ATTENDING, EntrantState.REMOVED),
+                new TransitionEntry(4, "aurora", EntrantState.REMOVED, null))));
+
+        assertEquals(4, list.getLastSeq());
+        assertNull(list.getEntrantState("aurora"));
+        assertEquals(0, list.getAllEntrantsList().size());
+    }
+
+    /**
+     * Tests that a gap in the sequence numbers is reported and nothing after it is applied
+     */
+    @Test
+    public void replayGapTest() {
+        RegistrationList list = new RegistrationList();
+        list.setLastSeq(7);
+
+        assertFalse(list.replay(Collections.singletonList(
+                new TransitionEntry(9, "aurora", null, EntrantState.WAITING))));
+        assertEquals(7, list.getLastSeq());
+        assertNull(list.getEntrantState("aurora"));
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.auroraevents;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.example.auroraevents.model.EntrantSnapshot;
+import com.example.auroraevents.model.EntrantState;
+import com.example.auroraevents.model.RegistrationList;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Stress test of {@link RegistrationList} changed from several threads at once, the way it is by
+ * Firestore callbacks, the write queue and the UI.
+ * Readers check that every snapshot is consistent (no entrant on two lists, versions never go back)
+ * and that iterating a list never fails while writers keep moving entrants.
+ * No database calls are made.
+ */
+public class RegistrationListStressTest {
+    private static final int ENTRANTS = 2_000;
+    private static final int WRITERS = 4;
+    private static final int READERS = 4;
+    private static final long RUN_MILLIS = 2_000;
+
+    private static String id(int i) {
+        return "stress-" + i;
+    }
+
+    @Test
+    public void concurrentMovesAndSnapshotsTest() throws InterruptedException {
+        RegistrationList list = new RegistrationList();
+        EntrantState[] states = EntrantState.values();
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicLong writes = new AtomicLong();
+        AtomicLong reads = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(WRITERS + READERS);
+        List<Thread> threads = new ArrayList<>();
+
+        for (int w = 0; w < WRITERS; w++) {
+            threads.add(new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    while (running.get()) {
+                        String userID = id(random.nextInt(ENTRANTS));
+                        EntrantState state = states[random.nextInt(states.length)];
+                        switch (random.nextInt(4)) {
+                            case 0:
+                                list.getList(state).remove(userID);
+                                break;
+                            case 1:
+                                // iterator removal races with the other writers
+                                for (Iterator<String> it = list.getList(state).iterator(); it.hasNext(); ) {
+                                    if (it.next().equals(userID)) it.remove();
+                                }
+                                break;
+                            default:
+                                list.getList(state).add(userID);
+                        }
+                        writes.incrementAndGet();
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                } finally {
+                    done.countDown();
+                }
+            }));
+        }
+
+        for (int r = 0; r < READERS; r++) {
+            threads.add(new Thread(() -> {
+                long lastVersion = -1;
+                try {
+                    while (running.get()) {
+                        EntrantSnapshot snapshot = list.getSnapshot();
+                        assertTrue("snapshot versions went back", snapshot.getVersion() >= lastVersion);
+                        lastVersion = snapshot.getVersion();
+
+                        Set<String> seen = new HashSet<>();
+                        for (EntrantState state : states) {
+                            for (String userID : snapshot.getList(state)) {
+                                if (!seen.add(userID)) fail(userID + " is on two lists in one snapshot");
+                                assertEquals(state, snapshot.stateOf(userID));
+                            }
+                        }
+                        assertEquals(seen.size(), snapshot.size());
+
+                        // live views may move on between calls, but must never throw
+                        int count = 0;
+                        for (String ignored : list.getWaitingList()) count++;
+                        assertTrue(count <= ENTRANTS);
+                        list.getAllEntrantsList();
+                        reads.incrementAndGet();
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                } finally {
+                    done.countDown();
+                }
+            }));
+        }
+
+        for (Thread thread : threads) thread.start();
+        Thread.sleep(RUN_MILLIS);
+        running.set(false);
+        assertTrue("threads did not stop", done.await(10, TimeUnit.SECONDS));
+        if (failure.get() != null) throw new AssertionError(failure.get());
+
+        // once writers stop, the snapshot and the index agree
+        EntrantSnapshot end = list.getSnapshot();
+        for (int i = 0; i < ENTRANTS; i++)
+            assertEquals(list.getEntrantState(id(i)), end.stateOf(id(i)));
+        assertEquals(end.size(), list.getAllEntrantsList().size());
+
+        System.out.printf("%,d writes and %,d consistent snapshot reads in %d ms%n", writes.get(), reads.get(), RUN_MILLIS);
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.auroraevents;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.example.auroraevents.server.RetryPolicy;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+
+import org.junit.Test;
+
+/**
+ * Tests the backoff delays and the transient error check of {@link RetryPolicy}.
+ * No database calls are made.
+ */
+public class RetryPolicyTest {
+
+    private static FirebaseFirestoreException error(FirebaseFirestoreException.Code code) {
+        return new FirebaseFirestoreException("test", code);
+    }
+
+    /**
+     * Tests that the delay bound doubles from the base delay until it reaches the cap
+     */
+    @Test
+    public void backoffBoundTest() {
+        RetryPolicy policy = new RetryPolicy(10, 250, 2_000);
+        assertEquals(250, policy.maxDelayMillis(1));
+        assertEquals(500, policy.maxDelayMillis(2));
+        assertEquals(1_000, policy.maxDelayMillis(3));
+        assertEquals(2_000, policy.maxDelayMillis(4));
+        assertEquals(2_000, policy.maxDelayMillis(5));
+        assertEquals(2_000, policy.maxDelayMillis(100));
+    }
+
+    /**
+     * Tests that the jittered delays stay within the bound and are spread out
+     */
+    @Test
+    public void jitterTest() {
+        RetryPolicy policy = new RetryPolicy(10, 250, 2_000);
+        for (int attempt = 1; attempt <= 6; attempt++) {
+            long min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+            for (int i = 0; i < 1_000; i++) {
+                long delay = policy.delayMillis(attempt);
+                assertTrue(delay >= 0 && delay <= policy.maxDelayMillis(attempt));
+                min = Math.min(min, delay);
+                max = Math.max(max, delay);
+            }
+            assertTrue("delays are not jittered", max - min > policy.maxDelayMillis(attempt) / 2);
+        }
+    }
+
+    @Test
+    public void transientErrorTest() {
+        assertTrue(RetryPolicy.isTransient(error(FirebaseFirestoreException.Code.UNAVAILABLE)));
+        assertTrue(RetryPolicy.isTransient(error(FirebaseFirestoreException.Code.DEADLINE_EXCEEDED)));
+        assertTrue(RetryPolicy.isTransient(error(FirebaseFirestoreException.Code.ABORTED)));
+        assertTrue(RetryPolicy.isTransient(error(FirebaseFirestoreException.Code.RESOURCE_EXHAUSTED)));
+        assertTrue(RetryPolicy.isTransient(new RuntimeException(error(FirebaseFirestoreException.Code.UNAVAILABLE))));
+
+        assertFalse(RetryPolicy.isTransient(error(FirebaseFirestoreException.Code.PERMISSION_DENIED)));
+        assertFalse(RetryPolicy.isTransient(error(FirebaseFirestoreException.Code.INVALID_ARGUMENT)));
+        assertFalse(RetryPolicy.isTransient(new IllegalStateException("not a database error")));
+        assertFalse(RetryPolicy.isTransient(null));
+    }
+
+    /**
+     * Tests that only transient errors are retried, and only while attempts remain
+     */
+    @Test
+    public void shouldRetryTest() {
+        RetryPolicy policy = new RetryPolicy(3, 250, 2_000);
+        Exception unavailable = error(FirebaseFirestoreException.Code.UNAVAILABLE);
+        assertTrue(policy.shouldRetry(1, unavailable));
+        assertTrue(policy.shouldRetry(2, unavailable));
+        assertFalse(policy.shouldRetry(3, unavailable));
+        assertFalse(policy.shouldRetry(1, error(FirebaseFirestoreException.Code.PERMISSION_DENIED)));
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.auroraevents;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.example.auroraevents.model.EntrantState;
+import com.example.auroraevents.model.TransitionEngine;
+import com.example.auroraevents.model.TransitionResult;
+import com.example.auroraevents.server.EventDb;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tests the transition table and batch planning of {@link TransitionEngine}.
+ * No database calls are made.
+ */
+public class TransitionEngineTest {
+
+    @Test
+    public void checkTest() {
+        assertEquals(TransitionResult.SUCCESS, TransitionEngine.check(null, EntrantState.WAITING));
+        assertEquals(TransitionResult.SUCCESS, TransitionEngine.check(EntrantState.CANCELLED, EntrantState.WAITING));
+        assertEquals(TransitionResult.SUCCESS, TransitionEngine.check(EntrantState.WAITING, EntrantState.SELECTED));
+        assertEquals(TransitionResult.SUCCESS, TransitionEngine.check(EntrantState.SELECTED, EntrantState.DECLINED));
+        assertEquals(TransitionResult.SUCCESS, TransitionEngine.check(EntrantState.ATTENDING, EntrantState.REMOVED));
+        assertEquals(TransitionResult.SUCCESS, TransitionEngine.check(EntrantState.REMOVED, null));
+
+        assertEquals(TransitionResult.ALREADY_ON_LIST, TransitionEngine.check(EntrantState.WAITING, EntrantState.WAITING));
+        assertEquals(TransitionResult.ALREADY_ON_LIST, TransitionEngine.check(EntrantState.WAITING, null));
+
+        assertEquals(TransitionResult.BLOCKED, TransitionEngine.check(null, EntrantState.SELECTED));
+        assertEquals(TransitionResult.BLOCKED, TransitionEngine.check(EntrantState.WAITING, EntrantState.ATTENDING));
+        assertEquals(TransitionResult.BLOCKED, TransitionEngine.check(EntrantState.REMOVED, EntrantState.WAITING));
+        assertEquals(TransitionResult.BLOCKED, TransitionEngine.check(EntrantState.DECLINED, EntrantState.ATTENDING));
+    }
+
+    /**
+     * Tests that several requests for one entrant become a single net change
+     */
+    @Test
+    public void coalescePlanTest() {
+        Map<String, EntrantState> states = new HashMap<>();
+        states.put("aurora", EntrantState.WAITING);
+        Set<String> pending = new HashSet<>();
+
+        List<TransitionEngine.Request> requests = Arrays.asList(
+                new TransitionEngine.Request("aurora", EntrantState.SELECTED),
+                new TransitionEngine.Request("aurora", EntrantState.ATTENDING));
+        TransitionEngine.Plan plan = TransitionEngine.plan(requests, states::get, pending);
+
+        assertEquals(1, plan.getChanges().size());
+        EventDb.ListChange change = plan.getChanges().get(0);
+        assertEquals(EventDb.LIST_WAITING, change.getFromFieldName());
+        assertEquals(EventDb.LIST_ATTENDING, change.getToFieldName());
+        assertTrue(pending.contains("aurora"));
+
+        List<TransitionResult> results = plan.results(1);
+        assertEquals(EntrantState.WAITING, results.get(0).getFrom());
+        assertEquals(EntrantState.SELECTED, results.get(1).getFrom());
+        assertTrue(results.get(0).isSuccessful() && results.get(1).isSuccessful());
+    }
+
+    /**
+     * Tests that each request keeps its own status, and that only committed changes succeed
+     */
+    @Test
+    public void mixedPlanTest() {
+        Map<String, EntrantState> states = new HashMap<>();
+        states.put("aurora", EntrantState.SELECTED);
+        states.put("borealis", EntrantState.WAITING);
+        states.put("australis", EntrantState.REMOVED);
+        Set<String> pending = new HashSet<>();
+        pending.add("borealis");
+
+        List<TransitionEngine.Request> requests = Arrays.asList(
+                new TransitionEngine.Request("aurora", EntrantState.DECLINED),
+                new TransitionEngine.Request("borealis", EntrantState.SELECTED),
+                new TransitionEngine.Request("australis", null),
+                new TransitionEngine.Request("nova", EntrantState.ATTENDING),
+                new TransitionEngine.Request("aurora", EntrantState.DECLINED));
+        TransitionEngine.Plan plan = TransitionEngine.plan(requests, states::get, pending);
+
+        assertEquals(2, plan.getChanges().size());
+        assertEquals(EventDb.LIST_REMOVED, plan.getChanges().get(1).getFromFieldName());
+        assertNull(plan.getChanges().get(1).getToFieldName());
+
+        List<TransitionResult> results = plan.results(1);
+        assertEquals(TransitionResult.SUCCESS, results.get(0).getStatus());
+        assertEquals(TransitionResult.BLOCKED, results.get(1).getStatus());
+        assertEquals(TransitionResult.DATABASE_FAILURE, results.get(2).getStatus());
+        assertEquals(TransitionResult.BLOCKED, results.get(3).getStatus());
+        assertEquals(TransitionResult.ALREADY_ON_LIST, results.get(4).getStatus());
+    }
+}
@@ -1,4 +1,9 @@
-const { onDocumentUpdated } = require("firebase-functions/v2/firestore");
+const { onDocumentUpdated, onDocumentWritten } = require("firebase-functions/v2/firestore");
+const { onSchedule } = require("firebase-functions/v2/scheduler");
+const { onCall, HttpsError } = require("firebase-functions/v2/https");
+const { drawLottery } = require("./lottery");
+const { summaryOf, sameSummary } = require("./summary");
+const { isDeepStrictEqual } = require("util");
 const admin = require("firebase-admin");
 admin.initializeApp();
 
@@ -84,4 +89,541 @@ async function sendNotification(deviceId, title, body) {
     } catch (error) {
         console.error("Failed to send notification:", error);
     }
-}
\ No newline at end of file
+}
+
+// Transition log entries older than this are deleted by compactTransitionLogs
+const TRANSITION_RETENTION_MS = 24 * 60 * 60 * 1000;
+
+/**
+ * Scheduled Cloud Function that compacts every event's transition log
+ * (Events/{eventId}/transitions, written by EventDb.applyListChanges).
+ *
+ * The entrant lists on the Event document are updated in the same transaction as each log entry,
+ * so the document is always the compacted snapshot; this only deletes old entries.
+ * The newest entry of each event is kept so stale clients can tell they missed entries and reload.
+ * Logs and counters of deleted events are removed entirely.
+ */
+exports.compactTransitionLogs = onSchedule("every 60 minutes", async () => {
+    const cutoff = admin.firestore.Timestamp.fromMillis(Date.now() - TRANSITION_RETENTION_MS);
+    const old = await db.collectionGroup("transitions").where("at", "<", cutoff).get();
+
+    // group the old entries by event
+    const byEvent = new Map();
+    for (const doc of old.docs) {
+        const eventRef = doc.ref.parent.parent;
+        if (!byEvent.has(eventRef.path)) byEvent.set(eventRef.path, { eventRef, docs: [] });
+        byEvent.get(eventRef.path).docs.push(doc);
+    }
+
+    const writer = db.bulkWriter();
+    let deleted = 0;
+    for (const { eventRef, docs } of byEvent.values()) {
+        const counterRef = eventRef.collection("counters").doc("transitions");
+        const [eventDoc, counterDoc] = await Promise.all([eventRef.get(), counterRef.get()]);
+        const head = counterDoc.exists ? counterDoc.get("seq") : 0;
+
+        for (const doc of docs) {
+            if (eventDoc.exists && doc.get("seq") >= head) continue;
+            writer.delete(doc.ref);
+            deleted++;
+        }
+        if (!eventDoc.exists && counterDoc.exists) writer.delete(counterRef);
+    }
+    await writer.close();
+
+    console.log("Compacted transition logs of", byEvent.size, "events, deleted", deleted, "entries");
+});
+
+// Entrant list fields of an Event document, highest priority first (see EntrantState.getPriority)
+const LISTS_BY_PRIORITY = ["removedList", "declinedList", "attendingList", "selectedList", "waitingList", "cancelledList"];
+
+/**
+ * Key of a list's entrant count in an Event document's counts map, from its list field or
+ * entrant status (see EntrantState.getCountKey): "waitingList" and "WAITING" both give "waiting".
+ */
+function countKey(listOrStatus) {
+    return listOrStatus.replace(/List$/, "").toLowerCase();
+}
+
+/**
+ * Works out the writes that leave every entrant only on their highest priority list.
+ * Mirrors ListReconciler on the client: one pass to find each entrant's best list,
+ * then arrayRemove of the duplicates, or the whole corrected list if a list repeats a device ID.
+ *
+ * @param {Object} registrationList - The registrationList map of an Event document.
+ * @returns {{update: Object, corrected: number, counts: Object, moves: Object[]}} Field updates (empty if
+ *     consistent), entries taken off, the length of every list once corrected, keyed as in the event's counts,
+ *     and each entry taken off as a move ({deviceId, from, to} list fields) to the list the entrant stays on.
+ */
+function reconcileLists(registrationList) {
+    const best = new Map();
+    for (const field of LISTS_BY_PRIORITY) {
+        for (const id of registrationList[field] || []) {
+            if (!best.has(id)) best.set(id, field);
+        }
+    }
+
+    const update = {};
+    const counts = {};
+    const moves = [];
+    let corrected = 0;
+    for (const field of LISTS_BY_PRIORITY) {
+        const list = registrationList[field] || [];
+        const seen = new Set();
+        const kept = [];
+        const removals = [];
+        let repeated = false;
+        for (const id of list) {
+            if (best.get(id) !== field) {
+                if (!seen.has(id)) {
+                    removals.push(id);
+                    moves.push({ deviceId: id, from: field, to: best.get(id) });
+                }
+            } else if (!seen.has(id)) {
+                kept.push(id);
+            } else {
+                repeated = true;
+            }
+            seen.add(id);
+        }
+        if (repeated) {
+            update[`registrationList.${field}`] = kept;
+            corrected += list.length - kept.length;
+        } else if (removals.length > 0) {
+            update[`registrationList.${field}`] = admin.firestore.FieldValue.arrayRemove(...removals);
+            corrected += removals.length;
+        }
+        counts[countKey(field)] = repeated || removals.length > 0 ? kept.length : list.length;
+    }
+    return { update, corrected, counts, moves };
+}
+
+/**
+ * Scheduled Cloud Function that takes entrants found on more than one list of an event
+ * off all but their highest priority list, one transaction per event
+ * (on demand from the app: EventDb.reconcileLists / reconcileAllEvents).
+ * The entries taken off go through the transition log like any move, so registration listeners see them.
+ * Events storing entrants in the "entrants" subcollection can't hold duplicates and are skipped.
+ */
+exports.reconcileEntrantLists = onSchedule("every 24 hours", async () => {
+    const events = await db.collection("Events").select().get();
+    let corrected = 0;
+    let touched = 0;
+    for (const eventDoc of events.docs) {
+        const count = await db.runTransaction(async (transaction) => {
+            const snapshot = await transaction.get(eventDoc.ref);
+            if (!snapshot.exists || snapshot.get("entrantStorage") === "subcollection") return 0;
+            const result = reconcileLists(snapshot.get("registrationList") || {});
+            // counts that drifted from the lists are repaired at the same time
+            for (const [key, count] of Object.entries(result.counts)) {
+                if (snapshot.get(`counts.${key}`) !== count) result.update[`counts.${key}`] = count;
+            }
+            if (Object.keys(result.update).length === 0) return 0;
+            if (result.moves.length > 0) {
+                const lastSeq = logTransitions(transaction, eventDoc.ref,
+                    await readLastSeq(transaction, eventDoc.ref), result.moves);
+                result.update["registrationList.lastSeq"] = lastSeq;
+            }
+            transaction.update(eventDoc.ref, result.update);
+            const unselected = result.moves.filter((move) => move.from === "selectedList").map((move) => move.deviceId);
+            writeSelectionTimes(transaction, eventDoc.ref, unselected, admin.firestore.FieldValue.delete());
+            return result.corrected;
+        });
+        if (count > 0) touched++;
+        corrected += count;
+    }
+    console.log("Reconciled", corrected, "list entries in", touched, "of", events.size, "events");
+});
+
+/**
+ * Transition log status of an entrant list field ("waitingList" gives "WAITING"), or null for no list.
+ */
+function statusOf(field) {
+    return field ? field.replace(/List$/, "").toUpperCase() : null;
+}
+
+/**
+ * Reads the last transition sequence number used by an array storage event, in a transaction.
+ */
+async function readLastSeq(transaction, eventRef) {
+    const counterDoc = await transaction.get(eventRef.collection("counters").doc("transitions"));
+    return counterDoc.exists ? counterDoc.get("seq") || 0 : 0;
+}
+
+/**
+ * Appends moves ({deviceId, from, to} list fields) to an array storage event's transition log and moves
+ * its counter on, as ArrayEntrantStore.logTransitions does. The caller sets registrationList.lastSeq.
+ *
+ * @returns {number} The last sequence number used now.
+ */
+function logTransitions(transaction, eventRef, lastSeq, moves) {
+    const now = admin.firestore.FieldValue.serverTimestamp();
+    for (const { deviceId, from, to } of moves) {
+        lastSeq++;
+        transaction.set(eventRef.collection("transitions").doc(String(lastSeq).padStart(12, "0")),
+            { seq: lastSeq, userID: deviceId, from: statusOf(from), to: statusOf(to), at: now });
+    }
+    transaction.set(eventRef.collection("counters").doc("transitions"), { seq: lastSeq });
+    return lastSeq;
+}
+
+/**
+ * Moves entrants of an array storage event from one list to another in a transaction whose reads are done,
+ * writing what ArrayEntrantStore writes for a move: the array transforms, one transition log entry per entrant,
+ * the new sequence number, the counts and the selection times (selectedAt, see EventDb.FIELD_SELECTED_AT).
+ *
+ * @param {Transaction} transaction - The transaction to write in.
+ * @param {DocumentSnapshot} eventDoc - The event, read in the same transaction.
+ * @param {number} lastSeq - The last sequence number used, read in the same transaction.
+ * @param {string[]} deviceIds - The entrants to move, all on the from list.
+ * @param {string} from - The list field they're on.
+ * @param {string} to - The list field they move to.
+ * @returns {number} The last sequence number used now.
+ */
+function moveArrayEntrants(transaction, eventDoc, lastSeq, deviceIds, from, to) {
+    const eventRef = eventDoc.ref;
+    const now = admin.firestore.FieldValue.serverTimestamp();
+    lastSeq = logTransitions(transaction, eventRef, lastSeq, deviceIds.map((deviceId) => ({ deviceId, from, to })));
+    const update = {
+        [`registrationList.${from}`]: admin.firestore.FieldValue.arrayRemove(...deviceIds),
+        [`registrationList.${to}`]: admin.firestore.FieldValue.arrayUnion(...deviceIds),
+        "registrationList.lastSeq": lastSeq,
+    };
+    if (eventDoc.get("counts") === undefined) {
+        // written before counts were kept: set every count, as increments would leave the others missing
+        const lists = eventDoc.get("registrationList") || {};
+        for (const field of LISTS_BY_PRIORITY) update[`counts.${countKey(field)}`] = (lists[field] || []).length;
+        update[`counts.${countKey(from)}`] -= deviceIds.length;
+        update[`counts.${countKey(to)}`] += deviceIds.length;
+    } else {
+        update[`counts.${countKey(from)}`] = admin.firestore.FieldValue.increment(-deviceIds.length);
+        update[`counts.${countKey(to)}`] = admin.firestore.FieldValue.increment(deviceIds.length);
+    }
+    transaction.update(eventRef, update);
+    if (from === "selectedList" || to === "selectedList") {
+        const selectedAt = to === "selectedList" ? now : admin.firestore.FieldValue.delete();
+        writeSelectionTimes(transaction, eventRef, deviceIds, selectedAt);
+    }
+    return lastSeq;
+}
+
+/**
+ * Sets (or deletes) the selection time of entrants of an array storage event.
+ * Device IDs are put in field paths through FieldPath, as they aren't safe in a dotted field name.
+ */
+function writeSelectionTimes(transaction, eventRef, deviceIds, value) {
+    if (deviceIds.length === 0) return;
+    const fieldsAndValues = deviceIds.flatMap(
+        (deviceId) => [new admin.firestore.FieldPath("selectedAt", deviceId), value]);
+    transaction.update(eventRef, ...fieldsAndValues);
+}
+
+// Operation markers (Events/{eventId}/ops) expire after this, matching EventDb.OPERATION_TTL_MILLIS
+const OPERATION_TTL_MS = 7 * 24 * 60 * 60 * 1000;
+
+/**
+ * Callable Cloud Function that runs an event's lottery next to the data (on the app: EventDb.runLottery).
+ * Reads the waiting list and the seats taken, draws the winners and moves them from the waiting list
+ * to the selected list, all in one transaction, so the draw is never left half done.
+ * Array storage events also get the moves in their transition log and their counts changed; subcollection
+ * events get their entrant documents' status changed, which countEntrants then counts.
+ *
+ * Request data: { eventId, seats?, operationId? }
+ *   seats       - how many to draw; defaults to the free seats, and never more than them for a limited event
+ *   operationId - makes a retried call return without drawing again
+ * Returns: { selected: string[], notSelected: string[], seats: number, alreadyApplied: boolean }
+ */
+exports.runLottery = onCall(async (request) => {
+    if (!request.auth) throw new HttpsError("unauthenticated", "Sign in to run a lottery.");
+    const { eventId, seats, operationId } = request.data || {};
+    if (typeof eventId !== "string" || eventId.length === 0)
+        throw new HttpsError("invalid-argument", "eventId is required.");
+    if (seats !== undefined && seats !== null && (!Number.isInteger(seats) || seats < 0))
+        throw new HttpsError("invalid-argument", "seats must be a whole number of seats.");
+
+    const eventRef = db.collection("Events").doc(eventId);
+    const opRef = operationId ? eventRef.collection("ops").doc(String(operationId)) : null;
+
+    const result = await db.runTransaction(async (transaction) => {
+        // every read comes before the writes
+        if (opRef && (await transaction.get(opRef)).exists) {
+            return { selected: [], notSelected: [], seats: 0, alreadyApplied: true };
+        }
+        const eventDoc = await transaction.get(eventRef);
+        if (!eventDoc.exists) throw new HttpsError("not-found", `No event found for id: ${eventId}`);
+        const subcollection = eventDoc.get("entrantStorage") === "subcollection";
+        const capacity = eventDoc.get("capacity") || 0;
+
+        let waiting;
+        let taken;
+        let lastSeq = 0;
+        if (subcollection) {
+            const entrants = eventRef.collection("entrants");
+            const [waitingDocs, takenDocs] = await Promise.all([
+                transaction.get(entrants.where("status", "==", "WAITING").select()),
+                transaction.get(entrants.where("status", "in", ["SELECTED", "ATTENDING"]).select()),
+            ]);
+            waiting = waitingDocs.docs.map(doc => doc.id);
+            taken = takenDocs.size;
+        } else {
+            const lists = eventDoc.get("registrationList") || {};
+            waiting = lists.waitingList || [];
+            taken = (lists.selectedList || []).length + (lists.attendingList || []).length;
+            lastSeq = await readLastSeq(transaction, eventRef);
+        }
+
+        const free = capacity > 0 ? Math.max(0, capacity - taken) : waiting.length;
+        const count = seats === undefined || seats === null ? free : Math.min(seats, free);
+        const selected = drawLottery(waiting, count);
+        if (selected.length > 0) {
+            if (subcollection) {
+                const now = admin.firestore.FieldValue.serverTimestamp();
+                for (const deviceId of selected) {
+                    transaction.set(eventRef.collection("entrants").doc(deviceId),
+                        { deviceId, status: "SELECTED", updatedAt: now });
+                }
+            } else {
+                moveArrayEntrants(transaction, eventDoc, lastSeq, selected, "waitingList", "selectedList");
+            }
+        }
+        if (opRef) {
+            transaction.set(opRef, {
+                at: admin.firestore.FieldValue.serverTimestamp(),
+                expireAt: admin.firestore.Timestamp.fromMillis(Date.now() + OPERATION_TTL_MS),
+            });
+        }
+
+        const winners = new Set(selected);
+        return {
+            selected,
+            notSelected: waiting.filter(id => !winners.has(id)),
+            seats: count,
+            alreadyApplied: false,
+        };
+    });
+
+    console.log("Lottery for event", eventId, "selected", result.selected.length,
+        "of", result.selected.length + result.notSelected.length);
+    return result;
+});
+
+// Invitations declined per event and run, as EventDb.MAX_CHANGES_PER_BATCH; the rest wait for the next run
+const MAX_EXPIRED_PER_RUN = 450;
+
+/**
+ * Declines the invitations of one event left unanswered for longer than its acceptDeadlineMillis,
+ * in one transaction. Array storage events time them from selectedAt, and entrants selected before
+ * the times were kept get the full deadline from now; subcollection events time them from the
+ * updatedAt of the entrant documents, which is written by the move to the selected list.
+ *
+ * @returns {Promise<number>} The number of invitations declined.
+ */
+async function expireEventInvitations(eventRef) {
+    return db.runTransaction(async (transaction) => {
+        const eventDoc = await transaction.get(eventRef);
+        const deadline = eventDoc.exists ? eventDoc.get("acceptDeadlineMillis") || 0 : 0;
+        if (deadline <= 0) return 0;
+        const cutoff = admin.firestore.Timestamp.fromMillis(Date.now() - deadline);
+
+        if (eventDoc.get("entrantStorage") === "subcollection") {
+            const expired = await transaction.get(eventRef.collection("entrants")
+                .where("status", "==", "SELECTED")
+                .where("updatedAt", "<=", cutoff)
+                .limit(MAX_EXPIRED_PER_RUN)
+                .select());
+            const now = admin.firestore.FieldValue.serverTimestamp();
+            for (const doc of expired.docs) {
+                transaction.set(doc.ref, { deviceId: doc.id, status: "DECLINED", updatedAt: now });
+            }
+            return expired.size;
+        }
+
+        const lastSeq = await readLastSeq(transaction, eventRef);
+        const selected = (eventDoc.get("registrationList") || {}).selectedList || [];
+        const selectedAt = eventDoc.get("selectedAt") || {};
+        const expired = selected
+            .filter((deviceId) => selectedAt[deviceId] && selectedAt[deviceId].toMillis() <= cutoff.toMillis())
+            .slice(0, MAX_EXPIRED_PER_RUN);
+        const untimed = selected.filter((deviceId) => !selectedAt[deviceId]);
+        if (expired.length > 0) moveArrayEntrants(transaction, eventDoc, lastSeq, expired, "selectedList", "declinedList");
+        writeSelectionTimes(transaction, eventRef, untimed, admin.firestore.FieldValue.serverTimestamp());
+        return expired.length;
+    });
+}
+
+/**
+ * Scheduled Cloud Function that declines invitations left unanswered past their event's accept deadline
+ * (set with EventDb.setAcceptDeadline), so the seats free up even while no organizer has the event open
+ * to run a ReplacementDraw. The moves are written like any other, so listeners and counts follow them.
+ */
+exports.expireInvitations = onSchedule("every 15 minutes", async () => {
+    const events = await db.collection("Events").where("acceptDeadlineMillis", ">", 0).select().get();
+    let expired = 0;
+    for (const eventDoc of events.docs) {
+        try {
+            expired += await expireEventInvitations(eventDoc.ref);
+        } catch (error) {
+            console.error("Failed to expire invitations of event", eventDoc.id, error);
+        }
+    }
+    console.log("Expired", expired, "invitations in", events.size, "events");
+});
+
+// Count shards of a subcollection event (Events/{eventId}/counters/counts-{n}), as SubcollectionEntrantStore.COUNT_SHARDS
+const COUNT_SHARDS = 10;
+// rollUpEntrantCounts runs every minute and looks back this far, so a late run doesn't miss a change
+const ROLL_UP_WINDOW_MS = 3 * 60 * 1000;
+
+function countShardRef(eventRef, shard) {
+    return eventRef.collection("counters").doc(`counts-${shard}`);
+}
+
+/**
+ * Firestore-triggered Cloud Function that counts the entrants of events storing them in the "entrants"
+ * subcollection: every change of an entrant's status moves one count down and another up.
+ * The changes go to one of COUNT_SHARDS shard documents picked at random, never to the event document,
+ * so entrants joining at once spread their writes over the shards; rollUpEntrantCounts sums the shards
+ * into the event's counts.
+ * Array storage events have their counts changed by the app in the same transaction as their lists.
+ * Events without countsSince haven't been counted yet (EventDb.rebuildCounts starts them), and entrant
+ * documents written before it are already in the shards. Trigger events can be delivered more than once,
+ * so each is applied at most once, in a batch that also creates an operation marker named after it.
+ */
+exports.countEntrants = onDocumentWritten("Events/{eventId}/entrants/{deviceId}", async (event) => {
+    const before = event.data.before.exists ? event.data.before.get("status") : null;
+    const after = event.data.after.exists ? event.data.after.get("status") : null;
+    if (before === after) return;
+
+    const eventRef = db.collection("Events").doc(event.params.eventId);
+    const eventDoc = await eventRef.get();
+    if (!eventDoc.exists || eventDoc.get("entrantStorage") !== "subcollection") return;
+    const since = eventDoc.get("countsSince");
+    if (!since || Date.parse(event.time) < since.toMillis()) return;
+
+    const counts = {};
+    if (before) counts[countKey(before)] = admin.firestore.FieldValue.increment(-1);
+    if (after) counts[countKey(after)] = admin.firestore.FieldValue.increment(1);
+    const batch = db.batch();
+    batch.create(eventRef.collection("ops").doc(`count-${event.id}`), {
+        at: admin.firestore.FieldValue.serverTimestamp(),
+        expireAt: admin.firestore.Timestamp.fromMillis(Date.now() + OPERATION_TTL_MS),
+    });
+    batch.set(countShardRef(eventRef, Math.floor(Math.random() * COUNT_SHARDS)),
+        { counts, updatedAt: admin.firestore.FieldValue.serverTimestamp() }, { merge: true });
+    try {
+        await batch.commit();
+    } catch (e) {
+        if (e.code === 6) return;   // ALREADY_EXISTS: this trigger event was counted already
+        throw e;
+    }
+});
+
+/**
+ * Adds up the counts of an event's count shards.
+ *
+ * @param {Object[]} shards - The counts maps of the shard documents (undefined for a missing shard).
+ * @returns {Object} The entrants per list, keyed as in the event's counts, with every list present.
+ */
+function sumCounts(shards) {
+    const total = {};
+    for (const field of LISTS_BY_PRIORITY) total[countKey(field)] = 0;
+    for (const counts of shards) {
+        for (const [key, count] of Object.entries(counts || {})) total[key] = (total[key] || 0) + count;
+    }
+    return total;
+}
+
+/**
+ * Writes the sum of a subcollection event's count shards into its counts, if they differ.
+ *
+ * @returns {Promise<boolean>} Whether the counts changed.
+ */
+async function rollUpCounts(eventRef) {
+    return db.runTransaction(async (transaction) => {
+        const eventDoc = await transaction.get(eventRef);
+        if (!eventDoc.exists || eventDoc.get("entrantStorage") !== "subcollection" || !eventDoc.get("countsSince")) {
+            return false;
+        }
+        const shardRefs = [];
+        for (let shard = 0; shard < COUNT_SHARDS; shard++) shardRefs.push(countShardRef(eventRef, shard));
+        const shards = await transaction.getAll(...shardRefs);
+        const counts = sumCounts(shards.map((doc) => doc.get("counts")));
+        if (isDeepStrictEqual(counts, eventDoc.get("counts"))) return false;
+        transaction.update(eventRef, { counts });
+        return true;
+    });
+}
+
+/**
+ * Scheduled Cloud Function that sums the count shards changed in the last few minutes into their events'
+ * counts, so a busy event's document is written about once a minute rather than once per entrant
+ * (and its EventSummaries copy with it).
+ */
+exports.rollUpEntrantCounts = onSchedule("every 1 minutes", async () => {
+    const cutoff = admin.firestore.Timestamp.fromMillis(Date.now() - ROLL_UP_WINDOW_MS);
+    const changed = await db.collectionGroup("counters").where("updatedAt", ">=", cutoff).select().get();
+    const eventRefs = new Map();
+    for (const doc of changed.docs) eventRefs.set(doc.ref.parent.parent.path, doc.ref.parent.parent);
+    let rolled = 0;
+    for (const eventRef of eventRefs.values()) {
+        if (await rollUpCounts(eventRef)) rolled++;
+    }
+    console.log("Rolled up the counts of", rolled, "of", eventRefs.size, "events");
+});
+
+/**
+ * Firestore-triggered Cloud Function that keeps EventSummaries/{eventId}, the slim copy of an event that
+ * browse screens read (EventDb.getEventSummaries): name, shortened description, times, location,
+ * capacity, counts and organizer, never the entrant lists.
+ * The summary is written from the event as it is when the trigger runs, not from the trigger's payload,
+ * so triggers delivered late or out of order can't put an older version back.
+ */
+exports.syncEventSummary = onDocumentWritten("Events/{eventId}", async (event) => {
+    const before = event.data.before.exists ? event.data.before.data() : null;
+    const after = event.data.after.exists ? event.data.after.data() : null;
+    if (before && after && sameSummary(before, after)) return;   // only the lists changed
+    await syncSummary(event.params.eventId);
+});
+
+/**
+ * Writes the summary of an event from its current document, or deletes it if the event is gone.
+ */
+async function syncSummary(eventId) {
+    const eventRef = db.collection("Events").doc(eventId);
+    const summaryRef = db.collection("EventSummaries").doc(eventId);
+    await db.runTransaction(async (transaction) => {
+        const eventDoc = await transaction.get(eventRef);
+        if (eventDoc.exists) transaction.set(summaryRef, summaryOf(eventDoc.data()));
+        else transaction.delete(summaryRef);
+    });
+}
+
+/**
+ * Callable Cloud Function that writes the summary of every event again, for events written before
+ * syncEventSummary was deployed (on the app: EventDb.rebuildEventSummaries).
+ * Summaries of deleted events are deleted.
+ * Returns: { written: number, deleted: number }
+ */
+exports.rebuildEventSummaries = onCall(async (request) => {
+    if (!request.auth) throw new HttpsError("unauthenticated", "Sign in to rebuild event summaries.");
+    const [events, summaries] = await Promise.all([
+        db.collection("Events").get(),
+        db.collection("EventSummaries").select().get(),
+    ]);
+    const writer = db.bulkWriter();
+    const eventIds = new Set();
+    for (const eventDoc of events.docs) {
+        eventIds.add(eventDoc.id);
+        writer.set(db.collection("EventSummaries").doc(eventDoc.id), summaryOf(eventDoc.data()));
+    }
+    let deleted = 0;
+    for (const summaryDoc of summaries.docs) {
+        if (eventIds.has(summaryDoc.id)) continue;
+        writer.delete(summaryDoc.ref);
+        deleted++;
+    }
+    await writer.close();
+
+    console.log("Rebuilt", eventIds.size, "event summaries, deleted", deleted);
+    return { written: eventIds.size, deleted };
+});
@@ -0,0 +1,26 @@
+const { randomInt } = require("crypto");
+
+/**
+ * Draws `seats` winners from a pool with a partial Fisher-Yates shuffle,
+ * remembering only the displaced indexes (the same draw as LotteryEngine on the client).
+ *
+ * @param {string[]} pool   - The entrants' device IDs.
+ * @param {number}   seats  - How many to draw; everyone is drawn if the pool is smaller.
+ * @param {function(number, number): number} random - Returns an integer in [min, max).
+ * @returns {string[]} The winners in draw order.
+ */
+function drawLottery(pool, seats, random = randomInt) {
+    const n = pool.length;
+    const k = Math.max(0, Math.min(seats, n));
+    const swapped = new Map();
+    const selected = [];
+    for (let i = 0; i < k; i++) {
+        const j = random(i, n);
+        const drawn = swapped.has(j) ? swapped.get(j) : j;
+        swapped.set(j, swapped.has(i) ? swapped.get(i) : i);
+        selected.push(pool[drawn]);
+    }
+    return selected;
+}
+
+module.exports = { drawLottery };
@@ -0,0 +1,48 @@
+const { isDeepStrictEqual } = require("util");
+
+// Characters of the description kept in a summary, about two lines of a list row
+const SUMMARY_DESCRIPTION_LENGTH = 140;
+
+// Event fields copied to a summary as they are; the entrant lists never are
+const SUMMARY_FIELDS = [
+    "name", "organizerDeviceId", "dateTime", "registrationTimeStart", "registrationTimeEnd",
+    "location", "capacity", "counts",
+];
+
+/**
+ * Shortens a description to at most SUMMARY_DESCRIPTION_LENGTH characters, at a word break if there is one.
+ *
+ * @param {string} description - The full description.
+ * @returns {string} The description, or its start followed by an ellipsis.
+ */
+function shorten(description) {
+    if (description.length <= SUMMARY_DESCRIPTION_LENGTH) return description;
+    const cut = description.slice(0, SUMMARY_DESCRIPTION_LENGTH - 1);
+    const space = cut.lastIndexOf(" ");
+    return (space > SUMMARY_DESCRIPTION_LENGTH / 2 ? cut.slice(0, space) : cut).trimEnd() + "…";
+}
+
+/**
+ * Projects an Event document onto the fields of its EventSummaries document (EventSummary on the client).
+ *
+ * @param {Object} event - The Event document's data.
+ * @returns {Object} The summary's data.
+ */
+function summaryOf(event) {
+    const summary = {};
+    for (const field of SUMMARY_FIELDS) {
+        if (event[field] !== undefined) summary[field] = event[field];
+    }
+    if (typeof event.description === "string") summary.description = shorten(event.description);
+    return summary;
+}
+
+/**
+ * Checks whether two versions of an event have the same summary, e.g. when only a list changed
+ * but none of its counts did.
+ */
+function sameSummary(before, after) {
+    return isDeepStrictEqual(summaryOf(before), summaryOf(after));
+}
+
+module.exports = { SUMMARY_DESCRIPTION_LENGTH, summaryOf, sameSummary };
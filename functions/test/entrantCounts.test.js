@@ -0,0 +1,69 @@
+// Tests for the sharded entrant counts of subcollection events (countEntrants, rollUpEntrantCounts).
+// Run against the Firestore emulator: npm test (firebase emulators:exec starts it).
+process.env.GCLOUD_PROJECT = process.env.GCLOUD_PROJECT || "demo-aurora-events";
+
+const { describe, it, after, beforeEach } = require("node:test");
+const assert = require("node:assert/strict");
+const fft = require("firebase-functions-test")({ projectId: process.env.GCLOUD_PROJECT });
+const admin = require("firebase-admin");
+
+const functions = require("../index");
+
+const emulated = Boolean(process.env.FIRESTORE_EMULATOR_HOST);
+
+describe("entrant counts", { skip: !emulated && "needs the Firestore emulator" }, () => {
+    const db = admin.firestore();
+    const countEntrants = fft.wrap(functions.countEntrants);
+    const rollUp = fft.wrap(functions.rollUpEntrantCounts);
+    const eventRef = db.collection("Events").doc("entrantCountsTest");
+
+    async function clear() {
+        await db.recursiveDelete(eventRef);
+    }
+
+    /** Sends countEntrants one entrant status change, as Firestore would, with the given trigger event ID */
+    function statusChange(deviceId, before, after, id) {
+        const path = `Events/${eventRef.id}/entrants/${deviceId}`;
+        const snapshot = (status) => fft.firestore.makeDocumentSnapshot(status ? { deviceId, status } : {}, path);
+        return countEntrants({
+            data: fft.makeChange(snapshot(before), snapshot(after)),
+            params: { eventId: eventRef.id, deviceId },
+            id,
+            time: new Date().toISOString(),
+        });
+    }
+
+    beforeEach(clear);
+    after(async () => {
+        await clear();
+        fft.cleanup();
+    });
+
+    it("counts status changes in the shards and rolls them up into the event", async () => {
+        await eventRef.set({ entrantStorage: "subcollection", countsSince: admin.firestore.Timestamp.fromMillis(0) });
+
+        await statusChange("aurora", null, "WAITING", "join-aurora");
+        await statusChange("aurora", null, "WAITING", "join-aurora");    // delivered twice, counted once
+        await statusChange("borealis", null, "WAITING", "join-borealis");
+        await statusChange("borealis", "WAITING", "SELECTED", "select-borealis");
+
+        // the event document itself isn't written per change
+        assert.equal((await eventRef.get()).get("counts"), undefined);
+
+        await rollUp({});
+        const counts = (await eventRef.get()).get("counts");
+        assert.equal(counts.waiting, 1);
+        assert.equal(counts.selected, 1);
+        assert.equal(counts.attending, 0);
+    });
+
+    it("leaves events that were never counted alone", async () => {
+        await eventRef.set({ entrantStorage: "subcollection" });
+
+        await statusChange("aurora", null, "WAITING", "join-aurora-uncounted");
+        await rollUp({});
+
+        assert.equal((await eventRef.collection("counters").get()).size, 0);
+        assert.equal((await eventRef.get()).get("counts"), undefined);
+    });
+});
@@ -0,0 +1,180 @@
+// Tests for the browse queries of EventDb (getUpcomingEventSummaries, getOpenEventSummaries,
+// getEventsByOrganizerByDate), mirrored here with the Admin SDK.
+// The index coverage tests run anywhere; the query tests run against the Firestore emulator: npm test,
+// and their index use checks are skipped where the emulator doesn't explain queries.
+process.env.GCLOUD_PROJECT = process.env.GCLOUD_PROJECT || "demo-aurora-events";
+
+const { describe, it, before, after } = require("node:test");
+const assert = require("node:assert/strict");
+const admin = require("firebase-admin");
+const { Timestamp, FieldPath } = require("firebase-admin/firestore");
+
+const indexConfig = require("../../firestore.indexes.json");
+
+const emulated = Boolean(process.env.FIRESTORE_EMULATOR_HOST);
+
+const HOUR = 60 * 60 * 1000;
+const ORGANIZER = "eventQueriesTest-organizer";
+
+// Each query's shape: the fields it filters on with ==, then the fields its ranges and orderBys walk, in order
+const QUERIES = {
+    upcoming: { collection: "EventSummaries", equality: [], ordered: ["dateTime"] },
+    open: { collection: "EventSummaries", equality: [], ordered: ["registrationTimeEnd", "registrationTimeStart"] },
+    organizerByDate: { collection: "Events", equality: ["organizerDeviceId"], ordered: ["dateTime"] },
+    // expireInvitations in functions/index.js
+    expiredInvitations: { collection: "entrants", equality: ["status"], ordered: ["updatedAt"] },
+};
+
+/**
+ * Returns whether Firestore keeps the ascending single-field index of a field for collection queries:
+ * it does for every field unless a field override replaces its indexes without one.
+ */
+function hasSingleFieldIndex(collection, field, { fieldOverrides = [] }) {
+    const override = fieldOverrides.find((o) => o.collectionGroup === collection && o.fieldPath === field);
+    return !override ||
+        override.indexes.some((index) => index.order === "ASCENDING" && index.queryScope === "COLLECTION");
+}
+
+/**
+ * Finds the index that serves a query without scanning the collection: the single-field index of the field
+ * when it walks one field and has no equalities, otherwise a composite index with the equality fields first
+ * and then the walked fields in order.
+ *
+ * @returns {Object|string|undefined} The composite index, "single-field", or undefined if none serves it.
+ */
+function indexFor({ collection, equality, ordered }, { indexes = [], fieldOverrides = [] } = indexConfig) {
+    if (equality.length === 0 && ordered.length === 1) {
+        return hasSingleFieldIndex(collection, ordered[0], { fieldOverrides }) ? "single-field" : undefined;
+    }
+    return indexes.find((index) => {
+        if (index.collectionGroup !== collection || index.queryScope !== "COLLECTION") return false;
+        const fields = index.fields.map((field) => field.fieldPath);
+        return fields.length === equality.length + ordered.length &&
+            equality.every((field) => fields.slice(0, equality.length).includes(field)) &&
+            ordered.every((field, i) => fields[equality.length + i] === field);
+    });
+}
+
+describe("firestore.indexes.json", () => {
+    for (const [name, query] of Object.entries(QUERIES)) {
+        it(`has an index for the ${name} query`, () => {
+            assert.ok(indexFor(query), `no index serves ${JSON.stringify(query)}`);
+        });
+    }
+
+    it("finds no index for queries it doesn't cover", () => {
+        const exempted = {
+            indexes: [],
+            fieldOverrides: [{ collectionGroup: "Events", fieldPath: "dateTime", indexes: [] }],
+        };
+        assert.equal(indexFor({ collection: "Events", equality: [], ordered: ["dateTime"] }, exempted), undefined);
+        assert.equal(indexFor({ collection: "Events", equality: ["name"], ordered: ["dateTime"] }), undefined);
+        assert.equal(indexFor({ collection: "Events", equality: [], ordered: ["dateTime", "name"] }), undefined);
+    });
+});
+
+describe("event queries", { skip: !emulated && "needs the Firestore emulator" }, () => {
+    const db = admin.apps.length ? admin.firestore() : (admin.initializeApp(), admin.firestore());
+    const now = Timestamp.now();
+    const at = (hours) => Timestamp.fromMillis(now.toMillis() + hours * HOUR);
+
+    // Registration windows and dates around now; the open ones are closed2h and closed5h
+    const SUMMARIES = {
+        eventQueriesTest_past: { dateTime: at(-24), registrationTimeStart: at(-72), registrationTimeEnd: at(-48) },
+        eventQueriesTest_closed5h: { dateTime: at(48), registrationTimeStart: at(-24), registrationTimeEnd: at(5) },
+        eventQueriesTest_closed2h: { dateTime: at(72), registrationTimeStart: at(-1), registrationTimeEnd: at(2) },
+        eventQueriesTest_notYet: { dateTime: at(24), registrationTimeStart: at(1), registrationTimeEnd: at(12) },
+    };
+    const EVENTS = {
+        eventQueriesTest_later: { organizerDeviceId: ORGANIZER, dateTime: at(48) },
+        eventQueriesTest_sooner: { organizerDeviceId: ORGANIZER, dateTime: at(24) },
+        eventQueriesTest_other: { organizerDeviceId: "eventQueriesTest-someoneElse", dateTime: at(36) },
+    };
+
+    async function clear() {
+        const batch = db.batch();
+        for (const id of Object.keys(SUMMARIES)) batch.delete(db.collection("EventSummaries").doc(id));
+        for (const id of Object.keys(EVENTS)) batch.delete(db.collection("Events").doc(id));
+        await batch.commit();
+    }
+
+    before(async () => {
+        await clear();
+        const batch = db.batch();
+        for (const [id, data] of Object.entries(SUMMARIES)) batch.set(db.collection("EventSummaries").doc(id), data);
+        for (const [id, data] of Object.entries(EVENTS)) batch.set(db.collection("Events").doc(id), data);
+        await batch.commit();
+    });
+    after(clear);
+
+    /**
+     * Runs a query with explain and checks that it used an index, read only the documents it returned,
+     * and walked no more index entries than it returned (or {@code maxEntries}, for a query whose second
+     * range is filtered out of the entries walked). Skips the test where the scan stats can't be had:
+     * older emulators reject explain, and some don't report debugStats.
+     */
+    async function runIndexed(t, query, maxEntries) {
+        let explained;
+        try {
+            explained = await query.explain({ analyze: true });
+        } catch (e) {
+            if (!/explain|unimplemented|not supported/i.test(String(e.message))) throw e;
+            t.skip("the emulator doesn't explain queries");
+            return;
+        }
+        const { planSummary, executionStats } = explained.metrics;
+        const stats = executionStats.debugStats || {};
+        if (stats.documents_scanned === undefined || stats.index_entries_scanned === undefined) {
+            t.skip("the emulator doesn't report scan stats");
+            return;
+        }
+        const returned = executionStats.resultsReturned;
+        assert.ok(planSummary.indexesUsed.length > 0, "the query didn't use an index");
+        assert.equal(Number(stats.documents_scanned), returned, "the query read documents it didn't return");
+        assert.ok(Number(stats.index_entries_scanned) <= (maxEntries ?? returned),
+            `the query walked ${stats.index_entries_scanned} index entries for ${returned} results`);
+    }
+
+    const ids = (snapshot) => snapshot.docs.map((doc) => doc.id).filter((id) => id.startsWith("eventQueriesTest"));
+
+    const upcoming = () => db.collection("EventSummaries")
+        .where("dateTime", ">=", now)
+        .orderBy("dateTime")
+        .orderBy(FieldPath.documentId());
+    const notClosed = () => db.collection("EventSummaries")
+        .where("registrationTimeEnd", ">=", now);
+    const open = () => notClosed()
+        .where("registrationTimeStart", "<=", now)
+        .orderBy("registrationTimeEnd")
+        .orderBy("registrationTimeStart")
+        .orderBy(FieldPath.documentId());
+    const organizerByDate = () => db.collection("Events")
+        .where("organizerDeviceId", "==", ORGANIZER)
+        .orderBy("dateTime");
+
+    it("lists upcoming events soonest first", async () => {
+        assert.deepEqual(ids(await upcoming().get()),
+            ["eventQueriesTest_notYet", "eventQueriesTest_closed5h", "eventQueriesTest_closed2h"]);
+    });
+
+    it("lists events open for registration, closing soonest first", async () => {
+        assert.deepEqual(ids(await open().get()), ["eventQueriesTest_closed2h", "eventQueriesTest_closed5h"]);
+    });
+
+    it("lists an organizer's events by date", async () => {
+        assert.deepEqual(ids(await organizerByDate().get()), ["eventQueriesTest_sooner", "eventQueriesTest_later"]);
+    });
+
+    it("reads upcoming events from an index", async (t) => {
+        await runIndexed(t, upcoming());
+    });
+
+    it("reads open events from an index, walking only the registrations not yet closed", async (t) => {
+        // the start filter is applied to the entries walked from the end, so not yet open ones are walked too
+        await runIndexed(t, open(), (await notClosed().count().get()).data().count);
+    });
+
+    it("reads an organizer's events from an index", async (t) => {
+        await runIndexed(t, organizerByDate());
+    });
+});
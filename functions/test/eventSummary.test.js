@@ -0,0 +1,85 @@
+// Tests for the EventSummaries projection.
+// The summaryOf tests run anywhere; rebuildEventSummaries runs against the Firestore emulator: npm test.
+process.env.GCLOUD_PROJECT = process.env.GCLOUD_PROJECT || "demo-aurora-events";
+
+const { describe, it, after, beforeEach } = require("node:test");
+const assert = require("node:assert/strict");
+const fft = require("firebase-functions-test")({ projectId: process.env.GCLOUD_PROJECT });
+const admin = require("firebase-admin");
+
+const { SUMMARY_DESCRIPTION_LENGTH, summaryOf, sameSummary } = require("../summary");
+const functions = require("../index");
+
+const emulated = Boolean(process.env.FIRESTORE_EMULATOR_HOST);
+
+const EVENT = {
+    name: "Sports Event",
+    description: "Explore your favourite sport",
+    organizerDeviceId: "organizer-xyz",
+    location: "Rec Centre",
+    capacity: 20,
+    counts: { waiting: 2, selected: 0, attending: 0 },
+    registrationList: { waitingList: ["aurora", "borealis"], selectedList: [], lastSeq: 2 },
+    entrantStorage: "array",
+};
+
+describe("summaryOf", () => {
+    it("keeps the browse fields and drops the lists", () => {
+        const summary = summaryOf(EVENT);
+        assert.equal(summary.name, "Sports Event");
+        assert.equal(summary.description, "Explore your favourite sport");
+        assert.deepEqual(summary.counts, EVENT.counts);
+        assert.equal(summary.registrationList, undefined);
+        assert.equal(summary.entrantStorage, undefined);
+    });
+
+    it("shortens long descriptions at a word break", () => {
+        const description = "word ".repeat(100);
+        const summary = summaryOf({ ...EVENT, description });
+        assert.ok(summary.description.length <= SUMMARY_DESCRIPTION_LENGTH);
+        assert.ok(summary.description.endsWith("word…"));
+    });
+
+    it("ignores list changes that leave the counts alone", () => {
+        const reordered = { ...EVENT, registrationList: { waitingList: ["borealis", "aurora"], lastSeq: 3 } };
+        assert.ok(sameSummary(EVENT, reordered));
+        assert.ok(!sameSummary(EVENT, { ...EVENT, counts: { ...EVENT.counts, waiting: 3 } }));
+        assert.ok(!sameSummary(EVENT, { ...EVENT, name: "Renamed" }));
+    });
+});
+
+describe("rebuildEventSummaries", { skip: !emulated && "needs the Firestore emulator" }, () => {
+    const db = admin.firestore();
+    const rebuild = fft.wrap(functions.rebuildEventSummaries);
+    const auth = { uid: "eventSummaryTest" };
+    const eventRef = db.collection("Events").doc("eventSummaryTest");
+    const staleRef = db.collection("EventSummaries").doc("eventSummaryTestDeleted");
+
+    async function clear() {
+        await Promise.all([eventRef.delete(), staleRef.delete(),
+            db.collection("EventSummaries").doc(eventRef.id).delete()]);
+    }
+
+    beforeEach(clear);
+    after(async () => {
+        await clear();
+        fft.cleanup();
+    });
+
+    it("writes missing summaries and deletes orphaned ones", async () => {
+        await eventRef.set(EVENT);
+        await staleRef.set({ name: "deleted event" });
+
+        const result = await rebuild({ data: {}, auth });
+        assert.ok(result.written >= 1);
+        assert.ok(result.deleted >= 1);
+        const summary = await db.collection("EventSummaries").doc(eventRef.id).get();
+        assert.equal(summary.get("name"), "Sports Event");
+        assert.equal(summary.get("registrationList"), undefined);
+        assert.equal((await staleRef.get()).exists, false);
+    });
+
+    it("needs a signed in caller", async () => {
+        await assert.rejects(rebuild({ data: {} }), { code: "unauthenticated" });
+    });
+});
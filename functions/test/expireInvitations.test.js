@@ -0,0 +1,77 @@
+// Tests for the Cloud Function declining unanswered invitations (expireInvitations).
+// Run against the Firestore emulator: npm test (firebase emulators:exec starts it).
+process.env.GCLOUD_PROJECT = process.env.GCLOUD_PROJECT || "demo-aurora-events";
+
+const { describe, it, after, beforeEach } = require("node:test");
+const assert = require("node:assert/strict");
+const fft = require("firebase-functions-test")({ projectId: process.env.GCLOUD_PROJECT });
+const admin = require("firebase-admin");
+
+const functions = require("../index");
+
+const emulated = Boolean(process.env.FIRESTORE_EMULATOR_HOST);
+
+const HOUR = 60 * 60 * 1000;
+
+describe("expireInvitations", { skip: !emulated && "needs the Firestore emulator" }, () => {
+    const db = admin.firestore();
+    const expireInvitations = fft.wrap(functions.expireInvitations);
+    const eventRef = db.collection("Events").doc("expireInvitationsTest");
+    const hoursAgo = (hours) => admin.firestore.Timestamp.fromMillis(Date.now() - hours * HOUR);
+
+    async function clear() {
+        await db.recursiveDelete(eventRef);
+    }
+
+    beforeEach(clear);
+    after(async () => {
+        await clear();
+        fft.cleanup();
+    });
+
+    it("declines the invitations of array events older than the deadline", async () => {
+        await eventRef.set({
+            acceptDeadlineMillis: 24 * HOUR,
+            registrationList: { selectedList: ["late", "onTime", "untimed"], declinedList: [], lastSeq: 0 },
+            counts: { selected: 3, declined: 0 },
+            selectedAt: { late: hoursAgo(30), onTime: hoursAgo(2) },
+        });
+
+        await expireInvitations({});
+
+        const event = await eventRef.get();
+        assert.deepEqual(event.get("registrationList.selectedList"), ["onTime", "untimed"]);
+        assert.deepEqual(event.get("registrationList.declinedList"), ["late"]);
+        assert.equal(event.get("registrationList.lastSeq"), 1);
+        assert.equal(event.get("counts.selected"), 2);
+        assert.equal(event.get("counts.declined"), 1);
+        // the expired time is gone, and the untimed invitation is timed from now
+        assert.deepEqual(new Set(Object.keys(event.get("selectedAt"))), new Set(["onTime", "untimed"]));
+        const transitions = await eventRef.collection("transitions").get();
+        assert.deepEqual(transitions.docs.map((doc) => [doc.get("userID"), doc.get("from"), doc.get("to")]),
+            [["late", "SELECTED", "DECLINED"]]);
+    });
+
+    it("declines the invitations of subcollection events by their entrant documents", async () => {
+        await eventRef.set({ acceptDeadlineMillis: 24 * HOUR, entrantStorage: "subcollection" });
+        const entrants = eventRef.collection("entrants");
+        await entrants.doc("late").set({ deviceId: "late", status: "SELECTED", updatedAt: hoursAgo(30) });
+        await entrants.doc("onTime").set({ deviceId: "onTime", status: "SELECTED", updatedAt: hoursAgo(2) });
+
+        await expireInvitations({});
+
+        assert.equal((await entrants.doc("late").get()).get("status"), "DECLINED");
+        assert.equal((await entrants.doc("onTime").get()).get("status"), "SELECTED");
+    });
+
+    it("leaves events without a deadline alone", async () => {
+        await eventRef.set({
+            registrationList: { selectedList: ["late"], lastSeq: 0 },
+            selectedAt: { late: hoursAgo(1000) },
+        });
+
+        await expireInvitations({});
+
+        assert.deepEqual((await eventRef.get()).get("registrationList.selectedList"), ["late"]);
+    });
+});
@@ -0,0 +1,120 @@
+// Tests for the lottery Cloud Function.
+// Run against the Firestore emulator: npm test (firebase emulators:exec starts it).
+process.env.GCLOUD_PROJECT = process.env.GCLOUD_PROJECT || "demo-aurora-events";
+
+const { describe, it, after, beforeEach } = require("node:test");
+const assert = require("node:assert/strict");
+const fft = require("firebase-functions-test")({ projectId: process.env.GCLOUD_PROJECT });
+const admin = require("firebase-admin");
+
+const { drawLottery } = require("../lottery");
+const functions = require("../index");
+
+const emulated = Boolean(process.env.FIRESTORE_EMULATOR_HOST);
+const ENTRANTS = Array.from({ length: 10 }, (_, i) => `runLotteryTest${i}`);
+
+describe("drawLottery", () => {
+    it("draws distinct entrants from the pool", () => {
+        const selected = drawLottery(ENTRANTS, 4);
+        assert.equal(selected.length, 4);
+        assert.equal(new Set(selected).size, 4);
+        for (const id of selected) assert.ok(ENTRANTS.includes(id));
+    });
+
+    it("draws everyone from a small pool and no one for no seats", () => {
+        assert.deepEqual(new Set(drawLottery(ENTRANTS, 50)), new Set(ENTRANTS));
+        assert.deepEqual(drawLottery(ENTRANTS, 0), []);
+        assert.deepEqual(drawLottery([], 3), []);
+    });
+});
+
+describe("runLottery", { skip: !emulated && "needs the Firestore emulator" }, () => {
+    const db = admin.firestore();
+    const runLottery = fft.wrap(functions.runLottery);
+    const auth = { uid: "runLotteryTest" };
+    const eventRef = db.collection("Events").doc("runLotteryTest");
+
+    async function clear() {
+        await db.recursiveDelete(eventRef);
+    }
+
+    async function setUpArrayEvent(capacity, selected = []) {
+        await eventRef.set({
+            name: "run lottery test",
+            capacity,
+            registrationList: {
+                waitingList: ENTRANTS.filter(id => !selected.includes(id)),
+                selectedList: selected,
+                attendingList: [],
+                lastSeq: 0,
+            },
+        });
+    }
+
+    beforeEach(clear);
+    after(async () => {
+        await clear();
+        fft.cleanup();
+    });
+
+    it("moves the winners to the selected list in one commit", async () => {
+        await setUpArrayEvent(3);
+        const result = await runLottery({ data: { eventId: eventRef.id }, auth });
+
+        assert.equal(result.selected.length, 3);
+        assert.equal(result.notSelected.length, 7);
+        const lists = (await eventRef.get()).get("registrationList");
+        assert.deepEqual(new Set(lists.selectedList), new Set(result.selected));
+        assert.deepEqual(new Set(lists.waitingList), new Set(result.notSelected));
+        assert.equal(lists.lastSeq, 3);
+        const transitions = await eventRef.collection("transitions").get();
+        assert.equal(transitions.size, 3);
+        // the invitations are timed from the draw
+        const selectedAt = (await eventRef.get()).get("selectedAt");
+        assert.deepEqual(new Set(Object.keys(selectedAt)), new Set(result.selected));
+    });
+
+    it("never draws more than the free seats", async () => {
+        await setUpArrayEvent(4, [ENTRANTS[0]]);
+        const result = await runLottery({ data: { eventId: eventRef.id, seats: 8 }, auth });
+        assert.equal(result.seats, 3);
+        assert.equal(result.selected.length, 3);
+        assert.ok(!result.selected.includes(ENTRANTS[0]));
+    });
+
+    it("draws once per operation ID", async () => {
+        await setUpArrayEvent(5);
+        const data = { eventId: eventRef.id, seats: 2, operationId: "runLotteryTest-op" };
+        const first = await runLottery({ data, auth });
+        const second = await runLottery({ data, auth });
+
+        assert.equal(first.selected.length, 2);
+        assert.equal(second.alreadyApplied, true);
+        const lists = (await eventRef.get()).get("registrationList");
+        assert.equal(lists.selectedList.length, 2);
+    });
+
+    it("draws from the entrants subcollection", async () => {
+        await eventRef.set({ name: "run lottery test", capacity: 4, entrantStorage: "subcollection" });
+        const batch = db.batch();
+        for (const id of ENTRANTS) {
+            batch.set(eventRef.collection("entrants").doc(id), { deviceId: id, status: "WAITING" });
+        }
+        batch.set(eventRef.collection("entrants").doc("runLotteryTestAttending"),
+            { deviceId: "runLotteryTestAttending", status: "ATTENDING", seat: 0 });
+        await batch.commit();
+
+        const result = await runLottery({ data: { eventId: eventRef.id }, auth });
+        assert.equal(result.selected.length, 3);
+        const selected = await eventRef.collection("entrants").where("status", "==", "SELECTED").get();
+        assert.deepEqual(new Set(selected.docs.map(doc => doc.id)), new Set(result.selected));
+    });
+
+    it("rejects bad requests", async () => {
+        await assert.rejects(runLottery({ data: { eventId: eventRef.id } }), { code: "unauthenticated" });
+        await assert.rejects(runLottery({ data: {}, auth }), { code: "invalid-argument" });
+        await assert.rejects(runLottery({ data: { eventId: eventRef.id, seats: -1 }, auth }),
+            { code: "invalid-argument" });
+        await assert.rejects(runLottery({ data: { eventId: "runLotteryTestMissing" }, auth }), { code: "not-found" });
+    });
+});